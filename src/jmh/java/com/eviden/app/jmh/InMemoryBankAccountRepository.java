@@ -0,0 +1,61 @@
+package com.eviden.app.jmh;
+
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link BankAccountRepository} backed by a map, for benchmarks that must not measure a database
+ * or a mocking framework. Only the methods the transfer path calls are implemented, every other
+ * method throws {@link UnsupportedOperationException}. Calls go through a dynamic proxy, which
+ * adds a small fixed allocation per repository call to every result.
+ */
+public final class InMemoryBankAccountRepository {
+
+    private InMemoryBankAccountRepository() {
+    }
+
+    public static BankAccountRepository create(Collection<BankAccount> accounts) {
+        Map<String, BankAccount> byNumber = new ConcurrentHashMap<>();
+        Map<Long, BankAccount> byId = new ConcurrentHashMap<>();
+        for (BankAccount account : accounts) {
+            byNumber.put(account.getAccountNumber(), account);
+            byId.put(account.getId(), account);
+        }
+        return (BankAccountRepository) Proxy.newProxyInstance(BankAccountRepository.class.getClassLoader(),
+                new Class<?>[]{BankAccountRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findByAccountNumber" -> byNumber.get((String) args[0]);
+                    case "findByAccountNumberIn" -> {
+                        List<BankAccount> found = new ArrayList<>();
+                        for (Object number : (Collection<?>) args[0]) {
+                            BankAccount account = byNumber.get((String) number);
+                            if (account != null) {
+                                found.add(account);
+                            }
+                        }
+                        yield found;
+                    }
+                    case "findById" -> Optional.ofNullable(byId.get((Long) args[0]));
+                    case "updateBalance" -> {
+                        BankAccount account = byId.get((Long) args[0]);
+                        if (account == null) {
+                            yield 0;
+                        }
+                        account.setBalance((Long) args[1]);
+                        yield 1;
+                    }
+                    case "flush" -> null;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryBankAccountRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,88 @@
+package com.eviden.app.logger;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost on the logging thread of {@link InfoAppender#append}, with the shipping thread sending to
+ * a local stand-in for Elasticsearch that accepts every bulk request. Each invocation appends a
+ * new event, as logback does for every log call; building the event is part of the score. Once
+ * the queue is full the {@code overflowPolicy} decides, so shipped and dropped counts are printed
+ * after the run to show which path was measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InfoAppenderBenchmark {
+
+    @Param({"DROP", "SAMPLE"})
+    private OverflowPolicy overflowPolicy;
+
+    private final LoggerContext context = new LoggerContext();
+    private HttpServer server;
+    private InfoAppender appender;
+    private ch.qos.logback.classic.Logger logger;
+
+    @Setup
+    public void setUp() throws IOException {
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        byte[] response = "{\"took\":1,\"errors\":false,\"items\":[]}".getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+
+        appender = new InfoAppender();
+        appender.setContext(context);
+        appender.setName("benchmark");
+        appender.setPrefix("benchmark");
+        appender.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        appender.setOverflowPolicy(overflowPolicy);
+        appender.start();
+        logger = context.getLogger("com.eviden.app.service.TransferServiceImpl");
+    }
+
+    @TearDown
+    public void tearDown() {
+        appender.stop();
+        server.stop(0);
+        System.out.printf("%nshipped %,d, dropped %,d, sampled out %,d, failed %,d%n", appender.getShippedCount(),
+                appender.getDroppedCount(), appender.getSampledOutCount(), appender.getFailedCount());
+    }
+
+    @Benchmark
+    public void append() {
+        LoggingEvent event = new LoggingEvent(InfoAppenderBenchmark.class.getName(), logger, Level.INFO,
+                "Transfer from {} to {} rejected: {}", null, new Object[]{"008596512563", "008596558965", "INSUFFICIENT_FUNDS"});
+        appender.append(event);
+    }
+}
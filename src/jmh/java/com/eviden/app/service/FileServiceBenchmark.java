@@ -0,0 +1,88 @@
+package com.eviden.app.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Zips a directory of {@code files} text files of {@code fileSize} bytes each into a discarding
+ * stream, once with the legacy {@link FileService#addFilesToZip} and once with
+ * {@link FileService#streamZip}, so the gap between the two shows in time and in bytes
+ * allocated per archive. The files stay in the page cache after the first iteration, so disk
+ * speed does not enter the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileServiceBenchmark {
+
+    @Param({"100"})
+    private int files;
+
+    @Param({"65536"})
+    private int fileSize;
+
+    private Path root;
+    private File source;
+    private FileService fileService;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("file-service-benchmark");
+        source = Files.createDirectories(root.resolve("exports/source")).toFile();
+        SplittableRandom random = new SplittableRandom(42);
+        String[] words = {"transfer", "account", "balance", "savings", "checking", "ledger", "amount", "journal"};
+        for (int i = 0; i < files; i++) {
+            StringBuilder text = new StringBuilder(fileSize + 16);
+            while (text.length() < fileSize) {
+                text.append(words[random.nextInt(words.length)]).append(' ').append(random.nextInt(100_000)).append('\n');
+            }
+            text.setLength(fileSize);
+            Files.writeString(source.toPath().resolve("statement-" + i + ".txt"), text, StandardCharsets.US_ASCII);
+        }
+        fileService = new FileService(root.resolve("exports").toString(), 0, DataSize.ofMegabytes(1), 6,
+                DataSize.ofKilobytes(256), new String[]{"pdf", "png", "zip"});
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileService.close();
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public void addFilesToZip() throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(OutputStream.nullOutputStream())) {
+            fileService.addFilesToZip(source, source.getName(), zos);
+        }
+    }
+
+    @Benchmark
+    public void streamZip() throws IOException {
+        fileService.streamZip(source, OutputStream.nullOutputStream());
+    }
+}
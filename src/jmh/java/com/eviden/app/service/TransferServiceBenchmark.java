@@ -0,0 +1,80 @@
+package com.eviden.app.service;
+
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.entity.Transfer;
+import com.eviden.app.jmh.InMemoryBankAccountRepository;
+import com.eviden.app.repository.BankAccountRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransferServiceImpl#transfer} against an {@link InMemoryBankAccountRepository}, without a
+ * transaction manager. {@code accounts} sets how many accounts the transfers spread over. Every
+ * transfer moves one minor unit between a random pair, so balances never run out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferServiceBenchmark {
+
+    private static final int PAIRS = 1 << 12;
+
+    @Param({"2", "10000"})
+    private int accounts;
+
+    private TransferServiceImpl transferService;
+    private Transfer[] transfers;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<BankAccount> stored = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            BankAccount account = new BankAccount(String.format("%012d", i + 1), "Load " + i, 1_000_000_000L, "Savings");
+            account.setId((long) i + 1);
+            stored.add(account);
+        }
+        BankAccountRepository repository = InMemoryBankAccountRepository.create(stored);
+        TransactionOperations noTransaction = TransactionOperations.withoutTransaction();
+        TransferEngine engine = new TransferEngine(repository, noTransaction, 64);
+        transferService = new TransferServiceImpl(repository, engine, noTransaction, 1000, BatchFailureMode.ALL_OR_NOTHING);
+
+        SplittableRandom random = new SplittableRandom(42);
+        transfers = new Transfer[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            int from = random.nextInt(accounts);
+            int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+            transfers[i] = new Transfer(stored.get(from).getAccountNumber(), stored.get(to).getAccountNumber(), 1L);
+        }
+        // load every account into the engine before measuring
+        for (Transfer transfer : transfers) {
+            transferService.transfer(transfer);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Optional<BankAccount>> transfer() throws Exception {
+        Transfer transfer = transfers[next++ & (PAIRS - 1)];
+        return transferService.transfer(transfer);
+    }
+}
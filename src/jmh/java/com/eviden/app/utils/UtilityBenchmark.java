@@ -0,0 +1,195 @@
+package com.eviden.app.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * {@link Utility#findDuplicates}, its variants and {@link Utility#removeDuplicate} on lists of
+ * {@code size} account records where about {@code duplicatePercent} percent of the keys repeat,
+ * each next to the {@code groupingBy} or {@code LinkedHashSet} code it replaced; and timestamp
+ * conversions.
+ * <p>
+ * The timestamp benchmarks compare the {@code SimpleDateFormat} code that {@link Utility} used to
+ * run, kept here as the baseline, with {@link TimestampCodec}. Single conversions rotate through
+ * instants spread over a year, so the codec's remembered minute almost never hits. The bulk
+ * benchmarks convert a statement of {@code STATEMENT} entries a few seconds apart, which is the
+ * case the remembered minute is for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilityBenchmark {
+
+    private static final int TIMESTAMPS = 1 << 10;
+    private static final int STATEMENT = 1_000;
+    private static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    private final TimestampCodec codec = TimestampCodec.seconds(ZoneId.systemDefault());
+    private String[] dates;
+    private long[] epochs;
+    private long[] statementEpochs;
+    private String[] statementDates;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        dates = new String[TIMESTAMPS];
+        epochs = new long[TIMESTAMPS];
+        long yearStart = 1_704_067_200_000L;
+        for (int i = 0; i < TIMESTAMPS; i++) {
+            epochs[i] = yearStart + random.nextLong(365L * 24 * 3600 * 1000);
+            dates[i] = codec.format(epochs[i]);
+        }
+        statementEpochs = new long[STATEMENT];
+        long now = yearStart;
+        for (int i = 0; i < STATEMENT; i++) {
+            now += random.nextLong(5_000);
+            statementEpochs[i] = now;
+        }
+        statementDates = codec.format(statementEpochs);
+    }
+
+    @Benchmark
+    public List<Row> findDuplicatesGrouping(Rows rows) {
+        Function<Row, ?> notNullUniqueKey = el -> el.accountNumber() == null ? "" : el.accountNumber();
+        return rows.rows.stream()
+                .collect(Collectors.groupingBy(notNullUniqueKey))
+                .values()
+                .stream()
+                .filter(matches -> matches.size() > 1)
+                .map(matches -> matches.get(0))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Row> findDuplicates(Rows rows) {
+        return Utility.findDuplicates(rows.rows, Row::accountNumber);
+    }
+
+    @Benchmark
+    public List<Row> findDuplicatesParallel(Rows rows) {
+        return Utility.findDuplicatesParallel(rows.rows, Row::accountNumber);
+    }
+
+    @Benchmark
+    public List<Row> findDuplicatesByLong(Rows rows) {
+        return Utility.findDuplicatesByLong(rows.rows, Row::packed);
+    }
+
+    @Benchmark
+    public List<Row> removeDuplicateLinkedHashSet(Rows rows) {
+        return new ArrayList<>(new LinkedHashSet<>(rows.rows));
+    }
+
+    @Benchmark
+    public List<Row> removeDuplicate(Rows rows) {
+        return Utility.removeDuplicate(rows.rows);
+    }
+
+    @Benchmark
+    public long parseSimpleDateFormat() throws ParseException {
+        return new SimpleDateFormat(PATTERN).parse(dates[next++ & (TIMESTAMPS - 1)]).getTime();
+    }
+
+    @Benchmark
+    public long parseCodec() {
+        return codec.parse(dates[next++ & (TIMESTAMPS - 1)]);
+    }
+
+    @Benchmark
+    public String formatSimpleDateFormat() {
+        return new SimpleDateFormat(PATTERN).format(new Date(epochs[next++ & (TIMESTAMPS - 1)]));
+    }
+
+    @Benchmark
+    public String formatCodec() {
+        return codec.format(epochs[next++ & (TIMESTAMPS - 1)]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATEMENT)
+    public String[] formatStatementSimpleDateFormat() {
+        String[] texts = new String[STATEMENT];
+        for (int i = 0; i < STATEMENT; i++) {
+            texts[i] = new SimpleDateFormat(PATTERN).format(new Date(statementEpochs[i]));
+        }
+        return texts;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATEMENT)
+    public String[] formatStatementCodec() {
+        return codec.format(statementEpochs);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATEMENT)
+    public long[] parseStatementSimpleDateFormat() throws ParseException {
+        long[] epochMillis = new long[STATEMENT];
+        for (int i = 0; i < STATEMENT; i++) {
+            epochMillis[i] = new SimpleDateFormat(PATTERN).parse(statementDates[i]).getTime();
+        }
+        return epochMillis;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATEMENT)
+    public long[] parseStatementCodec() {
+        return codec.parse(statementDates);
+    }
+
+    /**
+     * Equal when the account numbers are, so {@code removeDuplicate} sees the same repeats.
+     */
+    public record Row(String accountNumber, long packed) {
+    }
+
+    @State(Scope.Benchmark)
+    public static class Rows {
+
+        @Param({"100", "10000", "1000000"})
+        private int size;
+
+        @Param({"10"})
+        private int duplicatePercent;
+
+        private List<Row> rows;
+
+        @Setup
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom(7);
+            int distinct = Math.max(1, size - size * duplicatePercent / 100);
+            rows = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int key = i < distinct ? i : random.nextInt(distinct);
+                rows.add(new Row(String.format("%012d", key), key));
+            }
+        }
+    }
+}
@@ -11,6 +11,14 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.web.client.RestTemplate;
 import com.eviden.app.repository.BankAccountRepository;
 import com.eviden.app.entity.BankAccount;
+import com.eviden.app.logger.InfoAppenderMetrics;
+import com.eviden.app.logger.MapHolder;
+import com.eviden.app.logger.RecentEventsAppender;
+import com.eviden.app.service.IdempotencyCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import ch.qos.logback.classic.LoggerContext;
+import java.time.Duration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
@@ -25,6 +33,31 @@ public class Components {
         return new RestTemplate();
     }
 
+    @Bean
+    public IdempotencyCache<ResponseEntity<String>> transferIdempotencyCache(
+            @Value("${transfer.idempotency.max-entries:100000}") int maxEntries,
+            @Value("${transfer.idempotency.ttl:24h}") Duration ttl) {
+        // server errors, including failed writes, are not final answers; a retry should run the transfer again
+        return new IdempotencyCache<>(maxEntries, ttl, response -> !response.getStatusCode().is5xxServerError());
+    }
+
+    @Bean(destroyMethod = "detach")
+    public RecentEventsAppender recentEventsAppender(
+            @Value("${logging.recent.capacity:2048}") int capacity,
+            @Value("${logging.recent.level-capacities:ERROR=512,WARN=512}") String levelCapacities) {
+        return RecentEventsAppender.attachToRoot(capacity, levelCapacities);
+    }
+
+    @Bean
+    public MapHolder recentLogEvents(RecentEventsAppender recentEventsAppender) {
+        return MapHolder.getInstance();
+    }
+
+    @Bean
+    public InfoAppenderMetrics infoAppenderMetrics() {
+        return new InfoAppenderMetrics((LoggerContext) LoggerFactory.getILoggerFactory());
+    }
+
    
 
 }
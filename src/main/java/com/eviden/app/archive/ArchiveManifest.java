@@ -0,0 +1,72 @@
+package com.eviden.app.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sidecar of an archive built by {@link ParallelZipArchiver#archiveIncremental}, stored as JSON
+ * next to it with a {@code .manifest} suffix.
+ * <p>
+ * The size and modification time of the archive itself are part of the manifest, so an archive
+ * that was replaced or touched by anything else is never used as a source of raw entry bytes.
+ */
+public record ArchiveManifest(long archiveSize, long archiveLastModified, List<ManifestEntry> entries) {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveManifest.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String SUFFIX = ".manifest";
+
+    public static Path pathOf(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Reads the manifest of {@code archive}, or returns {@code null} if there is none or it does
+     * not describe the archive as it is on disk now.
+     */
+    public static ArchiveManifest readIfCurrent(Path archive) {
+        Path path = pathOf(archive);
+        if (!Files.isRegularFile(path) || !Files.isRegularFile(archive)) {
+            return null;
+        }
+        try {
+            ArchiveManifest manifest = MAPPER.readValue(path.toFile(), ArchiveManifest.class);
+            if (manifest.archiveSize != Files.size(archive)
+                    || manifest.archiveLastModified != Files.getLastModifiedTime(archive).toMillis()) {
+                logger.info("Manifest {} is stale, rebuilding the whole archive", path);
+                return null;
+            }
+            return manifest;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable manifest {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the manifest through a temporary file, so readers never see half of it.
+     */
+    public void write(Path archive) throws IOException {
+        Path path = pathOf(archive);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        MAPPER.writeValue(temp.toFile(), this);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Map<String, ManifestEntry> byName() {
+        Map<String, ManifestEntry> byName = new HashMap<>(entries.size() * 2);
+        for (ManifestEntry entry : entries) {
+            byName.put(entry.name(), entry);
+        }
+        return byName;
+    }
+}
@@ -0,0 +1,13 @@
+package com.eviden.app.archive;
+
+/**
+ * Outcome of an incremental build.
+ *
+ * @param entries      entries in the new archive, directories included
+ * @param reused       file entries copied as raw compressed bytes from the previous archive
+ * @param rebuilt      file entries read and compressed again
+ * @param reusedBytes  uncompressed bytes covered by the reused entries
+ * @param rebuiltBytes uncompressed bytes that were read and compressed
+ */
+public record ArchiveStats(int entries, int reused, int rebuilt, long reusedBytes, long rebuiltBytes) {
+}
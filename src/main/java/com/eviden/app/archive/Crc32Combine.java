@@ -0,0 +1,69 @@
+package com.eviden.app.archive;
+
+/**
+ * CRC-32 of a concatenation computed from the CRCs of its parts, as zlib's {@code crc32_combine}.
+ * <p>
+ * Appending {@code len2} bytes to a message is a linear operation on its CRC register, so it can
+ * be applied as a 32x32 matrix over GF(2) raised to the power {@code len2} by repeated squaring,
+ * in O(log len2) time without touching the data.
+ */
+final class Crc32Combine {
+
+    private static final int REFLECTED_POLYNOMIAL = 0xedb88320;
+
+    private Crc32Combine() {
+    }
+
+    static long combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0) {
+            return crc1;
+        }
+        int[] even = new int[32];
+        int[] odd = new int[32];
+
+        // operator for one zero bit
+        odd[0] = REFLECTED_POLYNOMIAL;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd); // two zero bits
+        square(odd, even); // four zero bits
+
+        int crc = (int) crc1;
+        do {
+            // first pass applies one zero byte (eight zero bits)
+            square(even, odd);
+            if ((len2 & 1) != 0) {
+                crc = times(even, crc);
+            }
+            len2 >>>= 1;
+            if (len2 == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((len2 & 1) != 0) {
+                crc = times(odd, crc);
+            }
+            len2 >>>= 1;
+        } while (len2 != 0);
+        return (crc ^ (int) crc2) & 0xffffffffL;
+    }
+
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.eviden.app.archive;
+
+/**
+ * One independently compressed slice of a file.
+ *
+ * @param data   raw deflate output; all but the last block of a file end on a sync flush, so the
+ *               blocks of a file can be concatenated into one valid deflate stream. {@code null}
+ *               when only the checksum of a stored file was computed
+ * @param length number of valid bytes in {@code data}
+ * @param crc    CRC-32 of the uncompressed slice
+ * @param size   uncompressed length of the slice
+ */
+record DeflateBlock(byte[] data, int length, long crc, int size) {
+}
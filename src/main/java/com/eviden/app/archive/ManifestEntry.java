@@ -0,0 +1,24 @@
+package com.eviden.app.archive;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * What an incremental build remembers about one archive entry.
+ *
+ * @param name           entry name, directories ending in {@code /}
+ * @param size           uncompressed size
+ * @param lastModified   modification time of the source file in epoch milliseconds
+ * @param sha256         hex SHA-256 of the file content, {@code null} for directories
+ * @param crc            CRC-32 stored in the zip entry
+ * @param method         {@link ZipWriter#STORED} or {@link ZipWriter#DEFLATED}
+ * @param compressedSize length of the entry data in the archive
+ * @param dataOffset     archive offset of the entry data, just past its local header
+ */
+public record ManifestEntry(String name, long size, long lastModified, String sha256, long crc, int method,
+                            long compressedSize, long dataOffset) {
+
+    @JsonIgnore
+    public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+}
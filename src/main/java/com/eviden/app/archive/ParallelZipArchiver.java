@@ -0,0 +1,525 @@
+package com.eviden.app.archive;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Builds zip archives of a directory tree with the deflating spread over a {@link ForkJoinPool}.
+ * <p>
+ * Every file is cut into fixed-size blocks that are compressed concurrently, pigz style: each
+ * block is primed with the 32 KiB preceding it as a preset dictionary, so the ratio stays close to
+ * a single-threaded deflate, and ends on a sync flush, so the blocks of a file concatenate into one
+ * valid deflate stream. The CRC of a file is combined from the CRCs of its blocks. A single thread
+ * writes the blocks to the output in archive order while at most {@code window} blocks are in
+ * flight, which bounds memory to roughly {@code window * blockSize * 2} whatever the file sizes.
+ * <p>
+ * Files whose extension is in {@code storedExtensions} are already compressed, so deflating them
+ * again would only burn CPU. They are written as STORED entries and their bytes are copied with
+ * {@link FileChannel#transferTo}. A pool task computes their CRC as soon as they enter the window,
+ * so the local header can carry it: streaming readers such as {@code ZipInputStream} refuse
+ * STORED entries followed by a data descriptor.
+ * <p>
+ * {@link #archiveIncremental} also keeps an {@link ArchiveManifest} next to the archive and copies
+ * the compressed bytes of unchanged files from the previous archive instead of reading them again.
+ * <p>
+ * Entry names follow {@code FileService.addFilesToZip}: the source directory's name, then the path
+ * below it, with directories ending in {@code /}.
+ */
+public class ParallelZipArchiver implements Closeable {
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int CHECKSUM_BUFFER = 256 * 1024;
+    /** Files this close to 4 GiB get zip64 descriptors in case deflate expands them past the limit. */
+    private static final long ZIP64_THRESHOLD = ZipWriter.ZIP64_MAGIC - (64L << 20);
+
+    private final ForkJoinPool pool;
+    private final int blockSize;
+    private final int level;
+    private final int window;
+    private final int bufferSize;
+    private final Set<String> storedExtensions;
+
+    public ParallelZipArchiver(int parallelism, int blockSize, int level, int bufferSize) {
+        this(parallelism, blockSize, level, bufferSize, Set.of());
+    }
+
+    public ParallelZipArchiver(int parallelism, int blockSize, int level, int bufferSize,
+                               Collection<String> storedExtensions) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(threads);
+        this.blockSize = Math.max(DICTIONARY_SIZE, blockSize);
+        this.level = level;
+        this.window = threads * 2 + 2;
+        this.bufferSize = bufferSize;
+        this.storedExtensions = storedExtensions.stream()
+                .map(extension -> extension.trim().toLowerCase(Locale.ROOT))
+                .filter(extension -> !extension.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Writes a zip file of {@code source} to {@code target}, replacing it.
+     */
+    public void archive(Path source, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            archive(source, out);
+        }
+    }
+
+    /**
+     * Writes a zip of {@code source} to {@code out}, which is left open.
+     */
+    public void archive(Path source, WritableByteChannel out) throws IOException {
+        ZipWriter zip = new ZipWriter(out, bufferSize);
+        write(collect(source), zip, null);
+        zip.finish();
+    }
+
+    /**
+     * Rebuilds {@code target} from {@code source}, reusing what the previous build left behind.
+     * <p>
+     * A file whose size and modification time match the manifest is taken as unchanged. One whose
+     * size matches but whose time differs is hashed, and taken as unchanged if its SHA-256 still
+     * matches. Unchanged entries are copied as raw bytes from the previous archive; everything else
+     * is compressed as in {@link #archive(Path, Path)}. The new archive is written to a temporary
+     * file and moved over {@code target}, then the manifest is replaced.
+     */
+    public ArchiveStats archiveIncremental(Path source, Path target) throws IOException {
+        ArchiveManifest previous = ArchiveManifest.readIfCurrent(target);
+        List<Item> items = collect(source);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Plan plan;
+        try (FileChannel previousArchive = previous == null ? null : FileChannel.open(target, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            plan = plan(items, previous, previousArchive);
+            ZipWriter zip = new ZipWriter(out, bufferSize);
+            write(items, zip, plan);
+            zip.finish();
+            out.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        new ArchiveManifest(Files.size(target), Files.getLastModifiedTime(target).toMillis(), plan.recorded)
+                .write(target);
+        return new ArchiveStats(plan.recorded.size(), plan.reused, plan.rebuilt, plan.reusedBytes, plan.rebuiltBytes);
+    }
+
+    private Plan plan(List<Item> items, ArchiveManifest previous, FileChannel previousArchive) throws IOException {
+        Plan plan = new Plan(previousArchive);
+        if (previous == null) {
+            return plan;
+        }
+        Map<String, ManifestEntry> before = previous.byName();
+        Map<Item, ForkJoinTask<FileDigest>> hashing = new HashMap<>();
+        for (Item item : items) {
+            ManifestEntry entry = item.directory ? null : before.get(item.name);
+            if (entry == null || entry.isDirectory() || entry.size() != item.size) {
+                continue;
+            }
+            if (entry.lastModified() == item.lastModified) {
+                plan.reuse.put(item, entry);
+            } else {
+                hashing.put(item, pool.submit(() -> digest(item.path, item.size, true)));
+            }
+        }
+        try {
+            for (Map.Entry<Item, ForkJoinTask<FileDigest>> hashed : hashing.entrySet()) {
+                FileDigest digest = hashed.getValue().join();
+                ManifestEntry entry = before.get(hashed.getKey().name);
+                if (digest.sha256().equals(entry.sha256())) {
+                    plan.reuse.put(hashed.getKey(), entry);
+                } else {
+                    plan.hashes.put(hashed.getKey(), digest.sha256());
+                }
+            }
+        } catch (RuntimeException e) {
+            throw unwrap(e);
+        }
+        return plan;
+    }
+
+    void write(List<Item> items, ZipWriter zip, Plan plan) throws IOException {
+        Deque<Pending> inFlight = new ArrayDeque<>();
+        int nextItem = 0;
+        long nextOffset = 0;
+        FileChannel reading = null;
+        List<FileChannel> open = new ArrayList<>();
+        EntryState state = new EntryState();
+        try {
+            while (true) {
+                // keep the window full: queue the next blocks, opening files as they are reached
+                while (inFlight.size() < window && nextItem < items.size()) {
+                    Item item = items.get(nextItem);
+                    if (item.directory || (plan != null && plan.reuse.containsKey(item))) {
+                        inFlight.add(new Pending(item, 0, null, null));
+                        nextItem++;
+                        continue;
+                    }
+                    if (reading == null) {
+                        reading = FileChannel.open(item.path, StandardOpenOption.READ);
+                        open.add(reading);
+                    }
+                    FileChannel channel = reading;
+                    boolean recordHash = plan != null && !plan.hashes.containsKey(item);
+                    if (isStored(item)) {
+                        inFlight.add(new Pending(item, 0, null,
+                                pool.submit(() -> digest(channel, item.size, recordHash))));
+                        nextItem++;
+                        reading = null;
+                        continue;
+                    }
+                    long start = nextOffset;
+                    int length = (int) Math.min(blockSize, item.size - start);
+                    boolean last = start + length >= item.size;
+                    ForkJoinTask<FileDigest> digest = start == 0 && recordHash
+                            ? pool.submit(() -> digest(channel, item.size, true)) : null;
+                    inFlight.add(new Pending(item, start,
+                            pool.submit(() -> deflate(channel, start, length, last, level)), digest));
+                    if (last) {
+                        nextItem++;
+                        nextOffset = 0;
+                        reading = null;
+                    } else {
+                        nextOffset += length;
+                    }
+                }
+                Pending pending = inFlight.poll();
+                if (pending == null) {
+                    break;
+                }
+                emit(pending, zip, open, state, plan);
+            }
+        } catch (RuntimeException e) {
+            throw unwrap(e);
+        } finally {
+            for (Pending pending : inFlight) {
+                if (pending.block != null) {
+                    pending.block.cancel(true);
+                }
+                if (pending.digest != null) {
+                    pending.digest.cancel(true);
+                }
+            }
+            for (FileChannel channel : open) {
+                channel.close();
+            }
+        }
+    }
+
+    private void emit(Pending pending, ZipWriter zip, List<FileChannel> open, EntryState state, Plan plan)
+            throws IOException {
+        Item item = pending.item;
+        if (item.directory) {
+            zip.writeDirectory(item.name, item.lastModified);
+            if (plan != null) {
+                plan.recorded.add(new ManifestEntry(item.name + "/", 0, item.lastModified, null, 0,
+                        ZipWriter.STORED, 0, 0));
+            }
+            return;
+        }
+        ManifestEntry reused = plan == null ? null : plan.reuse.get(item);
+        if (reused != null) {
+            emitReused(item, reused, zip, plan);
+            return;
+        }
+        if (isStored(item)) {
+            emitStored(pending, zip, open.remove(0), plan);
+            return;
+        }
+        DeflateBlock block = pending.block.join();
+        boolean first = pending.start == 0;
+        boolean last = pending.start + block.size() >= item.size;
+        if (first) {
+            state.digest = pending.digest;
+        }
+        if (first && last) {
+            // the whole file is one block, so its crc and sizes are known before the header
+            zip.startEntry(item.name, item.lastModified, ZipWriter.DEFLATED, block.crc(), block.length(), block.size());
+            state.dataOffset = zip.position();
+            state.crc = block.crc();
+            state.compressed = block.length();
+            zip.write(block.data(), 0, block.length());
+            zip.finishEntry();
+        } else {
+            if (first) {
+                zip.startStreamingEntry(item.name, item.lastModified, ZipWriter.DEFLATED, item.size >= ZIP64_THRESHOLD);
+                state.dataOffset = zip.position();
+                state.crc = block.crc();
+                state.compressed = 0;
+            } else {
+                state.crc = Crc32Combine.combine(state.crc, block.crc(), block.size());
+            }
+            zip.write(block.data(), 0, block.length());
+            state.compressed += block.length();
+            if (last) {
+                zip.finishEntry(state.crc, state.compressed, item.size);
+            }
+        }
+        if (last) {
+            // blocks are emitted in order, so once the digest is in every read of this file is done
+            FileChannel channel = open.remove(0);
+            try {
+                if (plan != null) {
+                    String sha256 = state.digest != null ? state.digest.join().sha256() : plan.hashes.get(item);
+                    plan.record(item, sha256, state.crc, ZipWriter.DEFLATED, state.compressed, state.dataOffset);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Copies a stored file without compressing it. Its CRC, read ahead by the pool, goes into the
+     * local header, so the entry needs no data descriptor.
+     */
+    private static void emitStored(Pending pending, ZipWriter zip, FileChannel channel, Plan plan) throws IOException {
+        Item item = pending.item;
+        try (channel) {
+            FileDigest digest = pending.digest.join();
+            zip.startEntry(item.name, item.lastModified, ZipWriter.STORED, digest.crc(), item.size, item.size);
+            long dataOffset = zip.position();
+            zip.transferFrom(channel, 0, item.size);
+            zip.finishEntry();
+            if (plan != null) {
+                String sha256 = digest.sha256() != null ? digest.sha256() : plan.hashes.get(item);
+                plan.record(item, sha256, digest.crc(), ZipWriter.STORED, item.size, dataOffset);
+            }
+        }
+    }
+
+    /**
+     * Copies the compressed bytes of an unchanged entry from the previous archive. Its crc and
+     * sizes are known, so the copy gets a plain local header without a data descriptor.
+     */
+    private static void emitReused(Item item, ManifestEntry entry, ZipWriter zip, Plan plan) throws IOException {
+        zip.startEntry(item.name, item.lastModified, entry.method(), entry.crc(), entry.compressedSize(), entry.size());
+        long dataOffset = zip.position();
+        zip.transferFrom(plan.previousArchive, entry.dataOffset(), entry.compressedSize());
+        zip.finishEntry();
+        plan.recorded.add(new ManifestEntry(item.name, item.size, item.lastModified, entry.sha256(), entry.crc(),
+                entry.method(), entry.compressedSize(), dataOffset));
+        plan.reused++;
+        plan.reusedBytes += item.size;
+    }
+
+    private static FileDigest digest(Path path, long size, boolean sha256) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return digest(channel, size, sha256);
+        }
+    }
+
+    private static FileDigest digest(FileChannel channel, long size, boolean sha256) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER);
+        CRC32 crc = new CRC32();
+        MessageDigest sha = sha256 ? sha256() : null;
+        long position = 0;
+        while (position < size) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("File shrank while it was being archived");
+            }
+            buffer.flip();
+            crc.update(buffer);
+            if (sha != null) {
+                sha.update(buffer.flip());
+            }
+            position += read;
+        }
+        return new FileDigest(crc.getValue(), sha == null ? null : HexFormat.of().formatHex(sha.digest()));
+    }
+
+    private boolean isStored(Item item) {
+        if (item.directory || storedExtensions.isEmpty()) {
+            return false;
+        }
+        String name = item.name;
+        int dot = name.lastIndexOf('.');
+        return dot > name.lastIndexOf('/') && storedExtensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    static DeflateBlock deflate(FileChannel channel, long start, int length, boolean last, int level) throws IOException {
+        int dictionary = (int) Math.min(start, DICTIONARY_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(dictionary + length);
+        long position = start - dictionary;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("File shrank while it was being archived");
+            }
+        }
+        byte[] input = buffer.array();
+        CRC32 crc = new CRC32();
+        crc.update(input, dictionary, length);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary > 0) {
+                deflater.setDictionary(input, 0, dictionary);
+            }
+            deflater.setInput(input, dictionary, length);
+            byte[] out = new byte[length + (length >> 4) + 64];
+            int written = 0;
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (written == out.length) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                    }
+                    written += deflater.deflate(out, written, out.length - written);
+                }
+            } else {
+                // a sync flush has emitted everything once it leaves output space unused
+                while (true) {
+                    if (written == out.length) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                    }
+                    int space = out.length - written;
+                    int produced = deflater.deflate(out, written, space, Deflater.SYNC_FLUSH);
+                    written += produced;
+                    if (produced < space) {
+                        break;
+                    }
+                }
+            }
+            return new DeflateBlock(out, written, crc.getValue(), length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        try {
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static List<Item> collect(Path source) throws IOException {
+        List<Item> items = new ArrayList<>();
+        collect(source, source.getFileName().toString(), items);
+        return items;
+    }
+
+    static void collect(Path path, String name, List<Item> items) throws IOException {
+        File file = path.toFile();
+        if (file.isDirectory()) {
+            items.add(new Item(path, name, true, 0, file.lastModified()));
+            File[] children = file.listFiles();
+            if (children == null) {
+                throw new IOException("Cannot list " + path);
+            }
+            Arrays.sort(children, Comparator.comparing(File::getName));
+            for (File child : children) {
+                collect(child.toPath(), name + "/" + child.getName(), items);
+            }
+        } else if (Files.isRegularFile(path)) {
+            items.add(new Item(path, name, false, file.length(), file.lastModified()));
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static IOException unwrap(RuntimeException e) {
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause instanceof IOException io) {
+                return io;
+            }
+            cause = cause.getCause();
+        }
+        throw e;
+    }
+
+    record Item(Path path, String name, boolean directory, long size, long lastModified) {
+    }
+
+    private record Pending(Item item, long start, ForkJoinTask<DeflateBlock> block, ForkJoinTask<FileDigest> digest) {
+    }
+
+    private record FileDigest(long crc, String sha256) {
+    }
+
+    private static final class EntryState {
+        private long crc;
+        private long compressed;
+        private long dataOffset;
+        private ForkJoinTask<FileDigest> digest;
+    }
+
+    /**
+     * Decisions and bookkeeping of one incremental build.
+     */
+    static final class Plan {
+        private final FileChannel previousArchive;
+        private final Map<Item, ManifestEntry> reuse = new HashMap<>();
+        /** Files whose content was already hashed while planning and found changed. */
+        private final Map<Item, String> hashes = new HashMap<>();
+        private final List<ManifestEntry> recorded = new ArrayList<>();
+        private int reused;
+        private int rebuilt;
+        private long reusedBytes;
+        private long rebuiltBytes;
+
+        Plan(FileChannel previousArchive) {
+            this.previousArchive = previousArchive;
+        }
+
+        private void record(Item item, String sha256, long crc, int method, long compressedSize, long dataOffset) {
+            recorded.add(new ManifestEntry(item.name, item.size, item.lastModified, sha256, crc, method,
+                    compressedSize, dataOffset));
+            rebuilt++;
+            rebuiltBytes += item.size;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.eviden.app.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a zip archive entry by entry to a {@link WritableByteChannel}, which may be a file or an
+ * HTTP response; the output is never read back or repositioned.
+ * <p>
+ * An entry whose CRC and sizes are known when it starts gets them in its local header. Otherwise
+ * the local header flags a data descriptor that follows the entry data. Zip64 extra fields and
+ * end records are written only where sizes, offsets or the entry count exceed the classic limits.
+ * Small writes are gathered in one large direct buffer; large blocks and file regions go to the
+ * channel directly.
+ */
+public final class ZipWriter implements Closeable {
+
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_ENTRY_COUNT = 0xFFFF;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int DIRECTORY_ATTRIBUTE = 0x10;
+
+    private final WritableByteChannel out;
+    private final ByteBuffer buffer;
+    private final boolean forceZip64;
+    private final List<Entry> entries = new ArrayList<>();
+    private long position;
+    private Entry current;
+    private boolean finished;
+
+    public ZipWriter(WritableByteChannel out, int bufferSize) {
+        this(out, bufferSize, false);
+    }
+
+    /**
+     * @param forceZip64 write zip64 fields for every entry even when they are not needed; lets
+     *                   tests cover the zip64 layout without multi-gigabyte files
+     */
+    ZipWriter(WritableByteChannel out, int bufferSize, boolean forceZip64) {
+        this.out = out;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 4096)).order(ByteOrder.LITTLE_ENDIAN);
+        this.forceZip64 = forceZip64;
+    }
+
+    /**
+     * Bytes written so far, including those still buffered.
+     */
+    public long position() {
+        return position;
+    }
+
+    public void writeDirectory(String name, long lastModifiedMillis) throws IOException {
+        String directory = name.endsWith("/") ? name : name + "/";
+        startEntry(directory, lastModifiedMillis, STORED, 0, 0, 0);
+        current.external = DIRECTORY_ATTRIBUTE;
+        finishEntry();
+    }
+
+    /**
+     * Starts an entry whose CRC and sizes are known up front, so no data descriptor follows it.
+     * Exactly {@code compressedSize} bytes must be written before {@link #finishEntry()}.
+     */
+    public void startEntry(String name, long lastModifiedMillis, int method, long crc, long compressedSize, long size)
+            throws IOException {
+        begin(name, lastModifiedMillis, method, false, forceZip64 || compressedSize >= ZIP64_MAGIC || size >= ZIP64_MAGIC);
+        current.crc = crc;
+        current.compressedSize = compressedSize;
+        current.size = size;
+        writeLocalHeader(current);
+    }
+
+    /**
+     * Starts an entry whose CRC and sizes are only known at {@link #finishEntry(long, long, long)}.
+     * Only DEFLATED entries can stream: a reader that does not use the central directory finds
+     * the end of deflate data by itself, but has no way to find the end of STORED data.
+     *
+     * @param zip64 whether the entry may reach 4 GiB; decides the data descriptor layout
+     * @throws IllegalArgumentException if {@code method} is not {@link #DEFLATED}
+     */
+    public void startStreamingEntry(String name, long lastModifiedMillis, int method, boolean zip64) throws IOException {
+        if (method != DEFLATED) {
+            throw new IllegalArgumentException("Entry " + name + " needs its crc and sizes up front to be STORED");
+        }
+        begin(name, lastModifiedMillis, method, true, forceZip64 || zip64);
+        writeLocalHeader(current);
+    }
+
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length >= buffer.capacity() / 2) {
+            flush();
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes, offset, length);
+            while (wrapped.hasRemaining()) {
+                out.write(wrapped);
+            }
+        } else {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+            buffer.put(bytes, offset, length);
+        }
+        position += length;
+    }
+
+    /**
+     * Copies {@code count} bytes of {@code source} starting at {@code offset} with
+     * {@link FileChannel#transferTo}, which lets the kernel move them without passing through
+     * this process when the target is a file or socket.
+     */
+    public void transferFrom(FileChannel source, long offset, long count) throws IOException {
+        flush();
+        long done = 0;
+        while (done < count) {
+            long moved = source.transferTo(offset + done, count - done, out);
+            if (moved <= 0) {
+                if (offset + done >= source.size()) {
+                    throw new IOException("Source ended after " + done + " of " + count + " bytes");
+                }
+                continue;
+            }
+            done += moved;
+        }
+        position += count;
+    }
+
+    /**
+     * Ends an entry started with {@link #startEntry}.
+     */
+    public void finishEntry() throws IOException {
+        Entry entry = requireCurrent();
+        if (entry.descriptor) {
+            throw new IllegalStateException("Entry " + entry.name + " needs its crc and sizes");
+        }
+        long written = position - entry.dataOffset;
+        if (written != entry.compressedSize) {
+            throw new IOException("Entry " + entry.name + " declared " + entry.compressedSize + " bytes but got " + written);
+        }
+        entries.add(entry);
+        current = null;
+    }
+
+    /**
+     * Ends an entry started with {@link #startStreamingEntry} by writing its data descriptor.
+     */
+    public void finishEntry(long crc, long compressedSize, long size) throws IOException {
+        Entry entry = requireCurrent();
+        if (!entry.descriptor) {
+            throw new IllegalStateException("Entry " + entry.name + " has no data descriptor");
+        }
+        if (position - entry.dataOffset != compressedSize) {
+            throw new IOException("Entry " + entry.name + " reports " + compressedSize + " bytes but got "
+                    + (position - entry.dataOffset));
+        }
+        if (!entry.zip64 && (compressedSize >= ZIP64_MAGIC || size >= ZIP64_MAGIC)) {
+            throw new IOException("Entry " + entry.name + " reached 4 GiB without zip64");
+        }
+        entry.crc = crc;
+        entry.compressedSize = compressedSize;
+        entry.size = size;
+        ensure(24);
+        buffer.putInt(0x08074b50).putInt((int) crc);
+        if (entry.zip64) {
+            buffer.putLong(compressedSize).putLong(size);
+            position += 24;
+        } else {
+            buffer.putInt((int) compressedSize).putInt((int) size);
+            position += 16;
+        }
+        entries.add(entry);
+        current = null;
+    }
+
+    /**
+     * Writes the central directory and end records and flushes; the channel stays open.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (current != null) {
+            throw new IllegalStateException("Entry " + current.name + " was not finished");
+        }
+        long directoryOffset = position;
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long directorySize = position - directoryOffset;
+        boolean zip64 = forceZip64 || entries.size() >= ZIP64_ENTRY_COUNT
+                || directoryOffset >= ZIP64_MAGIC || directorySize >= ZIP64_MAGIC;
+        if (zip64) {
+            long recordOffset = position;
+            ensure(56 + 20);
+            buffer.putInt(0x06064b50).putLong(44)
+                    .putShort((short) VERSION_ZIP64).putShort((short) VERSION_ZIP64)
+                    .putInt(0).putInt(0)
+                    .putLong(entries.size()).putLong(entries.size())
+                    .putLong(directorySize).putLong(directoryOffset);
+            buffer.putInt(0x07064b50).putInt(0).putLong(recordOffset).putInt(1);
+            position += 56 + 20;
+        }
+        ensure(22);
+        short count = (short) Math.min(entries.size(), ZIP64_ENTRY_COUNT);
+        buffer.putInt(0x06054b50).putShort((short) 0).putShort((short) 0)
+                .putShort(count).putShort(count)
+                .putInt((int) Math.min(directorySize, ZIP64_MAGIC))
+                .putInt((int) Math.min(directoryOffset, ZIP64_MAGIC))
+                .putShort((short) 0);
+        position += 22;
+        flush();
+        finished = true;
+    }
+
+    /**
+     * Finishes the archive if that has not happened yet. Does not close the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (current == null) {
+            finish();
+        }
+    }
+
+    private void begin(String name, long lastModifiedMillis, int method, boolean descriptor, boolean zip64) {
+        if (current != null) {
+            throw new IllegalStateException("Entry " + current.name + " was not finished");
+        }
+        if (finished) {
+            throw new IllegalStateException("Archive is already finished");
+        }
+        Entry entry = new Entry();
+        entry.name = name.getBytes(StandardCharsets.UTF_8);
+        entry.dosTime = dosTime(lastModifiedMillis);
+        entry.method = method;
+        entry.descriptor = descriptor;
+        entry.zip64 = zip64;
+        entry.headerOffset = position;
+        current = entry;
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        int extra = entry.zip64 ? 20 : 0;
+        ensure(30 + entry.name.length + extra);
+        buffer.putInt(0x04034b50)
+                .putShort((short) (entry.zip64 ? VERSION_ZIP64 : VERSION_DEFAULT))
+                .putShort((short) entry.flags())
+                .putShort((short) entry.method)
+                .putInt((int) entry.dosTime);
+        if (entry.descriptor) {
+            buffer.putInt(0);
+            if (entry.zip64) {
+                buffer.putInt((int) ZIP64_MAGIC).putInt((int) ZIP64_MAGIC);
+            } else {
+                buffer.putInt(0).putInt(0);
+            }
+        } else {
+            buffer.putInt((int) entry.crc);
+            if (entry.zip64) {
+                buffer.putInt((int) ZIP64_MAGIC).putInt((int) ZIP64_MAGIC);
+            } else {
+                buffer.putInt((int) entry.compressedSize).putInt((int) entry.size);
+            }
+        }
+        buffer.putShort((short) entry.name.length).putShort((short) extra).put(entry.name);
+        if (entry.zip64) {
+            long size = entry.descriptor ? 0 : entry.size;
+            long compressed = entry.descriptor ? 0 : entry.compressedSize;
+            buffer.putShort((short) 0x0001).putShort((short) 16).putLong(size).putLong(compressed);
+        }
+        position += 30 + entry.name.length + extra;
+        entry.dataOffset = position;
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        boolean bigSize = forceZip64 || entry.size >= ZIP64_MAGIC;
+        boolean bigCompressed = forceZip64 || entry.compressedSize >= ZIP64_MAGIC;
+        boolean bigOffset = forceZip64 || entry.headerOffset >= ZIP64_MAGIC;
+        int extraData = (bigSize ? 8 : 0) + (bigCompressed ? 8 : 0) + (bigOffset ? 8 : 0);
+        int extra = extraData == 0 ? 0 : 4 + extraData;
+        boolean zip64 = entry.zip64 || extra > 0;
+        ensure(46 + entry.name.length + extra);
+        buffer.putInt(0x02014b50)
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT))
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT))
+                .putShort((short) entry.flags())
+                .putShort((short) entry.method)
+                .putInt((int) entry.dosTime)
+                .putInt((int) entry.crc)
+                .putInt((int) (bigCompressed ? ZIP64_MAGIC : entry.compressedSize))
+                .putInt((int) (bigSize ? ZIP64_MAGIC : entry.size))
+                .putShort((short) entry.name.length)
+                .putShort((short) extra)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(entry.external)
+                .putInt((int) (bigOffset ? ZIP64_MAGIC : entry.headerOffset))
+                .put(entry.name);
+        if (extra > 0) {
+            buffer.putShort((short) 0x0001).putShort((short) extraData);
+            if (bigSize) {
+                buffer.putLong(entry.size);
+            }
+            if (bigCompressed) {
+                buffer.putLong(entry.compressedSize);
+            }
+            if (bigOffset) {
+                buffer.putLong(entry.headerOffset);
+            }
+        }
+        position += 46 + entry.name.length + extra;
+    }
+
+    private Entry requireCurrent() {
+        if (current == null) {
+            throw new IllegalStateException("No entry was started");
+        }
+        return current;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+        if (buffer.remaining() < bytes) {
+            throw new IOException("Zip header of " + bytes + " bytes does not fit the write buffer");
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    static long dosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (time.getYear() - 1980) << 25)
+                | ((long) time.getMonthValue() << 21)
+                | ((long) time.getDayOfMonth() << 16)
+                | ((long) time.getHour() << 11)
+                | ((long) time.getMinute() << 5)
+                | (time.getSecond() >> 1);
+    }
+
+    private static final class Entry {
+        private byte[] name;
+        private long dosTime;
+        private int method;
+        private boolean descriptor;
+        private boolean zip64;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private long headerOffset;
+        private long dataOffset;
+        private int external;
+
+        private int flags() {
+            return FLAG_UTF8 | (descriptor ? FLAG_DATA_DESCRIPTOR : 0);
+        }
+    }
+}
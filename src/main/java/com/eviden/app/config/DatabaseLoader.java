@@ -1,30 +1,76 @@
-
 package com.eviden.app.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.CommandLineRunner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
-import com.eviden.app.repository.BankAccountRepository;	
+import com.eviden.app.repository.BankAccountRepository;
 import com.eviden.app.entity.BankAccount;
+import com.eviden.app.service.AccountImporter;
+import com.eviden.app.utils.Money;
 import org.springframework.context.annotation.Bean;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+
+/**
+ * Seeds the demo accounts and, when {@code account.import.file} is set, imports the accounts in
+ * that CSV or NDJSON file before the journal is replayed. Runs in lifecycle phase {@link #PHASE},
+ * ahead of the web server and the message consumers.
+ */
+@Component
+public class DatabaseLoader implements SmartLifecycle {
 
-@Component 
-public class DatabaseLoader implements CommandLineRunner { 
+	public static final int PHASE = -1000;
 
 	private final BankAccountRepository repository;
+	private final AccountImporter accountImporter;
+	private final String importFile;
+	private volatile boolean running;
 
-	@Autowired 
-	public DatabaseLoader(BankAccountRepository repository) {
+	@Autowired
+	public DatabaseLoader(BankAccountRepository repository, AccountImporter accountImporter,
+						  @Value("${account.import.file:}") String importFile) {
 		this.repository = repository;
+		this.accountImporter = accountImporter;
+		this.importFile = importFile;
 	}
 
 	@Override
-	public void run(String... strings) throws Exception { 
+	public void start() {
 		//this.repository.save(new Employee("Frodo", "Baggins", "ring bearer"));
-		repository.save(new BankAccount("008596512563", "John Doe", 52000.0, "Savings"));
-		repository.save(new BankAccount("008596558965", "John Doe", 7500.0, "Checking"));
+		repository.saveAll(List.of(
+				new BankAccount("008596512563", "John Doe", Money.parse("52000.00"), "Savings"),
+				new BankAccount("008596558965", "John Doe", Money.parse("7500.00"), "Checking")));
+		if (!importFile.isBlank()) {
+			Path file = Path.of(importFile);
+			try (InputStream in = Files.newInputStream(file)) {
+				accountImporter.importAccounts(in, AccountImporter.Format.of(file.getFileName().toString()));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not import accounts from " + file, e);
+			}
+		}
+		running = true;
+	}
 
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
 	}
 
 	/**@Override
@@ -0,0 +1,69 @@
+package com.eviden.app.controller;
+
+import com.eviden.app.dto.AccountImportResultDTO;
+import com.eviden.app.dto.BalanceSnapshotDTO;
+import com.eviden.app.journal.BalanceSnapshot;
+import com.eviden.app.journal.BalanceSnapshots;
+import com.eviden.app.service.AccountImportException;
+import com.eviden.app.service.AccountImporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+    private static final String CSV = "text/csv";
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Autowired
+    AccountImporter accountImporter;
+
+    @Autowired
+    ObjectProvider<BalanceSnapshots> balanceSnapshots;
+
+    /**
+     * Imports the accounts in the request body, see {@link AccountImporter}.
+     */
+    @PostMapping(value = "/accounts/import", consumes = CSV)
+    public AccountImportResultDTO importCsv(InputStream body) throws IOException {
+        return accountImporter.importAccounts(body, AccountImporter.Format.CSV);
+    }
+
+    @PostMapping(value = "/accounts/import", consumes = NDJSON)
+    public AccountImportResultDTO importNdjson(InputStream body) throws IOException {
+        return accountImporter.importAccounts(body, AccountImporter.Format.NDJSON);
+    }
+
+    /**
+     * Takes a balance snapshot now instead of waiting for {@code transfer.snapshot.interval}.
+     * Not found when snapshots are off.
+     */
+    @PostMapping("/snapshots")
+    public ResponseEntity<BalanceSnapshotDTO> takeSnapshot() throws IOException {
+        BalanceSnapshots snapshots = balanceSnapshots.getIfAvailable();
+        if (snapshots == null) {
+            return ResponseEntity.notFound().build();
+        }
+        BalanceSnapshot snapshot = snapshots.write();
+        return ResponseEntity.ok(new BalanceSnapshotDTO(snapshot.path().getFileName().toString(),
+                snapshot.journalSequence(), snapshot.takenAt(), snapshot.accounts()));
+    }
+
+    @ExceptionHandler(AccountImportException.class)
+    public ResponseEntity<String> importFailed(AccountImportException e) {
+        logger.warn("Account import failed: {}", e.getMessage());
+        return ResponseEntity.unprocessableEntity().body(e.getMessage());
+    }
+}
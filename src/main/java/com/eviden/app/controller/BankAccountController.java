@@ -1,27 +1,47 @@
 package com.eviden.app.controller;
 
+import com.eviden.app.dto.AccountCacheStatsDTO;
+import com.eviden.app.dto.AccountPageDTO;
+import com.eviden.app.dto.BatchTransferResultDTO;
 import com.eviden.app.dto.TransferDTO;
+import com.eviden.app.dto.TransferHistoryPageDTO;
 import com.eviden.app.entity.BankAccount;
 import com.eviden.app.entity.Transfer;
+import com.eviden.app.service.AccountCache;
+import com.eviden.app.service.AccountService;
+import com.eviden.app.service.BankMetrics;
+import com.eviden.app.service.BatchFailureMode;
 import com.eviden.app.service.ConsumerService;
 import com.eviden.app.service.FileService;
+import com.eviden.app.service.IdempotencyCache;
+import com.eviden.app.service.IdempotencyConflictException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.zip.ZipOutputStream;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import com.eviden.app.service.TransferServiceImpl;
 import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.utils.AccountNumber;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,28 +63,100 @@ public class BankAccountController {
     @Autowired
     ConsumerService consumerService;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    AccountService accountService;
+
+    @Autowired
+    IdempotencyCache<ResponseEntity<String>> transferIdempotencyCache;
+
+    @Autowired
+    AccountCache accountCache;
+
+    @Autowired
+    BankMetrics bankMetrics;
+
     private static final String queueName = "my_queue";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String ZIP = "application/zip";
 
     @GetMapping("/")
     public List<BankAccount> getAllAccounts() {
         logger.info("Inside getAllAccounts() method");
-        return bankAccountRepository.findAll();
+        return bankMetrics.list().record(() -> bankAccountRepository.findAll());
+    }
+
+    @GetMapping("/page")
+    public AccountPageDTO getAccountsPage(@RequestParam(defaultValue = "0") long after,
+                                          @RequestParam(defaultValue = "100") int size) {
+        logger.info("Inside getAccountsPage() method - after {} size {}", after, size);
+        return bankMetrics.page().record(() -> accountService.page(after, size));
+    }
+
+    @GetMapping(value = "/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAccounts() {
+        logger.info("Inside streamAccounts() method");
+        StreamingResponseBody body = accountService::writeNdjson;
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
     }
 
     @GetMapping("/{id}")
     public BankAccount getBankAccount(@PathVariable String id) {
-        BankAccount account = bankAccountRepository.findByAccountNumber(id);
+        BankAccount account = bankMetrics.lookup().record(() -> accountCache.get(id));
         logger.info("Inside getBankAccount() method - {}", account);
         return account;
     }
 
+    /**
+     * Transfers in or out of an account, newest first. Pass the {@code nextCursor} of a page as
+     * {@code cursor} to get the next one; it is {@code null} on the last page.
+     */
+    @GetMapping("/{id}/history")
+    public ResponseEntity<TransferHistoryPageDTO> getHistory(@PathVariable String id,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(defaultValue = "100") int size) {
+        logger.info("Inside getHistory() method - {} cursor {} size {}", id, cursor, size);
+        if (accountCache.get(id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(bankMetrics.history().record(() -> accountService.history(id, cursor, size)));
+        } catch (IllegalArgumentException e) {
+            logger.info("Info.{}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/cache/stats")
+    public AccountCacheStatsDTO getCacheStats() {
+        return new AccountCacheStatsDTO(accountCache.size(), accountCache.hits(), accountCache.misses(),
+                accountCache.evictions(), accountCache.expirations(), accountCache.updates());
+    }
+
     @PostMapping("/logmessage")
     public void saveLogs(@RequestParam String logmsg) {
         logger.info(logmsg);
     }
 
     @PostMapping("/transfer")
-    public ResponseEntity<String> transfer(@RequestBody TransferDTO transferDTO) {
+    public ResponseEntity<String> transfer(@RequestBody TransferDTO transferDTO,
+                                           @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return executeTransfer(transferDTO);
+        }
+        String fingerprint = transferDTO.getSenderAccount() + '|' + transferDTO.getReceiverAccount() + '|' + transferDTO.getAmount();
+        try {
+            return transferIdempotencyCache.execute(idempotencyKey, fingerprint, () -> executeTransfer(transferDTO));
+        } catch (IdempotencyConflictException e) {
+            logger.info("Info.{}", e.getMessage());
+            return ResponseEntity.unprocessableEntity().body("Idempotency-Key was already used for a different transfer.");
+        }
+    }
+
+    private ResponseEntity<String> executeTransfer(TransferDTO transferDTO) {
         Transfer transfer = new Transfer(transferDTO.getSenderAccount(), transferDTO.getReceiverAccount(), transferDTO.getAmount());
         try {
             Map<String, Optional<BankAccount>> backAccountCollection = transferService.transfer(transfer);
@@ -74,8 +166,8 @@ public class BankAccountController {
                 if (receiverOpt != null && receiverOpt.isPresent() && senderOpt != null && senderOpt.isPresent()) {
                     BankAccount receiver = receiverOpt.get();
                     BankAccount sender = senderOpt.get();
-                    if (Integer.parseInt(transfer.getReceiverAccount()) == Integer.parseInt(receiver.getAccountNumber())
-                            && Integer.parseInt(transfer.getSenderAccount()) == Integer.parseInt(sender.getAccountNumber())) {
+                    if (AccountNumber.pack(transfer.getReceiverAccount()) == AccountNumber.pack(receiver.getAccountNumber())
+                            && AccountNumber.pack(transfer.getSenderAccount()) == AccountNumber.pack(sender.getAccountNumber())) {
                         logger.info("Info.{}", "Transfer was successful.");
                         return ResponseEntity.ok("Transfer was successful.");
                     } else {
@@ -88,19 +180,73 @@ public class BankAccountController {
                 logger.info("Info.{}", "Transfer was not successful.");
             }
             logger.info("Transfer money...");
+        } catch (ArithmeticException e) {
+            logger.info("Info.{}", "Transfer was not successful, the receiver's balance would overflow.");
         } catch (Exception e) {
+            // not an answer about the transfer, a retry with the same Idempotency-Key must run it again
             logger.error("Transfer failed", e);
+            return ResponseEntity.internalServerError().build();
         }
         return ResponseEntity.badRequest().build();
     }
 
+    @PostMapping(value = "/transfer/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchTransferResultDTO> transferBatch(@RequestBody List<TransferDTO> transferDTOs,
+                                                                @RequestParam(required = false) BatchFailureMode failureMode) {
+        if (transferDTOs.size() > transferService.getMaxBatchSize()) {
+            return batchTooLarge();
+        }
+        List<Transfer> transfers = new ArrayList<>(transferDTOs.size());
+        for (TransferDTO transferDTO : transferDTOs) {
+            transfers.add(new Transfer(transferDTO.getSenderAccount(), transferDTO.getReceiverAccount(), transferDTO.getAmount()));
+        }
+        return batchResponse(transfers, failureMode);
+    }
+
+    @PostMapping(value = "/transfer/batch", consumes = NDJSON)
+    public ResponseEntity<BatchTransferResultDTO> transferBatchStream(InputStream body,
+                                                                      @RequestParam(required = false) BatchFailureMode failureMode) throws IOException {
+        // stop reading once the batch is too large instead of buffering the whole body
+        int maxBatchSize = transferService.getMaxBatchSize();
+        List<Transfer> transfers = new ArrayList<>();
+        try (MappingIterator<TransferDTO> items = objectMapper.readerFor(TransferDTO.class).readValues(body)) {
+            while (items.hasNext()) {
+                if (transfers.size() == maxBatchSize) {
+                    return batchTooLarge();
+                }
+                TransferDTO transferDTO = items.next();
+                transfers.add(new Transfer(transferDTO.getSenderAccount(), transferDTO.getReceiverAccount(), transferDTO.getAmount()));
+            }
+        }
+        return batchResponse(transfers, failureMode);
+    }
+
+    private ResponseEntity<BatchTransferResultDTO> batchTooLarge() {
+        logger.warn("Rejected batch of more than {} transfers", transferService.getMaxBatchSize());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+    }
+
+    private ResponseEntity<BatchTransferResultDTO> batchResponse(List<Transfer> transfers, BatchFailureMode failureMode) {
+        if (transfers.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        BatchTransferResultDTO result = transferService.transferBatch(transfers, failureMode);
+        logger.info("Batch transfer of {} items, committed={}", transfers.size(), result.isCommitted());
+        return result.isCommitted() ? ResponseEntity.ok(result) : ResponseEntity.unprocessableEntity().body(result);
+    }
+
     @GetMapping("/createzip")
-    public String createZip(@PathVariable String sourceDir, @PathVariable String zipFile) {
+    public String createZip(@RequestParam String sourceDir, @RequestParam String zipFile,
+                            @RequestParam(defaultValue = "false") boolean incremental) {
         String msg = null;
-        try (FileOutputStream fos = new FileOutputStream(zipFile);
-            ZipOutputStream zos = new ZipOutputStream(fos)) {
-            File directory = new File(sourceDir);
-            fileService.addFilesToZip(directory, directory.getName(), zos);
+        try {
+            File directory = fileService.resolveArchivePath(sourceDir);
+            File target = fileService.resolveArchivePath(zipFile);
+            if (incremental) {
+                fileService.zipIncremental(directory, target);
+            } else {
+                fileService.zipParallel(directory, target);
+            }
             msg = "Successfully";
         } catch (Exception e) {
             msg = "Error in generating errorMsg-" + e.getMessage();
@@ -109,6 +255,27 @@ public class BankAccountController {
         return msg;
     }
 
+    @GetMapping(value = "/downloadzip", produces = ZIP)
+    public ResponseEntity<StreamingResponseBody> downloadZip(@RequestParam String sourceDir) throws IOException {
+        File directory;
+        try {
+            directory = fileService.resolveArchivePath(sourceDir);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected zip download of {}: {}", sourceDir, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        if (!directory.isDirectory()) {
+            return ResponseEntity.notFound().build();
+        }
+        logger.info("Inside downloadZip() method - {}", directory);
+        StreamingResponseBody body = out -> fileService.streamZip(directory, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ZIP))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(directory.getName() + ".zip").build().toString())
+                .body(body);
+    }
+
     @GetMapping("/connect")
     public void send() throws Exception {
         consumerService.connect(queueName);
@@ -0,0 +1,42 @@
+package com.eviden.app.controller;
+
+import ch.qos.logback.classic.Level;
+import com.eviden.app.logger.MapHolder;
+import com.eviden.app.logger.RecentLogEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/logs")
+public class LogController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    @Autowired
+    MapHolder mapHolder;
+
+    /**
+     * Returns the newest log events first, optionally only those of exactly {@code level} or
+     * from loggers whose name starts with {@code logger}.
+     */
+    @GetMapping("/recent")
+    public ResponseEntity<List<RecentLogEvent>> getRecentEvents(@RequestParam(defaultValue = "100") int limit,
+                                                                @RequestParam(required = false) String level,
+                                                                @RequestParam(required = false) String logger) {
+        Level parsed = null;
+        if (level != null) {
+            parsed = Level.toLevel(level, null);
+            if (parsed == null || !MapHolder.isEventLevel(parsed)) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        int bounded = Math.max(0, Math.min(limit, MAX_LIMIT));
+        return ResponseEntity.ok(mapHolder.recent(bounded, parsed, logger == null || logger.isBlank() ? null : logger));
+    }
+}
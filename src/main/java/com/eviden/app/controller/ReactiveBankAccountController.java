@@ -0,0 +1,49 @@
+package com.eviden.app.controller;
+
+import com.eviden.app.dto.AccountPageDTO;
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.service.ReactiveAccountService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read-only account API returning {@link Mono} and {@link Flux}, next to the blocking
+ * {@link BankAccountController}. Spring MVC subscribes to the result and completes the request
+ * asynchronously, so no servlet thread waits while an account is read. The listing streams as
+ * NDJSON with backpressure unless plain JSON is asked for, which collects it into one array first.
+ */
+@RestController
+@RequestMapping("/api/v2/bankaccounts")
+public class ReactiveBankAccountController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Autowired
+    ReactiveAccountService reactiveAccountService;
+
+    @GetMapping(value = "/", produces = {NDJSON, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<BankAccount> getAllAccounts() {
+        return reactiveAccountService.findAll();
+    }
+
+    @GetMapping("/page")
+    public Mono<AccountPageDTO> getAccountsPage(@RequestParam(defaultValue = "0") long after,
+                                                @RequestParam(defaultValue = "100") int size) {
+        return reactiveAccountService.page(after, size);
+    }
+
+    @GetMapping("/{accountNumber}")
+    public Mono<ResponseEntity<BankAccount>> getBankAccount(@PathVariable String accountNumber) {
+        return reactiveAccountService.findByAccountNumber(accountNumber)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
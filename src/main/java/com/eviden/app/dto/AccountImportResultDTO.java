@@ -0,0 +1,51 @@
+package com.eviden.app.dto;
+
+public class AccountImportResultDTO {
+
+    private long rows;
+    private int chunks;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+
+    public AccountImportResultDTO() {
+    }
+
+    public AccountImportResultDTO(long rows, int chunks, long elapsedMillis, long rowsPerSecond) {
+        this.rows = rows;
+        this.chunks = chunks;
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(int chunks) {
+        this.chunks = chunks;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(long rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+}
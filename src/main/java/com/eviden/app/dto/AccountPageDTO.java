@@ -0,0 +1,38 @@
+package com.eviden.app.dto;
+
+import com.eviden.app.entity.BankAccount;
+
+import java.util.List;
+
+public class AccountPageDTO {
+
+    private List<BankAccount> items;
+    private Long nextCursor;
+
+    public AccountPageDTO() {
+    }
+
+    public AccountPageDTO(List<BankAccount> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<BankAccount> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BankAccount> items) {
+        this.items = items;
+    }
+
+    /**
+     * Id to pass as {@code after} to fetch the next page, {@code null} on the last page.
+     */
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,51 @@
+package com.eviden.app.dto;
+
+public class BalanceSnapshotDTO {
+
+    private String file;
+    private long journalSequence;
+    private long takenAt;
+    private long accounts;
+
+    public BalanceSnapshotDTO() {
+    }
+
+    public BalanceSnapshotDTO(String file, long journalSequence, long takenAt, long accounts) {
+        this.file = file;
+        this.journalSequence = journalSequence;
+        this.takenAt = takenAt;
+        this.accounts = accounts;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    public void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+
+    public long getTakenAt() {
+        return takenAt;
+    }
+
+    public void setTakenAt(long takenAt) {
+        this.takenAt = takenAt;
+    }
+
+    public long getAccounts() {
+        return accounts;
+    }
+
+    public void setAccounts(long accounts) {
+        this.accounts = accounts;
+    }
+}
@@ -0,0 +1,66 @@
+package com.eviden.app.dto;
+
+import com.eviden.app.service.BatchFailureMode;
+
+import java.util.List;
+
+public class BatchTransferResultDTO {
+
+    private BatchFailureMode failureMode;
+    private boolean committed;
+    private int succeeded;
+    private int failed;
+    private List<TransferItemResultDTO> results;
+
+    public BatchTransferResultDTO() {
+    }
+
+    public BatchTransferResultDTO(BatchFailureMode failureMode, boolean committed, int succeeded, int failed,
+                                  List<TransferItemResultDTO> results) {
+        this.failureMode = failureMode;
+        this.committed = committed;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.results = results;
+    }
+
+    public BatchFailureMode getFailureMode() {
+        return failureMode;
+    }
+
+    public void setFailureMode(BatchFailureMode failureMode) {
+        this.failureMode = failureMode;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public void setCommitted(boolean committed) {
+        this.committed = committed;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(int succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<TransferItemResultDTO> getResults() {
+        return results;
+    }
+
+    public void setResults(List<TransferItemResultDTO> results) {
+        this.results = results;
+    }
+}
@@ -0,0 +1,53 @@
+package com.eviden.app.dto;
+
+import com.eviden.app.service.TransferStatus;
+
+public class TransferCommandReplyDTO {
+
+    private String correlationId;
+    private String senderAccount;
+    private String receiverAccount;
+    private TransferStatus status;
+
+    public TransferCommandReplyDTO() {
+    }
+
+    public TransferCommandReplyDTO(String correlationId, String senderAccount, String receiverAccount, TransferStatus status) {
+        this.correlationId = correlationId;
+        this.senderAccount = senderAccount;
+        this.receiverAccount = receiverAccount;
+        this.status = status;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public String getSenderAccount() {
+        return senderAccount;
+    }
+
+    public void setSenderAccount(String senderAccount) {
+        this.senderAccount = senderAccount;
+    }
+
+    public String getReceiverAccount() {
+        return receiverAccount;
+    }
+
+    public void setReceiverAccount(String receiverAccount) {
+        this.receiverAccount = receiverAccount;
+    }
+
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransferStatus status) {
+        this.status = status;
+    }
+}
@@ -1,15 +1,21 @@
 package com.eviden.app.dto;
 
+import com.eviden.app.utils.Money;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 public class TransferDTO {
 
     private String senderAccount;
     private String receiverAccount;
-    private Double amount;
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    private long amount;
 
     public TransferDTO() {
     }
 
-    public TransferDTO(String senderAccount, String receiverAccount, Double amount) {
+    public TransferDTO(String senderAccount, String receiverAccount, long amount) {
         this.senderAccount = senderAccount;
         this.receiverAccount = receiverAccount;
         this.amount = amount;
@@ -31,11 +37,14 @@ public class TransferDTO {
         this.receiverAccount = receiverAccount;
     }
 
-    public Double getAmount() {
+    /**
+     * Amount in minor units, see {@link Money}.
+     */
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 }
@@ -0,0 +1,74 @@
+package com.eviden.app.dto;
+
+import com.eviden.app.utils.Money;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * One transfer in an account's history, selected straight into this class without loading
+ * {@code Transfer} entities.
+ */
+public class TransferHistoryItemDTO {
+
+    private Long id;
+    private long timestamp;
+    private String senderAccount;
+    private String receiverAccount;
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    private long amount;
+
+    public TransferHistoryItemDTO() {
+    }
+
+    public TransferHistoryItemDTO(Long id, long timestamp, String senderAccount, String receiverAccount, long amount) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.senderAccount = senderAccount;
+        this.receiverAccount = receiverAccount;
+        this.amount = amount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * Epoch milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getSenderAccount() {
+        return senderAccount;
+    }
+
+    public void setSenderAccount(String senderAccount) {
+        this.senderAccount = senderAccount;
+    }
+
+    public String getReceiverAccount() {
+        return receiverAccount;
+    }
+
+    public void setReceiverAccount(String receiverAccount) {
+        this.receiverAccount = receiverAccount;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(long amount) {
+        this.amount = amount;
+    }
+}
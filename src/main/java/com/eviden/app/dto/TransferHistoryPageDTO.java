@@ -0,0 +1,36 @@
+package com.eviden.app.dto;
+
+import java.util.List;
+
+public class TransferHistoryPageDTO {
+
+    private List<TransferHistoryItemDTO> items;
+    private String nextCursor;
+
+    public TransferHistoryPageDTO() {
+    }
+
+    public TransferHistoryPageDTO(List<TransferHistoryItemDTO> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TransferHistoryItemDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<TransferHistoryItemDTO> items) {
+        this.items = items;
+    }
+
+    /**
+     * Value to pass as {@code cursor} to fetch older transfers, {@code null} on the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,53 @@
+package com.eviden.app.dto;
+
+import com.eviden.app.service.TransferStatus;
+
+public class TransferItemResultDTO {
+
+    private int index;
+    private String senderAccount;
+    private String receiverAccount;
+    private TransferStatus status;
+
+    public TransferItemResultDTO() {
+    }
+
+    public TransferItemResultDTO(int index, String senderAccount, String receiverAccount, TransferStatus status) {
+        this.index = index;
+        this.senderAccount = senderAccount;
+        this.receiverAccount = receiverAccount;
+        this.status = status;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getSenderAccount() {
+        return senderAccount;
+    }
+
+    public void setSenderAccount(String senderAccount) {
+        this.senderAccount = senderAccount;
+    }
+
+    public String getReceiverAccount() {
+        return receiverAccount;
+    }
+
+    public void setReceiverAccount(String receiverAccount) {
+        this.receiverAccount = receiverAccount;
+    }
+
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransferStatus status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,22 @@
+package com.eviden.app.entity;
+
+import com.eviden.app.utils.AccountNumber;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores {@link BankAccount#getAccountNumber()} as a packed {@code BIGINT}, see {@link AccountNumber}.
+ */
+@Converter
+public class AccountNumberConverter implements AttributeConverter<String, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(String accountNumber) {
+        return accountNumber == null ? null : AccountNumber.pack(accountNumber);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Long packed) {
+        return packed == null ? null : AccountNumber.unpack(packed);
+    }
+}
@@ -1,18 +1,36 @@
 package com.eviden.app.entity;
 
+import com.eviden.app.utils.Money;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 
 @Entity
+@Table(indexes = @Index(name = "ux_bank_account_account_number", columnList = "account_number", unique = true))
 public class BankAccount {
+    /**
+     * Drawn from a pooled sequence, 50 ids per round trip, so that Hibernate can batch inserts;
+     * {@code IDENTITY} would force one insert statement per account.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bank_account_seq")
+    @SequenceGenerator(name = "bank_account_seq", sequenceName = "bank_account_seq", allocationSize = 50)
     private Long id;
+    @Convert(converter = AccountNumberConverter.class)
+    @Column(name = "account_number", nullable = false)
     private String accountNumber;
     private String accountName;
-    private Double balance;
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    private long balance;
     private String type;
 
 
@@ -20,7 +38,7 @@ public class BankAccount {
     }
     // getters and setters
 
-    public BankAccount(String accountNumber, String accountName, Double balance, String type) {
+    public BankAccount(String accountNumber, String accountName, long balance, String type) {
         this.accountNumber = accountNumber;
         this.accountName = accountName;
         this.balance = balance;
@@ -51,11 +69,14 @@ public class BankAccount {
         this.accountName = accountName;
     }
 
-    public Double getBalance() {
+    /**
+     * Balance in minor units, see {@link Money}.
+     */
+    public long getBalance() {
         return balance;
     }
 
-    public void setBalance(Double balance) {
+    public void setBalance(long balance) {
         this.balance = balance;
     }
 
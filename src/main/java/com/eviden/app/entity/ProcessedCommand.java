@@ -0,0 +1,73 @@
+package com.eviden.app.entity;
+
+import com.eviden.app.service.TransferStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * A transfer command that was already applied, keyed by its message id, with the status it got.
+ * Written in the same transaction as the transfer, so a redelivered command is answered from here
+ * instead of being applied a second time. Rows are deleted by {@code ProcessedCommandPurger} once
+ * they are older than any redelivery can be.
+ */
+@Entity
+@Table(indexes = @Index(name = "ix_processed_command_processed_at", columnList = "processed_at"))
+public class ProcessedCommand implements Persistable<String> {
+
+    @Id
+    @Column(name = "command_id", length = 255)
+    private String commandId;
+    @Enumerated(EnumType.STRING)
+    private TransferStatus status;
+    @Column(name = "processed_at")
+    private long processedAt;
+    // ids are assigned, without this saveAll would select every row before inserting it
+    @Transient
+    private boolean isNew = true;
+
+    public ProcessedCommand() {
+    }
+
+    public ProcessedCommand(String commandId, TransferStatus status, long processedAt) {
+        this.commandId = commandId;
+        this.status = status;
+        this.processedAt = processedAt;
+    }
+
+    @Override
+    public String getId() {
+        return commandId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
+    public String getCommandId() {
+        return commandId;
+    }
+
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    public long getProcessedAt() {
+        return processedAt;
+    }
+}
@@ -1,39 +1,70 @@
 
 package com.eviden.app.entity;
 
+import com.eviden.app.utils.Money;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * A transfer request and, once committed, its row in the account history. History is read
+ * newest first per account through the indexes on sender and receiver, which end in
+ * {@code ts, id} so a keyset page is a single index range scan.
+ */
 @Entity
-//@Table(name="transfer")
+@Table(indexes = {
+        @Index(name = "ix_transfer_sender_ts", columnList = "sender_account, ts, id"),
+        @Index(name = "ix_transfer_receiver_ts", columnList = "receiver_account, ts, id")
+})
 public class Transfer {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfer_seq")
+    @SequenceGenerator(name = "transfer_seq", sequenceName = "transfer_seq", allocationSize = 50)
     private Long id;
     
     //@NotNull(message="Sender account number is required!")
     //@Size(min=5, message="Sender account number must be a minimum of 5 characters!")
+    @Convert(converter = AccountNumberConverter.class)
+    @Column(name = "sender_account")
     private String senderAccount;
     
     //@NotNull(message="Receiver account number is required!")
     //@Size(min=5, message="Receiver account number must be a minimum of 5 characters!")
+    @Convert(converter = AccountNumberConverter.class)
+    @Column(name = "receiver_account")
     private String receiverAccount;
     
     //@NotNull(message="Amount is required!")
-    private Double amount;
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    private long amount;
+
+    private long ts;
 
     public Transfer(){
 
     }
 
-    public Transfer(String senderAccount, String receiverAccount, Double amount){
+    public Transfer(String senderAccount, String receiverAccount, long amount){
         this.senderAccount = senderAccount;
         this.receiverAccount = receiverAccount;
         this.amount = amount;
     }
 
+    public Transfer(String senderAccount, String receiverAccount, long amount, long ts){
+        this(senderAccount, receiverAccount, amount);
+        this.ts = ts;
+    }
+
     public Long getId() {
         return id;
     }
@@ -58,14 +89,25 @@ public class Transfer {
         this.receiverAccount = receiverAccount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
-    public Double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
+    /**
+     * When the transfer was committed, in epoch milliseconds.
+     */
+    public long getTs() {
+        return ts;
+    }
+
+    public void setTs(long ts) {
+        this.ts = ts;
+    }
+
 
     
 }
@@ -0,0 +1,181 @@
+package com.eviden.app.journal;
+
+import com.eviden.app.utils.AccountNumber;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * A memory-mapped, read-only file of account balances, stamped with the {@link TransferJournal}
+ * sequence it covers.
+ * <p>
+ * The file is a header ({@code magic, version, journal sequence, taken at}), one entry of
+ * {@link AccountNumber#pack packed account number} and balance per account, and a trailer with
+ * the number of entries and a CRC32C of everything before it. 16 bytes per account, so five
+ * million accounts take 80 MB. Files are written next to their final name and moved into place
+ * once complete, so a reader sees either a whole snapshot or none.
+ * <p>
+ * A snapshot covering sequence {@code n} holds, for every account, a balance at least as new as
+ * the journal up to {@code n}; replaying the journal records after {@code n} on top of it gives
+ * the current balances.
+ */
+public final class BalanceSnapshot {
+
+    static final int MAGIC = 0x42534e50;
+    static final int VERSION = 1;
+    static final int HEADER = 24;
+    static final int ENTRY = 16;
+    static final int TRAILER = 12;
+
+    private final Path path;
+    private final long journalSequence;
+    private final long takenAt;
+    private final long accounts;
+    private final MappedByteBuffer buffer;
+
+    private BalanceSnapshot(Path path, long journalSequence, long takenAt, long accounts, MappedByteBuffer buffer) {
+        this.path = path;
+        this.journalSequence = journalSequence;
+        this.takenAt = takenAt;
+        this.accounts = accounts;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps {@code path} and checks its layout and checksum.
+     *
+     * @throws IOException if the file cannot be read or is not a complete snapshot
+     */
+    public static BalanceSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER + TRAILER || (size - HEADER - TRAILER) % ENTRY != 0 || size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not a balance snapshot: unexpected size " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(path + " is not a balance snapshot of version " + VERSION);
+            }
+            int crcAt = (int) size - 4;
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, crcAt));
+            long accounts = buffer.getLong(crcAt - 8);
+            if ((int) crc.getValue() != buffer.getInt(crcAt) || accounts != (size - HEADER - TRAILER) / ENTRY) {
+                throw new IOException(path + " is corrupt or incomplete");
+            }
+            return new BalanceSnapshot(path, buffer.getLong(8), buffer.getLong(16), accounts, buffer);
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long journalSequence() {
+        return journalSequence;
+    }
+
+    public long takenAt() {
+        return takenAt;
+    }
+
+    public long accounts() {
+        return accounts;
+    }
+
+    /**
+     * Hands every account number and balance to {@code visitor}, in the order they were written.
+     */
+    public void forEach(ObjLongConsumer<String> visitor) {
+        for (int offset = HEADER; offset < HEADER + accounts * ENTRY; offset += ENTRY) {
+            visitor.accept(AccountNumber.unpack(buffer.getLong(offset)), buffer.getLong(offset + 8));
+        }
+    }
+
+    /**
+     * Writes a snapshot to a temporary file next to {@code target}; {@link #commit} forces it to
+     * disk and moves it to {@code target}, {@link #close} without a commit deletes it.
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        private final CRC32C crc = new CRC32C();
+        private long accounts;
+        private boolean committed;
+
+        public Writer(Path target, long journalSequence, long takenAt) throws IOException {
+            this.target = target;
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(journalSequence).putLong(takenAt);
+        }
+
+        /**
+         * @throws IllegalArgumentException if {@code accountNumber} is not an account number
+         */
+        public void add(String accountNumber, long balance) throws IOException {
+            long packed = AccountNumber.pack(accountNumber);
+            if (buffer.remaining() < ENTRY) {
+                drain();
+            }
+            buffer.putLong(packed).putLong(balance);
+            accounts++;
+        }
+
+        public long accounts() {
+            return accounts;
+        }
+
+        /**
+         * @return the size of the snapshot in bytes
+         */
+        public long commit() throws IOException {
+            if (buffer.remaining() < TRAILER) {
+                drain();
+            }
+            buffer.putLong(accounts);
+            drain();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+            long size = channel.size();
+            channel.close();
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!committed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.eviden.app.journal;
+
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.service.TransferEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Writes a {@link BalanceSnapshot} of every account every {@code transfer.snapshot.interval} and
+ * finds the newest one at startup, so {@link JournalReplayRunner} only has to replay the journal
+ * records written after it.
+ * <p>
+ * A snapshot only stops transfers for as long as it takes to read the journal sequence. Transfers
+ * are journaled just before they commit, so the sequence is read while holding every stripe of the
+ * {@link TransferEngine}: no transfer is then between its journal record and the end of its
+ * transaction, and every record up to that sequence is committed or already taken back. The
+ * balances are then streamed from the repository in one read-only query; balances that are newer
+ * than the sequence are overwritten with the same or later values when the records after it are
+ * replayed.
+ * <p>
+ * Snapshots are only taken once the application is ready, after the journal has been replayed
+ * into the database. The newest {@code transfer.snapshot.retained} files are kept.
+ */
+@Component
+@ConditionalOnProperty(name = {"transfer.journal.enabled", "transfer.snapshot.enabled"}, havingValue = "true")
+public class BalanceSnapshots implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceSnapshots.class);
+    private static final String PREFIX = "balances-";
+    private static final String SUFFIX = ".snapshot";
+
+    private final TransferJournal journal;
+    private final TransferEngine transferEngine;
+    private final BankAccountRepository bankAccountRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Path directory;
+    private final Duration interval;
+    private final int retained;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "balance-snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long lastWrittenSequence = -1;
+
+    public BalanceSnapshots(TransferJournal journal, TransferEngine transferEngine,
+                            BankAccountRepository bankAccountRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${transfer.snapshot.dir:data/snapshots}") String directory,
+                            @Value("${transfer.snapshot.interval:5m}") Duration interval,
+                            @Value("${transfer.snapshot.retained:2}") int retained) throws IOException {
+        this.journal = journal;
+        this.transferEngine = transferEngine;
+        this.bankAccountRepository = bankAccountRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.directory = Paths.get(directory);
+        this.interval = interval;
+        this.retained = Math.max(1, retained);
+        Files.createDirectories(this.directory);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (interval.isZero() || interval.isNegative()) {
+            logger.info("Periodic balance snapshots are off");
+            return;
+        }
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::writeIfChanged, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a snapshot now, even if no transfer was journaled since the last one.
+     */
+    public synchronized BalanceSnapshot write() throws IOException {
+        long start = System.nanoTime();
+        long sequence = transferEngine.withAllLocks(journal::lastSequence);
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        long size;
+        long accounts;
+        try (BalanceSnapshot.Writer writer = new BalanceSnapshot.Writer(target, sequence, System.currentTimeMillis())) {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = bankAccountRepository.streamBalances()) {
+                    for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                        writer.add((String) row[0], (Long) row[1]);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            accounts = writer.accounts();
+            size = writer.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        lastWrittenSequence = sequence;
+        prune();
+        logger.info("Wrote balance snapshot {} with {} account(s) at journal sequence {}: {} bytes in {} ms",
+                target.getFileName(), accounts, sequence, size, (System.nanoTime() - start) / 1_000_000);
+        return BalanceSnapshot.open(target);
+    }
+
+    /**
+     * Returns the newest snapshot that can be read, or {@code null} if there is none. Snapshots
+     * that are corrupt or incomplete are skipped with a warning.
+     */
+    public BalanceSnapshot latest() throws IOException {
+        for (Path path : snapshotFiles()) {
+            try {
+                return BalanceSnapshot.open(path);
+            } catch (IOException e) {
+                logger.warn("Skipping unreadable balance snapshot {}: {}", path.getFileName(), e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void writeIfChanged() {
+        if (journal.lastSequence() == lastWrittenSequence) {
+            return;
+        }
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Balance snapshot failed, the previous one is kept", e);
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> files = snapshotFiles();
+        for (Path old : files.subList(Math.min(retained, files.size()), files.size())) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    /**
+     * Snapshot files, newest first.
+     */
+    private List<Path> snapshotFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        }
+    }
+}
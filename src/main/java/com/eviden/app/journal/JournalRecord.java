@@ -0,0 +1,16 @@
+package com.eviden.app.journal;
+
+/**
+ * One entry read back from the {@link TransferJournal}.
+ * <p>
+ * {@link #TRANSFER} entries describe a committed transfer together with the balances of both
+ * accounts right after it. {@link #BALANCE} entries are written by compaction, and when a journaled
+ * transfer failed to commit, and only carry the latest balance of {@code senderAccount}. Amounts
+ * and balances are in minor units.
+ */
+public record JournalRecord(byte type, long sequence, long timestamp, String senderAccount, String receiverAccount,
+                            long amount, long senderBalance, long receiverBalance) {
+
+    public static final byte TRANSFER = 1;
+    public static final byte BALANCE = 2;
+}
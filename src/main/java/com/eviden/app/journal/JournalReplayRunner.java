@@ -0,0 +1,158 @@
+package com.eviden.app.journal;
+
+import com.eviden.app.config.DatabaseLoader;
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.service.AccountCache;
+import com.eviden.app.service.TransferEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds {@link BankAccount} balances from the {@link TransferJournal} at startup, after the
+ * {@link DatabaseLoader} has seeded the accounts. It runs in the lifecycle phase right after the
+ * loader's, so the web server and the message consumers only start once the balances are back.
+ * <p>
+ * When {@link BalanceSnapshots} are on, the newest snapshot is read first and only the journal
+ * records written after it are replayed on top. The snapshot is applied chunk by chunk straight
+ * from the mapped file, so only the replayed tail is held in memory. A snapshot stamped with a
+ * later sequence than the journal belongs to another journal and is ignored.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.journal.enabled", havingValue = "true")
+public class JournalReplayRunner implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalReplayRunner.class);
+    private static final int CHUNK_SIZE = 1000;
+
+    private final TransferJournal journal;
+    private final BankAccountRepository bankAccountRepository;
+    private final TransferEngine transferEngine;
+    private final TransactionOperations transactionOperations;
+    private final AccountCache accountCache;
+    private final BalanceSnapshots snapshots;
+    private volatile boolean running;
+
+    public JournalReplayRunner(TransferJournal journal, BankAccountRepository bankAccountRepository,
+                               TransferEngine transferEngine, TransactionOperations transactionOperations,
+                               AccountCache accountCache, ObjectProvider<BalanceSnapshots> snapshots) {
+        this.journal = journal;
+        this.bankAccountRepository = bankAccountRepository;
+        this.transferEngine = transferEngine;
+        this.transactionOperations = transactionOperations;
+        this.accountCache = accountCache;
+        this.snapshots = snapshots.getIfAvailable();
+    }
+
+    @Override
+    public void start() {
+        try {
+            replay();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replay the transfer journal", e);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return DatabaseLoader.PHASE + 1;
+    }
+
+    void replay() throws IOException {
+        long start = System.nanoTime();
+        BalanceSnapshot snapshot = snapshots == null ? null : snapshots.latest();
+        if (snapshot != null && snapshot.journalSequence() > journal.lastSequence()) {
+            logger.warn("Ignoring balance snapshot {} at sequence {}, the journal ends at {}",
+                    snapshot.path().getFileName(), snapshot.journalSequence(), journal.lastSequence());
+            snapshot = null;
+        }
+        long after = snapshot == null ? 0 : snapshot.journalSequence();
+        Map<String, Long> balances = new HashMap<>();
+        long[] records = {0};
+        journal.replay(after, record -> {
+            records[0]++;
+            balances.put(record.senderAccount(), record.senderBalance());
+            if (record.type() == JournalRecord.TRANSFER) {
+                balances.put(record.receiverAccount(), record.receiverBalance());
+            }
+        });
+        int tail = balances.size();
+        int restored = 0;
+        if (snapshot != null) {
+            restored += applySnapshot(snapshot, balances);
+        }
+        restored += apply(balances);
+        if (snapshot == null) {
+            logger.info("Replayed {} journal record(s) in {} ms: restored {} of {} account balance(s)",
+                    records[0], (System.nanoTime() - start) / 1_000_000, restored, tail);
+        } else {
+            logger.info("Restored {} account balance(s) from snapshot {} ({} account(s)) and {} later journal record(s) in {} ms",
+                    restored, snapshot.path().getFileName(), snapshot.accounts(), records[0],
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * Applies the snapshot in chunks, taking the replayed balance instead where there is one and
+     * removing it from {@code newer}.
+     */
+    int applySnapshot(BalanceSnapshot snapshot, Map<String, Long> newer) {
+        Map<String, Long> chunk = new HashMap<>();
+        int[] restored = {0};
+        snapshot.forEach((accountNumber, balance) -> {
+            Long replayed = newer.remove(accountNumber);
+            chunk.put(accountNumber, replayed == null ? balance : replayed);
+            if (chunk.size() == CHUNK_SIZE) {
+                restored[0] += apply(chunk);
+                chunk.clear();
+            }
+        });
+        return restored[0] + apply(chunk);
+    }
+
+    int apply(Map<String, Long> balances) {
+        int restored = 0;
+        List<String> numbers = new ArrayList<>(balances.keySet());
+        for (int from = 0; from < numbers.size(); from += CHUNK_SIZE) {
+            List<String> chunk = numbers.subList(from, Math.min(numbers.size(), from + CHUNK_SIZE));
+            restored += transferEngine.withLocks(chunk, () -> {
+                Integer updated = transactionOperations.execute(tx -> {
+                    List<BankAccount> accounts = bankAccountRepository.findByAccountNumberIn(chunk);
+                    for (BankAccount account : accounts) {
+                        account.setBalance(balances.get(account.getAccountNumber()));
+                    }
+                    return accounts.size();
+                });
+                for (String number : chunk) {
+                    transferEngine.evict(number);
+                    accountCache.invalidate(number);
+                }
+                return updated == null ? 0 : updated;
+            });
+        }
+        return restored;
+    }
+}
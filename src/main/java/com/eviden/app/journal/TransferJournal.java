@@ -0,0 +1,609 @@
+package com.eviden.app.journal;
+
+import com.eviden.app.entity.Transfer;
+import com.eviden.app.service.TransferListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of committed transfers, written through memory-mapped segment files.
+ * <p>
+ * Each record holds the transfer and the balances of both accounts right after it, so replaying
+ * the journal and keeping the last balance seen per account rebuilds every balance regardless of
+ * the state the database was in. Records are framed as {@code length, crc32c, body} and a zero
+ * length marks the end of a segment; a torn or corrupt record ends replay of its segment.
+ * <p>
+ * Durability uses group commit: appenders copy their record into the mapped segment and then wait
+ * for a single flusher thread, which forces everything written so far with one {@code msync}.
+ * Appenders arriving while a force is running are covered by the next one. A segment is rolled
+ * when the next record does not fit; once more than {@code retained-segments} exist, the oldest
+ * ones are compacted into a single segment holding only the latest balance per account.
+ * <p>
+ * The journal is a {@link TransferListener#isRequired() required} listener: a transfer is appended
+ * inside its database transaction and does not commit unless the append succeeded. When the commit
+ * fails afterwards, {@link #onRollback} appends the balances the accounts are back to. If even that
+ * fails the journal no longer matches the database; it refuses further appends and reports the
+ * application as refusing traffic until a restart rebuilds the balances.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.journal.enabled", havingValue = "true")
+public class TransferJournal implements TransferListener, ApplicationEventPublisherAware, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferJournal.class);
+
+    static final int MAGIC = 0x54524a4c;
+    static final int VERSION = 2;
+    static final int SEGMENT_HEADER = 16;
+    static final int RECORD_HEADER = 8;
+    private static final String SEGMENT_PREFIX = "transfers-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int retainedSegments;
+    private final boolean sync;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final List<Path> segments = new ArrayList<>();
+    private MappedByteBuffer current;
+    private long nextSequence;
+    private volatile long writtenSequence;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushRequested = flushLock.newCondition();
+    private final Condition flushed = flushLock.newCondition();
+    private long durableSequence;
+    private volatile boolean closed;
+    private volatile boolean diverged;
+    private ApplicationEventPublisher eventPublisher;
+    private final Thread flusher;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "transfer-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TransferJournal(@Value("${transfer.journal.dir:data/journal}") String directory,
+                           @Value("${transfer.journal.segment-size:64MB}") DataSize segmentSize,
+                           @Value("${transfer.journal.retained-segments:4}") int retainedSegments,
+                           @Value("${transfer.journal.sync:true}") boolean sync) throws IOException {
+        this.directory = Paths.get(directory);
+        this.segmentSize = (int) Math.min(Integer.MAX_VALUE, Math.max(4096, segmentSize.toBytes()));
+        this.retainedSegments = Math.max(1, retainedSegments);
+        this.sync = sync;
+        Files.createDirectories(this.directory);
+        open();
+        this.flusher = new Thread(this::flushLoop, "transfer-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void onTransfer(String senderAccount, String receiverAccount, long amount,
+                           long senderBalance, long receiverBalance) {
+        append(senderAccount, receiverAccount, amount, senderBalance, receiverBalance);
+    }
+
+    @Override
+    public void onTransfers(List<Transfer> transfers, long[] senderBalances, long[] receiverBalances) {
+        appendAll(transfers, senderBalances, receiverBalances);
+    }
+
+    @Override
+    public boolean isRequired() {
+        return true;
+    }
+
+    /**
+     * Appends the balances of both accounts as {@link JournalRecord#BALANCE} records, so replay
+     * ends on them instead of on the transfer that did not commit.
+     */
+    @Override
+    public void onRollback(String senderAccount, String receiverAccount, long amount,
+                           long senderBalance, long receiverBalance) {
+        byte[] none = new byte[0];
+        long sequence;
+        appendLock.lock();
+        try {
+            checkWritable();
+            long timestamp = System.currentTimeMillis();
+            write(JournalRecord.BALANCE, timestamp, senderAccount.getBytes(StandardCharsets.US_ASCII), none,
+                    0, senderBalance, 0);
+            sequence = write(JournalRecord.BALANCE, timestamp, receiverAccount.getBytes(StandardCharsets.US_ASCII), none,
+                    0, receiverBalance, 0);
+        } catch (RuntimeException e) {
+            diverge(e);
+            throw e;
+        } finally {
+            appendLock.unlock();
+        }
+        if (sync) {
+            awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Appends a transfer and, when {@code transfer.journal.sync} is on, waits until it is on disk.
+     *
+     * @return the sequence number given to the record
+     * @throws IllegalStateException if the journal is closed or no longer matches the database
+     * @throws UncheckedIOException if the next segment cannot be created
+     */
+    public long append(String senderAccount, String receiverAccount, long amount,
+                       long senderBalance, long receiverBalance) {
+        byte[] sender = senderAccount.getBytes(StandardCharsets.US_ASCII);
+        byte[] receiver = receiverAccount.getBytes(StandardCharsets.US_ASCII);
+        long sequence;
+        appendLock.lock();
+        try {
+            checkWritable();
+            sequence = write(JournalRecord.TRANSFER, System.currentTimeMillis(), sender, receiver,
+                    amount, senderBalance, receiverBalance);
+        } finally {
+            appendLock.unlock();
+        }
+        if (sync) {
+            awaitDurable(sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * Appends the transfers of a batch one after the other and, when {@code transfer.journal.sync}
+     * is on, waits once until the last of them is on disk. If a segment cannot be created part way
+     * through, the records already written do not match the database and the journal diverges.
+     *
+     * @return the sequence number given to the last record, or {@code -1} if there were no transfers
+     * @throws IllegalStateException if the journal is closed or no longer matches the database
+     * @throws UncheckedIOException if the next segment cannot be created
+     */
+    public long appendAll(List<Transfer> transfers, long[] senderBalances, long[] receiverBalances) {
+        if (transfers.isEmpty()) {
+            return -1;
+        }
+        long sequence = -1;
+        appendLock.lock();
+        try {
+            checkWritable();
+            long timestamp = System.currentTimeMillis();
+            for (int i = 0; i < transfers.size(); i++) {
+                Transfer transfer = transfers.get(i);
+                sequence = write(JournalRecord.TRANSFER, timestamp,
+                        transfer.getSenderAccount().getBytes(StandardCharsets.US_ASCII),
+                        transfer.getReceiverAccount().getBytes(StandardCharsets.US_ASCII),
+                        transfer.getAmount(), senderBalances[i], receiverBalances[i]);
+            }
+        } catch (UncheckedIOException e) {
+            // the batch is rolled back without onRollback, so records written before the failure stay behind
+            if (sequence != -1) {
+                diverge(e);
+            }
+            throw e;
+        } finally {
+            appendLock.unlock();
+        }
+        if (sync) {
+            awaitDurable(sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * Whether a rollback could not be journaled, see {@link #onRollback}.
+     */
+    public boolean isDiverged() {
+        return diverged;
+    }
+
+    /**
+     * Reads every segment in order and hands each valid record to {@code visitor}.
+     */
+    public void replay(Consumer<JournalRecord> visitor) throws IOException {
+        replay(0, visitor);
+    }
+
+    /**
+     * Like {@link #replay(Consumer)}, but only hands over records with a sequence number above
+     * {@code afterSequence}. Segments that end at or before it are not read at all.
+     */
+    public void replay(long afterSequence, Consumer<JournalRecord> visitor) throws IOException {
+        List<Path> snapshot;
+        appendLock.lock();
+        try {
+            snapshot = new ArrayList<>(segments);
+        } finally {
+            appendLock.unlock();
+        }
+        awaitCompaction();
+        for (int i = 0; i < snapshot.size(); i++) {
+            // a segment ends right before the first sequence of the next one, also after compaction
+            if (i + 1 < snapshot.size() && firstSequenceOf(snapshot.get(i + 1)) <= afterSequence + 1) {
+                continue;
+            }
+            readSegment(snapshot.get(i), record -> {
+                if (record.sequence() > afterSequence) {
+                    visitor.accept(record);
+                }
+            });
+        }
+    }
+
+    public long lastSequence() {
+        return writtenSequence;
+    }
+
+    public int segmentCount() {
+        appendLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            appendLock.unlock();
+        }
+        flushLock.lock();
+        try {
+            flushRequested.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+            compactor.shutdown();
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        current.force();
+        logger.info("Transfer journal closed at sequence {}", writtenSequence);
+    }
+
+    private void checkWritable() {
+        if (closed) {
+            throw new IllegalStateException("Transfer journal is closed");
+        }
+        if (diverged) {
+            throw new IllegalStateException("Transfer journal no longer matches the database, restart to rebuild balances");
+        }
+    }
+
+    /**
+     * Writes one record into the current segment, rolling it first if the record does not fit.
+     * The caller holds {@link #appendLock}.
+     */
+    private long write(byte type, long timestamp, byte[] sender, byte[] receiver, long amount,
+                       long senderBalance, long receiverBalance) {
+        long sequence = nextSequence;
+        if (current.remaining() < RECORD_HEADER + bodyLength(sender.length, receiver.length) + 4) {
+            roll(sequence);
+        }
+        writeRecord(current, type, sequence, timestamp, sender, receiver, amount, senderBalance, receiverBalance);
+        nextSequence = sequence + 1;
+        writtenSequence = sequence;
+        return sequence;
+    }
+
+    private void diverge(RuntimeException cause) {
+        diverged = true;
+        logger.error("Journal no longer matches the database, refusing further transfers until restart", cause);
+        if (eventPublisher != null) {
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        }
+    }
+
+    private void open() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(TransferJournal::isSegment)
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        long last = 0;
+        if (segments.isEmpty()) {
+            segments.add(segmentPath(1));
+            current = map(segments.get(0), 1, true);
+        } else {
+            Path tail = segments.get(segments.size() - 1);
+            current = map(tail, 0, false);
+            long[] lastSeen = {firstSequenceOf(tail) - 1};
+            int end = scan(current, record -> lastSeen[0] = record.sequence());
+            current.position(end);
+            last = lastSeen[0];
+        }
+        nextSequence = last + 1;
+        writtenSequence = last;
+        durableSequence = last;
+        logger.info("Transfer journal opened in {} with {} segment(s), next sequence {}", directory, segments.size(), nextSequence);
+    }
+
+    private void roll(long firstSequence) {
+        current.force();
+        Path next = segmentPath(firstSequence);
+        try {
+            current = map(next, firstSequence, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not roll transfer journal to " + next, e);
+        }
+        segments.add(next);
+        logger.info("Transfer journal rolled to {}", next.getFileName());
+        if (segments.size() > retainedSegments) {
+            List<Path> folded = new ArrayList<>(segments.subList(0, segments.size() - retainedSegments));
+            segments.subList(1, folded.size()).clear();
+            compactor.execute(() -> compact(folded));
+        }
+    }
+
+    /**
+     * Folds {@code folded} into one segment, stored under the name of the first of them, that
+     * keeps only the latest balance per account. A crash midway leaves either the old segments or
+     * the compacted one followed by some old ones; replay ends on the same balances in both cases.
+     */
+    void compact(List<Path> folded) {
+        Map<String, JournalRecord> latest = new LinkedHashMap<>();
+        try {
+            for (Path segment : folded) {
+                readSegment(segment, record -> {
+                    latest.put(record.senderAccount(), record);
+                    if (record.type() == JournalRecord.TRANSFER) {
+                        latest.put(record.receiverAccount(), record);
+                    }
+                });
+            }
+            Path target = folded.get(0);
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            int size = SEGMENT_HEADER + 4;
+            for (String account : latest.keySet()) {
+                size += RECORD_HEADER + bodyLength(account.length(), 0);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            writeHeader(buffer, firstSequenceOf(target));
+            for (Map.Entry<String, JournalRecord> entry : latest.entrySet()) {
+                JournalRecord record = entry.getValue();
+                long balance = entry.getKey().equals(record.senderAccount()) ? record.senderBalance() : record.receiverBalance();
+                writeRecord(buffer, JournalRecord.BALANCE, record.sequence(), record.timestamp(),
+                        entry.getKey().getBytes(StandardCharsets.US_ASCII), new byte[0], 0, balance, 0);
+            }
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (Path segment : folded.subList(1, folded.size())) {
+                Files.deleteIfExists(segment);
+            }
+            logger.info("Compacted {} journal segment(s) into {} balance record(s)", folded.size(), latest.size());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Transfer journal compaction failed, old segments are kept", e);
+        }
+    }
+
+    /**
+     * Waits for compactions scheduled so far. Segments folded by a roll leave {@link #segments}
+     * right away, but their records only appear in the first of them once its compaction is done.
+     */
+    private void awaitCompaction() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            compactor.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for journal compaction");
+        } catch (ExecutionException | RejectedExecutionException e) {
+            // closed meanwhile, nothing left to wait for
+        }
+    }
+
+    private void awaitDurable(long sequence) {
+        flushLock.lock();
+        try {
+            while (durableSequence < sequence) {
+                flushRequested.signal();
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            flushLock.lock();
+            try {
+                while (durableSequence >= writtenSequence && !closed) {
+                    flushRequested.awaitUninterruptibly();
+                }
+                if (closed && durableSequence >= writtenSequence) {
+                    flushed.signalAll();
+                    return;
+                }
+            } finally {
+                flushLock.unlock();
+            }
+            MappedByteBuffer segment;
+            appendLock.lock();
+            try {
+                target = writtenSequence;
+                segment = current;
+            } finally {
+                appendLock.unlock();
+            }
+            // earlier segments were forced when they were rolled
+            segment.force();
+            flushLock.lock();
+            try {
+                durableSequence = Math.max(durableSequence, target);
+                flushed.signalAll();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private MappedByteBuffer map(Path path, long firstSequence, boolean create) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = Math.max(segmentSize, channel.size());
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (create) {
+                writeHeader(buffer, firstSequence);
+            } else {
+                checkHeader(buffer, path);
+            }
+            return buffer;
+        }
+    }
+
+    private void readSegment(Path segment, Consumer<JournalRecord> visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            checkHeader(buffer, segment);
+            scan(buffer, visitor);
+        }
+    }
+
+    /**
+     * Visits the records from the current position and returns the position after the last
+     * valid one.
+     */
+    private static int scan(ByteBuffer buffer, Consumer<JournalRecord> visitor) {
+        CRC32C crc = new CRC32C();
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return start;
+            }
+            crc.reset();
+            crc.update(buffer.slice(buffer.position(), length));
+            if ((int) crc.getValue() != checksum) {
+                logger.warn("Corrupt transfer journal record at offset {}, ignoring the rest of the segment", start);
+                return start;
+            }
+            byte type = buffer.get();
+            long sequence = buffer.getLong();
+            long timestamp = buffer.getLong();
+            long amount = buffer.getLong();
+            long senderBalance = buffer.getLong();
+            long receiverBalance = buffer.getLong();
+            String sender = readString(buffer);
+            String receiver = readString(buffer);
+            visitor.accept(new JournalRecord(type, sequence, timestamp, sender, receiver, amount, senderBalance, receiverBalance));
+        }
+        return buffer.position();
+    }
+
+    private static void writeRecord(ByteBuffer buffer, byte type, long sequence, long timestamp, byte[] sender,
+                                    byte[] receiver, long amount, long senderBalance, long receiverBalance) {
+        int start = buffer.position();
+        int length = bodyLength(sender.length, receiver.length);
+        buffer.position(start + RECORD_HEADER);
+        buffer.put(type);
+        buffer.putLong(sequence);
+        buffer.putLong(timestamp);
+        buffer.putLong(amount);
+        buffer.putLong(senderBalance);
+        buffer.putLong(receiverBalance);
+        buffer.putShort((short) sender.length).put(sender);
+        buffer.putShort((short) receiver.length).put(receiver);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start + RECORD_HEADER, length));
+        // the checksum goes in before the length so a reader never sees a length without its body
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, length);
+    }
+
+    private static int bodyLength(int senderLength, int receiverLength) {
+        return 1 + 8 + 8 + 8 + 8 + 8 + 2 + senderLength + 2 + receiverLength;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static void writeHeader(ByteBuffer buffer, long firstSequence) {
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(firstSequence);
+    }
+
+    private static void checkHeader(ByteBuffer buffer, Path path) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalStateException(path + " is not a transfer journal segment of version " + VERSION);
+        }
+        buffer.getLong();
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
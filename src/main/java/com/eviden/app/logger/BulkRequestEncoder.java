@@ -0,0 +1,91 @@
+package com.eviden.app.logger;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Builds the NDJSON body of an Elasticsearch {@code _bulk} request from log events.
+ * <p>
+ * Every event becomes an {@code {"index":{}}} action line followed by its document. All events of
+ * a batch are written into one reused {@link StringBuilder}, so encoding costs no per-event
+ * garbage beyond the timestamp. Not thread-safe; owned by the shipping thread of {@link InfoAppender}.
+ */
+final class BulkRequestEncoder {
+
+    private static final String ACTION = "{\"index\":{}}\n";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder body;
+    private final DateTimeFormatter timestampFormat;
+    private int events;
+
+    BulkRequestEncoder(int initialCapacity, DateTimeFormatter timestampFormat) {
+        this.body = new StringBuilder(initialCapacity);
+        this.timestampFormat = timestampFormat;
+    }
+
+    void add(ILoggingEvent event) {
+        body.append(ACTION);
+        body.append("{\"@timestamp\":\"");
+        timestampFormat.formatTo(Instant.ofEpochMilli(event.getTimeStamp()), body);
+        body.append("\",\"level\":\"").append(event.getLevel().levelStr);
+        body.append("\",\"logger\":");
+        string(event.getLoggerName());
+        body.append(",\"thread\":");
+        string(event.getThreadName());
+        body.append(",\"message\":");
+        string(event.getFormattedMessage());
+        body.append("}\n");
+        events++;
+    }
+
+    int events() {
+        return events;
+    }
+
+    /**
+     * Encoded size in chars, which equals the UTF-8 size for ASCII messages.
+     */
+    int length() {
+        return body.length();
+    }
+
+    byte[] toBytes() {
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    void reset() {
+        body.setLength(0);
+        events = 0;
+    }
+
+    private void string(String value) {
+        if (value == null) {
+            body.append("null");
+            return;
+        }
+        body.append('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> body.append("\\\"");
+                case '\\' -> body.append("\\\\");
+                case '\n' -> body.append("\\n");
+                case '\r' -> body.append("\\r");
+                case '\t' -> body.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        body.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        body.append(c);
+                    }
+                }
+            }
+        }
+        body.append('"');
+    }
+}
@@ -1,65 +1,241 @@
 package com.eviden.app.logger;
 
-import java.time.Instant;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.LinkedHashMap;
-import java.util.Map;
-
-import org.json.JSONObject;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.web.reactive.function.client.WebClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
-import ch.qos.logback.core.AppenderBase;
-import reactor.core.publisher.Mono;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
 
-public class InfoAppender extends AppenderBase<ILoggingEvent> {
+/**
+ * Ships log events to Elasticsearch through the {@code _bulk} API.
+ * <p>
+ * {@link #append} only puts the event on a bounded queue; a single background thread takes events
+ * off it and sends them once {@code batchSize} events or {@code maxBatchBytes} of encoded JSON have
+ * collected, or {@code flushIntervalMillis} after the first event of a batch, whichever comes
+ * first. When the queue is full the {@link OverflowPolicy} decides whether the caller drops, waits
+ * or samples. Failed batches are retried {@code maxRetries} times with exponential backoff and then
+ * dropped. Events logged by the shipping thread itself are ignored so a failing send cannot feed
+ * on its own errors.
+ */
+public class InfoAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
     private String prefix;
-    private static final String ELASTIC_SEARCH_API_HOST = "http://10.128.0.45:9200";
-    private static final String ELASTIC_SEARCH_INDEX_NAME = "delivery-logs";
-    private static final WebClient webClient = WebClient.create(ELASTIC_SEARCH_API_HOST);
-    private static final Logger LOGGER = LoggerFactory.getLogger(InfoAppender.class.getName());
+    /**
+     * Put on the queue by {@link #stop()} to wake the shipping thread; never shipped.
+     */
+    private static final ILoggingEvent WAKE_UP = new LoggingEvent();
     public static final DateTimeFormatter ISO_8601_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
             .withZone(ZoneId.systemDefault());
 
-    @Override
-    protected void append(final ILoggingEvent event) {
-        final MapHolder<String, ILoggingEvent> holder = getHolder();
+    private String url = "http://10.128.0.45:9200";
+    private String index = "delivery-logs";
+    private int queueSize = 8192;
+    private int batchSize = 500;
+    private int maxBatchBytes = 5 * 1024 * 1024;
+    private long flushIntervalMillis = 1000;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+    private long blockTimeoutMillis = 100;
+    private int sampleRate = 10;
+    private int maxRetries = 2;
+    private long retryBackoffMillis = 200;
+    private long requestTimeoutMillis = 10_000;
+    private long shutdownTimeoutMillis = 5_000;
+
+    private final LongAdder shipped = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private BlockingQueue<ILoggingEvent> queue;
+    private HttpClient httpClient;
+    private URI bulkUri;
+    private Thread worker;
+    private volatile boolean shipping;
 
+    @Override
+    public void start() {
         if (prefix == null || "".equals(prefix)) {
             addError("Prefix is not set for MapAppender.");
             return;
         }
-        holder.putEvent(getPrefix() + System.currentTimeMillis(), event);
-        /*holder.putEvent("@timestamp",
-                ISO_8601_FORMAT.format(Instant.ofEpochMilli(event.getTimeStamp())));*/
-//        holder.putEvent("message", event);
-
-        Map<String, Object> loggingEvent = new LinkedHashMap<>();
-        loggingEvent.put("@timestamp",
-                ISO_8601_FORMAT.format(Instant.ofEpochMilli(event.getTimeStamp())));
-        JSONObject json=new JSONObject();
-        json.put("level", event.getLevel());
-        json.put("message",event.getFormattedMessage());      
-       loggingEvent.put("message",json.toString());
-       
-      //System.out.println(event.getLevel());
-        pushlog(loggingEvent);
-    }
-
-    private void pushlog( final Map<String, Object>   holder) {
-        webClient.post()
-                .uri("/{logIndex}/_doc", ELASTIC_SEARCH_INDEX_NAME)
-                .bodyValue(holder)
-                .retrieve()
-                .bodyToMono(Void.class)
-                .onErrorResume(exception -> {
-                    LOGGER.info("Unable to send log to elastic", exception);
-                    return Mono.empty();
-                })
-                .subscribe();
+        if (queueSize < 1 || batchSize < 1 || flushIntervalMillis < 1 || sampleRate < 1) {
+            addError("queueSize, batchSize, flushIntervalMillis and sampleRate must be positive");
+            return;
+        }
+        try {
+            bulkUri = URI.create(url.replaceAll("/+$", "") + "/" + index + "/_bulk");
+        } catch (IllegalArgumentException e) {
+            addError("Invalid Elasticsearch url " + url, e);
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueSize);
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(requestTimeoutMillis))
+                .build();
+        shipping = true;
+        worker = new Thread(this::ship, "elastic-log-shipper-" + getName());
+        worker.setDaemon(true);
+        worker.start();
+        super.start();
+    }
+
+    /**
+     * Stops accepting events and gives the shipping thread up to {@code shutdownTimeoutMillis} to
+     * send what is still queued.
+     */
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        shipping = false;
+        queue.offer(WAKE_UP);
+        try {
+            worker.join(shutdownTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            worker.interrupt();
+            addWarn("Log shipping did not finish within " + shutdownTimeoutMillis + " ms, " + queue.size() + " event(s) lost");
+        }
+        httpClient.shutdown();
+    }
+
+    @Override
+    protected void append(final ILoggingEvent event) {
+        if (Thread.currentThread() == worker) {
+            return;
+        }
+        event.prepareForDeferredProcessing();
+        if (overflowPolicy == OverflowPolicy.SAMPLE && shouldSampleOut(event)) {
+            sampledOut.increment();
+            return;
+        }
+        boolean queued;
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queued = queue.offer(event, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = queue.offer(event);
+        }
+        if (!queued) {
+            dropped.increment();
+        }
+    }
+
+    private boolean shouldSampleOut(ILoggingEvent event) {
+        if (queue.remainingCapacity() * 4 > queueSize || event.getLevel().isGreaterOrEqual(Level.WARN)) {
+            return false;
+        }
+        return sampleCounter.getAndIncrement() % sampleRate != 0;
+    }
+
+    private void ship() {
+        BulkRequestEncoder encoder = new BulkRequestEncoder(Math.min(maxBatchBytes, 1 << 20), ISO_8601_FORMAT);
+        List<ILoggingEvent> drained = new ArrayList<>(batchSize);
+        long deadline = 0;
+        while (true) {
+            boolean stopping = !shipping;
+            long now = System.currentTimeMillis();
+            long wait = encoder.events() == 0 ? flushIntervalMillis : Math.max(0, deadline - now);
+            ILoggingEvent event;
+            try {
+                event = stopping ? queue.poll() : queue.poll(wait, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                dropped.add(encoder.events() + queue.size());
+                return;
+            }
+            if (event == WAKE_UP) {
+                continue;
+            }
+            if (event != null) {
+                if (encoder.events() == 0) {
+                    deadline = System.currentTimeMillis() + flushIntervalMillis;
+                }
+                encoder.add(event);
+                drained.clear();
+                queue.drainTo(drained, batchSize - encoder.events());
+                for (ILoggingEvent next : drained) {
+                    if (next != WAKE_UP) {
+                        encoder.add(next);
+                    }
+                }
+            }
+            boolean due = encoder.events() >= batchSize || encoder.length() >= maxBatchBytes
+                    || System.currentTimeMillis() >= deadline || (stopping && event == null);
+            if (encoder.events() > 0 && due) {
+                send(encoder.toBytes(), encoder.events());
+                encoder.reset();
+            }
+            if (stopping && event == null && encoder.events() == 0) {
+                return;
+            }
+        }
+    }
+
+    private void send(byte[] body, int events) {
+        HttpRequest request = HttpRequest.newBuilder(bulkUri)
+                .timeout(Duration.ofMillis(requestTimeoutMillis))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        for (int attempt = 0; ; attempt++) {
+            String problem;
+            boolean retryable;
+            try {
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                int status = response.statusCode();
+                if (status / 100 == 2) {
+                    shipped.add(events);
+                    if (response.body().contains("\"errors\":true")) {
+                        addWarn("Elasticsearch rejected some of " + events + " log event(s) in a bulk request");
+                    }
+                    return;
+                }
+                problem = "HTTP " + status;
+                retryable = status == 429 || status >= 500;
+            } catch (IOException e) {
+                problem = e.toString();
+                retryable = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.add(events);
+                return;
+            }
+            if (!retryable || attempt >= maxRetries) {
+                failed.add(events);
+                addWarn("Dropping " + events + " log event(s) after " + (attempt + 1) + " attempt(s): " + problem);
+                return;
+            }
+            try {
+                Thread.sleep(retryBackoffMillis << attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.add(events);
+                return;
+            }
+        }
     }
 
     public String getPrefix() {
@@ -70,7 +246,79 @@ public class InfoAppender extends AppenderBase<ILoggingEvent> {
         this.prefix = prefix;
     }
 
-    public MapHolder<String, ILoggingEvent> getHolder() {
-        return MapHolder.create();
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public void setIndex(String index) {
+        this.index = index;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public void setBlockTimeoutMillis(long blockTimeoutMillis) {
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    public void setRequestTimeoutMillis(long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    public long getShippedCount() {
+        return shipped.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public int getQueueDepth() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queueSize;
     }
-}
\ No newline at end of file
+}
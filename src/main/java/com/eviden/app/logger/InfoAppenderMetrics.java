@@ -0,0 +1,70 @@
+package com.eviden.app.logger;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the queue and shipping counters of every {@link InfoAppender} attached to a logger
+ * in {@code context}, tagged with the appender name: {@code log.shipping.queue.depth} and
+ * {@code log.shipping.queue.capacity} as gauges and {@code log.shipping.events} by result
+ * ({@code shipped}, {@code dropped}, {@code sampled-out}, {@code failed}).
+ * <p>
+ * Appenders are looked up once, when the registry binds; an appender attached later is not
+ * picked up. Nothing is registered when no {@code InfoAppender} is attached.
+ */
+public class InfoAppenderMetrics implements MeterBinder {
+
+    private final LoggerContext context;
+
+    public InfoAppenderMetrics(LoggerContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Set<InfoAppender> appenders = new HashSet<>();
+        for (Logger logger : context.getLoggerList()) {
+            Iterator<Appender<ILoggingEvent>> attached = logger.iteratorForAppenders();
+            while (attached.hasNext()) {
+                if (attached.next() instanceof InfoAppender appender) {
+                    appenders.add(appender);
+                }
+            }
+        }
+        for (InfoAppender appender : appenders) {
+            String name = appender.getName() == null ? "" : appender.getName();
+            Gauge.builder("log.shipping.queue.depth", appender, InfoAppender::getQueueDepth)
+                    .description("Log events waiting to be shipped")
+                    .tag("appender", name)
+                    .register(registry);
+            Gauge.builder("log.shipping.queue.capacity", appender, InfoAppender::getQueueCapacity)
+                    .description("Size of the log shipping queue")
+                    .tag("appender", name)
+                    .register(registry);
+            counter(registry, appender, name, "shipped", InfoAppender::getShippedCount);
+            counter(registry, appender, name, "dropped", InfoAppender::getDroppedCount);
+            counter(registry, appender, name, "sampled-out", InfoAppender::getSampledOutCount);
+            counter(registry, appender, name, "failed", InfoAppender::getFailedCount);
+        }
+    }
+
+    private static void counter(MeterRegistry registry, InfoAppender appender, String name, String result,
+                                ToLongFunction<InfoAppender> count) {
+        FunctionCounter.builder("log.shipping.events", appender, a -> count.applyAsLong(a))
+                .description("Log events by what happened to them")
+                .tag("appender", name)
+                .tag("result", result)
+                .register(registry);
+    }
+}
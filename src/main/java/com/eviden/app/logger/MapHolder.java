@@ -1,27 +1,159 @@
 package com.eviden.app.logger;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-public class MapHolder<String, ILoggingEvent> {
-    private Map eventMap = new ConcurrentHashMap<String, ILoggingEvent>();
-    private MapHolder(){}
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
 
-    private static MapHolder MAP_INSTANCE = null;
+/**
+ * Keeps the most recent log events in fixed-size, lock-free ring buffers.
+ * <p>
+ * By default all levels share one ring of {@link #DEFAULT_CAPACITY} events, so memory use is
+ * bounded no matter how long the process runs. Levels can get a ring of their own through
+ * {@link #configure}, which keeps for example the last errors around even while debug output
+ * churns through the shared ring. Writers claim a slot with a single atomic increment and never
+ * wait; readers walk a ring from its newest slot and stop as soon as they have enough matches.
+ */
+public final class MapHolder {
 
-    public static MapHolder create(){
-        if(MAP_INSTANCE == null){
-            MAP_INSTANCE = new MapHolder();
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final Level[] LEVELS = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR};
+
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Ring shared;
+    // indexed like LEVELS; null where a level uses the shared ring
+    private volatile Ring[] byLevel;
+
+    MapHolder() {
+        configure(DEFAULT_CAPACITY, Map.of());
+    }
+
+    private static final class Instance {
+        private static final MapHolder INSTANCE = new MapHolder();
+    }
+
+    public static MapHolder getInstance() {
+        return Instance.INSTANCE;
+    }
+
+    /**
+     * Replaces the rings, dropping the events recorded so far. Capacities are rounded up to a
+     * power of two.
+     */
+    public synchronized void configure(int capacity, Map<Level, Integer> levelCapacities) {
+        Ring[] rings = new Ring[LEVELS.length];
+        for (Map.Entry<Level, Integer> entry : levelCapacities.entrySet()) {
+            rings[indexOf(entry.getKey())] = new Ring(entry.getValue());
+        }
+        shared = new Ring(capacity);
+        byLevel = rings;
+    }
+
+    public void add(ILoggingEvent event) {
+        Ring ring = byLevel[indexOf(event.getLevel())];
+        (ring == null ? shared : ring).add(new RecentLogEvent(sequence.incrementAndGet(), event.getTimeStamp(),
+                event.getLevel().levelStr, event.getLoggerName(), event.getThreadName(), event.getFormattedMessage()));
+    }
+
+    /**
+     * Returns up to {@code limit} of the newest events, newest first.
+     *
+     * @param level        only events of exactly this level, or {@code null} for all levels
+     * @param loggerPrefix only events whose logger name starts with this, or {@code null} for all
+     */
+    public List<RecentLogEvent> recent(int limit, Level level, String loggerPrefix) {
+        List<RecentLogEvent> result = new ArrayList<>(Math.min(limit, 256));
+        if (limit <= 0) {
+            return result;
+        }
+        Ring[] rings = byLevel;
+        if (level != null) {
+            Ring own = rings[indexOf(level)];
+            (own == null ? shared : own).collect(limit, level.levelStr, loggerPrefix, result);
+            return result;
+        }
+        shared.collect(limit, null, loggerPrefix, result);
+        boolean merged = false;
+        for (Ring ring : rings) {
+            if (ring != null) {
+                ring.collect(limit, null, loggerPrefix, result);
+                merged = true;
+            }
+        }
+        if (merged) {
+            result.sort(Comparator.comparingLong(RecentLogEvent::sequence).reversed());
+            if (result.size() > limit) {
+                result.subList(limit, result.size()).clear();
+            }
         }
-        return MAP_INSTANCE;
+        return result;
     }
 
-    public void putEvent(String key,ILoggingEvent value){
-        eventMap.put(key,value);
+    /**
+     * Whether events can be logged at {@code level}, that is TRACE up to ERROR; thresholds such
+     * as OFF have no ring.
+     */
+    public static boolean isEventLevel(Level level) {
+        return level.levelInt >= Level.TRACE_INT && level.levelInt <= Level.ERROR_INT;
     }
 
-    public Map getEventMap(){
-        return eventMap;
+    private static int indexOf(Level level) {
+        return switch (level.levelInt) {
+            case Level.TRACE_INT -> 0;
+            case Level.DEBUG_INT -> 1;
+            case Level.INFO_INT -> 2;
+            case Level.WARN_INT -> 3;
+            case Level.ERROR_INT -> 4;
+            default -> throw new IllegalArgumentException("No ring for level " + level);
+        };
     }
 
-}
\ No newline at end of file
+    private static final class Ring {
+        private final AtomicReferenceArray<Slot> slots;
+        private final int mask;
+        private final AtomicLong next = new AtomicLong();
+
+        private Ring(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+        }
+
+        private void add(RecentLogEvent event) {
+            long position = next.getAndIncrement();
+            slots.set((int) (position & mask), new Slot(position, event));
+        }
+
+        /**
+         * Appends matching events from newest to oldest. A slot that was not written yet, or was
+         * already overwritten by a writer that lapped the reader, does not hold the position
+         * asked for and is skipped.
+         */
+        private void collect(int limit, String level, String loggerPrefix, List<RecentLogEvent> out) {
+            long newest = next.get() - 1;
+            long oldest = Math.max(0, newest - mask);
+            int found = 0;
+            for (long position = newest; position >= oldest && found < limit; position--) {
+                Slot slot = slots.get((int) (position & mask));
+                if (slot == null || slot.position != position) {
+                    continue;
+                }
+                RecentLogEvent event = slot.event;
+                if ((level == null || level.equals(event.level()))
+                        && (loggerPrefix == null || (event.logger() != null && event.logger().startsWith(loggerPrefix)))) {
+                    out.add(event);
+                    found++;
+                }
+            }
+        }
+    }
+
+    private record Slot(long position, RecentLogEvent event) {
+    }
+}
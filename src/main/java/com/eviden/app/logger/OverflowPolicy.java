@@ -0,0 +1,20 @@
+package com.eviden.app.logger;
+
+/**
+ * What {@link InfoAppender} does with an event when its shipping queue cannot take it.
+ */
+public enum OverflowPolicy {
+    /**
+     * Drop the event right away; logging never waits for Elasticsearch.
+     */
+    DROP,
+    /**
+     * Wait up to {@code blockTimeoutMillis} for room in the queue, then drop.
+     */
+    BLOCK,
+    /**
+     * Once the queue is three quarters full keep only every {@code sampleRate}-th event below
+     * WARN; WARN and ERROR events are kept until the queue is full.
+     */
+    SAMPLE
+}
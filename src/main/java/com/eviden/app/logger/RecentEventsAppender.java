@@ -0,0 +1,79 @@
+package com.eviden.app.logger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records every event in {@link MapHolder} so recent log output can be queried over REST.
+ * <p>
+ * {@code capacity} sizes the ring shared by all levels; {@code levelCapacities} gives individual
+ * levels a ring of their own, for example {@code ERROR=512,WARN=512}. The application attaches it
+ * to the root logger with {@link #attachToRoot} rather than through {@code logback.xml}, so that
+ * the appender and the REST endpoint share one {@code MapHolder} class even when devtools
+ * reloads application classes in a separate class loader.
+ */
+public class RecentEventsAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    private int capacity = MapHolder.DEFAULT_CAPACITY;
+    private String levelCapacities;
+
+    public static RecentEventsAppender attachToRoot(int capacity, String levelCapacities) {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        RecentEventsAppender appender = new RecentEventsAppender();
+        appender.setContext(context);
+        appender.setName("recent-events");
+        appender.setCapacity(capacity);
+        appender.setLevelCapacities(levelCapacities);
+        appender.start();
+        context.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(appender);
+        return appender;
+    }
+
+    public void detach() {
+        ((LoggerContext) getContext()).getLogger(Logger.ROOT_LOGGER_NAME).detachAppender(this);
+        stop();
+    }
+
+    @Override
+    public void start() {
+        Map<Level, Integer> capacities = new HashMap<>();
+        if (levelCapacities != null && !levelCapacities.isBlank()) {
+            for (String item : levelCapacities.split(",")) {
+                String[] parts = item.split("=");
+                Level level = parts.length == 2 ? Level.toLevel(parts[0].trim(), null) : null;
+                if (level == null || !MapHolder.isEventLevel(level)) {
+                    addError("Invalid level capacity '" + item.trim() + "', expected LEVEL=capacity");
+                    return;
+                }
+                try {
+                    capacities.put(level, Integer.parseInt(parts[1].trim()));
+                } catch (NumberFormatException e) {
+                    addError("Invalid level capacity '" + item.trim() + "', expected LEVEL=capacity");
+                    return;
+                }
+            }
+        }
+        MapHolder.getInstance().configure(capacity, capacities);
+        super.start();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        MapHolder.getInstance().add(event);
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void setLevelCapacities(String levelCapacities) {
+        this.levelCapacities = levelCapacities;
+    }
+}
@@ -0,0 +1,9 @@
+package com.eviden.app.logger;
+
+/**
+ * Immutable copy of a log event kept by {@link MapHolder}. {@code sequence} increases with every
+ * event recorded, across all levels.
+ */
+public record RecentLogEvent(long sequence, long timestamp, String level, String logger, String thread,
+                             String message) {
+}
@@ -0,0 +1,141 @@
+package com.eviden.app.messaging;
+
+import com.rabbitmq.client.Channel;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Acknowledges the deliveries of one channel in batches with {@code multiple=true}.
+ * <p>
+ * Workers finish deliveries out of order, but a multiple ack covers every tag up to the one
+ * given, so only the contiguous prefix of finished deliveries may be acknowledged. Deliveries are
+ * tracked in arrival order; once {@code batchSize} deliveries at the head have succeeded, one
+ * {@code basicAck} covers them all. Failed deliveries are rejected on their own right away and are
+ * then skipped by later multiple acks, which never name a rejected tag. {@link #flush()} acks
+ * whatever finished prefix is left, for a timer and for shutdown.
+ */
+public final class AckBatcher {
+
+    private static final byte PENDING = 0;
+    private static final byte ACKED = 1;
+    private static final byte REJECTED = 2;
+
+    private final Channel channel;
+    private final int batchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Delivery> outstanding = new ArrayDeque<>();
+    private long ackUpTo;
+    private int unsent;
+    private long ackCalls;
+
+    public AckBatcher(Channel channel, int batchSize) {
+        this.channel = channel;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Registers a delivery; must be called in delivery order, which the consumer thread of a
+     * channel guarantees.
+     */
+    public Delivery received(long deliveryTag) {
+        Delivery delivery = new Delivery(deliveryTag);
+        lock.lock();
+        try {
+            outstanding.addLast(delivery);
+        } finally {
+            lock.unlock();
+        }
+        return delivery;
+    }
+
+    public void ack(Delivery delivery) throws IOException {
+        lock.lock();
+        try {
+            delivery.state = ACKED;
+            advance();
+            if (unsent >= batchSize) {
+                send();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void reject(Delivery delivery, boolean requeue) throws IOException {
+        lock.lock();
+        try {
+            channel.basicNack(delivery.tag, false, requeue);
+            delivery.state = REJECTED;
+            advance();
+            if (unsent >= batchSize) {
+                send();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            if (unsent > 0) {
+                send();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of {@code basicAck} calls made so far.
+     */
+    public long getAckCalls() {
+        lock.lock();
+        try {
+            return ackCalls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getOutstanding() {
+        lock.lock();
+        try {
+            return outstanding.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void advance() {
+        Delivery head;
+        while ((head = outstanding.peekFirst()) != null && head.state != PENDING) {
+            outstanding.pollFirst();
+            if (head.state == ACKED) {
+                ackUpTo = head.tag;
+                unsent++;
+            }
+        }
+    }
+
+    private void send() throws IOException {
+        channel.basicAck(ackUpTo, true);
+        unsent = 0;
+        ackCalls++;
+    }
+
+    public static final class Delivery {
+        private final long tag;
+        private byte state;
+
+        private Delivery(long tag) {
+            this.tag = tag;
+        }
+
+        public long getTag() {
+            return tag;
+        }
+    }
+}
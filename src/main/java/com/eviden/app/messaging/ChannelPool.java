@@ -0,0 +1,93 @@
+package com.eviden.app.messaging;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pool of channels on one shared connection for short operations such as publishing.
+ * <p>
+ * Channels are not meant to be used by several threads at once, and opening one costs a round
+ * trip to the broker, so callers borrow an idle channel, use it and hand it back. At most
+ * {@code maxIdle} channels are kept; a channel that was closed, for example by a channel-level
+ * error, is dropped instead of being returned.
+ */
+public final class ChannelPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelPool.class);
+
+    private final Connection connection;
+    private final BlockingQueue<Channel> idle;
+
+    public ChannelPool(Connection connection, int maxIdle) {
+        this.connection = connection;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, maxIdle));
+    }
+
+    public <T> T execute(ChannelCallback<T> callback) throws IOException {
+        Channel channel = borrow();
+        boolean healthy = false;
+        try {
+            T result = callback.doInChannel(channel);
+            healthy = true;
+            return result;
+        } finally {
+            if (healthy) {
+                release(channel);
+            } else {
+                discard(channel);
+            }
+        }
+    }
+
+    public Channel borrow() throws IOException {
+        Channel channel;
+        while ((channel = idle.poll()) != null) {
+            if (channel.isOpen()) {
+                return channel;
+            }
+        }
+        return connection.createChannel();
+    }
+
+    public void release(Channel channel) {
+        if (!channel.isOpen() || !idle.offer(channel)) {
+            discard(channel);
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        Channel channel;
+        while ((channel = idle.poll()) != null) {
+            discard(channel);
+        }
+    }
+
+    private static void discard(Channel channel) {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            logger.debug("Ignoring failure to close channel {}", channel.getChannelNumber(), e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ChannelCallback<T> {
+
+        T doInChannel(Channel channel) throws IOException;
+    }
+}
@@ -0,0 +1,13 @@
+package com.eviden.app.messaging;
+
+import com.rabbitmq.client.AMQP;
+
+/**
+ * Processes one message taken from a queue by the {@code ConsumerService}. Runs on a virtual
+ * thread; the message is acknowledged when this returns and rejected when it throws.
+ */
+@FunctionalInterface
+public interface MessageHandler {
+
+    void handle(String queue, AMQP.BasicProperties properties, byte[] body) throws Exception;
+}
@@ -0,0 +1,176 @@
+package com.eviden.app.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Groups items submitted one at a time by many threads into batches for a processor.
+ * <p>
+ * A dispatcher thread starts a batch with the first waiting item and closes it at
+ * {@code maxBatchSize} items or {@code maxWait} after it started, whichever comes first. At most
+ * {@code concurrency} batches run at once; while they are all busy the dispatcher does not start
+ * a new batch, so items pile up and the next batch is fuller. Under light load an item waits at
+ * most {@code maxWait}; under heavy load batches fill up and the per-item cost drops.
+ * <p>
+ * The processor returns one result per item in the same order. If it throws, every item of the
+ * batch fails with that exception.
+ */
+public final class MicroBatcher<T, R> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MicroBatcher.class);
+
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Function<List<T>, List<R>> processor;
+    private final BlockingQueue<Pending<T, R>> queue = new LinkedBlockingQueue<>();
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+
+    public MicroBatcher(String name, int maxBatchSize, Duration maxWait, int concurrency,
+                        Function<List<T>, List<R>> processor) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.processor = processor;
+        int threads = Math.max(1, concurrency);
+        this.permits = new Semaphore(threads);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, name + "-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatch, name + "-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<R> submit(T item) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        if (closed) {
+            result.completeExceptionally(new IllegalStateException("Batcher is closed"));
+            return result;
+        }
+        queue.add(new Pending<>(item, result));
+        return result;
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getItemCount() {
+        return items.sum();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stops taking new items, lets running batches finish and fails items that never made it into
+     * a batch.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Pending<T, R> left;
+        while ((left = queue.poll()) != null) {
+            left.result.completeExceptionally(new IllegalStateException("Batcher is closed"));
+        }
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            List<Pending<T, R>> batch = new ArrayList<>(maxBatchSize);
+            boolean permitted = false;
+            try {
+                permits.acquire();
+                permitted = true;
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || left <= 0) {
+                        break;
+                    }
+                    Pending<T, R> next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                executor.execute(() -> run(batch));
+                permitted = false;
+            } catch (InterruptedException e) {
+                // closing: hand a half-built batch back so close() fails it
+                queue.addAll(batch);
+                return;
+            } finally {
+                if (permitted && batch.isEmpty()) {
+                    permits.release();
+                }
+            }
+        }
+    }
+
+    private void run(List<Pending<T, R>> batch) {
+        try {
+            List<T> input = new ArrayList<>(batch.size());
+            for (Pending<T, R> pending : batch) {
+                input.add(pending.item);
+            }
+            List<R> results = processor.apply(input);
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException("Processor returned " + results.size() + " results for "
+                        + batch.size() + " items");
+            }
+            batches.increment();
+            items.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results.get(i));
+            }
+        } catch (RuntimeException | Error e) {
+            logger.error("Batch of {} items failed", batch.size(), e);
+            for (Pending<T, R> pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private record Pending<T, R>(T item, CompletableFuture<R> result) {
+    }
+}
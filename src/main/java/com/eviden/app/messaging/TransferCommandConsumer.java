@@ -0,0 +1,158 @@
+package com.eviden.app.messaging;
+
+import com.eviden.app.dto.TransferCommandReplyDTO;
+import com.eviden.app.dto.TransferDTO;
+import com.eviden.app.dto.TransferItemResultDTO;
+import com.eviden.app.entity.Transfer;
+import com.eviden.app.service.BatchFailureMode;
+import com.eviden.app.service.ConsumerService;
+import com.eviden.app.service.TransferServiceImpl;
+import com.eviden.app.service.TransferStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Applies transfer commands read from {@code transfer.commands.queue} and answers each on its
+ * {@code replyTo} queue, or on {@code transfer.commands.reply-queue} when it has none.
+ * <p>
+ * A command is a {@link TransferDTO} in JSON; the reply is a {@link TransferCommandReplyDTO}
+ * carrying the command's correlation id. Commands arriving on the consumer's worker threads are
+ * grouped by a {@link MicroBatcher} and each group goes through
+ * {@link TransferServiceImpl#transferBatch} in one database transaction with
+ * {@link BatchFailureMode#BEST_EFFORT}, so one bad command does not fail the others. A message is
+ * acknowledged only after its batch committed and its reply was published, so a crash in between
+ * redelivers it: delivery is at least once. When a whole batch fails to commit, e.g. because the
+ * database is down, each of its commands is answered {@link TransferStatus#ROLLED_BACK} and
+ * acknowledged; none of them was applied or recorded, so the client may send them again. Commands are keyed by their AMQP {@code messageId}, or
+ * their correlation id when they have none, and the key is recorded in the same transaction as
+ * the transfer; a redelivered command is answered with the status it got the first time instead
+ * of being applied again. Commands with neither id cannot be told apart and are always applied.
+ * <p>
+ * Consuming starts with the {@link ConsumerService}, e.g. by listing the queue in
+ * {@code rabbitmq.consumer.queues}.
+ */
+@Component
+public class TransferCommandConsumer implements MessageHandler, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferCommandConsumer.class);
+
+    private final ConsumerService consumerService;
+    private final TransferServiceImpl transferService;
+    private final ObjectMapper objectMapper;
+    private final String queue;
+    private final String replyQueue;
+    private final MicroBatcher<Command, TransferStatus> batcher;
+
+    @Autowired
+    public TransferCommandConsumer(ConsumerService consumerService, TransferServiceImpl transferService,
+                                   ObjectMapper objectMapper,
+                                   @Value("${transfer.commands.queue:transfer.commands}") String queue,
+                                   @Value("${transfer.commands.reply-queue:transfer.replies}") String replyQueue,
+                                   @Value("${transfer.commands.batch-size:200}") int batchSize,
+                                   @Value("${transfer.commands.max-wait:20ms}") Duration maxWait,
+                                   @Value("${transfer.commands.concurrency:2}") int concurrency) {
+        this.consumerService = consumerService;
+        this.transferService = transferService;
+        this.objectMapper = objectMapper;
+        this.queue = queue;
+        this.replyQueue = replyQueue;
+        this.batcher = new MicroBatcher<>("transfer-commands", batchSize, maxWait, concurrency, this::applyBatch);
+    }
+
+    /**
+     * Registers as the handler of the command queue once constructed, and so before the
+     * {@link ConsumerService} starts consuming it.
+     */
+    @PostConstruct
+    public void register() {
+        consumerService.register(queue, this);
+    }
+
+    @Override
+    public void handle(String queue, AMQP.BasicProperties properties, byte[] body) throws Exception {
+        String correlationId = properties == null ? null : properties.getCorrelationId();
+        TransferDTO command;
+        try {
+            command = objectMapper.readValue(body, TransferDTO.class);
+        } catch (IOException e) {
+            logger.warn("Unreadable transfer command {}: {}", correlationId, e.getMessage());
+            reply(properties, new TransferCommandReplyDTO(correlationId, null, null, TransferStatus.INVALID));
+            return;
+        }
+        Transfer transfer = new Transfer(command.getSenderAccount(), command.getReceiverAccount(), command.getAmount());
+        String commandId = properties == null || properties.getMessageId() == null ? correlationId
+                : properties.getMessageId();
+        TransferStatus status;
+        try {
+            status = batcher.submit(new Command(commandId, transfer)).get();
+        } catch (ExecutionException e) {
+            // the batch did not commit, so nothing of this command was applied or recorded
+            logger.warn("Transfer command {} rolled back with its batch: {}", commandId, e.getCause().toString());
+            status = TransferStatus.ROLLED_BACK;
+        }
+        reply(properties, new TransferCommandReplyDTO(correlationId, transfer.getSenderAccount(),
+                transfer.getReceiverAccount(), status));
+    }
+
+    public long getBatchCount() {
+        return batcher.getBatchCount();
+    }
+
+    public long getCommandCount() {
+        return batcher.getItemCount();
+    }
+
+    @Override
+    public void close() {
+        batcher.close();
+    }
+
+    private List<TransferStatus> applyBatch(List<Command> commands) {
+        List<Transfer> transfers = new ArrayList<>(commands.size());
+        List<String> commandIds = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            transfers.add(command.transfer());
+            commandIds.add(command.id());
+        }
+        List<TransferItemResultDTO> results = transferService.transferBatch(transfers, BatchFailureMode.BEST_EFFORT,
+                commandIds).getResults();
+        List<TransferStatus> statuses = new ArrayList<>(results.size());
+        for (TransferItemResultDTO result : results) {
+            statuses.add(result.getStatus());
+        }
+        return statuses;
+    }
+
+    private void reply(AMQP.BasicProperties properties, TransferCommandReplyDTO reply) throws IOException, TimeoutException {
+        String target = properties != null && properties.getReplyTo() != null ? properties.getReplyTo() : replyQueue;
+        if (target == null || target.isBlank()) {
+            return;
+        }
+        byte[] body = objectMapper.writeValueAsBytes(reply);
+        AMQP.BasicProperties replyProperties = new AMQP.BasicProperties.Builder()
+                .contentType("application/json")
+                .correlationId(reply.getCorrelationId())
+                .build();
+        consumerService.withChannel(channel -> {
+            channel.basicPublish("", target, replyProperties, body);
+            return null;
+        });
+    }
+
+    private record Command(String id, Transfer transfer) {
+    }
+}
@@ -1,11 +1,47 @@
 package com.eviden.app.repository;
 
 import com.eviden.app.entity.BankAccount;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 
 @Repository
 public interface BankAccountRepository extends JpaRepository<BankAccount, Long> {
     BankAccount findByAccountNumber(String accountNumber);
-}
\ No newline at end of file
+
+    List<BankAccount> findByAccountNumberIn(Collection<String> accountNumbers);
+
+    List<BankAccount> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select a from BankAccount a order by a.id")
+    Stream<BankAccount> streamAllOrderedById();
+
+    /**
+     * Account number and balance of every account, without loading entities.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select a.accountNumber, a.balance from BankAccount a order by a.id")
+    Stream<Object[]> streamBalances();
+
+    @Modifying
+    @Query("update BankAccount a set a.balance = :balance where a.id = :id")
+    int updateBalance(@Param("id") Long id, @Param("balance") long balance);
+}
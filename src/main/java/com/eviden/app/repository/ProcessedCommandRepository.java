@@ -0,0 +1,25 @@
+package com.eviden.app.repository;
+
+import com.eviden.app.entity.ProcessedCommand;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Message ids of applied transfer commands. Not exported by Spring Data REST, rows are only
+ * written together with the transfer they record.
+ */
+@Repository
+@RepositoryRestResource(exported = false)
+public interface ProcessedCommandRepository extends JpaRepository<ProcessedCommand, String> {
+
+    /**
+     * Deletes the commands processed before {@code cutoff}, in epoch milliseconds, in one statement.
+     */
+    @Modifying
+    @Query("delete from ProcessedCommand c where c.processedAt < :cutoff")
+    int deleteProcessedBefore(@Param("cutoff") long cutoff);
+}
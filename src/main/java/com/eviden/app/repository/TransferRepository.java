@@ -0,0 +1,34 @@
+package com.eviden.app.repository;
+
+import com.eviden.app.dto.TransferHistoryItemDTO;
+import com.eviden.app.entity.Transfer;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Committed transfers. The history queries walk the sender and receiver indexes newest first,
+ * starting strictly before {@code (ts, id)}; an {@code or} over both columns could use neither.
+ * Not exported over REST: history is served by {@code /api/bankaccounts/{id}/history} only.
+ */
+@Repository
+@RepositoryRestResource(exported = false)
+public interface TransferRepository extends JpaRepository<Transfer, Long> {
+
+    @Query("select new com.eviden.app.dto.TransferHistoryItemDTO(t.id, t.ts, t.senderAccount, t.receiverAccount, t.amount)"
+            + " from Transfer t where t.senderAccount = :account and (t.ts < :ts or (t.ts = :ts and t.id < :id))"
+            + " order by t.ts desc, t.id desc")
+    List<TransferHistoryItemDTO> findSentBefore(@Param("account") String account, @Param("ts") long ts,
+                                                @Param("id") long id, Limit limit);
+
+    @Query("select new com.eviden.app.dto.TransferHistoryItemDTO(t.id, t.ts, t.senderAccount, t.receiverAccount, t.amount)"
+            + " from Transfer t where t.receiverAccount = :account and (t.ts < :ts or (t.ts = :ts and t.id < :id))"
+            + " order by t.ts desc, t.id desc")
+    List<TransferHistoryItemDTO> findReceivedBefore(@Param("account") String account, @Param("ts") long ts,
+                                                    @Param("id") long id, Limit limit);
+}
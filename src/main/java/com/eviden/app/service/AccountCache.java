@@ -0,0 +1,216 @@
+package com.eviden.app.service;
+
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.utils.AccountNumber;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Read-through cache of accounts keyed by account number, in front of
+ * {@link BankAccountRepository#findByAccountNumber}.
+ * <p>
+ * Entries expire {@code account.cache.ttl} after they were loaded and the oldest entries are
+ * dropped once {@code account.cache.max-size} is exceeded. As a {@link TransferListener} the cache
+ * replaces the balances of cached accounts as soon as a transfer commits. A load that overlaps a
+ * transfer on the same account is not stored, since it may have read the balance from before it.
+ * Returned accounts are shared and must be treated as read-only.
+ * <p>
+ * The counters are also published as {@code bank.account.cache.*} meters.
+ */
+@Service
+public class AccountCache implements TransferListener, MeterBinder {
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final BankAccountRepository bankAccountRepository;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+
+    @Autowired
+    public AccountCache(BankAccountRepository bankAccountRepository,
+                        @Value("${account.cache.max-size:100000}") int maxSize,
+                        @Value("${account.cache.ttl:5m}") Duration ttl) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public BankAccount get(String accountNumber) {
+        if (!AccountNumber.isValid(accountNumber)) {
+            return null;
+        }
+        long now = System.nanoTime();
+        Entry entry = entries.get(accountNumber);
+        if (entry != null) {
+            if (now - entry.loadedAt <= ttlNanos) {
+                hits.increment();
+                return entry.account;
+            }
+            if (entries.remove(accountNumber, entry)) {
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        int stripe = stripeOf(accountNumber);
+        long generation = generations.get(stripe);
+        BankAccount account = bankAccountRepository.findByAccountNumber(accountNumber);
+        if (account != null) {
+            Entry loaded = new Entry(accountNumber, account, now);
+            Entry stored = entries.compute(accountNumber,
+                    (key, current) -> generations.get(stripe) == generation ? loaded : current);
+            if (stored == loaded) {
+                insertionOrder.add(loaded);
+                evict(now);
+            }
+        }
+        return account;
+    }
+
+    /**
+     * Returns the cached account without going to the repository, or {@code null} when it is not
+     * cached or has expired. Only hits are counted, a caller that falls back to {@link #get}
+     * records the miss there.
+     */
+    public BankAccount getIfPresent(String accountNumber) {
+        Entry entry = AccountNumber.isValid(accountNumber) ? entries.get(accountNumber) : null;
+        if (entry == null || System.nanoTime() - entry.loadedAt > ttlNanos) {
+            return null;
+        }
+        hits.increment();
+        return entry.account;
+    }
+
+    @Override
+    public void onTransfer(String senderAccount, String receiverAccount, long amount,
+                           long senderBalance, long receiverBalance) {
+        update(senderAccount, senderBalance);
+        update(receiverAccount, receiverBalance);
+    }
+
+    /**
+     * Replaces the balance of a cached account, keeping its place and age in the cache.
+     */
+    public void update(String accountNumber, long balance) {
+        generations.incrementAndGet(stripeOf(accountNumber));
+        Entry replaced = entries.computeIfPresent(accountNumber, (key, current) -> current.withBalance(balance));
+        if (replaced != null) {
+            updates.increment();
+        }
+    }
+
+    public void invalidate(String accountNumber) {
+        generations.incrementAndGet(stripeOf(accountNumber));
+        entries.remove(accountNumber);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public long expirations() {
+        return expirations.sum();
+    }
+
+    public long updates() {
+        return updates.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("bank.account.cache.size", this, AccountCache::size)
+                .description("Accounts currently cached")
+                .register(registry);
+        counter(registry, "hit", AccountCache::hits);
+        counter(registry, "miss", AccountCache::misses);
+        counter(registry, "eviction", AccountCache::evictions);
+        counter(registry, "expiration", AccountCache::expirations);
+        counter(registry, "update", AccountCache::updates);
+    }
+
+    private void counter(MeterRegistry registry, String result, ToLongFunction<AccountCache> count) {
+        FunctionCounter.builder("bank.account.cache.events", this, cache -> count.applyAsLong(cache))
+                .description("Cache lookups by result, and entries dropped or updated")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Walks the insertion queue from its oldest entry, dropping slots whose entry was already
+     * removed, entries past their ttl, and the oldest live entries while over capacity.
+     */
+    private void evict(long now) {
+        Entry head;
+        while ((head = insertionOrder.peek()) != null) {
+            boolean stale = entries.get(head.accountNumber) != head;
+            boolean expired = now - head.loadedAt > ttlNanos;
+            if (!stale && !expired && entries.size() <= maxSize) {
+                return;
+            }
+            if (insertionOrder.remove(head) && !stale && entries.remove(head.accountNumber, head)) {
+                if (expired) {
+                    expirations.increment();
+                } else {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private static int stripeOf(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    private static final class Entry {
+        private final String accountNumber;
+        private final long loadedAt;
+        private volatile BankAccount account;
+
+        private Entry(String accountNumber, BankAccount account, long loadedAt) {
+            this.accountNumber = accountNumber;
+            this.account = account;
+            this.loadedAt = loadedAt;
+        }
+
+        private Entry withBalance(long balance) {
+            BankAccount copy = new BankAccount(account.getAccountNumber(), account.getAccountName(), balance, account.getType());
+            copy.setId(account.getId());
+            account = copy;
+            return this;
+        }
+    }
+}
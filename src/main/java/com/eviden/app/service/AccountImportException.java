@@ -0,0 +1,20 @@
+package com.eviden.app.service;
+
+/**
+ * Thrown when an account import stops part way. Chunks before the failing one stay committed.
+ */
+public class AccountImportException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long committedRows;
+
+    public AccountImportException(String message, long committedRows, Throwable cause) {
+        super(message + " (" + committedRows + " row(s) committed before the failure)", cause);
+        this.committedRows = committedRows;
+    }
+
+    public long getCommittedRows() {
+        return committedRows;
+    }
+}
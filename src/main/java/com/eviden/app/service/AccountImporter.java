@@ -0,0 +1,241 @@
+package com.eviden.app.service;
+
+import com.eviden.app.dto.AccountImportResultDTO;
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.utils.AccountNumber;
+import com.eviden.app.utils.Money;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Loads accounts from a CSV or NDJSON stream with memory bounded by the chunk size.
+ * <p>
+ * Rows are read one at a time and persisted in chunks of {@code account.import.chunk-size}, one
+ * transaction per chunk. Ids come from the pooled {@code bank_account_seq}, so Hibernate sends
+ * the inserts of a chunk in JDBC batches of {@code hibernate.jdbc.batch_size}; the persistence
+ * context is flushed and cleared after every chunk so it never holds more than one chunk.
+ * <p>
+ * CSV rows are {@code accountNumber,accountName,balance,type} with the balance as a decimal
+ * amount; an optional header row is skipped and fields may be double-quoted. NDJSON rows are
+ * {@link BankAccount} documents as written by {@code /api/bankaccounts/stream}; their
+ * {@code id} is ignored.
+ */
+@Service
+public class AccountImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountImporter.class);
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * Picks the format from a file name: {@code .ndjson}, {@code .jsonl} and {@code .json}
+         * are NDJSON, anything else CSV.
+         */
+        public static Format of(String fileName) {
+            String lower = fileName.toLowerCase(Locale.ROOT);
+            return lower.endsWith(".ndjson") || lower.endsWith(".jsonl") || lower.endsWith(".json") ? NDJSON : CSV;
+        }
+    }
+
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public AccountImporter(EntityManager entityManager, ObjectMapper objectMapper,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${account.import.chunk-size:5000}") int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("account.import.chunk-size must be positive: " + chunkSize);
+        }
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports every row of {@code in}.
+     *
+     * @throws AccountImportException if a row is malformed or a chunk cannot be stored, for
+     *                                example because an account number already exists; earlier
+     *                                chunks stay committed
+     */
+    public AccountImportResultDTO importAccounts(InputStream in, Format format) throws IOException {
+        long start = System.nanoTime();
+        Rows rows = format == Format.CSV ? new CsvRows(in) : new NdjsonRows(in);
+        List<BankAccount> chunk = new ArrayList<>(chunkSize);
+        long committed = 0;
+        int chunks = 0;
+        long chunkLine = 1;
+        while (true) {
+            BankAccount account;
+            try {
+                account = rows.next();
+            } catch (JsonProcessingException | RuntimeException e) {
+                throw new AccountImportException("Line " + rows.line() + ": " + e.getMessage(), committed, e);
+            }
+            if (account != null) {
+                if (chunk.isEmpty()) {
+                    chunkLine = rows.line();
+                }
+                chunk.add(account);
+            }
+            if (chunk.size() == chunkSize || (account == null && !chunk.isEmpty())) {
+                try {
+                    persist(chunk);
+                } catch (RuntimeException e) {
+                    throw new AccountImportException("Chunk starting at line " + chunkLine + " was not stored: "
+                            + e.getMessage(), committed, e);
+                }
+                committed += chunk.size();
+                chunks++;
+                chunk.clear();
+                logger.debug("Imported {} account(s) in {} chunk(s)", committed, chunks);
+            }
+            if (account == null) {
+                break;
+            }
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        long rowsPerSecond = (long) (committed * 1_000_000_000.0 / elapsedNanos);
+        logger.info("Imported {} account(s) from {} in {} chunk(s), {} ms, {} rows/s", committed, format, chunks,
+                elapsedNanos / 1_000_000, rowsPerSecond);
+        return new AccountImportResultDTO(committed, chunks, elapsedNanos / 1_000_000, rowsPerSecond);
+    }
+
+    private void persist(List<BankAccount> chunk) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (BankAccount account : chunk) {
+                entityManager.persist(account);
+            }
+            entityManager.flush();
+            entityManager.clear();
+        });
+    }
+
+    private static BankAccount validated(BankAccount account) {
+        if (!AccountNumber.isValid(account.getAccountNumber())) {
+            throw new IllegalArgumentException("Not an account number: " + account.getAccountNumber());
+        }
+        account.setId(null);
+        return account;
+    }
+
+    private interface Rows {
+        /**
+         * @return the next account, or {@code null} at the end of the stream
+         */
+        BankAccount next() throws IOException;
+
+        /**
+         * The line of the row returned last, starting at 1.
+         */
+        long line();
+    }
+
+    private static final class CsvRows implements Rows {
+        private final BufferedReader reader;
+        private long line;
+
+        private CsvRows(InputStream in) {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public BankAccount next() throws IOException {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                List<String> fields = fields(text);
+                if (line == 1 && fields.get(0).trim().replace("_", "").equalsIgnoreCase("accountnumber")) {
+                    continue;
+                }
+                if (fields.size() != 4) {
+                    throw new IllegalArgumentException("Expected 4 fields but found " + fields.size());
+                }
+                return validated(new BankAccount(fields.get(0).trim(), fields.get(1), Money.parse(fields.get(2)),
+                        fields.get(3).trim()));
+            }
+            return null;
+        }
+
+        @Override
+        public long line() {
+            return line;
+        }
+
+        /**
+         * Splits on commas outside double quotes; {@code ""} inside quotes is a literal quote.
+         */
+        static List<String> fields(String text) {
+            List<String> fields = new ArrayList<>(4);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("Unterminated quoted field");
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    private final class NdjsonRows implements Rows {
+        private final MappingIterator<BankAccount> items;
+
+        private NdjsonRows(InputStream in) throws IOException {
+            this.items = objectMapper.readerFor(BankAccount.class).readValues(in);
+        }
+
+        @Override
+        public BankAccount next() throws IOException {
+            return items.hasNextValue() ? validated(items.nextValue()) : null;
+        }
+
+        @Override
+        public long line() {
+            return items.getCurrentLocation().getLineNr();
+        }
+    }
+}
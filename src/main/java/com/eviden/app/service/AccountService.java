@@ -0,0 +1,136 @@
+package com.eviden.app.service;
+
+import com.eviden.app.dto.AccountPageDTO;
+import com.eviden.app.dto.TransferHistoryItemDTO;
+import com.eviden.app.dto.TransferHistoryPageDTO;
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.repository.TransferRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Account listings that do not load the whole table: keyset pages on {@code id} and an NDJSON
+ * stream that detaches every entity once it has been written, so memory use does not grow with
+ * the number of accounts. Transfer history is paged the same way on {@code (ts, id)}, so a page
+ * costs the same however much history an account has.
+ */
+@Service
+public class AccountService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountService.class);
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final int FLUSH_EVERY = 500;
+
+    private final BankAccountRepository bankAccountRepository;
+    private final TransferRepository transferRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public AccountService(BankAccountRepository bankAccountRepository, TransferRepository transferRepository,
+                          EntityManager entityManager, ObjectMapper objectMapper,
+                          PlatformTransactionManager transactionManager) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.transferRepository = transferRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public AccountPageDTO page(long after, int size) {
+        int limit = Math.max(1, Math.min(MAX_PAGE_SIZE, size));
+        List<BankAccount> items = bankAccountRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+        Long nextCursor = items.size() < limit ? null : items.get(items.size() - 1).getId();
+        return new AccountPageDTO(items, nextCursor);
+    }
+
+    /**
+     * Returns the transfers in or out of {@code accountNumber}, newest first. Each page reads at
+     * most {@code size + 1} rows from each of the sender and receiver indexes and merges them.
+     *
+     * @param cursor the {@code nextCursor} of the previous page, {@code null} for the first one
+     * @throws IllegalArgumentException if {@code cursor} was not returned by this method
+     */
+    public TransferHistoryPageDTO history(String accountNumber, String cursor, int size) {
+        int limit = Math.max(1, Math.min(MAX_PAGE_SIZE, size));
+        long ts = Long.MAX_VALUE;
+        long id = Long.MAX_VALUE;
+        if (cursor != null) {
+            int separator = cursor.indexOf('-');
+            try {
+                ts = Long.parseLong(cursor.substring(0, Math.max(0, separator)));
+                id = Long.parseLong(cursor.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a history cursor: " + cursor, e);
+            }
+        }
+        List<TransferHistoryItemDTO> sent = transferRepository.findSentBefore(accountNumber, ts, id, Limit.of(limit + 1));
+        List<TransferHistoryItemDTO> received = transferRepository.findReceivedBefore(accountNumber, ts, id, Limit.of(limit + 1));
+        List<TransferHistoryItemDTO> items = new ArrayList<>(limit);
+        int s = 0;
+        int r = 0;
+        while (items.size() < limit && (s < sent.size() || r < received.size())) {
+            if (r == received.size() || (s < sent.size() && newer(sent.get(s), received.get(r)))) {
+                items.add(sent.get(s++));
+            } else {
+                items.add(received.get(r++));
+            }
+        }
+        boolean more = s < sent.size() || r < received.size();
+        TransferHistoryItemDTO last = items.isEmpty() ? null : items.get(items.size() - 1);
+        return new TransferHistoryPageDTO(items, more ? last.getTimestamp() + "-" + last.getId() : null);
+    }
+
+    private static boolean newer(TransferHistoryItemDTO a, TransferHistoryItemDTO b) {
+        return a.getTimestamp() != b.getTimestamp() ? a.getTimestamp() > b.getTimestamp() : a.getId() > b.getId();
+    }
+
+    /**
+     * Writes every account as one JSON document per line, in id order.
+     *
+     * @return the number of accounts written
+     */
+    public long writeNdjson(OutputStream out) {
+        ObjectWriter writer = objectMapper.writerFor(BankAccount.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        Long written = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            try (Stream<BankAccount> accounts = bankAccountRepository.streamAllOrderedById();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                for (BankAccount account : (Iterable<BankAccount>) accounts::iterator) {
+                    writer.writeValue(generator, account);
+                    generator.writeRaw('\n');
+                    entityManager.detach(account);
+                    if (++count % FLUSH_EVERY == 0) {
+                        generator.flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return count;
+        });
+        logger.info("Streamed {} accounts", written);
+        return written == null ? 0 : written;
+    }
+}
@@ -0,0 +1,107 @@
+package com.eviden.app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers and counters for the transfer and account read paths, all named {@code bank.*}.
+ * <p>
+ * {@code bank.transfer.stage} times the parts of a single transfer inside the
+ * {@link TransferEngine}: waiting for the stripe locks, loading the accounts, the database
+ * write-through and the {@link TransferListener}s. {@code bank.transfer.outcome} counts transfers
+ * by {@link TransferStatus}, plus {@code ERROR} for transfers that threw. {@code bank.account.query}
+ * times account lookups, listings and transfer history pages. The whole HTTP exchange, including JSON binding, is in
+ * Spring's own {@code http.server.requests}.
+ * <p>
+ * All meters are created up front so the hot path only reads a field and records a duration.
+ * Histogram buckets are switched on per prefix with the
+ * {@code management.metrics.distribution.*} properties rather than in code.
+ */
+@Component
+public class BankMetrics {
+
+    final Timer lockWait;
+    final Timer accountLoad;
+    final Timer writeThrough;
+    final Timer listeners;
+    final Counter errors;
+    private final Map<TransferStatus, Counter> outcomes = new EnumMap<>(TransferStatus.class);
+    private final Timer lookup;
+    private final Timer list;
+    private final Timer page;
+    private final Timer history;
+
+    public BankMetrics(MeterRegistry registry) {
+        lockWait = stage(registry, "lock-wait");
+        accountLoad = stage(registry, "account-load");
+        writeThrough = stage(registry, "write-through");
+        listeners = stage(registry, "listeners");
+        for (TransferStatus status : TransferStatus.values()) {
+            outcomes.put(status, outcome(registry, status.name()));
+        }
+        errors = outcome(registry, "ERROR");
+        lookup = query(registry, "lookup");
+        list = query(registry, "list");
+        page = query(registry, "page");
+        history = query(registry, "history");
+    }
+
+    /**
+     * Metrics that record nothing, for engines built outside Spring.
+     */
+    public static BankMetrics noop() {
+        return new BankMetrics(new CompositeMeterRegistry());
+    }
+
+    public void recordOutcome(TransferStatus status) {
+        outcomes.get(status).increment();
+    }
+
+    public Timer lookup() {
+        return lookup;
+    }
+
+    public Timer list() {
+        return list;
+    }
+
+    public Timer page() {
+        return page;
+    }
+
+    public Timer history() {
+        return history;
+    }
+
+    static void record(Timer timer, long startNanos, long endNanos) {
+        timer.record(endNanos - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer stage(MeterRegistry registry, String stage) {
+        return Timer.builder("bank.transfer.stage")
+                .description("Time spent in one stage of a single transfer")
+                .tag("stage", stage)
+                .register(registry);
+    }
+
+    private static Counter outcome(MeterRegistry registry, String status) {
+        return Counter.builder("bank.transfer.outcome")
+                .description("Single transfers by result")
+                .tag("status", status)
+                .register(registry);
+    }
+
+    private static Timer query(MeterRegistry registry, String query) {
+        return Timer.builder("bank.account.query")
+                .description("Account lookups and listings")
+                .tag("query", query)
+                .register(registry);
+    }
+}
@@ -0,0 +1,11 @@
+package com.eviden.app.service;
+
+/**
+ * What a batch transfer does when some of its items cannot be applied.
+ */
+public enum BatchFailureMode {
+    /** Any rejected item rolls back the whole batch. */
+    ALL_OR_NOTHING,
+    /** Rejected items are skipped and the rest of the batch is committed. */
+    BEST_EFFORT
+}
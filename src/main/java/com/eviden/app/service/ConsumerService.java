@@ -1,35 +1,499 @@
-
 package com.eviden.app.service;
 
+import com.eviden.app.messaging.AckBatcher;
+import com.eviden.app.messaging.ChannelPool;
+import com.eviden.app.messaging.MessageHandler;
 import com.rabbitmq.client.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Long-lived RabbitMQ consumer.
+ * <p>
+ * All work shares one connection. Each queue passed to {@link #connect} is consumed on
+ * {@code rabbitmq.consumer.channels} channels with {@code rabbitmq.consumer.prefetch} unacked
+ * messages each, so the broker keeps every channel busy without flooding the workers. Messages are
+ * handed to virtual threads running the queue's {@link MessageHandler} and acknowledged in
+ * batches through an {@link AckBatcher}; a timer flushes partial batches every
+ * {@code rabbitmq.consumer.ack-interval}. Short operations such as publishing borrow channels from
+ * a {@link ChannelPool} via {@link #withChannel}.
+ * <p>
+ * A message whose handler throws is rejected, and requeued only when
+ * {@code rabbitmq.consumer.requeue-on-failure} is set. With {@code rabbitmq.consumer.dead-letter-suffix}
+ * every consumed queue is declared with a dead-letter queue of the same name plus that suffix, so
+ * rejected messages are kept there instead of being dropped.
+ * <p>
+ * When the connection is lost the service reconnects itself every
+ * {@code rabbitmq.consumer.reconnect-interval} until it succeeds: the pool and the channels of the
+ * dead connection are dropped and every queue that was being consumed is consumed again. Messages
+ * that were in flight are redelivered by the broker. The client library's own recovery is turned
+ * off so the two do not race.
+ * <p>
+ * As a {@link SmartLifecycle} the service consumes {@code rabbitmq.consumer.queues} on startup
+ * when {@code rabbitmq.consumer.auto-startup} is set, and on shutdown cancels its consumers, lets
+ * in-flight messages finish, acknowledges them and closes the connection.
+ */
 @Service
-public class ConsumerService {
-
-    public void connect(final String QUEUE_NAME) throws Exception{
-        try (Connection connection = getConnection()) {
-            try (Channel channel = connection.createChannel()) {
-                channel.queueDeclare(QUEUE_NAME, false, false, false, null);
-                Consumer consumer = new DefaultConsumer(channel) {
-                    @Override
-                    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
-                                               byte[] body) throws IOException {
-                        String message = new String(body, "UTF-8");
-                        System.out.println("Received message: " + message);
+public class ConsumerService implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerService.class);
+
+    private static final MessageHandler LOGGING_HANDLER = (queue, properties, body) ->
+            logger.info("Received message on {}: {}", queue, new String(body, StandardCharsets.UTF_8));
+
+    private final String host;
+    private final int port;
+    private final int channelsPerQueue;
+    private final int prefetch;
+    private final int ackBatchSize;
+    private final Duration ackInterval;
+    private final Duration shutdownTimeout;
+    private final Duration reconnectInterval;
+    private final boolean requeueOnFailure;
+    private final String deadLetterSuffix;
+    private final boolean autoStartup;
+    private final List<String> startupQueues;
+
+    private final Map<String, MessageHandler> handlers = new ConcurrentHashMap<>();
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+    private final Set<String> queues = new LinkedHashSet<>();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private Connection connection;
+    private ChannelPool channelPool;
+    private ExecutorService workers;
+    private volatile ScheduledExecutorService timer;
+    /** Whether the service holds broker resources that {@link #stop} has to release. */
+    private volatile boolean running;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    @Autowired
+    public ConsumerService(@Value("${rabbitmq.host:localhost}") String host,
+                           @Value("${rabbitmq.port:5672}") int port,
+                           @Value("${rabbitmq.consumer.channels:2}") int channelsPerQueue,
+                           @Value("${rabbitmq.consumer.prefetch:250}") int prefetch,
+                           @Value("${rabbitmq.consumer.ack-batch-size:50}") int ackBatchSize,
+                           @Value("${rabbitmq.consumer.ack-interval:200ms}") Duration ackInterval,
+                           @Value("${rabbitmq.consumer.shutdown-timeout:10s}") Duration shutdownTimeout,
+                           @Value("${rabbitmq.consumer.reconnect-interval:5s}") Duration reconnectInterval,
+                           @Value("${rabbitmq.consumer.requeue-on-failure:false}") boolean requeueOnFailure,
+                           @Value("${rabbitmq.consumer.dead-letter-suffix:}") String deadLetterSuffix,
+                           @Value("${rabbitmq.consumer.auto-startup:false}") boolean autoStartup,
+                           @Value("${rabbitmq.consumer.queues:}") String[] startupQueues) {
+        this.host = host;
+        this.port = port;
+        this.channelsPerQueue = Math.max(1, channelsPerQueue);
+        this.prefetch = Math.max(1, prefetch);
+        // a batch must complete well within the prefetch window or the broker stops delivering
+        this.ackBatchSize = Math.max(1, Math.min(ackBatchSize, this.prefetch / 2));
+        this.ackInterval = ackInterval;
+        this.shutdownTimeout = shutdownTimeout;
+        this.reconnectInterval = reconnectInterval;
+        this.requeueOnFailure = requeueOnFailure;
+        this.deadLetterSuffix = deadLetterSuffix == null ? "" : deadLetterSuffix.trim();
+        this.autoStartup = autoStartup;
+        this.startupQueues = Arrays.stream(startupQueues).map(String::trim).filter(q -> !q.isEmpty()).toList();
+    }
+
+    /**
+     * Sets the handler for messages of {@code queue}; takes effect for consumers started later.
+     * Queues without a handler have their messages logged.
+     */
+    public void register(String queue, MessageHandler handler) {
+        handlers.put(queue, handler);
+    }
+
+    /**
+     * Starts consuming {@code queue}, declaring it first. Consuming a queue that is already being
+     * consumed does nothing.
+     */
+    public void connect(final String QUEUE_NAME) throws IOException, TimeoutException {
+        lifecycleLock.lock();
+        try {
+            if (queues.contains(QUEUE_NAME)) {
+                return;
+            }
+            sharedConnection();
+            subscribe(QUEUE_NAME);
+            queues.add(QUEUE_NAME);
+            running = true;
+            logger.info("Consuming {} on {} channels with prefetch {}", QUEUE_NAME, channelsPerQueue, prefetch);
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    /**
+     * Runs {@code callback} on a pooled channel of the shared connection.
+     */
+    public <T> T withChannel(ChannelPool.ChannelCallback<T> callback) throws IOException, TimeoutException {
+        ChannelPool pool;
+        lifecycleLock.lock();
+        try {
+            sharedConnection();
+            pool = channelPool;
+            running = true;
+        } finally {
+            lifecycleLock.unlock();
+        }
+        return pool.execute(callback);
+    }
+
+    @Override
+    public void start() {
+        for (String queue : startupQueues) {
+            try {
+                connect(queue);
+            } catch (IOException | TimeoutException | RuntimeException e) {
+                logger.error("Could not start consuming {}", queue, e);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        lifecycleLock.lock();
+        try {
+            running = false;
+            for (Subscription subscription : subscriptions) {
+                try {
+                    if (subscription.consumerTag != null && subscription.channel.isOpen()) {
+                        subscription.channel.basicCancel(subscription.consumerTag);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not cancel consumer on {}", subscription.queue, e);
+                }
+            }
+            if (workers != null) {
+                workers.shutdown();
+                try {
+                    if (!workers.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                        logger.warn("Messages still in flight after {}, they will be redelivered", shutdownTimeout);
+                        workers.shutdownNow();
                     }
-                };
-                System.out.println("consumer " + consumer);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    workers.shutdownNow();
+                }
             }
+            if (timer != null) {
+                timer.shutdownNow();
+            }
+            for (Subscription subscription : subscriptions) {
+                flush(subscription);
+                closeQuietly(subscription.channel);
+            }
+            subscriptions.clear();
+            queues.clear();
+            if (channelPool != null) {
+                channelPool.close();
+            }
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not close RabbitMQ connection", e);
+                }
+            }
+            connection = null;
+            channelPool = null;
+            workers = null;
+            timer = null;
+        } finally {
+            lifecycleLock.unlock();
         }
     }
 
-    Connection getConnection() throws IOException, TimeoutException {
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return autoStartup;
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    protected Connection getConnection() throws IOException, TimeoutException {
         ConnectionFactory factory = new ConnectionFactory();
-        factory.setHost("localhost");
-        return factory.newConnection();
+        factory.setHost(host);
+        factory.setPort(port);
+        factory.setAutomaticRecoveryEnabled(false);
+        return factory.newConnection("retail-banking-consumer");
+    }
+
+    /**
+     * Opens the shared connection and the worker and timer threads on first use, and again after
+     * the connection was lost; the pool and the subscriptions of a lost connection are dropped,
+     * see {@link #reconnect}. Must be called with {@code lifecycleLock} held.
+     */
+    private Connection sharedConnection() throws IOException, TimeoutException {
+        if (connection != null && connection.isOpen()) {
+            return connection;
+        }
+        if (channelPool != null) {
+            channelPool.close();
+            channelPool = null;
+        }
+        for (Subscription subscription : subscriptions) {
+            closeQuietly(subscription.channel);
+        }
+        subscriptions.clear();
+        connection = getConnection();
+        connection.addShutdownListener(this::connectionLost);
+        channelPool = new ChannelPool(connection, channelsPerQueue * 2);
+        if (workers == null) {
+            workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rabbit-worker-", 0).factory());
+        }
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "rabbit-consumer-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(1, ackInterval.toMillis());
+            timer.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        return connection;
+    }
+
+    /**
+     * Declares {@code queue}, and its dead-letter queue first when a suffix for it is configured.
+     * Rejected messages reach the dead-letter queue through the default exchange.
+     */
+    private void declare(Channel channel, String queue) throws IOException {
+        if (deadLetterSuffix.isEmpty()) {
+            channel.queueDeclare(queue, false, false, false, null);
+            return;
+        }
+        String deadLetters = queue + deadLetterSuffix;
+        channel.queueDeclare(deadLetters, false, false, false, null);
+        channel.queueDeclare(queue, false, false, false,
+                Map.of("x-dead-letter-exchange", "", "x-dead-letter-routing-key", deadLetters));
+    }
+
+    /**
+     * Declares {@code queue} and starts its consumers on a fresh set of channels. Must be called
+     * with {@code lifecycleLock} held and the shared connection open.
+     */
+    private void subscribe(String queue) throws IOException {
+        MessageHandler handler = handlers.getOrDefault(queue, LOGGING_HANDLER);
+        List<Subscription> started = new ArrayList<>();
+        List<Channel> opened = new ArrayList<>();
+        try {
+            for (int i = 0; i < channelsPerQueue; i++) {
+                Channel channel = connection.createChannel();
+                opened.add(channel);
+                if (i == 0) {
+                    declare(channel, queue);
+                }
+                channel.basicQos(prefetch);
+                AckBatcher acks = new AckBatcher(channel, ackBatchSize);
+                Subscription subscription = new Subscription(queue, channel, acks);
+                started.add(subscription);
+                subscription.consumerTag = channel.basicConsume(queue, false,
+                        new WorkerConsumer(channel, queue, handler, acks, workers));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Channel channel : opened) {
+                closeQuietly(channel);
+            }
+            throw e;
+        }
+        subscriptions.addAll(started);
+    }
+
+    /**
+     * Called by the client when the connection closes. Connections closed by {@link #stop} are left
+     * alone; otherwise a {@link #reconnect} is scheduled. Runs on the connection's own thread, so it
+     * must not wait for {@code lifecycleLock}.
+     */
+    private void connectionLost(ShutdownSignalException cause) {
+        if (cause.isInitiatedByApplication()) {
+            return;
+        }
+        logger.warn("RabbitMQ connection lost: {}", cause.getMessage());
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        ScheduledExecutorService scheduler = timer;
+        if (scheduler == null) {
+            return;
+        }
+        try {
+            scheduler.schedule(this::reconnect, Math.max(1, reconnectInterval.toMillis()), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopped in the meantime
+        }
+    }
+
+    /**
+     * Reopens the shared connection if needed and consumes again every queue passed to
+     * {@link #connect} that has no consumers, retrying later on failure.
+     */
+    private void reconnect() {
+        lifecycleLock.lock();
+        try {
+            if (queues.isEmpty()) {
+                return;
+            }
+            sharedConnection();
+            for (String queue : queues) {
+                if (subscriptions.stream().noneMatch(s -> s.queue.equals(queue))) {
+                    subscribe(queue);
+                    logger.info("Resumed consuming {}", queue);
+                }
+            }
+            running = true;
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            logger.warn("Could not reconnect to RabbitMQ, retrying in {}", reconnectInterval, e);
+            scheduleReconnect();
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private void flushAll() {
+        List<Subscription> current;
+        lifecycleLock.lock();
+        try {
+            current = List.copyOf(subscriptions);
+        } finally {
+            lifecycleLock.unlock();
+        }
+        for (Subscription subscription : current) {
+            flush(subscription);
+        }
+    }
+
+    private void flush(Subscription subscription) {
+        if (!subscription.channel.isOpen()) {
+            return;
+        }
+        try {
+            subscription.acks.flush();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not acknowledge messages of {}", subscription.queue, e);
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            if (channel.isOpen()) {
+                channel.close();
+            }
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            logger.debug("Ignoring failure to close channel", e);
+        }
+    }
+
+    private final class WorkerConsumer extends DefaultConsumer {
+
+        private final String queue;
+        private final MessageHandler handler;
+        private final AckBatcher acks;
+        private final ExecutorService executor;
+
+        private WorkerConsumer(Channel channel, String queue, MessageHandler handler, AckBatcher acks,
+                               ExecutorService executor) {
+            super(channel);
+            this.queue = queue;
+            this.handler = handler;
+            this.acks = acks;
+            this.executor = executor;
+        }
+
+        @Override
+        public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
+                                   byte[] body) throws IOException {
+            received.increment();
+            AckBatcher.Delivery delivery = acks.received(envelope.getDeliveryTag());
+            try {
+                executor.execute(() -> process(delivery, properties, body));
+            } catch (RejectedExecutionException e) {
+                // shutting down: give the message back so another consumer gets it
+                acks.reject(delivery, true);
+            }
+        }
+
+        private void process(AckBatcher.Delivery delivery, AMQP.BasicProperties properties, byte[] body) {
+            boolean handled = false;
+            try {
+                handler.handle(queue, properties, body);
+                handled = true;
+                processed.increment();
+            } catch (Exception e) {
+                failed.increment();
+                logger.error("Message {} on {} failed", delivery.getTag(), queue, e);
+            }
+            try {
+                if (handled) {
+                    acks.ack(delivery);
+                } else {
+                    acks.reject(delivery, requeueOnFailure);
+                }
+            } catch (IOException | RuntimeException e) {
+                // the channel is gone; the broker redelivers everything it did not see acknowledged
+                logger.warn("Could not acknowledge message {} on {}", delivery.getTag(), queue, e);
+            }
+        }
+
+        @Override
+        public void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+            if (!sig.isInitiatedByApplication()) {
+                logger.warn("Consumer {} on {} shut down: {}", consumerTag, queue, sig.getMessage());
+            }
+        }
+    }
+
+    private static final class Subscription {
+        private final String queue;
+        private final Channel channel;
+        private final AckBatcher acks;
+        private String consumerTag;
+
+        private Subscription(String queue, Channel channel, AckBatcher acks) {
+            this.queue = queue;
+            this.channel = channel;
+            this.acks = acks;
+        }
     }
 }
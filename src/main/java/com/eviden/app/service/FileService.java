@@ -1,16 +1,71 @@
 package com.eviden.app.service;
 
+import com.eviden.app.archive.ArchiveStats;
+import com.eviden.app.archive.ParallelZipArchiver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 @Service
-public class FileService {
+public class FileService implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileService.class);
+
+    private final ParallelZipArchiver parallelZipArchiver;
+    private final Path baseDir;
+
+    @Autowired
+    public FileService(@Value("${archive.base-dir:data/exports}") String baseDir,
+                       @Value("${archive.parallelism:0}") int parallelism,
+                       @Value("${archive.block-size:1MB}") DataSize blockSize,
+                       @Value("${archive.compression-level:6}") int compressionLevel,
+                       @Value("${archive.buffer-size:256KB}") DataSize bufferSize,
+                       @Value("${archive.stored-extensions:pdf,png,zip}") String[] storedExtensions) {
+        this.baseDir = Paths.get(baseDir).toAbsolutePath().normalize();
+        this.parallelZipArchiver = new ParallelZipArchiver(parallelism, (int) blockSize.toBytes(), compressionLevel,
+                (int) bufferSize.toBytes(), Arrays.asList(storedExtensions));
+    }
+
+    /**
+     * Resolves a path given by a client against {@code archive.base-dir}.
+     *
+     * @throws IllegalArgumentException if the path is blank or leads outside the base directory,
+     *                                  also through a symbolic link
+     */
+    public File resolveArchivePath(String relativePath) throws IOException {
+        if (relativePath == null || relativePath.isBlank()) {
+            throw new IllegalArgumentException("Path is required");
+        }
+        Path resolved = baseDir.resolve(relativePath).normalize();
+        if (!resolved.startsWith(baseDir)) {
+            throw new IllegalArgumentException("Path is outside the archive directory: " + relativePath);
+        }
+        Path existing = resolved;
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing != null && Files.exists(baseDir) && !existing.toRealPath().startsWith(baseDir.toRealPath())) {
+            throw new IllegalArgumentException("Path is outside the archive directory: " + relativePath);
+        }
+        return resolved.toFile();
+    }
 
     public void addFilesToZip(File file, String fileName, ZipOutputStream zos) throws IOException {
         if (file.isDirectory()) {
@@ -40,4 +95,36 @@ public class FileService {
             }
         }
     }
+
+    /**
+     * Zips {@code directory} into {@code zipFile} with the same entry names as
+     * {@link #addFilesToZip}, deflating blocks of each file in parallel.
+     */
+    public void zipParallel(File directory, File zipFile) throws IOException {
+        parallelZipArchiver.archive(directory.toPath(), zipFile.toPath());
+    }
+
+    /**
+     * Like {@link #zipParallel}, but keeps a manifest next to {@code zipFile} so the next call only
+     * compresses files that changed and copies the rest from the previous archive.
+     */
+    public ArchiveStats zipIncremental(File directory, File zipFile) throws IOException {
+        ArchiveStats stats = parallelZipArchiver.archiveIncremental(directory.toPath(), zipFile.toPath());
+        logger.info("Archived {} into {}: {} entries reused, {} rebuilt ({} bytes compressed)", directory, zipFile,
+                stats.reused(), stats.rebuilt(), stats.rebuiltBytes());
+        return stats;
+    }
+
+    /**
+     * Writes a zip of {@code directory} to {@code out} as it is produced, without staging it on
+     * disk. Leaves {@code out} open.
+     */
+    public void streamZip(File directory, OutputStream out) throws IOException {
+        parallelZipArchiver.archive(directory.toPath(), Channels.newChannel(out));
+    }
+
+    @Override
+    public void close() {
+        parallelZipArchiver.close();
+    }
 }
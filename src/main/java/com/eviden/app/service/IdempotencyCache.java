@@ -0,0 +1,145 @@
+package com.eviden.app.service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, time-evicting cache of results keyed by a client supplied idempotency key.
+ * <p>
+ * The first request for a key runs the action; requests with the same key that arrive while it is
+ * running wait for that same execution instead of starting another one, and later requests get
+ * the stored result straight from memory. Entries expire {@code ttl} after they complete and the
+ * oldest completed entries are dropped once {@code maxEntries} is exceeded. A key reused with a
+ * different fingerprint is rejected with {@link IdempotencyConflictException}. Results that fail,
+ * or that {@code retain} does not accept, are handed to the waiting callers but not kept.
+ */
+public class IdempotencyCache<V> {
+
+    private final ConcurrentHashMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry<V>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Predicate<V> retain;
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+
+    public IdempotencyCache(int maxEntries, Duration ttl, Predicate<V> retain) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttl.toNanos();
+        this.retain = retain;
+    }
+
+    public V execute(String key, String fingerprint, Supplier<V> action) {
+        Entry<V> fresh = null;
+        while (true) {
+            long now = System.nanoTime();
+            Entry<V> existing = entries.get(key);
+            if (existing != null && existing.isExpired(now, ttlNanos)) {
+                entries.remove(key, existing);
+                continue;
+            }
+            if (existing == null) {
+                if (fresh == null) {
+                    fresh = new Entry<>(key, fingerprint);
+                }
+                if (entries.putIfAbsent(key, fresh) == null) {
+                    insertionOrder.add(fresh);
+                    evict(now);
+                    return run(fresh, action);
+                }
+                continue;
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyConflictException(key);
+            }
+            replays.increment();
+            try {
+                return existing.result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long executions() {
+        return executions.sum();
+    }
+
+    public long replays() {
+        return replays.sum();
+    }
+
+    private V run(Entry<V> entry, Supplier<V> action) {
+        executions.increment();
+        V value;
+        boolean keep;
+        try {
+            value = action.get();
+            keep = retain.test(value);
+        } catch (Throwable e) {
+            // duplicates are waiting on the result, it has to complete whatever the action threw
+            entries.remove(entry.key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        if (!keep) {
+            entries.remove(entry.key, entry);
+        }
+        entry.completedAt = System.nanoTime();
+        entry.result.complete(value);
+        return value;
+    }
+
+    /**
+     * Walks the insertion queue from the oldest entry, dropping expired entries and, while the
+     * cache is over capacity, completed ones. Entries still running are skipped, never dropped;
+     * the walk stops at the first completed entry that is kept.
+     */
+    private void evict(long now) {
+        Iterator<Entry<V>> oldestFirst = insertionOrder.iterator();
+        while (oldestFirst.hasNext()) {
+            Entry<V> entry = oldestFirst.next();
+            boolean gone = entries.get(entry.key) != entry;
+            boolean done = entry.result.isDone();
+            if (gone || entry.isExpired(now, ttlNanos) || (done && entries.size() > maxEntries)) {
+                oldestFirst.remove();
+                entries.remove(entry.key, entry);
+            } else if (done) {
+                return;
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        private final String key;
+        private final String fingerprint;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        private Entry(String key, String fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean isExpired(long now, long ttlNanos) {
+            return result.isDone() && now - completedAt > ttlNanos;
+        }
+    }
+}
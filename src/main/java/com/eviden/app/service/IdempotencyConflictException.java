@@ -0,0 +1,13 @@
+package com.eviden.app.service;
+
+/**
+ * Thrown when an idempotency key is reused for a request with a different payload.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public IdempotencyConflictException(String key) {
+        super("Idempotency key " + key + " was already used for a different request");
+    }
+}
@@ -0,0 +1,95 @@
+package com.eviden.app.service;
+
+import com.eviden.app.entity.ProcessedCommand;
+import com.eviden.app.repository.ProcessedCommandRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes {@link ProcessedCommand} rows older than {@code transfer.commands.dedup-retention}, every
+ * {@code transfer.commands.dedup-purge-interval}.
+ * <p>
+ * A row is only needed while the broker may still redeliver its command; once it is gone, a
+ * redelivery of that command would be applied again. The retention must therefore be longer than
+ * any message can sit in the queue, dead-letter queue included. A retention of zero keeps every
+ * row.
+ */
+@Component
+public class ProcessedCommandPurger implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedCommandPurger.class);
+
+    private final ProcessedCommandRepository processedCommandRepository;
+    private final TransactionOperations transactionOperations;
+    private final Duration retention;
+    private final Duration interval;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "processed-command-purger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ProcessedCommandPurger(ProcessedCommandRepository processedCommandRepository,
+                                  TransactionOperations transactionOperations,
+                                  @Value("${transfer.commands.dedup-retention:7d}") Duration retention,
+                                  @Value("${transfer.commands.dedup-purge-interval:1h}") Duration interval) {
+        this.processedCommandRepository = processedCommandRepository;
+        this.transactionOperations = transactionOperations;
+        this.retention = retention;
+        this.interval = interval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (retention.isZero() || retention.isNegative() || interval.isZero() || interval.isNegative()) {
+            logger.info("Processed transfer commands are kept forever");
+            return;
+        }
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deletes the commands processed more than the retention ago.
+     *
+     * @return the number of rows deleted
+     */
+    public int purge() {
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        Integer deleted = transactionOperations.execute(status -> processedCommandRepository.deleteProcessedBefore(cutoff));
+        int count = deleted == null ? 0 : deleted;
+        if (count > 0) {
+            logger.info("Purged {} processed transfer command(s) older than {}", count, retention);
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            purge();
+        } catch (RuntimeException e) {
+            logger.error("Purging processed transfer commands failed, retrying in {}", interval, e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.eviden.app.service;
+
+import com.eviden.app.dto.AccountPageDTO;
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Non-blocking account reads for the reactive API.
+ * <p>
+ * Accounts held by the {@link AccountCache} are returned on the subscribing thread. Everything
+ * else still goes through JPA, which blocks, so those calls run on a bounded elastic scheduler of
+ * {@code account.reactive.threads} threads with at most {@code account.reactive.queued-tasks}
+ * waiting. A request thread is released as soon as the read is scheduled and only a worker is
+ * held while the query runs. Listings are fetched in keyset pages of
+ * {@code account.reactive.page-size} accounts and a page is only queried once the subscriber has
+ * asked for more accounts than the previous pages held.
+ */
+@Service
+public class ReactiveAccountService implements Closeable {
+
+    private final BankAccountRepository bankAccountRepository;
+    private final AccountService accountService;
+    private final AccountCache accountCache;
+    private final int pageSize;
+    private final Scheduler scheduler;
+
+    @Autowired
+    public ReactiveAccountService(BankAccountRepository bankAccountRepository,
+                                  AccountService accountService,
+                                  AccountCache accountCache,
+                                  @Value("${account.reactive.threads:0}") int threads,
+                                  @Value("${account.reactive.queued-tasks:10000}") int queuedTasks,
+                                  @Value("${account.reactive.page-size:500}") int pageSize) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.accountService = accountService;
+        this.accountCache = accountCache;
+        this.pageSize = Math.max(1, Math.min(AccountService.MAX_PAGE_SIZE, pageSize));
+        int workers = threads > 0 ? threads : Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE;
+        this.scheduler = Schedulers.newBoundedElastic(workers, Math.max(1, queuedTasks), "account-reads", 60, true);
+    }
+
+    /**
+     * Looks up one account, empty if it does not exist.
+     */
+    public Mono<BankAccount> findByAccountNumber(String accountNumber) {
+        return Mono.defer(() -> {
+            BankAccount cached = accountCache.getIfPresent(accountNumber);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return Mono.fromCallable(() -> accountCache.get(accountNumber)).subscribeOn(scheduler);
+        });
+    }
+
+    /**
+     * Emits every account in id order.
+     */
+    public Flux<BankAccount> findAll() {
+        return fetchPage(0L)
+                .expand(page -> page.size() < pageSize ? Mono.empty() : fetchPage(page.get(page.size() - 1).getId()))
+                .concatMapIterable(page -> page, 1);
+    }
+
+    public Mono<AccountPageDTO> page(long after, int size) {
+        return Mono.fromCallable(() -> accountService.page(after, size)).subscribeOn(scheduler);
+    }
+
+    @Override
+    public void close() {
+        scheduler.dispose();
+    }
+
+    private Mono<List<BankAccount>> fetchPage(long after) {
+        return Mono.fromCallable(() -> bankAccountRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(pageSize)))
+                .filter(page -> !page.isEmpty())
+                .subscribeOn(scheduler);
+    }
+}
@@ -0,0 +1,452 @@
+package com.eviden.app.service;
+
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.entity.Transfer;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.repository.TransferRepository;
+import com.eviden.app.utils.AccountNumber;
+import com.eviden.app.utils.ConcurrentLongMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps hot account balances in memory and applies transfers to them under striped locks.
+ * <p>
+ * Every account number maps to one of a fixed number of lock stripes. A transfer takes the
+ * stripes of both accounts in ascending stripe order, so two transfers on the same pair of
+ * accounts in opposite directions can never deadlock. While the locks are held the in-memory
+ * balances are authoritative: they are changed, written through to {@link BankAccountRepository}
+ * in a single transaction and restored if that write fails. Required {@link TransferListener}s,
+ * such as the journal, are called inside that transaction, so a transfer they did not accept
+ * never commits.
+ * <p>
+ * Hot accounts are keyed by their {@link AccountNumber#pack packed} account number, so a lookup
+ * parses the number once and then probes a primitive long map instead of hashing a string. At most
+ * {@code transfer.engine.max-hot-accounts} are kept, split evenly over the stripes: loading an
+ * account into a full stripe drops the account of that stripe that was used longest ago, never the
+ * other party of the transfer doing the load. The eviction happens under the stripe's lock, so it
+ * never removes an account another transfer is using.
+ * <p>
+ * Single transfers report their stages and outcome to {@link BankMetrics}. When a
+ * {@link TransferRepository} is given, the write-through also inserts the {@link Transfer} row
+ * that makes up the account history, in the same transaction as the balances.
+ */
+@Service
+public class TransferEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferEngine.class);
+    private static final int DEFAULT_MAX_HOT_ACCOUNTS = 100_000;
+
+    private final BankAccountRepository bankAccountRepository;
+    private final TransactionOperations transactionOperations;
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final ConcurrentLongMap<BankAccount> accounts = new ConcurrentLongMap<>();
+    /** Hot account keys per stripe in access order, guarded by the stripe's lock. */
+    private final List<LinkedHashMap<Long, Boolean>> resident;
+    private final int maxPerStripe;
+    private final List<TransferListener> listeners;
+    private final BankMetrics metrics;
+    private final TransferRepository transferRepository;
+
+    @Autowired
+    public TransferEngine(BankAccountRepository bankAccountRepository,
+                          TransactionOperations transactionOperations,
+                          @Value("${transfer.engine.stripes:64}") int stripeCount,
+                          @Value("${transfer.engine.max-hot-accounts:100000}") int maxHotAccounts,
+                          ObjectProvider<TransferListener> listeners,
+                          BankMetrics metrics,
+                          TransferRepository transferRepository) {
+        this(bankAccountRepository, transactionOperations, stripeCount, listeners.orderedStream().toList(), metrics,
+                transferRepository, maxHotAccounts);
+    }
+
+    public TransferEngine(BankAccountRepository bankAccountRepository,
+                          TransactionOperations transactionOperations,
+                          int stripeCount) {
+        this(bankAccountRepository, transactionOperations, stripeCount, List.of());
+    }
+
+    public TransferEngine(BankAccountRepository bankAccountRepository,
+                          TransactionOperations transactionOperations,
+                          int stripeCount,
+                          List<TransferListener> listeners) {
+        this(bankAccountRepository, transactionOperations, stripeCount, listeners, BankMetrics.noop());
+    }
+
+    public TransferEngine(BankAccountRepository bankAccountRepository,
+                          TransactionOperations transactionOperations,
+                          int stripeCount,
+                          List<TransferListener> listeners,
+                          BankMetrics metrics) {
+        this(bankAccountRepository, transactionOperations, stripeCount, listeners, metrics, null);
+    }
+
+    public TransferEngine(BankAccountRepository bankAccountRepository,
+                          TransactionOperations transactionOperations,
+                          int stripeCount,
+                          List<TransferListener> listeners,
+                          BankMetrics metrics,
+                          TransferRepository transferRepository) {
+        this(bankAccountRepository, transactionOperations, stripeCount, listeners, metrics, transferRepository,
+                DEFAULT_MAX_HOT_ACCOUNTS);
+    }
+
+    public TransferEngine(BankAccountRepository bankAccountRepository,
+                          TransactionOperations transactionOperations,
+                          int stripeCount,
+                          List<TransferListener> listeners,
+                          BankMetrics metrics,
+                          TransferRepository transferRepository,
+                          int maxHotAccounts) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.transferRepository = transferRepository;
+        this.transactionOperations = transactionOperations;
+        this.listeners = listeners;
+        this.metrics = metrics;
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+        // at least two per stripe, so a full stripe always has an account besides the other party to drop
+        this.maxPerStripe = Math.max(2, (Math.max(1, maxHotAccounts) + size - 1) / size);
+        this.resident = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            resident.add(new LinkedHashMap<>(16, 0.75f, true));
+        }
+    }
+
+    /**
+     * Moves {@code amount} minor units from one account to another. On success the result carries
+     * both accounts as they were when the transfer committed, copied before the locks are released.
+     */
+    public TransferResult transfer(String senderAccount, String receiverAccount, long amount) {
+        TransferResult result;
+        try {
+            result = doTransfer(senderAccount, receiverAccount, amount);
+        } catch (RuntimeException e) {
+            metrics.errors.increment();
+            throw e;
+        }
+        metrics.recordOutcome(result.status());
+        return result;
+    }
+
+    private TransferResult doTransfer(String senderAccount, String receiverAccount, long amount) {
+        if (!isValid(senderAccount, receiverAccount, amount)) {
+            return TransferResult.rejected(TransferStatus.INVALID);
+        }
+        long senderKey = AccountNumber.pack(senderAccount);
+        long receiverKey = AccountNumber.pack(receiverAccount);
+        int first = stripeOf(senderKey);
+        int second = stripeOf(receiverKey);
+        long start = System.nanoTime();
+        lock(first, second);
+        try {
+            long locked = System.nanoTime();
+            BankAccount sender = load(senderKey, senderAccount, receiverKey);
+            BankAccount receiver = load(receiverKey, receiverAccount, senderKey);
+            long loaded = System.nanoTime();
+            BankMetrics.record(metrics.lockWait, start, locked);
+            BankMetrics.record(metrics.accountLoad, locked, loaded);
+            if (sender == null || receiver == null) {
+                return TransferResult.rejected(TransferStatus.UNKNOWN_ACCOUNT);
+            }
+            long senderBalance = sender.getBalance();
+            long receiverBalance = receiver.getBalance();
+            TransferStatus status = apply(sender, receiver, amount);
+            if (status != TransferStatus.SUCCESS) {
+                return TransferResult.rejected(status);
+            }
+            long writing = System.nanoTime();
+            boolean[] accepted = {false};
+            try {
+                writeThrough(sender, receiver, amount, accepted);
+            } catch (RuntimeException e) {
+                sender.setBalance(senderBalance);
+                receiver.setBalance(receiverBalance);
+                if (accepted[0]) {
+                    rolledBack(senderAccount, receiverAccount, amount, senderBalance, receiverBalance);
+                }
+                throw e;
+            }
+            long written = System.nanoTime();
+            BankMetrics.record(metrics.writeThrough, writing, written);
+            publish(senderAccount, receiverAccount, amount, sender.getBalance(), receiver.getBalance());
+            BankMetrics.record(metrics.listeners, written, System.nanoTime());
+            return new TransferResult(TransferStatus.SUCCESS, snapshot(sender), snapshot(receiver));
+        } finally {
+            unlock(first, second);
+        }
+    }
+
+    /**
+     * Runs {@code action} while holding the stripes of all given accounts. Used by callers that
+     * change many accounts at once and must not interleave with single transfers on them.
+     */
+    public <T> T withLocks(Collection<String> accountNumbers, Supplier<T> action) {
+        int[] held = accountNumbers.stream()
+                .filter(AccountNumber::isValid)
+                .mapToLong(AccountNumber::pack)
+                .mapToInt(this::stripeOf)
+                .distinct()
+                .sorted()
+                .toArray();
+        int locked = 0;
+        try {
+            for (int stripe : held) {
+                stripes[stripe].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[held[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Runs {@code action} while holding every stripe, so no transfer is between its
+     * {@link #beforeCommit} and the end of its transaction.
+     */
+    public <T> T withAllLocks(Supplier<T> action) {
+        int locked = 0;
+        try {
+            for (ReentrantLock stripe : stripes) {
+                stripe.lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Brings a hot account in line with a balance that was committed outside the engine. The
+     * caller must hold the account's stripe, see {@link #withLocks}.
+     */
+    public void refresh(String accountNumber, long balance) {
+        BankAccount account = account(accountNumber);
+        if (account != null) {
+            account.setBalance(balance);
+        }
+    }
+
+    /**
+     * Hands a transfer to the required {@link TransferListener}s. The caller must hold the stripes
+     * of both accounts and call this inside the transaction that writes the transfer, before it
+     * commits; an exception from a listener must roll that transaction back.
+     */
+    public void beforeCommit(String senderAccount, String receiverAccount, long amount,
+                             long senderBalance, long receiverBalance) {
+        for (TransferListener listener : listeners) {
+            if (listener.isRequired()) {
+                listener.onTransfer(senderAccount, receiverAccount, amount, senderBalance, receiverBalance);
+            }
+        }
+    }
+
+    /**
+     * Like {@link #beforeCommit(String, String, long, long, long)} for the transfers of a batch,
+     * which each required listener gets in one call. The caller must hold the stripes of all
+     * accounts involved.
+     */
+    public void beforeCommit(List<Transfer> transfers, long[] senderBalances, long[] receiverBalances) {
+        for (TransferListener listener : listeners) {
+            if (listener.isRequired()) {
+                listener.onTransfers(transfers, senderBalances, receiverBalances);
+            }
+        }
+    }
+
+    /**
+     * Tells the required {@link TransferListener}s that a transfer passed to {@link #beforeCommit}
+     * did not commit after all; the balances are those both accounts are back to.
+     */
+    public void rolledBack(String senderAccount, String receiverAccount, long amount,
+                           long senderBalance, long receiverBalance) {
+        for (TransferListener listener : listeners) {
+            if (!listener.isRequired()) {
+                continue;
+            }
+            try {
+                listener.onRollback(senderAccount, receiverAccount, amount, senderBalance, receiverBalance);
+            } catch (RuntimeException e) {
+                logger.error("Transfer listener {} could not take back {} -> {}", listener.getClass().getSimpleName(),
+                        senderAccount, receiverAccount, e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the other {@link TransferListener}s of a committed transfer. The caller must hold
+     * the stripes of both accounts. A failing listener is logged and does not undo the transfer,
+     * which is already committed.
+     */
+    public void publish(String senderAccount, String receiverAccount, long amount,
+                        long senderBalance, long receiverBalance) {
+        for (TransferListener listener : listeners) {
+            if (listener.isRequired()) {
+                continue;
+            }
+            try {
+                listener.onTransfer(senderAccount, receiverAccount, amount, senderBalance, receiverBalance);
+            } catch (RuntimeException e) {
+                logger.error("Transfer listener {} failed for {} -> {}", listener.getClass().getSimpleName(),
+                        senderAccount, receiverAccount, e);
+            }
+        }
+    }
+
+    /**
+     * Checks the parts of a transfer that do not depend on account state.
+     */
+    public static boolean isValid(String senderAccount, String receiverAccount, long amount) {
+        return AccountNumber.isValid(senderAccount) && AccountNumber.isValid(receiverAccount)
+                && amount > 0 && !senderAccount.equals(receiverAccount);
+    }
+
+    /**
+     * Moves {@code amount} minor units between two loaded accounts if the sender can cover it.
+     *
+     * @throws ArithmeticException if the receiver's balance would overflow; neither account is changed
+     */
+    public static TransferStatus apply(BankAccount sender, BankAccount receiver, long amount) {
+        if (sender.getBalance() <= amount) {
+            return TransferStatus.INSUFFICIENT_FUNDS;
+        }
+        long receiverBalance = Math.addExact(receiver.getBalance(), amount);
+        sender.setBalance(sender.getBalance() - amount);
+        receiver.setBalance(receiverBalance);
+        return TransferStatus.SUCCESS;
+    }
+
+    /**
+     * Returns the in-memory copy of an account if it is currently hot.
+     */
+    public BankAccount account(String accountNumber) {
+        return AccountNumber.isValid(accountNumber) ? accounts.get(AccountNumber.pack(accountNumber)) : null;
+    }
+
+    /**
+     * Drops an account from memory so the next transfer reloads it from the repository.
+     */
+    public void evict(String accountNumber) {
+        if (!AccountNumber.isValid(accountNumber)) {
+            return;
+        }
+        long key = AccountNumber.pack(accountNumber);
+        int stripe = stripeOf(key);
+        stripes[stripe].lock();
+        try {
+            accounts.remove(key);
+            resident.get(stripe).remove(key);
+        } finally {
+            stripes[stripe].unlock();
+        }
+    }
+
+    int stripeOf(long packedAccountNumber) {
+        int h = Long.hashCode(packedAccountNumber * 0x9E3779B97F4A7C15L);
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Returns the hot account, loading it first if needed, and marks it as just used. The caller
+     * must hold its stripe and that of {@code otherKey}, the other party of the same transfer,
+     * which is never dropped to make room.
+     */
+    private BankAccount load(long key, String accountNumber, long otherKey) {
+        LinkedHashMap<Long, Boolean> keys = resident.get(stripeOf(key));
+        BankAccount account = accounts.get(key);
+        if (account != null) {
+            keys.get(key);
+            return account;
+        }
+        account = bankAccountRepository.findByAccountNumber(accountNumber);
+        if (account == null) {
+            return null;
+        }
+        if (keys.size() >= maxPerStripe) {
+            Iterator<Long> eldest = keys.keySet().iterator();
+            while (eldest.hasNext()) {
+                long candidate = eldest.next();
+                if (candidate != otherKey) {
+                    accounts.remove(candidate);
+                    eldest.remove();
+                    break;
+                }
+            }
+        }
+        keys.put(key, Boolean.TRUE);
+        accounts.put(key, account);
+        logger.debug("Loaded account {} into memory", accountNumber);
+        return account;
+    }
+
+    private static BankAccount snapshot(BankAccount account) {
+        BankAccount copy = new BankAccount(account.getAccountNumber(), account.getAccountName(), account.getBalance(),
+                account.getType());
+        copy.setId(account.getId());
+        return copy;
+    }
+
+    /**
+     * Number of accounts currently held in memory.
+     */
+    public int hotAccounts() {
+        return accounts.size();
+    }
+
+    private void writeThrough(BankAccount sender, BankAccount receiver, long amount, boolean[] accepted) {
+        transactionOperations.executeWithoutResult(status -> {
+            bankAccountRepository.updateBalance(sender.getId(), sender.getBalance());
+            bankAccountRepository.updateBalance(receiver.getId(), receiver.getBalance());
+            if (transferRepository != null) {
+                transferRepository.save(new Transfer(sender.getAccountNumber(), receiver.getAccountNumber(), amount,
+                        System.currentTimeMillis()));
+            }
+            beforeCommit(sender.getAccountNumber(), receiver.getAccountNumber(), amount,
+                    sender.getBalance(), receiver.getBalance());
+            accepted[0] = true;
+        });
+    }
+
+    private void lock(int first, int second) {
+        if (first == second) {
+            stripes[first].lock();
+        } else if (first < second) {
+            stripes[first].lock();
+            stripes[second].lock();
+        } else {
+            stripes[second].lock();
+            stripes[first].lock();
+        }
+    }
+
+    private void unlock(int first, int second) {
+        stripes[first].unlock();
+        if (first != second) {
+            stripes[second].unlock();
+        }
+    }
+}
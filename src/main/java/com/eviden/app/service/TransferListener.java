@@ -0,0 +1,50 @@
+package com.eviden.app.service;
+
+import com.eviden.app.entity.Transfer;
+
+import java.util.List;
+
+/**
+ * Callback for transfers committed by the {@link TransferEngine}.
+ * <p>
+ * Listeners are called while the stripes of both accounts are still held, so calls for the same
+ * account arrive in commit order. Most listeners are called after the new balances have been
+ * committed to the database and a failure is only logged. A {@link #isRequired() required}
+ * listener is called inside the database transaction instead, before it commits: if it throws the
+ * transfer is rolled back, and if the commit fails after it returned it gets
+ * {@link #onRollback}. Amounts and balances are in minor units, see
+ * {@link com.eviden.app.utils.Money}.
+ */
+public interface TransferListener {
+
+    void onTransfer(String senderAccount, String receiverAccount, long amount,
+                    long senderBalance, long receiverBalance);
+
+    /**
+     * Called with the transfers of a batch that commit together, in order, each with the balances
+     * right after it. Calls {@link #onTransfer} for each by default; a listener with a cost per
+     * call, such as waiting for the disk, can take the batch as a whole.
+     */
+    default void onTransfers(List<Transfer> transfers, long[] senderBalances, long[] receiverBalances) {
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            onTransfer(transfer.getSenderAccount(), transfer.getReceiverAccount(), transfer.getAmount(),
+                    senderBalances[i], receiverBalances[i]);
+        }
+    }
+
+    /**
+     * Whether a transfer may only commit once this listener has accepted it.
+     */
+    default boolean isRequired() {
+        return false;
+    }
+
+    /**
+     * Called on a required listener when the commit of a transfer it accepted failed, with the
+     * balances both accounts are back to.
+     */
+    default void onRollback(String senderAccount, String receiverAccount, long amount,
+                            long senderBalance, long receiverBalance) {
+    }
+}
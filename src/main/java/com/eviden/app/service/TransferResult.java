@@ -0,0 +1,16 @@
+package com.eviden.app.service;
+
+import com.eviden.app.entity.BankAccount;
+
+/**
+ * Outcome of a single transfer together with both accounts as they were right after it. The
+ * accounts are copies taken while the {@link TransferEngine} still held their stripes, so they
+ * stay valid however the hot accounts change afterwards; they are {@code null} unless the
+ * transfer succeeded.
+ */
+public record TransferResult(TransferStatus status, BankAccount senderAccount, BankAccount receiverAccount) {
+
+    static TransferResult rejected(TransferStatus status) {
+        return new TransferResult(status, null, null);
+    }
+}
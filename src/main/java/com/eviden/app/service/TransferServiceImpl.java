@@ -4,14 +4,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.repository.ProcessedCommandRepository;
+import com.eviden.app.repository.TransferRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Qualifier;
 import com.eviden.app.entity.BankAccount;
+import com.eviden.app.entity.ProcessedCommand;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import com.eviden.app.dto.BatchTransferResultDTO;
+import com.eviden.app.dto.TransferItemResultDTO;
 import com.eviden.app.entity.Transfer;
+import com.eviden.app.utils.AccountNumber;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.support.TransactionOperations;
 @Service
 @Qualifier("TransferService")
 public class TransferServiceImpl  {
@@ -19,35 +31,267 @@ public class TransferServiceImpl  {
     //@Autowired
     //private AccountRepository accountRepository;
 	private static final Logger logger = LoggerFactory.getLogger(TransferServiceImpl.class);
+    private static final int DEFAULT_MAX_BATCH_SIZE = 10_000;
     private BankAccountRepository bankAccountRepository;
+    private TransferEngine transferEngine;
+    private TransactionOperations transactionOperations;
+    private int batchChunkSize;
+    private int maxBatchSize;
+    private BatchFailureMode defaultFailureMode;
+    private TransferRepository transferRepository;
+    private ProcessedCommandRepository processedCommandRepository;
 
-    public TransferServiceImpl(BankAccountRepository bankAccountRepository){
+    public TransferServiceImpl(BankAccountRepository bankAccountRepository, TransferEngine transferEngine,
+                               TransactionOperations transactionOperations, int batchChunkSize,
+                               BatchFailureMode defaultFailureMode){
+        this(bankAccountRepository, transferEngine, transactionOperations, batchChunkSize, defaultFailureMode, null, null);
+    }
+
+    public TransferServiceImpl(BankAccountRepository bankAccountRepository, TransferEngine transferEngine,
+                               TransactionOperations transactionOperations, int batchChunkSize,
+                               BatchFailureMode defaultFailureMode, TransferRepository transferRepository,
+                               ProcessedCommandRepository processedCommandRepository){
+        this(bankAccountRepository, transferEngine, transactionOperations, batchChunkSize, DEFAULT_MAX_BATCH_SIZE,
+                defaultFailureMode, transferRepository, processedCommandRepository);
+    }
+
+    @Autowired
+    public TransferServiceImpl(BankAccountRepository bankAccountRepository, TransferEngine transferEngine,
+                               TransactionOperations transactionOperations,
+                               @Value("${transfer.batch.chunk-size:1000}") int batchChunkSize,
+                               @Value("${transfer.batch.max-size:10000}") int maxBatchSize,
+                               @Value("${transfer.batch.failure-mode:ALL_OR_NOTHING}") BatchFailureMode defaultFailureMode,
+                               TransferRepository transferRepository,
+                               ProcessedCommandRepository processedCommandRepository){
+        this.transferRepository = transferRepository;
+        this.processedCommandRepository = processedCommandRepository;
         this.bankAccountRepository = bankAccountRepository;
+        this.transferEngine = transferEngine;
+        this.transactionOperations = transactionOperations;
+        this.batchChunkSize = Math.max(1, batchChunkSize);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.defaultFailureMode = defaultFailureMode;
+    }
+
+    /**
+     * Largest number of transfers {@link #transferBatch} takes at once; a whole batch is held in
+     * memory and locked in the {@link TransferEngine} until it commits.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
     }
     public Map<String, Optional<BankAccount>> transfer(Transfer transfer)throws Exception {
-        // Check if both accounts exist
         try
         {
-        	Optional<BankAccount> senderAccount = Optional.of(bankAccountRepository.findByAccountNumber(transfer.getSenderAccount()));       
-            Optional<BankAccount> receiverAccount = Optional.of(bankAccountRepository.findByAccountNumber(transfer.getReceiverAccount()));
-        if (senderAccount.isPresent() && receiverAccount.isPresent()) {
-            // Check if sender has enough balance
-            if (senderAccount.get().getBalance() > transfer.getAmount()) {
-                // Perform the transaction
-                senderAccount.get().setBalance(senderAccount.get().getBalance() - transfer.getAmount());
-                receiverAccount.get().setBalance(receiverAccount.get().getBalance() + transfer.getAmount());
-                bankAccountRepository.save(senderAccount.get());
-                bankAccountRepository.save(receiverAccount.get());
+            TransferResult result = transferEngine.transfer(transfer.getSenderAccount(), transfer.getReceiverAccount(), transfer.getAmount());
+            if (result.status() == TransferStatus.SUCCESS) {
                 Map<String, Optional<BankAccount>> accountMap = new HashMap<>();
-                accountMap.put("senderAccount",receiverAccount);
-                accountMap.put("receiverAccount",receiverAccount);
+                accountMap.put("senderAccount", Optional.of(result.senderAccount()));
+                accountMap.put("receiverAccount", Optional.of(result.receiverAccount()));
                 return accountMap;
             }
-        }
+            logger.info("Transfer from {} to {} rejected: {}", transfer.getSenderAccount(), transfer.getReceiverAccount(), result.status());
         }catch(Exception exc) {
-            logger.error("ErroMsg.{}.stacktrace.{}","Account number is incorrect", exc.getStackTrace());
+            logger.error("ErroMsg.{}.stacktrace.{}","Transfer could not be written", exc.getStackTrace());
             throw exc;
         }
         return null;
     }
+
+    /**
+     * Applies a list of transfers in one database transaction. All involved accounts are loaded
+     * with {@code IN} queries of {@code transfer.batch.chunk-size} account numbers and locked in
+     * the {@link TransferEngine} for the duration of the batch; changes are flushed every
+     * {@code transfer.batch.chunk-size} items so Hibernate can send them as JDBC batches. With
+     * {@link BatchFailureMode#ALL_OR_NOTHING} a single rejected item rolls back the batch and
+     * every applied item is reported as {@link TransferStatus#ROLLED_BACK}.
+     *
+     * @throws IllegalArgumentException if there are more than {@code transfer.batch.max-size} transfers
+     */
+    public BatchTransferResultDTO transferBatch(List<Transfer> transfers, BatchFailureMode failureMode) {
+        return transferBatch(transfers, failureMode, null);
+    }
+
+    /**
+     * Like {@link #transferBatch(List, BatchFailureMode)} for transfers that carry a command id,
+     * such as the message id of a redelivered command. An item whose id was already processed is
+     * not applied again and reports the status it got the first time; the ids of the other items
+     * are recorded in the same transaction as their transfers. Items with a {@code null} id are
+     * always applied.
+     */
+    public BatchTransferResultDTO transferBatch(List<Transfer> transfers, BatchFailureMode failureMode,
+                                                List<String> commandIds) {
+        if (transfers.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch of " + transfers.size() + " transfers exceeds the limit of "
+                    + maxBatchSize);
+        }
+        BatchFailureMode mode = failureMode == null ? defaultFailureMode : failureMode;
+        Set<String> accountNumbers = new HashSet<>();
+        for (Transfer transfer : transfers) {
+            if (AccountNumber.isValid(transfer.getSenderAccount())) {
+                accountNumbers.add(transfer.getSenderAccount());
+            }
+            if (AccountNumber.isValid(transfer.getReceiverAccount())) {
+                accountNumbers.add(transfer.getReceiverAccount());
+            }
+        }
+        TransferStatus[] statuses = new TransferStatus[transfers.size()];
+        long[] senderBalances = new long[statuses.length];
+        long[] receiverBalances = new long[statuses.length];
+        boolean[] replayed = new boolean[statuses.length];
+        return transferEngine.withLocks(accountNumbers, () -> {
+            Map<String, BankAccount> accounts = new HashMap<>();
+            Map<String, Long> originalBalances = new HashMap<>();
+            boolean[] journaled = {false};
+            Boolean committed;
+            try {
+                committed = transactionOperations.execute(tx -> {
+                    List<String> numbers = new ArrayList<>(accountNumbers);
+                    for (int from = 0; from < numbers.size(); from += batchChunkSize) {
+                        List<String> chunk = numbers.subList(from, Math.min(numbers.size(), from + batchChunkSize));
+                        for (BankAccount account : bankAccountRepository.findByAccountNumberIn(chunk)) {
+                            accounts.put(account.getAccountNumber(), account);
+                            originalBalances.put(account.getAccountNumber(), account.getBalance());
+                        }
+                    }
+                    Map<String, TransferStatus> processed = processedCommands(commandIds);
+                    List<ProcessedCommand> newlyProcessed = new ArrayList<>();
+                    long processedAt = System.currentTimeMillis();
+                    int failures = 0;
+                    for (int i = 0; i < statuses.length; i++) {
+                        Transfer transfer = transfers.get(i);
+                        String commandId = commandIds == null ? null : commandIds.get(i);
+                        TransferStatus earlier = commandId == null ? null : processed.get(commandId);
+                        if (earlier != null) {
+                            statuses[i] = earlier;
+                            replayed[i] = true;
+                            continue;
+                        }
+                        statuses[i] = applyBatchItem(transfer, accounts);
+                        if (commandId != null) {
+                            processed.put(commandId, statuses[i]);
+                            newlyProcessed.add(new ProcessedCommand(commandId, statuses[i], processedAt));
+                        }
+                        if (statuses[i] == TransferStatus.SUCCESS) {
+                            senderBalances[i] = accounts.get(transfer.getSenderAccount()).getBalance();
+                            receiverBalances[i] = accounts.get(transfer.getReceiverAccount()).getBalance();
+                        } else {
+                            failures++;
+                        }
+                        if ((i + 1) % batchChunkSize == 0) {
+                            bankAccountRepository.flush();
+                        }
+                    }
+                    if (failures > 0 && mode == BatchFailureMode.ALL_OR_NOTHING) {
+                        tx.setRollbackOnly();
+                        return Boolean.FALSE;
+                    }
+                    if (transferRepository != null) {
+                        long ts = System.currentTimeMillis();
+                        List<Transfer> history = new ArrayList<>(statuses.length - failures);
+                        for (int i = 0; i < statuses.length; i++) {
+                            if (statuses[i] == TransferStatus.SUCCESS && !replayed[i]) {
+                                Transfer transfer = transfers.get(i);
+                                history.add(new Transfer(transfer.getSenderAccount(), transfer.getReceiverAccount(),
+                                        transfer.getAmount(), ts));
+                            }
+                        }
+                        transferRepository.saveAll(history);
+                    }
+                    if (!newlyProcessed.isEmpty()) {
+                        processedCommandRepository.saveAll(newlyProcessed);
+                    }
+                    List<Transfer> applied = new ArrayList<>(statuses.length - failures);
+                    long[] appliedSenderBalances = new long[statuses.length - failures];
+                    long[] appliedReceiverBalances = new long[appliedSenderBalances.length];
+                    for (int i = 0; i < statuses.length; i++) {
+                        if (statuses[i] == TransferStatus.SUCCESS && !replayed[i]) {
+                            appliedSenderBalances[applied.size()] = senderBalances[i];
+                            appliedReceiverBalances[applied.size()] = receiverBalances[i];
+                            applied.add(transfers.get(i));
+                        }
+                    }
+                    // one call for the whole batch, so a syncing journal waits for the disk once
+                    transferEngine.beforeCommit(applied, appliedSenderBalances, appliedReceiverBalances);
+                    journaled[0] = true;
+                    return Boolean.TRUE;
+                });
+            } catch (RuntimeException e) {
+                for (int i = 0; journaled[0] && i < statuses.length; i++) {
+                    if (statuses[i] == TransferStatus.SUCCESS && !replayed[i]) {
+                        Transfer transfer = transfers.get(i);
+                        transferEngine.rolledBack(transfer.getSenderAccount(), transfer.getReceiverAccount(),
+                                transfer.getAmount(), originalBalances.get(transfer.getSenderAccount()),
+                                originalBalances.get(transfer.getReceiverAccount()));
+                    }
+                }
+                throw e;
+            }
+            boolean applied = Boolean.TRUE.equals(committed);
+            if (applied) {
+                for (BankAccount account : accounts.values()) {
+                    transferEngine.refresh(account.getAccountNumber(), account.getBalance());
+                }
+                for (int i = 0; i < statuses.length; i++) {
+                    if (statuses[i] == TransferStatus.SUCCESS && !replayed[i]) {
+                        Transfer transfer = transfers.get(i);
+                        transferEngine.publish(transfer.getSenderAccount(), transfer.getReceiverAccount(),
+                                transfer.getAmount(), senderBalances[i], receiverBalances[i]);
+                    }
+                }
+            }
+            List<TransferItemResultDTO> results = new ArrayList<>(statuses.length);
+            int succeeded = 0;
+            for (int i = 0; i < statuses.length; i++) {
+                TransferStatus status = statuses[i];
+                if (status == TransferStatus.SUCCESS && !applied) {
+                    status = TransferStatus.ROLLED_BACK;
+                }
+                if (status == TransferStatus.SUCCESS) {
+                    succeeded++;
+                }
+                Transfer transfer = transfers.get(i);
+                results.add(new TransferItemResultDTO(i, transfer.getSenderAccount(), transfer.getReceiverAccount(), status));
+            }
+            logger.info("Batch of {} transfers applied with {}: {} succeeded, committed={}", statuses.length, mode, succeeded, applied);
+            return new BatchTransferResultDTO(mode, applied, succeeded, statuses.length - succeeded, results);
+        });
+    }
+
+    private Map<String, TransferStatus> processedCommands(List<String> commandIds) {
+        Map<String, TransferStatus> processed = new HashMap<>();
+        if (commandIds == null) {
+            return processed;
+        }
+        if (processedCommandRepository == null) {
+            throw new IllegalStateException("Command ids need a ProcessedCommandRepository");
+        }
+        Set<String> ids = new HashSet<>(commandIds);
+        ids.remove(null);
+        for (ProcessedCommand command : processedCommandRepository.findAllById(ids)) {
+            processed.put(command.getCommandId(), command.getStatus());
+        }
+        return processed;
+    }
+
+    /**
+     * Applies one item of a batch. A transfer that would overflow the receiver's balance changes
+     * neither account and is reported as {@link TransferStatus#INVALID}, like a single transfer
+     * that is refused with a bad request for the same reason.
+     */
+    private TransferStatus applyBatchItem(Transfer transfer, Map<String, BankAccount> accounts) {
+        if (!TransferEngine.isValid(transfer.getSenderAccount(), transfer.getReceiverAccount(), transfer.getAmount())) {
+            return TransferStatus.INVALID;
+        }
+        BankAccount sender = accounts.get(transfer.getSenderAccount());
+        BankAccount receiver = accounts.get(transfer.getReceiverAccount());
+        if (sender == null || receiver == null) {
+            return TransferStatus.UNKNOWN_ACCOUNT;
+        }
+        try {
+            return TransferEngine.apply(sender, receiver, transfer.getAmount());
+        } catch (ArithmeticException e) {
+            return TransferStatus.INVALID;
+        }
+    }
 }
@@ -0,0 +1,12 @@
+package com.eviden.app.service;
+
+/**
+ * Outcome of a single transfer as decided by the {@link TransferEngine}.
+ */
+public enum TransferStatus {
+    SUCCESS,
+    INSUFFICIENT_FUNDS,
+    UNKNOWN_ACCOUNT,
+    INVALID,
+    ROLLED_BACK
+}
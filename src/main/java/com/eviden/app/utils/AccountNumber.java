@@ -0,0 +1,63 @@
+package com.eviden.app.utils;
+
+/**
+ * Packs decimal account numbers such as {@code "008596512563"} into a single {@code long}.
+ * <p>
+ * The low 57 bits hold the numeric value and the bits above them the number of digits, so
+ * leading zeros survive the round trip and {@code "0123"} and {@code "123"} pack to different
+ * values. Up to {@link #MAX_DIGITS} digits are supported and a packed number is never {@code 0}.
+ */
+public final class AccountNumber {
+
+    public static final int MAX_DIGITS = 17;
+
+    private static final int LENGTH_SHIFT = 57;
+    private static final long VALUE_MASK = (1L << LENGTH_SHIFT) - 1;
+
+    private AccountNumber() {
+    }
+
+    public static boolean isValid(String accountNumber) {
+        if (accountNumber == null || accountNumber.isEmpty() || accountNumber.length() > MAX_DIGITS) {
+            return false;
+        }
+        for (int i = 0; i < accountNumber.length(); i++) {
+            char c = accountNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code accountNumber} is not 1 to 17 ASCII digits
+     */
+    public static long pack(String accountNumber) {
+        if (!isValid(accountNumber)) {
+            throw new IllegalArgumentException("Not an account number: " + accountNumber);
+        }
+        long value = 0;
+        for (int i = 0; i < accountNumber.length(); i++) {
+            value = value * 10 + (accountNumber.charAt(i) - '0');
+        }
+        return ((long) accountNumber.length() << LENGTH_SHIFT) | value;
+    }
+
+    public static String unpack(long packed) {
+        int length = (int) (packed >>> LENGTH_SHIFT);
+        if (length < 1 || length > MAX_DIGITS) {
+            throw new IllegalArgumentException("Not a packed account number: " + packed);
+        }
+        char[] digits = new char[length];
+        long value = packed & VALUE_MASK;
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        if (value != 0) {
+            throw new IllegalArgumentException("Not a packed account number: " + packed);
+        }
+        return new String(digits);
+    }
+}
@@ -0,0 +1,196 @@
+package com.eviden.app.utils;
+
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe map from primitive {@code long} keys to non-null values, without boxing the keys.
+ * <p>
+ * Entries live in two parallel arrays using open addressing with linear probing. Lookups run as
+ * optimistic {@link StampedLock} reads and only fall back to a read lock if a write overlapped
+ * them; writes are serialized by the write lock. Removal shifts the following entries back
+ * instead of leaving tombstones, so lookups never slow down after many removals.
+ */
+public final class ConcurrentLongMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final StampedLock lock = new StampedLock();
+    private Table table;
+    private int size;
+
+    public ConcurrentLongMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public ConcurrentLongMap(int expectedSize) {
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    public V get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Object value = table.find(key);
+            if (lock.validate(stamp)) {
+                return cast(value);
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return cast(table.find(key));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value for {@code key}, or {@code null} if there was none
+     */
+    public V put(long key, V value) {
+        Objects.requireNonNull(value, "value");
+        long stamp = lock.writeLock();
+        try {
+            Table t = table;
+            int slot = t.slotOf(key);
+            Object previous = t.values[slot];
+            if (previous == null) {
+                if (size + 1 > t.values.length >> 1) {
+                    t = resize(t.values.length << 1);
+                    slot = t.slotOf(key);
+                }
+                t.keys[slot] = key;
+                size++;
+            }
+            t.values[slot] = value;
+            return cast(previous);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the removed value, or {@code null} if {@code key} was not present
+     */
+    public V remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            Table t = table;
+            int slot = t.slotOf(key);
+            Object previous = t.values[slot];
+            if (previous != null) {
+                t.delete(slot);
+                size--;
+            }
+            return cast(previous);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private Table resize(int capacity) {
+        Table old = table;
+        Table grown = new Table(capacity);
+        for (int i = 0; i < old.values.length; i++) {
+            if (old.values[i] != null) {
+                int slot = grown.slotOf(old.keys[i]);
+                grown.keys[slot] = old.keys[i];
+                grown.values[slot] = old.values[i];
+            }
+        }
+        table = grown;
+        return grown;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity >> 1 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final Object[] values;
+        private final int mask;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private int home(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        /**
+         * Returns the value for {@code key}. Bounded by the table size so that a racing optimistic
+         * read, which is validated afterwards, can never loop forever.
+         */
+        private Object find(long key) {
+            int i = home(key);
+            for (int probes = 0; probes <= mask; probes++) {
+                Object value = values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[i] == key) {
+                    return value;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * Returns the slot holding {@code key}, or the empty slot where it would be inserted.
+         */
+        private int slotOf(long key) {
+            int i = home(key);
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void delete(int slot) {
+            int gap = slot;
+            values[gap] = null;
+            int i = gap;
+            while (true) {
+                i = (i + 1) & mask;
+                if (values[i] == null) {
+                    return;
+                }
+                int home = home(keys[i]);
+                boolean reachable = gap <= i ? home > gap && home <= i : home > gap || home <= i;
+                if (!reachable) {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    values[i] = null;
+                    gap = i;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.eviden.app.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Single-pass duplicate detection behind {@link Utility#findDuplicates},
+ * {@link Utility#removeDuplicate} and their variants.
+ * <p>
+ * Keys go into an open-addressing table that keeps, next to each key, the index of the element
+ * where it first occurred; a repeated key marks that index in a {@code boolean[]}. A second walk
+ * over the list then picks the marked elements, so results come out in order of first occurrence
+ * without a map entry, list or boxed index per element. {@code long} keys use a table of
+ * primitive longs.
+ * <p>
+ * The parallel variant computes all keys and hashes in parallel first and then splits the key
+ * space by the top bits of the hash: every fork-join task scans the whole hash array but only
+ * handles its own keys, in index order, and writes only the marks of its own first occurrences.
+ * No table has to be merged and the result is the same as the sequential one.
+ */
+final class Duplicates {
+
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final Object NULL = new Object();
+    private static final int MIN_CAPACITY = 16;
+    private static final int INITIAL_EXPECTED = 1 << 12;
+
+    private Duplicates() {
+    }
+
+    static <T> List<T> firstOfRepeated(List<T> list, Function<T, ?> uniqueKey) {
+        boolean[] repeated = new boolean[list.size()];
+        ObjectTable table = new ObjectTable(Math.min(list.size(), INITIAL_EXPECTED));
+        int index = 0;
+        int count = 0;
+        for (T element : list) {
+            Object key = uniqueKey.apply(element);
+            if (key == null) {
+                key = "";
+            }
+            count += mark(repeated, table.putIfAbsent(key, spread(key.hashCode()), index++));
+        }
+        return marked(list, repeated, count);
+    }
+
+    static <T> List<T> firstOfRepeatedByLong(List<T> list, ToLongFunction<? super T> uniqueKey) {
+        boolean[] repeated = new boolean[list.size()];
+        LongTable table = new LongTable(Math.min(list.size(), INITIAL_EXPECTED));
+        int index = 0;
+        int count = 0;
+        for (T element : list) {
+            count += mark(repeated, table.putIfAbsent(uniqueKey.applyAsLong(element), index++));
+        }
+        return marked(list, repeated, count);
+    }
+
+    static <T> List<T> firstOfRepeatedParallel(List<T> list, Function<T, ?> uniqueKey) {
+        if (list.size() < PARALLEL_THRESHOLD) {
+            return firstOfRepeated(list, uniqueKey);
+        }
+        int bits = Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(1, ForkJoinPool.getCommonPoolParallelism()) - 1);
+        return firstOfRepeatedParallel(list, uniqueKey, bits);
+    }
+
+    /**
+     * Splits the keys into {@code 2^bits} partitions, one fork-join task each.
+     */
+    static <T> List<T> firstOfRepeatedParallel(List<T> list, Function<T, ?> uniqueKey, int bits) {
+        int size = list.size();
+        List<T> elements = list instanceof RandomAccess ? list : new ArrayList<>(list);
+        Object[] keys = new Object[size];
+        int[] hashes = new int[size];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            Object key = uniqueKey.apply(elements.get(i));
+            if (key == null) {
+                key = "";
+            }
+            keys[i] = key;
+            hashes[i] = spread(key.hashCode());
+        });
+        int partitions = 1 << bits;
+        int shift = Integer.SIZE - bits;
+        boolean[] repeated = new boolean[size];
+        int count = IntStream.range(0, partitions).parallel().map(partition -> {
+            ObjectTable table = new ObjectTable(Math.min(size / partitions, INITIAL_EXPECTED));
+            int marked = 0;
+            for (int i = 0; i < size; i++) {
+                int hash = hashes[i];
+                if (bits == 0 || hash >>> shift == partition) {
+                    marked += mark(repeated, table.putIfAbsent(keys[i], hash, i));
+                }
+            }
+            return marked;
+        }).sum();
+        return marked(elements, repeated, count);
+    }
+
+    static <T> List<T> distinct(List<T> list) {
+        ObjectTable table = new ObjectTable(Math.min(list.size(), INITIAL_EXPECTED));
+        List<T> distinct = new ArrayList<>();
+        int index = 0;
+        for (T element : list) {
+            Object key = element == null ? NULL : element;
+            if (table.putIfAbsent(key, spread(key.hashCode()), index++) < 0) {
+                distinct.add(element);
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Marks the first occurrence of a key seen again, returning 1 the first time it is marked.
+     */
+    private static int mark(boolean[] repeated, int first) {
+        if (first < 0 || repeated[first]) {
+            return 0;
+        }
+        repeated[first] = true;
+        return 1;
+    }
+
+    private static <T> List<T> marked(List<T> list, boolean[] repeated, int count) {
+        List<T> result = new ArrayList<>(count);
+        if (count == 0) {
+            return result;
+        }
+        int index = 0;
+        for (T element : list) {
+            if (repeated[index++]) {
+                result.add(element);
+                if (result.size() == count) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int capacityFor(int expected) {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expected) * 2 - 1) << 1);
+    }
+
+    /**
+     * Keys with their hash and first index, linear probing, at most half full.
+     */
+    private static final class ObjectTable {
+        private Object[] keys;
+        private int[] hashes;
+        private int[] firsts;
+        private int size;
+
+        private ObjectTable(int expected) {
+            int capacity = capacityFor(expected);
+            keys = new Object[capacity];
+            hashes = new int[capacity];
+            firsts = new int[capacity];
+        }
+
+        /**
+         * @return -1 if {@code key} is new and was stored with {@code index}, otherwise the
+         * index it was first stored with
+         */
+        private int putIfAbsent(Object key, int hash, int index) {
+            int mask = keys.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                Object current = keys[slot];
+                if (current == null) {
+                    keys[slot] = key;
+                    hashes[slot] = hash;
+                    firsts[slot] = index;
+                    if (++size * 2 > keys.length) {
+                        grow();
+                    }
+                    return -1;
+                }
+                if (hashes[slot] == hash && (current == key || current.equals(key))) {
+                    return firsts[slot];
+                }
+            }
+        }
+
+        private void grow() {
+            Object[] oldKeys = keys;
+            int[] oldHashes = hashes;
+            int[] oldFirsts = firsts;
+            int capacity = oldKeys.length << 1;
+            keys = new Object[capacity];
+            hashes = new int[capacity];
+            firsts = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = oldHashes[i] & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    hashes[slot] = oldHashes[i];
+                    firsts[slot] = oldFirsts[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Primitive long keys with their first index plus one, so that zero marks a free slot.
+     */
+    private static final class LongTable {
+        private long[] keys;
+        private int[] firsts;
+        private int size;
+
+        private LongTable(int expected) {
+            int capacity = capacityFor(expected);
+            keys = new long[capacity];
+            firsts = new int[capacity];
+        }
+
+        private int putIfAbsent(long key, int index) {
+            int mask = keys.length - 1;
+            for (int slot = slotOf(key, mask); ; slot = (slot + 1) & mask) {
+                int first = firsts[slot];
+                if (first == 0) {
+                    keys[slot] = key;
+                    firsts[slot] = index + 1;
+                    if (++size * 2 > keys.length) {
+                        grow();
+                    }
+                    return -1;
+                }
+                if (keys[slot] == key) {
+                    return first - 1;
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldFirsts = firsts;
+            int capacity = oldKeys.length << 1;
+            keys = new long[capacity];
+            firsts = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldFirsts[i] != 0) {
+                    int slot = slotOf(oldKeys[i], mask);
+                    while (firsts[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    firsts[slot] = oldFirsts[i];
+                }
+            }
+        }
+
+        private static int slotOf(long key, int mask) {
+            return spread(Long.hashCode(key * 0x9E3779B97F4A7C15L)) & mask;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.eviden.app.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money held in a primitive {@code long} of minor units, so {@code 52000.00} is
+ * {@code 5_200_000}.
+ * <p>
+ * Balances and amounts are stored and added as plain longs, which is exact and allocation free.
+ * Conversions from decimals never round: a value with more than {@link #SCALE} fraction digits or
+ * outside the {@code long} range is rejected. In JSON amounts stay decimal numbers, see
+ * {@link Serializer} and {@link Deserializer}.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+    /** Digits of {@link Long#MAX_VALUE}; no exact amount needs more fraction digits than that. */
+    private static final int MAX_DIGITS = 19;
+
+    private Money() {
+    }
+
+    /**
+     * @throws ArithmeticException if {@code amount} has more than {@link #SCALE} fraction digits
+     *                             or does not fit in a {@code long} of minor units
+     */
+    public static long of(BigDecimal amount) {
+        if (amount.signum() == 0) {
+            return 0;
+        }
+        // checked first: setScale on an exponent such as 1e999999999 computes a power of ten that large
+        if (amount.precision() - amount.scale() > MAX_DIGITS - SCALE || amount.scale() > MAX_DIGITS) {
+            throw new ArithmeticException("Amount out of range: " + amount.precision() + " digits, scale " + amount.scale());
+        }
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @throws NumberFormatException if {@code amount} is not a decimal number
+     * @throws ArithmeticException   see {@link #of(BigDecimal)}
+     */
+    public static long parse(String amount) {
+        return of(new BigDecimal(amount.trim()));
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public static String format(long minorUnits) {
+        return toBigDecimal(minorUnits).toPlainString();
+    }
+
+    /**
+     * Writes minor units as a decimal JSON number with {@link #SCALE} fraction digits.
+     */
+    public static class Serializer extends StdSerializer<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        public Serializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long minorUnits, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeNumber(toBigDecimal(minorUnits));
+        }
+    }
+
+    /**
+     * Reads a decimal JSON number or string into minor units; {@code null} reads as zero.
+     */
+    public static class Deserializer extends StdDeserializer<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        public Deserializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            BigDecimal amount;
+            if (p.hasToken(JsonToken.VALUE_NUMBER_INT) || p.hasToken(JsonToken.VALUE_NUMBER_FLOAT)) {
+                amount = p.getDecimalValue();
+            } else if (p.hasToken(JsonToken.VALUE_STRING)) {
+                try {
+                    amount = new BigDecimal(p.getText().trim());
+                } catch (NumberFormatException e) {
+                    return (Long) ctxt.handleWeirdStringValue(Long.class, p.getText(), "not a decimal amount");
+                }
+            } else {
+                return (Long) ctxt.handleUnexpectedToken(Long.class, p);
+            }
+            try {
+                return of(amount);
+            } catch (ArithmeticException e) {
+                throw ctxt.weirdNumberException(amount, Long.class,
+                        "amounts take at most " + SCALE + " decimal places and must fit in a long of minor units");
+            }
+        }
+
+        @Override
+        public Long getNullValue(DeserializationContext ctxt) {
+            return 0L;
+        }
+    }
+}
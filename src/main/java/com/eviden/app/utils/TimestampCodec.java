@@ -0,0 +1,286 @@
+package com.eviden.app.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Locale;
+
+/**
+ * Converts epoch milliseconds to and from local {@code yyyy-MM-dd HH:mm:ss} timestamps in one
+ * time zone, optionally with a {@code .SSS} millisecond suffix.
+ * <p>
+ * Timestamps that are written or read together tend to fall in the same minute, so the codec
+ * remembers the last minute it formatted as the bytes of {@code yyyy-MM-dd HH:mm:} and only
+ * appends the seconds and milliseconds on a hit; parsing likewise remembers the epoch second
+ * where the last parsed minute starts. A minute is only remembered when the zone offset does not
+ * change inside it. Misses go through immutable {@code java.time} formatters and zone rules.
+ * <p>
+ * Instances are immutable apart from the two remembered minutes, which are published as
+ * immutable objects through volatile fields, so a codec can be shared between threads. The bulk
+ * methods keep the remembered minute in a local for the whole array.
+ */
+public final class TimestampCodec {
+
+    private static final DateTimeFormatter MINUTE = DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:", Locale.ROOT);
+    private static final DateTimeFormatter PARSER = DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss[.SSS]", Locale.ROOT)
+            .withResolverStyle(ResolverStyle.STRICT);
+    private static final int MINUTE_LENGTH = 16;
+
+    private static volatile TimestampCodec systemDefault;
+
+    private final ZoneId zone;
+    private final boolean millis;
+    private final DateTimeFormatter minuteFormatter;
+    private volatile FormattedMinute formatted;
+    private volatile ParsedMinute parsed;
+
+    private TimestampCodec(ZoneId zone, boolean millis) {
+        this.zone = zone;
+        this.millis = millis;
+        this.minuteFormatter = MINUTE.withZone(zone);
+    }
+
+    /**
+     * Formats {@code yyyy-MM-dd HH:mm:ss}, dropping milliseconds.
+     */
+    public static TimestampCodec seconds(ZoneId zone) {
+        return new TimestampCodec(zone, false);
+    }
+
+    /**
+     * Formats {@code yyyy-MM-dd HH:mm:ss.SSS}.
+     */
+    public static TimestampCodec millis(ZoneId zone) {
+        return new TimestampCodec(zone, true);
+    }
+
+    /**
+     * A shared {@link #seconds} codec for the JVM's current default time zone.
+     */
+    public static TimestampCodec systemDefault() {
+        ZoneId zone = ZoneId.systemDefault();
+        TimestampCodec codec = systemDefault;
+        if (codec == null || !codec.zone.equals(zone)) {
+            codec = seconds(zone);
+            systemDefault = codec;
+        }
+        return codec;
+    }
+
+    public ZoneId zone() {
+        return zone;
+    }
+
+    public String format(long epochMilli) {
+        FormattedMinute minute = formatted;
+        if (minute == null || !minute.covers(epochMilli)) {
+            minute = formattedMinute(epochMilli);
+            formatted = minute;
+        }
+        return minute.format(epochMilli, millis);
+    }
+
+    public String[] format(long[] epochMillis) {
+        String[] texts = new String[epochMillis.length];
+        FormattedMinute minute = formatted;
+        for (int i = 0; i < epochMillis.length; i++) {
+            long epochMilli = epochMillis[i];
+            if (minute == null || !minute.covers(epochMilli)) {
+                minute = formattedMinute(epochMilli);
+            }
+            texts[i] = minute.format(epochMilli, millis);
+        }
+        if (minute != null) {
+            formatted = minute;
+        }
+        return texts;
+    }
+
+    /**
+     * Reads {@code yyyy-MM-dd HH:mm:ss} or {@code yyyy-MM-dd HH:mm:ss.SSS}, regardless of the
+     * precision the codec formats with. A local time that falls into a daylight saving gap is moved forward by
+     * the length of the gap; in an overlap the earlier offset wins.
+     *
+     * @throws DateTimeParseException if {@code text} is not such a timestamp or names a date or
+     *                                time that does not exist
+     */
+    public long parse(String text) {
+        ParsedMinute minute = parsed;
+        if (minute != null && minute.matches(text)) {
+            return minute.epochMilli(text);
+        }
+        minute = parsedMinute(text);
+        if (minute == null) {
+            return parseSlow(text);
+        }
+        parsed = minute;
+        return minute.epochMilli(text);
+    }
+
+    /**
+     * @throws DateTimeParseException see {@link #parse(String)}
+     */
+    public long[] parse(String[] texts) {
+        long[] epochMillis = new long[texts.length];
+        ParsedMinute minute = parsed;
+        for (int i = 0; i < texts.length; i++) {
+            String text = texts[i];
+            if (minute == null || !minute.matches(text)) {
+                ParsedMinute next = parsedMinute(text);
+                if (next == null) {
+                    epochMillis[i] = parseSlow(text);
+                    continue;
+                }
+                minute = next;
+            }
+            epochMillis[i] = minute.epochMilli(text);
+        }
+        if (minute != null) {
+            parsed = minute;
+        }
+        return epochMillis;
+    }
+
+    private FormattedMinute formattedMinute(long epochMilli) {
+        long epochSecond = Math.floorDiv(epochMilli, 1000);
+        Instant instant = Instant.ofEpochSecond(epochSecond);
+        int offset = zone.getRules().getOffset(instant).getTotalSeconds();
+        long start = epochSecond - Math.floorMod(epochSecond + offset, 60);
+        if (zone.getRules().getOffset(Instant.ofEpochSecond(start + 59)).getTotalSeconds() != offset
+                || zone.getRules().getOffset(Instant.ofEpochSecond(start)).getTotalSeconds() != offset) {
+            // the offset changes inside this minute, format this one timestamp without remembering it
+            int second = Math.floorMod(epochSecond + offset, 60);
+            return new FormattedMinute(epochSecond, epochSecond + 1, minuteBytes(instant), second);
+        }
+        return new FormattedMinute(start, start + 60, minuteBytes(Instant.ofEpochSecond(start)), 0);
+    }
+
+    private byte[] minuteBytes(Instant instant) {
+        return minuteFormatter.format(instant).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns the minute of a well-formed timestamp, or {@code null} when {@code text} does not
+     * have the exact layout or its minute cannot be remembered.
+     */
+    private ParsedMinute parsedMinute(String text) {
+        if (!ParsedMinute.tailValid(text) || text.charAt(4) != '-' || text.charAt(7) != '-'
+                || text.charAt(10) != ' ' || text.charAt(13) != ':') {
+            return null;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        if ((year | month | day | hour | minute) < 0) {
+            return null;
+        }
+        LocalDateTime local;
+        try {
+            local = LocalDateTime.of(year, month, day, hour, minute);
+        } catch (DateTimeException e) {
+            throw new DateTimeParseException(e.getMessage(), text, 0, e);
+        }
+        long start = local.atZone(zone).toEpochSecond();
+        if (local.plusSeconds(59).atZone(zone).toEpochSecond() != start + 59) {
+            return null;
+        }
+        return new ParsedMinute(text.substring(0, MINUTE_LENGTH), start);
+    }
+
+    private long parseSlow(String text) {
+        LocalDateTime local = LocalDateTime.parse(text, PARSER);
+        return local.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Reads {@code count} ASCII digits, or returns -1 if one of them is not a digit.
+     */
+    private static int digits(String text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static final class FormattedMinute {
+        private final long fromSecond;
+        private final long untilSecond;
+        private final byte[] prefix;
+        private final int firstSecond;
+
+        private FormattedMinute(long fromSecond, long untilSecond, byte[] prefix, int firstSecond) {
+            this.fromSecond = fromSecond;
+            this.untilSecond = untilSecond;
+            this.prefix = prefix;
+            this.firstSecond = firstSecond;
+        }
+
+        private boolean covers(long epochMilli) {
+            long epochSecond = Math.floorDiv(epochMilli, 1000);
+            return epochSecond >= fromSecond && epochSecond < untilSecond;
+        }
+
+        private String format(long epochMilli, boolean millis) {
+            int second = firstSecond + (int) (Math.floorDiv(epochMilli, 1000) - fromSecond);
+            int length = prefix.length;
+            byte[] text = new byte[length + (millis ? 6 : 2)];
+            System.arraycopy(prefix, 0, text, 0, length);
+            text[length] = (byte) ('0' + second / 10);
+            text[length + 1] = (byte) ('0' + second % 10);
+            if (millis) {
+                int milli = Math.floorMod(epochMilli, 1000);
+                text[length + 2] = '.';
+                text[length + 3] = (byte) ('0' + milli / 100);
+                text[length + 4] = (byte) ('0' + milli / 10 % 10);
+                text[length + 5] = (byte) ('0' + milli % 10);
+            }
+            return new String(text, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static final class ParsedMinute {
+        private final String minute;
+        private final long startSecond;
+
+        private ParsedMinute(String minute, long startSecond) {
+            this.minute = minute;
+            this.startSecond = startSecond;
+        }
+
+        private boolean matches(String text) {
+            return text.regionMatches(0, minute, 0, MINUTE_LENGTH) && tailValid(text);
+        }
+
+        /**
+         * Checks that the seconds and optional milliseconds after the minute are well formed.
+         */
+        private static boolean tailValid(String text) {
+            int length = text.length();
+            if (length != MINUTE_LENGTH + 3 && (length != MINUTE_LENGTH + 7 || text.charAt(19) != '.')) {
+                return false;
+            }
+            if (text.charAt(16) != ':') {
+                return false;
+            }
+            int second = digits(text, 17, 2);
+            return second >= 0 && second < 60 && (length == MINUTE_LENGTH + 3 || digits(text, 20, 3) >= 0);
+        }
+
+        private long epochMilli(String text) {
+            long epochMilli = (startSecond + digits(text, 17, 2)) * 1000;
+            return text.length() == MINUTE_LENGTH + 3 ? epochMilli : epochMilli + digits(text, 20, 3);
+        }
+    }
+}
@@ -3,14 +3,10 @@ package com.eviden.app.utils;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 public interface Utility {
 
@@ -19,38 +15,81 @@ public interface Utility {
         return new ResponseEntity<E>(obj, HttpStatus.OK);
     }
 
+    /**
+     * Reads a local {@code yyyy-MM-dd HH:mm:ss} timestamp in the default time zone, see
+     * {@link TimestampCodec#parse(String)}.
+     */
     public static Long  dateToEpoc(String myDate){
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        Date date = null;
-        try {
-            date = dateFormat.parse(myDate);
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
-        }
-       return date.getTime();
+        return TimestampCodec.systemDefault().parse(myDate);
+    }
+
+    /**
+     * Formats epoch milliseconds as a local {@code yyyy-MM-dd HH:mm:ss} timestamp in the default
+     * time zone.
+     */
+    public static String epocToDate(long epoc){
+        return TimestampCodec.systemDefault().format(epoc);
     }
 
+    /**
+     * @deprecated an {@code Integer} only holds the first 24 days after the epoch in milliseconds,
+     * use {@link #epocToDate(long)}
+     */
+    @Deprecated
     public static String epocToDate(Integer epoc){
-        Date date = new Date(epoc);
-        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        return format.format(date);
+        return epocToDate(epoc.longValue());
     }
 
+    /**
+     * Drops repeated elements, keeping the first occurrence of each in list order.
+     */
     public static <T> List<T> removeDuplicate(List<T>  listElements) {
-        return new ArrayList<T>(new LinkedHashSet<>(listElements));
+        return Duplicates.distinct(listElements);
     }
+
+    /**
+     * Returns, for every key that occurs more than once, the first element with that key, in the
+     * order those elements appear in {@code list}. A {@code null} key counts as {@code ""}. The
+     * key function is applied once per element.
+     */
     public static <T> List<T> findDuplicates(List<T> list, Function<T, ?> uniqueKey) {
         if (list == null) {
             return null;
         }
-        Function<T, ?> notNullUniqueKey = el -> uniqueKey.apply(el) == null ? "" : uniqueKey.apply(el);
-        return list.stream()
-                .collect(Collectors.groupingBy(notNullUniqueKey))
-                .values()
-                .stream()
-                .filter(matches -> matches.size() > 1)
-                .map(matches -> matches.get(0))
-                .collect(Collectors.toList());
+        return Duplicates.firstOfRepeated(list, uniqueKey);
+    }
+
+    /**
+     * Same result as {@link #findDuplicates}, computed on the common fork-join pool for lists of
+     * {@value Duplicates#PARALLEL_THRESHOLD} elements or more. {@code uniqueKey} may then be
+     * called from several threads at once.
+     */
+    public static <T> List<T> findDuplicatesParallel(List<T> list, Function<T, ?> uniqueKey) {
+        if (list == null) {
+            return null;
+        }
+        return Duplicates.firstOfRepeatedParallel(list, uniqueKey);
+    }
+
+    /**
+     * {@link #findDuplicates} for primitive {@code long} keys, such as packed account numbers,
+     * without boxing them.
+     */
+    public static <T> List<T> findDuplicatesByLong(List<T> list, ToLongFunction<? super T> uniqueKey) {
+        if (list == null) {
+            return null;
+        }
+        return Duplicates.firstOfRepeatedByLong(list, uniqueKey);
+    }
+
+    /**
+     * {@link #findDuplicates} for primitive {@code int} keys, without boxing them.
+     */
+    public static <T> List<T> findDuplicatesByInt(List<T> list, ToIntFunction<? super T> uniqueKey) {
+        if (list == null) {
+            return null;
+        }
+        return Duplicates.firstOfRepeatedByLong(list, uniqueKey::applyAsInt);
     }
 
 
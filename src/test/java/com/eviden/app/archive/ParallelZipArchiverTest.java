@@ -0,0 +1,291 @@
+package com.eviden.app.archive;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelZipArchiverTest {
+
+    @TempDir
+    Path temp;
+
+    private final ParallelZipArchiver archiver = new ParallelZipArchiver(4, 64 * 1024, 6, 64 * 1024);
+
+    @AfterEach
+    void tearDown() {
+        archiver.close();
+    }
+
+    @Test
+    void crc32Combine_shouldMatchCrcOfConcatenation() {
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            byte[] a = new byte[random.nextInt(5000)];
+            byte[] b = new byte[random.nextInt(5000)];
+            random.nextBytes(a);
+            random.nextBytes(b);
+            CRC32 whole = new CRC32();
+            whole.update(a);
+            whole.update(b);
+            assertEquals(whole.getValue(), Crc32Combine.combine(crc(a), crc(b), b.length));
+        }
+    }
+
+    @Test
+    void archive_shouldRoundTripTreeWithMultiBlockFiles() throws IOException {
+        Path source = sampleTree();
+        Path zip = temp.resolve("out.zip");
+
+        archiver.archive(source, zip);
+
+        Map<String, byte[]> expected = expectedEntries(source);
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            List<String> names = new ArrayList<>();
+            zipFile.stream().forEach(entry -> names.add(entry.getName()));
+            assertEquals(new ArrayList<>(expected.keySet()), names);
+            for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+                ZipEntry entry = zipFile.getEntry(e.getKey());
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    assertArrayEquals(e.getValue(), in.readAllBytes(), e.getKey());
+                }
+            }
+        }
+        // streaming readers rely on the local headers and data descriptors instead
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+            ZipEntry entry;
+            int count = 0;
+            while ((entry = in.getNextEntry()) != null) {
+                assertArrayEquals(expected.get(entry.getName()), in.readAllBytes(), entry.getName());
+                count++;
+            }
+            assertEquals(expected.size(), count);
+        }
+    }
+
+    @Test
+    void archive_shouldCompressComparablyToSingleStream() throws IOException {
+        Path source = Files.createDirectories(temp.resolve("text"));
+        Files.write(source.resolve("log.txt"), text(1_000_000));
+        Path zip = temp.resolve("text.zip");
+
+        archiver.archive(source, zip);
+
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            ZipEntry entry = zipFile.getEntry("text/log.txt");
+            assertEquals(1_000_000, entry.getSize());
+            assertTrue(entry.getCompressedSize() < entry.getSize() / 4, "compressed " + entry.getCompressedSize());
+        }
+    }
+
+    @Test
+    void archive_shouldStoreAlreadyCompressedFiles() throws IOException {
+        Path source = sampleTree();
+        byte[] pdf = new byte[300_000];
+        new Random(3).nextBytes(pdf);
+        Files.write(source.resolve("2024/statement.PDF"), pdf);
+        Path zip = temp.resolve("stored.zip");
+
+        try (ParallelZipArchiver storing = new ParallelZipArchiver(2, 64 * 1024, 6, 64 * 1024, List.of("pdf", "png"));
+             OutputStream out = Files.newOutputStream(zip)) {
+            storing.archive(source, Channels.newChannel(out));
+        }
+
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            ZipEntry stored = zipFile.getEntry("reports/2024/statement.PDF");
+            assertEquals(ZipEntry.STORED, stored.getMethod());
+            assertEquals(pdf.length, stored.getCompressedSize());
+            assertEquals(crc(pdf), stored.getCrc());
+            try (InputStream in = zipFile.getInputStream(stored)) {
+                assertArrayEquals(pdf, in.readAllBytes());
+            }
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("reports/2024/noise.bin").getMethod());
+            try (InputStream in = zipFile.getInputStream(zipFile.getEntry("reports/readme.txt"))) {
+                assertEquals("accounts", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void archive_shouldWriteStoredEntriesThatStreamingReadersAccept() throws IOException {
+        Path source = sampleTree();
+        byte[] photo = new byte[150_000];
+        new Random(4).nextBytes(photo);
+        Files.write(source.resolve("2024/cheque.jpg"), photo);
+        Files.write(source.resolve("2024/q1/old.zip"), text(70_000));
+        Path zip = temp.resolve("streamed.zip");
+
+        try (ParallelZipArchiver storing = new ParallelZipArchiver(2, 64 * 1024, 6, 64 * 1024, List.of("jpg", "zip"));
+             OutputStream out = Files.newOutputStream(zip)) {
+            storing.archive(source, Channels.newChannel(out));
+        }
+
+        Map<String, byte[]> expected = expectedEntries(source);
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+            ZipEntry entry;
+            int stored = 0;
+            int count = 0;
+            while ((entry = in.getNextEntry()) != null) {
+                assertArrayEquals(expected.get(entry.getName()), in.readAllBytes(), entry.getName());
+                if (!entry.isDirectory() && entry.getMethod() == ZipEntry.STORED) {
+                    assertEquals(crc(expected.get(entry.getName())), entry.getCrc(), entry.getName());
+                    stored++;
+                }
+                count++;
+            }
+            assertEquals(expected.size(), count);
+            assertEquals(2, stored);
+        }
+    }
+
+    @Test
+    void zipWriter_shouldWriteReadableZip64Layout() throws IOException {
+        Path source = sampleTree();
+        Path zip = temp.resolve("zip64.zip");
+
+        try (FileChannel out = FileChannel.open(zip, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ZipWriter writer = new ZipWriter(out, 64 * 1024, true);
+            archiver.write(ParallelZipArchiver.collect(source), writer, null);
+            writer.finish();
+        }
+
+        Map<String, byte[]> expected = expectedEntries(source);
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            assertEquals(expected.size(), zipFile.size());
+            for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+                try (InputStream in = zipFile.getInputStream(zipFile.getEntry(e.getKey()))) {
+                    assertArrayEquals(e.getValue(), in.readAllBytes(), e.getKey());
+                }
+            }
+        }
+    }
+
+    @Test
+    void archiveIncremental_shouldReuseUnchangedEntries() throws IOException {
+        Path source = sampleTree();
+        Files.write(source.resolve("scan.png"), text(100_000));
+        Path zip = temp.resolve("incremental.zip");
+
+        try (ParallelZipArchiver storing = new ParallelZipArchiver(2, 64 * 1024, 6, 64 * 1024, List.of("png"))) {
+            ArchiveStats first = storing.archiveIncremental(source, zip);
+            assertEquals(0, first.reused());
+            assertEquals(5, first.rebuilt());
+            assertTrue(Files.exists(ArchiveManifest.pathOf(zip)));
+
+            // one file changes, one is only touched, the rest stay as they are
+            Path statement = source.resolve("2024/q1/statement.txt");
+            byte[] changed = Files.readAllBytes(statement);
+            changed[100] = '#';
+            Files.write(statement, changed);
+            Files.setLastModifiedTime(statement, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            Path readme = source.resolve("readme.txt");
+            Files.setLastModifiedTime(readme, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            Files.writeString(source.resolve("new.txt"), "added");
+
+            ArchiveStats second = storing.archiveIncremental(source, zip);
+            assertEquals(4, second.reused());
+            assertEquals(2, second.rebuilt());
+            assertEquals(300_000 + 5, second.rebuiltBytes());
+
+            assertArchiveMatches(zip, expectedEntries(source));
+
+            // the manifest now describes the new archive, so a third run reuses everything
+            ArchiveStats third = storing.archiveIncremental(source, zip);
+            assertEquals(6, third.reused());
+            assertEquals(0, third.rebuilt());
+            assertArchiveMatches(zip, expectedEntries(source));
+        }
+    }
+
+    @Test
+    void archiveIncremental_shouldRebuildWhenArchiveNoLongerMatchesManifest() throws IOException {
+        Path source = sampleTree();
+        Path zip = temp.resolve("replaced.zip");
+        archiver.archiveIncremental(source, zip);
+
+        archiver.archive(source, zip);
+        Files.setLastModifiedTime(zip, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        ArchiveStats stats = archiver.archiveIncremental(source, zip);
+        assertEquals(0, stats.reused());
+        assertArchiveMatches(zip, expectedEntries(source));
+    }
+
+    private static void assertArchiveMatches(Path zip, Map<String, byte[]> expected) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            assertEquals(expected.size(), zipFile.size());
+            for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+                ZipEntry entry = zipFile.getEntry(e.getKey());
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    assertArrayEquals(e.getValue(), in.readAllBytes(), e.getKey());
+                }
+                if (!entry.isDirectory()) {
+                    assertEquals(crc(e.getValue()), entry.getCrc(), e.getKey());
+                }
+            }
+        }
+    }
+
+    private Path sampleTree() throws IOException {
+        Path source = Files.createDirectories(temp.resolve("reports"));
+        Files.createDirectories(source.resolve("2024/q1"));
+        Files.createDirectories(source.resolve("empty"));
+        Files.write(source.resolve("2024/q1/statement.txt"), text(300_000));
+        byte[] random = new byte[200_000];
+        new Random(1).nextBytes(random);
+        Files.write(source.resolve("2024/noise.bin"), random);
+        Files.write(source.resolve("blank.txt"), new byte[0]);
+        Files.writeString(source.resolve("readme.txt"), "accounts");
+        return source;
+    }
+
+    private static Map<String, byte[]> expectedEntries(Path source) throws IOException {
+        List<ParallelZipArchiver.Item> items = ParallelZipArchiver.collect(source);
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+        for (ParallelZipArchiver.Item item : items) {
+            expected.put(item.directory() ? item.name() + "/" : item.name(),
+                    item.directory() ? new byte[0] : Files.readAllBytes(item.path()));
+        }
+        assertTrue(expected.containsKey("reports/2024/q1/statement.txt"));
+        assertTrue(expected.containsKey("reports/empty/"));
+        return expected;
+    }
+
+    private static byte[] text(int size) {
+        StringBuilder text = new StringBuilder(size + 64);
+        int line = 0;
+        while (text.length() < size) {
+            text.append("2024-01-01 transfer ").append(line++ % 997).append(" from 000000000001 to 000000000002\n");
+        }
+        return text.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+}
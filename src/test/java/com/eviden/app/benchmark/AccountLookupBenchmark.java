@@ -0,0 +1,81 @@
+package com.eviden.app.benchmark;
+
+import com.eviden.app.utils.AccountNumber;
+import com.eviden.app.utils.ConcurrentLongMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+
+/**
+ * Compares resolving an account number through a {@code ConcurrentHashMap<String, Long>} with
+ * packing it and probing a {@link ConcurrentLongMap}.
+ * <p>
+ * Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.eviden.app.benchmark.AccountLookupBenchmark}.
+ * Optional arguments: {@code accounts seconds}. The "decoded" rows build a new string per lookup
+ * the way a request body does, so the string hash cannot come from the cache.
+ */
+public class AccountLookupBenchmark {
+
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        String[] numbers = new String[accounts];
+        byte[][] encoded = new byte[accounts][];
+        long[] packed = new long[accounts];
+        ConcurrentHashMap<String, Long> byString = new ConcurrentHashMap<>();
+        ConcurrentLongMap<Long> byLong = new ConcurrentLongMap<>(accounts);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < accounts; i++) {
+            numbers[i] = String.format("%012d", random.nextLong(1_000_000_000_000L));
+            encoded[i] = numbers[i].getBytes(StandardCharsets.US_ASCII);
+            packed[i] = AccountNumber.pack(numbers[i]);
+            byString.put(numbers[i], (long) i);
+            byLong.put(packed[i], (long) i);
+        }
+        int[] order = new int[1 << 20];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = random.nextInt(accounts);
+        }
+
+        Lookup[] lookups = {
+                new Lookup("String key, cached hash", i -> byString.get(numbers[i])),
+                new Lookup("String key, decoded", i -> byString.get(new String(encoded[i], StandardCharsets.US_ASCII))),
+                new Lookup("packed long key", i -> byLong.get(packed[i])),
+                new Lookup("packed long key, decoded", i -> byLong.get(AccountNumber.pack(new String(encoded[i], StandardCharsets.US_ASCII)))),
+        };
+        // warm up every variant before measuring any of them
+        for (Lookup lookup : lookups) {
+            run(lookup, order, 1);
+        }
+        System.out.printf("%d accounts, %d s per run%n", accounts, seconds);
+        System.out.printf("%-28s %12s%n", "lookup", "ns/op");
+        for (Lookup lookup : lookups) {
+            System.out.printf("%-28s %12.1f%n", lookup.name, run(lookup, order, seconds));
+        }
+    }
+
+    private static double run(Lookup lookup, int[] order, int seconds) {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long operations = 0;
+        long checksum = 0;
+        long begin = System.nanoTime();
+        while (System.nanoTime() < deadline) {
+            for (int index : order) {
+                checksum += lookup.function.apply(index);
+            }
+            operations += order.length;
+        }
+        long elapsed = System.nanoTime() - begin;
+        sink = checksum;
+        return (double) elapsed / operations;
+    }
+
+    private record Lookup(String name, IntFunction<Long> function) {
+    }
+}
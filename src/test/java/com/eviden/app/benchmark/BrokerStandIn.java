@@ -0,0 +1,118 @@
+package com.eviden.app.benchmark;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * In-process stand-in for a RabbitMQ broker with a single queue, for benchmarks.
+ * <p>
+ * Deliveries go round-robin to the registered consumers and stop while a channel has
+ * {@code prefetch} unacknowledged messages, as with {@code basicQos}. Every {@code basicAck} costs
+ * {@code ackMicros} of busy time to stand in for the network round trip. Published messages are
+ * only counted.
+ */
+final class BrokerStandIn {
+
+    private final int prefetch;
+    private final long ackMicros;
+    private final Connection connection = mock(Connection.class, withSettings().stubOnly());
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    final LongAdder ackCalls = new LongAdder();
+    final LongAdder published = new LongAdder();
+
+    BrokerStandIn(int prefetch, long ackMicros) throws IOException {
+        this.prefetch = prefetch;
+        this.ackMicros = ackMicros;
+        when(connection.isOpen()).thenReturn(true);
+        when(connection.createChannel()).thenAnswer(inv -> newChannel());
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    /**
+     * Delivers {@code messages} bodies made by {@code body} and returns once all were delivered;
+     * they may still be unacknowledged.
+     */
+    void deliver(int messages, IntFunction<AMQP.BasicProperties> properties, IntFunction<byte[]> body) throws IOException {
+        if (subscribers.isEmpty()) {
+            throw new IllegalStateException("No consumer registered");
+        }
+        for (int i = 0; i < messages; i++) {
+            Subscriber subscriber = subscribers.get(i % subscribers.size());
+            long tag = subscriber.nextTag++;
+            while (tag - subscriber.ackedUpTo.get() > prefetch) {
+                Thread.onSpinWait();
+            }
+            subscriber.consumer.handleDelivery(subscriber.consumerTag, new Envelope(tag, false, "", "queue"),
+                    properties.apply(i), body.apply(i));
+        }
+    }
+
+    /**
+     * Number of messages acknowledged so far over all consumers.
+     */
+    long acked() {
+        long acked = 0;
+        for (Subscriber subscriber : subscribers) {
+            acked += subscriber.ackedUpTo.get();
+        }
+        return acked;
+    }
+
+    private Channel newChannel() throws IOException {
+        Channel channel = mock(Channel.class, withSettings().stubOnly());
+        when(channel.isOpen()).thenReturn(true);
+        when(channel.basicConsume(anyString(), anyBoolean(), any(Consumer.class))).thenAnswer(inv -> {
+            Subscriber subscriber = new Subscriber(inv.getArgument(2), "consumer-" + subscribers.size());
+            subscribers.add(subscriber);
+            doAnswer(ack -> {
+                long until = System.nanoTime() + ackMicros * 1000;
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+                ackCalls.increment();
+                subscriber.ackedUpTo.accumulateAndGet(ack.getArgument(0, Long.class), Math::max);
+                return null;
+            }).when(channel).basicAck(anyLong(), anyBoolean());
+            return subscriber.consumerTag;
+        });
+        doAnswer(inv -> {
+            published.increment();
+            return null;
+        }).when(channel).basicPublish(anyString(), anyString(), any(), any());
+        return channel;
+    }
+
+    private static final class Subscriber {
+        private final Consumer consumer;
+        private final String consumerTag;
+        private final AtomicLong ackedUpTo = new AtomicLong();
+        private long nextTag = 1;
+
+        private Subscriber(Consumer consumer, String consumerTag) {
+            this.consumer = consumer;
+            this.consumerTag = consumerTag;
+        }
+    }
+}
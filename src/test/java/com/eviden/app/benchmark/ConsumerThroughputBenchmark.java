@@ -0,0 +1,65 @@
+package com.eviden.app.benchmark;
+
+import com.eviden.app.service.ConsumerService;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Connection;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures messages/sec through {@link ConsumerService} for several ack batch sizes.
+ * <p>
+ * The broker is replaced by a {@link BrokerStandIn} that delivers as fast as the prefetch window
+ * allows and charges every {@code basicAck} a configurable round-trip cost, which is what batching
+ * saves. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.eviden.app.benchmark.ConsumerThroughputBenchmark}.
+ * Optional arguments: {@code messages ackMicros handlerMicros}.
+ */
+public class ConsumerThroughputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        long ackMicros = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        long handlerMicros = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        System.out.printf("%,d messages, %d us per ack call, %d us per message, %d cores%n",
+                messages, ackMicros, handlerMicros, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%10s %15s %12s%n", "ack batch", "messages/sec", "ack calls");
+        for (int batch : new int[]{1, 10, 50, 100}) {
+            run(messages, batch, ackMicros, handlerMicros);
+        }
+    }
+
+    private static void run(int messages, int batch, long ackMicros, long handlerMicros) throws Exception {
+        int prefetch = 250;
+        BrokerStandIn broker = new BrokerStandIn(prefetch, ackMicros);
+        ConsumerService service = new ConsumerService("localhost", 5672, 1, prefetch, batch, Duration.ofMillis(20),
+                Duration.ofSeconds(30), Duration.ofSeconds(5), false, "", false, new String[0]) {
+            @Override
+            protected Connection getConnection() {
+                return broker.connection();
+            }
+        };
+        service.register("bench", (queue, properties, body) -> {
+            if (handlerMicros > 0) {
+                long until = System.nanoTime() + handlerMicros * 1000;
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+        service.connect("bench");
+        AMQP.BasicProperties properties = new AMQP.BasicProperties();
+        byte[] body = "{\"senderAccount\":\"000000000001\"}".getBytes(StandardCharsets.UTF_8);
+        long start = System.nanoTime();
+        broker.deliver(messages, i -> properties, i -> body);
+        while (broker.acked() < messages) {
+            TimeUnit.MICROSECONDS.sleep(200);
+        }
+        long elapsed = System.nanoTime() - start;
+        service.stop();
+        System.out.printf("%10d %,15d %,12d%n", batch, messages * 1_000_000_000L / elapsed, broker.ackCalls.sum());
+    }
+}
@@ -0,0 +1,145 @@
+package com.eviden.app.benchmark;
+
+import com.eviden.app.Application;
+import com.eviden.app.repository.BankAccountRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares throughput and tail latency of request handling on platform threads and on virtual
+ * threads (the {@code virtual} profile) at increasing numbers of concurrent connections.
+ * <p>
+ * For each mode the application is started in this JVM on a random port and every connection
+ * level is driven by that many client threads, each sending requests back to back for
+ * {@code seconds}. The {@code blocking} workload waits {@code downstreamMillis} before reading the
+ * accounts, standing in for a slow database, broker or file system call; the {@code accounts}
+ * workload calls {@code GET /api/bankaccounts/} as is. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.eviden.app.benchmark.ExecutionModeLoadBenchmark}.
+ * Optional arguments: {@code workload connections seconds downstreamMillis}, connections being a
+ * comma separated list such as {@code 1000,2500,5000,10000}. Client and server share the process,
+ * so {@code ulimit -n} must allow about twice the largest level.
+ */
+public class ExecutionModeLoadBenchmark {
+
+    private static final String BLOCKING_PATH = "/bench/blocking";
+
+    public static void main(String[] args) throws Exception {
+        String workload = args.length > 0 ? args[0] : "blocking";
+        int[] levels = args.length > 1
+                ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1000, 2500, 5000, 10000};
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long downstreamMillis = args.length > 3 ? Long.parseLong(args[3]) : 50;
+        String path = workload.equals("accounts") ? "/api/bankaccounts/" : BLOCKING_PATH;
+        // the devtools restarter would run main again in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        System.out.printf("workload %s, %d s per level, %d ms downstream, %d cores%n",
+                workload, seconds, downstreamMillis, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-9s %12s %14s %10s %10s %10s %10s%n",
+                "mode", "connections", "requests/sec", "p50 ms", "p99 ms", "max ms", "errors");
+        for (String mode : new String[]{"platform", "virtual"}) {
+            try (ConfigurableApplicationContext context = start(mode, downstreamMillis)) {
+                int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+                URI uri = URI.create("http://localhost:" + port + path);
+                // warm up the server and the client before measuring
+                run(uri, Math.min(100, levels[0]), 2);
+                for (int connections : levels) {
+                    Result result = run(uri, connections, seconds);
+                    System.out.printf("%-9s %12d %,14d %10.1f %10.1f %10.1f %,10d%n", mode, connections,
+                            result.throughput, result.latencies.percentileMillis(50),
+                            result.latencies.percentileMillis(99), result.latencies.maxMillis(), result.errors);
+                }
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String mode, long downstreamMillis) throws Exception {
+        Path data = Files.createTempDirectory("load-benchmark");
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(Application.class)
+                .properties("server.port=0",
+                        "logging.level.root=WARN",
+                        "transfer.journal.enabled=false",
+                        "transfer.journal.dir=" + data.resolve("journal"),
+                        "archive.base-dir=" + data.resolve("exports"))
+                .initializers(context -> ((GenericApplicationContext) context).registerBean("blockingRoute",
+                        RouterFunction.class, () -> blockingRoute(context.getBean(BankAccountRepository.class), downstreamMillis)));
+        if (mode.equals("virtual")) {
+            builder.profiles("virtual");
+        }
+        return builder.run();
+    }
+
+    private static RouterFunction<ServerResponse> blockingRoute(BankAccountRepository repository, long downstreamMillis) {
+        return RouterFunctions.route()
+                .GET(BLOCKING_PATH, request -> {
+                    Thread.sleep(downstreamMillis);
+                    return ServerResponse.ok().body(repository.count());
+                })
+                .build();
+    }
+
+    private static Result run(URI uri, int connections, int seconds) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+        LatencyRecorder latencies = new LatencyRecorder();
+        LongAdder errors = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> clients = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            clients.add(Thread.ofVirtual().name("load-client-", i).start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() == 200) {
+                            latencies.record(System.nanoTime() - begin);
+                        } else {
+                            errors.increment();
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                }
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : clients) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        client.close();
+        return new Result(latencies.count() * 1_000_000_000L / elapsed, latencies, errors.sum());
+    }
+
+    private record Result(long throughput, LatencyRecorder latencies, long errors) {
+    }
+}
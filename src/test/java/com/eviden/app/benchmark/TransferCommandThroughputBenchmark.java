@@ -0,0 +1,114 @@
+package com.eviden.app.benchmark;
+
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.messaging.TransferCommandConsumer;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.service.BatchFailureMode;
+import com.eviden.app.service.ConsumerService;
+import com.eviden.app.service.TransferEngine;
+import com.eviden.app.service.TransferServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Connection;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures transfer commands/sec through {@link TransferCommandConsumer} for several batch sizes.
+ * <p>
+ * Commands come from a {@link BrokerStandIn} and go through the real {@link ConsumerService},
+ * {@link TransferServiceImpl} and {@link TransferEngine}; the database is a stub whose every
+ * transaction costs {@code commitMicros} of busy time, which is what batching amortizes. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.eviden.app.benchmark.TransferCommandThroughputBenchmark}.
+ * Optional arguments: {@code commands commitMicros accounts}.
+ */
+public class TransferCommandThroughputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        long commitMicros = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        int accounts = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+
+        System.out.printf("%,d commands, %d us per transaction, %d accounts, %d cores%n",
+                commands, commitMicros, accounts, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%10s %15s %10s %10s%n", "batch", "commands/sec", "batches", "replies");
+        for (int batch : new int[]{1, 20, 100, 200}) {
+            run(commands, batch, commitMicros, accounts);
+        }
+    }
+
+    private static void run(int commands, int batchSize, long commitMicros, int accountCount) throws Exception {
+        Map<String, BankAccount> store = new HashMap<>();
+        String[] numbers = new String[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            numbers[i] = String.format("%012d", i + 1);
+            BankAccount account = new BankAccount(numbers[i], "Load " + i, 1_000_000_000L, "Savings");
+            account.setId((long) i + 1);
+            store.put(numbers[i], account);
+        }
+        BankAccountRepository repository = mock(BankAccountRepository.class, withSettings().stubOnly());
+        when(repository.findByAccountNumberIn(anyCollection())).thenAnswer(inv -> {
+            List<BankAccount> found = new ArrayList<>();
+            for (Object number : inv.getArgument(0, Collection.class)) {
+                found.add(store.get((String) number));
+            }
+            return found;
+        });
+        TransactionOperations slowCommits = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                T result = action.doInTransaction(new SimpleTransactionStatus());
+                long until = System.nanoTime() + commitMicros * 1000;
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+                return result;
+            }
+        };
+        TransferEngine engine = new TransferEngine(repository, slowCommits, 256);
+        TransferServiceImpl transferService = new TransferServiceImpl(repository, engine, slowCommits, 1000,
+                BatchFailureMode.BEST_EFFORT);
+
+        BrokerStandIn broker = new BrokerStandIn(250, 0);
+        ConsumerService consumerService = new ConsumerService("localhost", 5672, 2, 250, 50, Duration.ofMillis(20),
+                Duration.ofSeconds(30), Duration.ofSeconds(5), false, "", false, new String[0]) {
+            @Override
+            protected Connection getConnection() {
+                return broker.connection();
+            }
+        };
+        TransferCommandConsumer consumer = new TransferCommandConsumer(consumerService, transferService,
+                new ObjectMapper(), "transfer.commands", "transfer.replies", batchSize, Duration.ofMillis(5), 2);
+        consumer.register();
+        consumerService.connect("transfer.commands");
+
+        long start = System.nanoTime();
+        broker.deliver(commands,
+                i -> new AMQP.BasicProperties.Builder().correlationId("cmd-" + i).build(),
+                i -> ("{\"senderAccount\":\"" + numbers[i % accountCount] + "\",\"receiverAccount\":\""
+                        + numbers[(i * 7 + 1) % accountCount] + "\",\"amount\":1.00}").getBytes(StandardCharsets.UTF_8));
+        while (broker.acked() < commands) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        long elapsed = System.nanoTime() - start;
+        consumerService.stop();
+        consumer.close();
+        System.out.printf("%10d %,15d %,10d %,10d%n", batchSize, commands * 1_000_000_000L / elapsed,
+                consumer.getBatchCount(), broker.published.sum());
+    }
+}
@@ -0,0 +1,200 @@
+package com.eviden.app.benchmark;
+
+import com.eviden.app.Application;
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.utils.Money;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test for {@code POST /api/bankaccounts/transfer} with many clients on a few hot accounts.
+ * <p>
+ * {@link #run} seeds {@code accounts} accounts through the repository and lets {@code clients}
+ * threads send transfers back to back, first for {@code warmup} without recording anything and then
+ * for {@code duration}. Each transfer is between two accounts drawn from
+ * a {@link ZipfDistribution} with exponent {@code skew} and for 1 to {@code maxAmount} minor
+ * units. Every client has its own random seed derived from {@code seed}, so a run repeats the
+ * same request sequence per client. Afterwards the balances of the seeded accounts are read back
+ * from the database: their sum must equal what was seeded, and none may be negative. A lost
+ * update breaks one of the two.
+ * <p>
+ * {@link #main} boots the application on H2 with a throw-away journal directory and prints the
+ * report. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.eviden.app.benchmark.TransferContentionBenchmark}.
+ * Optional arguments: {@code accounts skew clients seconds seed}.
+ */
+public class TransferContentionBenchmark {
+
+    private static final String TRANSFER_PATH = "/api/bankaccounts/transfer";
+    private static final long FIRST_ACCOUNT = 700_000_000_000L;
+
+    public record Settings(int accounts, double skew, long initialBalance, long maxAmount, int clients,
+                           Duration warmup, Duration duration, long seed) {
+    }
+
+    public record Report(Settings settings, long transfers, long rejected, long errors, long throughput,
+                         LatencyRecorder latencies, long expectedTotal, long actualTotal, int negativeBalances,
+                         double hotShare) {
+
+        public double errorRate() {
+            long sent = transfers + rejected + errors;
+            return sent == 0 ? 0 : (double) errors / sent;
+        }
+
+        public boolean conserved() {
+            return expectedTotal == actualTotal && negativeBalances == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d accounts, skew %.2f (top 10 take %.0f%% of draws), %d clients, %d s%n"
+                            + "%,d transfers/sec, %,d applied, %,d rejected, %,d errors (%.3f%%)%n"
+                            + "latency ms: p50 %.2f, p99 %.2f, p999 %.2f, max %.2f%n"
+                            + "total %s before, %s after, %d negative balances: %s",
+                    settings.accounts, settings.skew, hotShare * 100, settings.clients, settings.duration.toSeconds(),
+                    throughput, transfers, rejected, errors, errorRate() * 100,
+                    latencies.percentileMillis(50), latencies.percentileMillis(99), latencies.percentileMillis(99.9),
+                    latencies.maxMillis(), Money.format(expectedTotal), Money.format(actualTotal), negativeBalances,
+                    conserved() ? "conserved" : "NOT CONSERVED");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = new Settings(
+                args.length > 0 ? Integer.parseInt(args[0]) : 1_000,
+                args.length > 1 ? Double.parseDouble(args[1]) : 1.1,
+                Money.parse("1000.00"),
+                Money.parse("50.00"),
+                args.length > 2 ? Integer.parseInt(args[2]) : 64,
+                Duration.ofSeconds(10),
+                Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 20),
+                args.length > 4 ? Long.parseLong(args[4]) : 42);
+        // the devtools restarter would run main again in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Path data = Files.createTempDirectory("transfer-contention");
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .properties("server.port=0",
+                        "logging.level.root=WARN",
+                        "transfer.journal.dir=" + data.resolve("journal"),
+                        "archive.base-dir=" + data.resolve("exports"))
+                .run()) {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            Report report = run(context.getBean(BankAccountRepository.class), URI.create("http://localhost:" + port), settings);
+            System.out.println(report);
+        }
+    }
+
+    public static Report run(BankAccountRepository repository, URI baseUri, Settings settings) throws InterruptedException {
+        List<BankAccount> seeded = new ArrayList<>(settings.accounts);
+        for (int i = 0; i < settings.accounts; i++) {
+            seeded.add(new BankAccount(String.format("%012d", FIRST_ACCOUNT + i), "Load " + i, settings.initialBalance, "Savings"));
+        }
+        repository.saveAll(seeded);
+        long expectedTotal = settings.initialBalance * settings.accounts;
+
+        ZipfDistribution distribution = new ZipfDistribution(settings.accounts, settings.skew);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI transferUri = baseUri.resolve(TRANSFER_PATH);
+        if (!settings.warmup.isZero()) {
+            drive(client, transferUri, distribution, settings, settings.warmup, settings.seed + 1);
+        }
+        Load load = drive(client, transferUri, distribution, settings, settings.duration, settings.seed);
+        client.close();
+
+        Set<String> numbers = new HashSet<>();
+        for (BankAccount account : seeded) {
+            numbers.add(account.getAccountNumber());
+        }
+        long actualTotal = 0;
+        int negative = 0;
+        for (BankAccount account : repository.findByAccountNumberIn(numbers)) {
+            actualTotal += account.getBalance();
+            if (account.getBalance() < 0) {
+                negative++;
+            }
+        }
+        return new Report(settings, load.applied, load.rejected, load.errors,
+                (load.applied + load.rejected) * 1_000_000_000L / load.elapsedNanos, load.latencies,
+                expectedTotal, actualTotal, negative, distribution.share(10));
+    }
+
+    private static Load drive(HttpClient client, URI transferUri, ZipfDistribution distribution, Settings settings,
+                              Duration duration, long seed) throws InterruptedException {
+        LatencyRecorder latencies = new LatencyRecorder();
+        LongAdder applied = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder errors = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long durationNanos = duration.toNanos();
+        List<Thread> clients = new ArrayList<>(settings.clients);
+        for (int c = 0; c < settings.clients; c++) {
+            SplittableRandom random = new SplittableRandom(seed * 31 + c);
+            clients.add(Thread.ofVirtual().name("transfer-client-", c).start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + durationNanos;
+                while (System.nanoTime() < deadline) {
+                    int sender = distribution.sample(random);
+                    int receiver = distribution.sample(random);
+                    if (settings.accounts > 1) {
+                        while (receiver == sender) {
+                            receiver = distribution.sample(random);
+                        }
+                    }
+                    long amount = 1 + random.nextLong(settings.maxAmount);
+                    String body = "{\"senderAccount\":\"" + String.format("%012d", FIRST_ACCOUNT + sender)
+                            + "\",\"receiverAccount\":\"" + String.format("%012d", FIRST_ACCOUNT + receiver)
+                            + "\",\"amount\":\"" + Money.format(amount) + "\"}";
+                    HttpRequest request = HttpRequest.newBuilder(transferUri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build();
+                    long begin = System.nanoTime();
+                    try {
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        latencies.record(System.nanoTime() - begin);
+                        if (status == 200) {
+                            applied.increment();
+                        } else if (status == 400) {
+                            // the controller answers 400 for insufficient funds
+                            rejected.increment();
+                        } else {
+                            errors.increment();
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                }
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : clients) {
+            worker.join();
+        }
+        return new Load(applied.sum(), rejected.sum(), errors.sum(), System.nanoTime() - begin, latencies);
+    }
+
+    private record Load(long applied, long rejected, long errors, long elapsedNanos, LatencyRecorder latencies) {
+    }
+}
@@ -0,0 +1,94 @@
+package com.eviden.app.benchmark;
+
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.service.TransferEngine;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures transfers/sec of {@link TransferEngine} for 1..N threads against a stub repository.
+ * <p>
+ * Run from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.eviden.app.benchmark.TransferEngineContentionBenchmark}.
+ * Optional arguments: {@code accounts seconds maxThreads}. Few accounts means heavy contention on
+ * the same stripes; many accounts shows how throughput scales with cores.
+ */
+public class TransferEngineContentionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() * 2;
+
+        Map<String, BankAccount> store = new HashMap<>();
+        String[] numbers = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            numbers[i] = String.format("%012d", i + 1);
+            BankAccount account = new BankAccount(numbers[i], "Load " + i, 1_000_000L, "Savings");
+            account.setId((long) i + 1);
+            store.put(numbers[i], account);
+        }
+        BankAccountRepository repository = mock(BankAccountRepository.class, withSettings().stubOnly());
+        when(repository.findByAccountNumber(anyString())).thenAnswer(inv -> store.get(inv.getArgument(0, String.class)));
+        TransferEngine engine = new TransferEngine(repository, TransactionOperations.withoutTransaction(), 256);
+
+        // warm up and load every account into memory
+        run(engine, numbers, 1, 1);
+
+        System.out.printf("%d accounts, %d s per run, %d cores%n", accounts, seconds, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %15s%n", "threads", "transfers/sec");
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            long rate = run(engine, numbers, threads, seconds);
+            System.out.printf("%8d %,15d%n", threads, rate);
+        }
+    }
+
+    private static long run(TransferEngine engine, String[] numbers, int threads, int seconds) throws InterruptedException {
+        LongAdder completed = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L + 50_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int done = 0;
+                while (System.nanoTime() < deadline) {
+                    int from = random.nextInt(numbers.length);
+                    int to = random.nextInt(numbers.length);
+                    if (from != to) {
+                        engine.transfer(numbers[from], numbers[to], 1L);
+                    }
+                    done++;
+                }
+                completed.add(done);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return completed.sum() * 1_000_000_000L / elapsed;
+    }
+}
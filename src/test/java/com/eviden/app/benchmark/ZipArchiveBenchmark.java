@@ -0,0 +1,110 @@
+package com.eviden.app.benchmark;
+
+import com.eviden.app.archive.ParallelZipArchiver;
+import com.eviden.app.service.FileService;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compares {@link FileService#addFilesToZip} with {@link ParallelZipArchiver} on a generated tree
+ * of statement-like text files plus a few incompressible ones, then times an incremental rebuild
+ * after one file changed.
+ * <p>
+ * Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.eviden.app.benchmark.ZipArchiveBenchmark}.
+ * Optional arguments: {@code totalMegabytes files rounds}.
+ */
+public class ZipArchiveBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        Path root = Files.createTempDirectory("zip-benchmark");
+        try {
+            Path source = generate(root.resolve("statements"), megabytes, files);
+            long inputBytes = megabytes * 1024L * 1024L;
+            System.out.printf("%d MB in %d files, %d cores%n", megabytes, files, Runtime.getRuntime().availableProcessors());
+            System.out.printf("%-22s %10s %10s %12s%n", "implementation", "ms", "MB/s", "zip bytes");
+
+            FileService fileService = new FileService(root.toString(), 0, DataSize.ofMegabytes(1), 6,
+                    DataSize.ofKilobytes(256), new String[0]);
+            try {
+                Path legacy = root.resolve("legacy.zip");
+                Path parallel = root.resolve("parallel.zip");
+                for (int round = 0; round < rounds; round++) {
+                    long start = System.nanoTime();
+                    File directory = source.toFile();
+                    try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(legacy.toFile()))) {
+                        fileService.addFilesToZip(directory, directory.getName(), zos);
+                    }
+                    print("addFilesToZip", start, inputBytes, legacy);
+
+                    start = System.nanoTime();
+                    fileService.zipParallel(directory, parallel.toFile());
+                    print("zipParallel", start, inputBytes, parallel);
+                }
+
+                // a full incremental build, then a rebuild after one file changed
+                Path incremental = root.resolve("incremental.zip");
+                long start = System.nanoTime();
+                fileService.zipIncremental(source.toFile(), incremental.toFile());
+                print("zipIncremental full", start, inputBytes, incremental);
+                try (Stream<Path> paths = Files.walk(source)) {
+                    Path changed = paths.filter(Files::isRegularFile).findFirst().orElseThrow();
+                    Files.writeString(changed, "changed", StandardOpenOption.APPEND);
+                }
+                start = System.nanoTime();
+                fileService.zipIncremental(source.toFile(), incremental.toFile());
+                print("zipIncremental 1 file", start, inputBytes, incremental);
+            } finally {
+                fileService.close();
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private static void print(String name, long start, long inputBytes, Path zip) throws IOException {
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-22s %10d %10.1f %,12d%n", name, elapsed / 1_000_000,
+                inputBytes / 1048576.0 / (elapsed / 1e9), Files.size(zip));
+    }
+
+    private static Path generate(Path source, int megabytes, int files) throws IOException {
+        Files.createDirectories(source);
+        long perFile = megabytes * 1024L * 1024L / files;
+        Random random = new Random(42);
+        for (int i = 0; i < files; i++) {
+            Path dir = Files.createDirectories(source.resolve("branch-" + (i % 8)));
+            byte[] content = new byte[(int) perFile];
+            if (i % 8 == 7) {
+                random.nextBytes(content);
+            } else {
+                StringBuilder text = new StringBuilder((int) perFile + 128);
+                while (text.length() < perFile) {
+                    text.append(String.format("%012d;%012d;%d.%02d;SUCCESS%n", random.nextInt(100_000),
+                            random.nextInt(100_000), random.nextInt(10_000), random.nextInt(100)));
+                }
+                byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+                System.arraycopy(bytes, 0, content, 0, content.length);
+            }
+            Files.write(dir.resolve("statement-" + i + ".csv"), content);
+        }
+        return source;
+    }
+}
@@ -1,21 +1,42 @@
 package com.eviden.app.controller;
 
+import com.eviden.app.Components;
+import com.eviden.app.dto.AccountPageDTO;
+import com.eviden.app.dto.BatchTransferResultDTO;
 import com.eviden.app.dto.TransferDTO;
+import com.eviden.app.dto.TransferHistoryItemDTO;
+import com.eviden.app.dto.TransferHistoryPageDTO;
+import com.eviden.app.dto.TransferItemResultDTO;
 import com.eviden.app.entity.BankAccount;
 import com.eviden.app.entity.Transfer;
 import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.service.AccountCache;
+import com.eviden.app.service.AccountService;
+import com.eviden.app.service.BankMetrics;
+import com.eviden.app.service.BatchFailureMode;
 import com.eviden.app.service.ConsumerService;
 import com.eviden.app.service.FileService;
+import com.eviden.app.service.IdempotencyCache;
 import com.eviden.app.service.TransferServiceImpl;
+import com.eviden.app.service.TransferStatus;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -25,16 +46,25 @@ import java.util.Optional;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(BankAccountController.class)
@@ -55,19 +85,39 @@ class BankAccountControllerTest {
     @MockitoBean
     private ConsumerService consumerService;
 
+    @MockitoBean
+    private AccountService accountService;
+
+    @MockitoBean
+    private AccountCache accountCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @TestConfiguration
+    static class ControllerBeans {
+        @Bean
+        IdempotencyCache<ResponseEntity<String>> transferIdempotencyCache() {
+            return new Components().transferIdempotencyCache(100, Duration.ofMinutes(1));
+        }
+
+        @Bean
+        BankMetrics bankMetrics() {
+            return new BankMetrics(new SimpleMeterRegistry());
+        }
+    }
+
     private BankAccount savingsAccount;
     private BankAccount checkingAccount;
 
     @BeforeEach
     void setUp() {
-        savingsAccount = new BankAccount("10001", "John Doe", 52000.0, "Savings");
+        savingsAccount = new BankAccount("10001", "John Doe", 5200000L, "Savings");
         savingsAccount.setId(1L);
 
-        checkingAccount = new BankAccount("10002", "John Doe", 7500.0, "Checking");
+        checkingAccount = new BankAccount("10002", "John Doe", 750000L, "Checking");
         checkingAccount.setId(2L);
+        when(transferService.getMaxBatchSize()).thenReturn(3);
     }
 
     @Test
@@ -99,9 +149,70 @@ class BankAccountControllerTest {
         verify(bankAccountRepository, times(1)).findAll();
     }
 
+    @Test
+    void getAccountsPage_shouldReturnItemsAndCursor() throws Exception {
+        when(accountService.page(0L, 2)).thenReturn(new AccountPageDTO(Arrays.asList(savingsAccount, checkingAccount), 2L));
+
+        mockMvc.perform(get("/api/bankaccounts/page").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[1].accountNumber", is("10002")))
+                .andExpect(jsonPath("$.nextCursor", is(2)));
+
+        verify(accountService, times(1)).page(0L, 2);
+    }
+
+    @Test
+    void streamAccounts_shouldWriteNdjson() throws Exception {
+        when(accountService.writeNdjson(any())).thenAnswer(inv -> {
+            java.io.OutputStream out = inv.getArgument(0);
+            out.write("{\"accountNumber\":\"10001\"}\n".getBytes());
+            return 1L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/bankaccounts/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"accountNumber\":\"10001\"}\n"));
+    }
+
+    @Test
+    void downloadZip_shouldStreamArchiveFromBaseDir() throws Exception {
+        File directory = Files.createTempDirectory("statements").toFile();
+        directory.deleteOnExit();
+        when(fileService.resolveArchivePath("statements")).thenReturn(directory);
+        doAnswer(inv -> {
+            java.io.OutputStream out = inv.getArgument(1);
+            out.write(new byte[]{'P', 'K', 3, 4});
+            return null;
+        }).when(fileService).streamZip(eq(directory), any());
+
+        MvcResult result = mockMvc.perform(get("/api/bankaccounts/downloadzip").param("sourceDir", "statements"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/zip"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"" + directory.getName() + ".zip\""))
+                .andExpect(content().bytes(new byte[]{'P', 'K', 3, 4}));
+    }
+
+    @Test
+    void downloadZip_shouldRejectPathOutsideBaseDir() throws Exception {
+        when(fileService.resolveArchivePath("../etc")).thenThrow(new IllegalArgumentException("outside"));
+
+        mockMvc.perform(get("/api/bankaccounts/downloadzip").param("sourceDir", "../etc"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getBankAccount_shouldReturnAccountById() throws Exception {
-        when(bankAccountRepository.findByAccountNumber("10001")).thenReturn(savingsAccount);
+        when(accountCache.get("10001")).thenReturn(savingsAccount);
 
         mockMvc.perform(get("/api/bankaccounts/10001"))
                 .andExpect(status().isOk())
@@ -110,25 +221,66 @@ class BankAccountControllerTest {
                 .andExpect(jsonPath("$.balance", is(52000.0)))
                 .andExpect(jsonPath("$.type", is("Savings")));
 
-        verify(bankAccountRepository, times(1)).findByAccountNumber("10001");
+        verify(accountCache, times(1)).get("10001");
     }
 
     @Test
     void getBankAccount_shouldReturnNullForNonExistentAccount() throws Exception {
-        when(bankAccountRepository.findByAccountNumber("99999")).thenReturn(null);
+        when(accountCache.get("99999")).thenReturn(null);
 
         mockMvc.perform(get("/api/bankaccounts/99999"))
                 .andExpect(status().isOk());
 
-        verify(bankAccountRepository, times(1)).findByAccountNumber("99999");
+        verify(accountCache, times(1)).get("99999");
+    }
+
+    @Test
+    void getHistory_shouldReturnItemsAndCursor() throws Exception {
+        when(accountCache.get("10001")).thenReturn(savingsAccount);
+        when(accountService.history("10001", "1700000000000-7", 1)).thenReturn(new TransferHistoryPageDTO(
+                List.of(new TransferHistoryItemDTO(6L, 1700000000000L, "10001", "10002", 1050L)), "1700000000000-6"));
+
+        mockMvc.perform(get("/api/bankaccounts/10001/history").param("cursor", "1700000000000-7").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].receiverAccount", is("10002")))
+                .andExpect(jsonPath("$.items[0].amount", is(10.5)))
+                .andExpect(jsonPath("$.nextCursor", is("1700000000000-6")));
+    }
+
+    @Test
+    void getHistory_shouldRejectUnknownAccountsAndBadCursors() throws Exception {
+        when(accountCache.get("10001")).thenReturn(savingsAccount);
+        when(accountService.history("10001", "oops", 100)).thenThrow(new IllegalArgumentException("Not a history cursor: oops"));
+
+        mockMvc.perform(get("/api/bankaccounts/99999/history"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/bankaccounts/10001/history").param("cursor", "oops"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getCacheStats_shouldReturnCounters() throws Exception {
+        when(accountCache.size()).thenReturn(2);
+        when(accountCache.hits()).thenReturn(10L);
+        when(accountCache.misses()).thenReturn(3L);
+        when(accountCache.updates()).thenReturn(4L);
+
+        mockMvc.perform(get("/api/bankaccounts/cache/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size", is(2)))
+                .andExpect(jsonPath("$.hits", is(10)))
+                .andExpect(jsonPath("$.misses", is(3)))
+                .andExpect(jsonPath("$.evictions", is(0)))
+                .andExpect(jsonPath("$.updates", is(4)));
     }
 
     @Test
     void transfer_shouldReturnOkOnSuccessfulTransfer() throws Exception {
-        TransferDTO transferDTO = new TransferDTO("10001", "10002", 500.0);
+        TransferDTO transferDTO = new TransferDTO("10001", "10002", 50000L);
 
-        BankAccount updatedSender = new BankAccount("10001", "John Doe", 51500.0, "Savings");
-        BankAccount updatedReceiver = new BankAccount("10002", "John Doe", 8000.0, "Checking");
+        BankAccount updatedSender = new BankAccount("10001", "John Doe", 5150000L, "Savings");
+        BankAccount updatedReceiver = new BankAccount("10002", "John Doe", 800000L, "Checking");
 
         Map<String, Optional<BankAccount>> resultMap = new HashMap<>();
         resultMap.put("senderAccount", Optional.of(updatedSender));
@@ -145,9 +297,31 @@ class BankAccountControllerTest {
         verify(transferService, times(1)).transfer(any(Transfer.class));
     }
 
+    @Test
+    void transfer_shouldReadDecimalAmountAsMinorUnits() throws Exception {
+        when(transferService.transfer(any(Transfer.class))).thenReturn(null);
+
+        mockMvc.perform(post("/api/bankaccounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"senderAccount\":\"10001\",\"receiverAccount\":\"10002\",\"amount\":12.34}"))
+                .andExpect(status().isBadRequest());
+
+        verify(transferService, times(1)).transfer(argThat(transfer -> transfer.getAmount() == 1234L));
+    }
+
+    @Test
+    void transfer_shouldRejectAmountWithMoreThanTwoDecimals() throws Exception {
+        mockMvc.perform(post("/api/bankaccounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"senderAccount\":\"10001\",\"receiverAccount\":\"10002\",\"amount\":0.001}"))
+                .andExpect(status().isBadRequest());
+
+        verify(transferService, times(0)).transfer(any(Transfer.class));
+    }
+
     @Test
     void transfer_shouldReturnBadRequestWhenTransferReturnsNull() throws Exception {
-        TransferDTO transferDTO = new TransferDTO("10001", "10002", 100000.0);
+        TransferDTO transferDTO = new TransferDTO("10001", "10002", 10000000L);
 
         when(transferService.transfer(any(Transfer.class))).thenReturn(null);
 
@@ -161,7 +335,7 @@ class BankAccountControllerTest {
 
     @Test
     void transfer_shouldReturnBadRequestWhenReceiverAccountNotPresent() throws Exception {
-        TransferDTO transferDTO = new TransferDTO("10001", "10002", 500.0);
+        TransferDTO transferDTO = new TransferDTO("10001", "10002", 50000L);
 
         Map<String, Optional<BankAccount>> resultMap = new HashMap<>();
         resultMap.put("senderAccount", Optional.of(savingsAccount));
@@ -179,7 +353,7 @@ class BankAccountControllerTest {
 
     @Test
     void transfer_shouldReturnBadRequestWhenSenderAccountNotPresent() throws Exception {
-        TransferDTO transferDTO = new TransferDTO("10001", "10002", 500.0);
+        TransferDTO transferDTO = new TransferDTO("10001", "10002", 50000L);
 
         Map<String, Optional<BankAccount>> resultMap = new HashMap<>();
         resultMap.put("senderAccount", Optional.empty());
@@ -197,10 +371,10 @@ class BankAccountControllerTest {
 
     @Test
     void transfer_shouldReturnBadRequestWhenAccountNumbersMismatch() throws Exception {
-        TransferDTO transferDTO = new TransferDTO("10001", "10002", 500.0);
+        TransferDTO transferDTO = new TransferDTO("10001", "10002", 50000L);
 
-        BankAccount mismatchedSender = new BankAccount("99999", "Jane Doe", 51500.0, "Savings");
-        BankAccount mismatchedReceiver = new BankAccount("88888", "Jane Doe", 8000.0, "Checking");
+        BankAccount mismatchedSender = new BankAccount("99999", "Jane Doe", 5150000L, "Savings");
+        BankAccount mismatchedReceiver = new BankAccount("88888", "Jane Doe", 800000L, "Checking");
 
         Map<String, Optional<BankAccount>> resultMap = new HashMap<>();
         resultMap.put("senderAccount", Optional.of(mismatchedSender));
@@ -217,19 +391,190 @@ class BankAccountControllerTest {
     }
 
     @Test
-    void transfer_shouldReturnBadRequestWhenExceptionThrown() throws Exception {
-        TransferDTO transferDTO = new TransferDTO("10001", "10002", 500.0);
+    void transfer_shouldReturnServerErrorWhenExceptionThrown() throws Exception {
+        TransferDTO transferDTO = new TransferDTO("10001", "10002", 50000L);
 
         when(transferService.transfer(any(Transfer.class))).thenThrow(new RuntimeException("Transfer failed"));
 
+        mockMvc.perform(post("/api/bankaccounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferDTO)))
+                .andExpect(status().isInternalServerError());
+
+        verify(transferService, times(1)).transfer(any(Transfer.class));
+    }
+
+    @Test
+    void transfer_shouldReturnBadRequestWhenReceiverBalanceWouldOverflow() throws Exception {
+        TransferDTO transferDTO = new TransferDTO("10001", "10002", 50000L);
+
+        when(transferService.transfer(any(Transfer.class))).thenThrow(new ArithmeticException("long overflow"));
+
         mockMvc.perform(post("/api/bankaccounts/transfer")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(transferDTO)))
                 .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void transfer_shouldRunAgainWhenFirstAttemptWithIdempotencyKeyFailedInDatabase() throws Exception {
+        TransferDTO transferDTO = new TransferDTO("10001", "10002", 50000L);
+        Map<String, Optional<BankAccount>> resultMap = new HashMap<>();
+        resultMap.put("senderAccount", Optional.of(savingsAccount));
+        resultMap.put("receiverAccount", Optional.of(checkingAccount));
+        when(transferService.transfer(any(Transfer.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenReturn(resultMap);
+
+        mockMvc.perform(post("/api/bankaccounts/transfer")
+                        .header("Idempotency-Key", "db-failure-key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferDTO)))
+                .andExpect(status().isInternalServerError());
+        mockMvc.perform(post("/api/bankaccounts/transfer")
+                        .header("Idempotency-Key", "db-failure-key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferDTO)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Transfer was successful."));
+
+        verify(transferService, times(2)).transfer(any(Transfer.class));
+    }
+
+    @Test
+    void transfer_shouldReplayResultForRepeatedIdempotencyKey() throws Exception {
+        TransferDTO transferDTO = new TransferDTO("10001", "10002", 50000L);
+        Map<String, Optional<BankAccount>> resultMap = new HashMap<>();
+        resultMap.put("senderAccount", Optional.of(savingsAccount));
+        resultMap.put("receiverAccount", Optional.of(checkingAccount));
+        when(transferService.transfer(any(Transfer.class))).thenReturn(resultMap);
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/api/bankaccounts/transfer")
+                            .header("Idempotency-Key", "replay-key")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(transferDTO)))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("Transfer was successful."));
+        }
+
+        verify(transferService, times(1)).transfer(any(Transfer.class));
+    }
+
+    @Test
+    void transfer_shouldRejectIdempotencyKeyReusedForDifferentTransfer() throws Exception {
+        when(transferService.transfer(any(Transfer.class))).thenReturn(null);
+
+        mockMvc.perform(post("/api/bankaccounts/transfer")
+                        .header("Idempotency-Key", "conflict-key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new TransferDTO("10001", "10002", 50000L))))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/bankaccounts/transfer")
+                        .header("Idempotency-Key", "conflict-key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new TransferDTO("10001", "10002", 90000L))))
+                .andExpect(status().isUnprocessableEntity());
 
         verify(transferService, times(1)).transfer(any(Transfer.class));
     }
 
+    @Test
+    void transferBatch_shouldReturnPerItemResults() throws Exception {
+        List<TransferDTO> batch = Arrays.asList(
+                new TransferDTO("10001", "10002", 50000L),
+                new TransferDTO("10002", "99999", 1000L));
+        BatchTransferResultDTO result = new BatchTransferResultDTO(BatchFailureMode.BEST_EFFORT, true, 1, 1, Arrays.asList(
+                new TransferItemResultDTO(0, "10001", "10002", TransferStatus.SUCCESS),
+                new TransferItemResultDTO(1, "10002", "99999", TransferStatus.UNKNOWN_ACCOUNT)));
+
+        when(transferService.transferBatch(anyList(), eq(BatchFailureMode.BEST_EFFORT))).thenReturn(result);
+
+        mockMvc.perform(post("/api/bankaccounts/transfer/batch")
+                        .param("failureMode", "BEST_EFFORT")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed", is(true)))
+                .andExpect(jsonPath("$.results", hasSize(2)))
+                .andExpect(jsonPath("$.results[1].status", is("UNKNOWN_ACCOUNT")));
+
+        verify(transferService, times(1)).transferBatch(anyList(), eq(BatchFailureMode.BEST_EFFORT));
+    }
+
+    @Test
+    void transferBatch_shouldAcceptNdjsonStream() throws Exception {
+        String body = objectMapper.writeValueAsString(new TransferDTO("10001", "10002", 100L)) + "\n"
+                + objectMapper.writeValueAsString(new TransferDTO("10002", "10001", 200L)) + "\n";
+        BatchTransferResultDTO result = new BatchTransferResultDTO(BatchFailureMode.ALL_OR_NOTHING, true, 2, 0, Arrays.asList());
+
+        when(transferService.transferBatch(anyList(), isNull())).thenAnswer(inv -> {
+            List<Transfer> transfers = inv.getArgument(0);
+            org.junit.jupiter.api.Assertions.assertEquals(2, transfers.size());
+            org.junit.jupiter.api.Assertions.assertEquals(200L, transfers.get(1).getAmount());
+            return result;
+        });
+
+        mockMvc.perform(post("/api/bankaccounts/transfer/batch")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded", is(2)));
+    }
+
+    @Test
+    void transferBatch_shouldReturnUnprocessableEntityWhenRolledBack() throws Exception {
+        List<TransferDTO> batch = Arrays.asList(new TransferDTO("10001", "10002", 10000000L));
+        BatchTransferResultDTO result = new BatchTransferResultDTO(BatchFailureMode.ALL_OR_NOTHING, false, 0, 1, Arrays.asList(
+                new TransferItemResultDTO(0, "10001", "10002", TransferStatus.INSUFFICIENT_FUNDS)));
+
+        when(transferService.transferBatch(anyList(), isNull())).thenReturn(result);
+
+        mockMvc.perform(post("/api/bankaccounts/transfer/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.committed", is(false)));
+    }
+
+    @Test
+    void transferBatch_shouldRejectBatchAboveLimit() throws Exception {
+        List<TransferDTO> batch = Arrays.asList(
+                new TransferDTO("10001", "10002", 1L), new TransferDTO("10001", "10002", 1L),
+                new TransferDTO("10001", "10002", 1L), new TransferDTO("10001", "10002", 1L));
+
+        mockMvc.perform(post("/api/bankaccounts/transfer/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isPayloadTooLarge());
+
+        verify(transferService, never()).transferBatch(anyList(), any());
+    }
+
+    @Test
+    void transferBatch_shouldStopReadingNdjsonStreamAboveLimit() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            body.append(objectMapper.writeValueAsString(new TransferDTO("10001", "10002", 1L))).append('\n');
+        }
+        body.append("not json, never read\n");
+
+        mockMvc.perform(post("/api/bankaccounts/transfer/batch")
+                        .contentType("application/x-ndjson")
+                        .content(body.toString()))
+                .andExpect(status().isPayloadTooLarge());
+
+        verify(transferService, never()).transferBatch(anyList(), any());
+    }
+
+    @Test
+    void transferBatch_shouldRejectEmptyBatch() throws Exception {
+        mockMvc.perform(post("/api/bankaccounts/transfer/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void saveLogs_shouldAcceptLogMessage() throws Exception {
         mockMvc.perform(post("/api/bankaccounts/logmessage")
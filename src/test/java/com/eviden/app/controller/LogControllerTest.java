@@ -0,0 +1,69 @@
+package com.eviden.app.controller;
+
+import ch.qos.logback.classic.Level;
+import com.eviden.app.logger.MapHolder;
+import com.eviden.app.logger.RecentLogEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(LogController.class)
+class LogControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private MapHolder mapHolder;
+
+    @Test
+    void getRecentEvents_shouldPassFiltersAndReturnEvents() throws Exception {
+        when(mapHolder.recent(5, Level.ERROR, "com.eviden")).thenReturn(List.of(
+                new RecentLogEvent(7L, 1_700_000_000_000L, "ERROR", "com.eviden.app.Test", "main", "boom")));
+
+        mockMvc.perform(get("/api/logs/recent").param("limit", "5").param("level", "error").param("logger", "com.eviden"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].sequence", is(7)))
+                .andExpect(jsonPath("$[0].level", is("ERROR")))
+                .andExpect(jsonPath("$[0].message", is("boom")));
+    }
+
+    @Test
+    void getRecentEvents_shouldCapLimit() throws Exception {
+        when(mapHolder.recent(1000, null, null)).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/logs/recent").param("limit", "1000000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        verify(mapHolder).recent(1000, null, null);
+    }
+
+    @Test
+    void getRecentEvents_shouldRejectUnknownLevel() throws Exception {
+        mockMvc.perform(get("/api/logs/recent").param("level", "LOUD"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/logs/recent").param("level", "ALL"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/logs/recent").param("level", "OFF"))
+                .andExpect(status().isBadRequest());
+
+        verify(mapHolder, never()).recent(anyInt(), any(), any());
+    }
+}
@@ -0,0 +1,107 @@
+package com.eviden.app.controller;
+
+import com.eviden.app.dto.AccountPageDTO;
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.service.ReactiveAccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ReactiveBankAccountController.class)
+class ReactiveBankAccountControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ReactiveAccountService reactiveAccountService;
+
+    @Test
+    void getAllAccounts_shouldStreamNdjson() throws Exception {
+        when(reactiveAccountService.findAll()).thenReturn(Flux.just(account(1L, "000000000001"), account(2L, "000000000002")));
+
+        MvcResult result = mockMvc.perform(get("/api/v2/bankaccounts/").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.strip().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].contains("\"accountNumber\":\"000000000002\""));
+    }
+
+    @Test
+    void getAllAccounts_shouldCollectIntoArrayForJson() throws Exception {
+        when(reactiveAccountService.findAll()).thenReturn(Flux.just(account(1L, "000000000001"), account(2L, "000000000002")));
+
+        MvcResult result = mockMvc.perform(get("/api/v2/bankaccounts/").accept("application/json"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].accountNumber", is("000000000001")));
+    }
+
+    @Test
+    void getBankAccount_shouldReturnAccountOr404() throws Exception {
+        when(reactiveAccountService.findByAccountNumber("000000000001")).thenReturn(Mono.just(account(1L, "000000000001")));
+        when(reactiveAccountService.findByAccountNumber("000000000009")).thenReturn(Mono.empty());
+
+        MvcResult found = mockMvc.perform(get("/api/v2/bankaccounts/000000000001"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(found))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accountNumber", is("000000000001")));
+
+        MvcResult missing = mockMvc.perform(get("/api/v2/bankaccounts/000000000009"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(missing))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getAccountsPage_shouldPassCursor() throws Exception {
+        when(reactiveAccountService.page(5L, 1)).thenReturn(Mono.just(new AccountPageDTO(List.of(account(6L, "000000000006")), 6L)));
+
+        MvcResult result = mockMvc.perform(get("/api/v2/bankaccounts/page").param("after", "5").param("size", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.nextCursor", is(6)));
+    }
+
+    private static BankAccount account(Long id, String accountNumber) {
+        BankAccount account = new BankAccount(accountNumber, "Owner " + id, 100L, "Savings");
+        account.setId(id);
+        return account;
+    }
+}
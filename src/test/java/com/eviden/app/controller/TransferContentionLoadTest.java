@@ -0,0 +1,66 @@
+package com.eviden.app.controller;
+
+import com.eviden.app.benchmark.TransferContentionBenchmark;
+import com.eviden.app.benchmark.TransferContentionBenchmark.Report;
+import com.eviden.app.benchmark.TransferContentionBenchmark.Settings;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.utils.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a short {@link TransferContentionBenchmark} against the whole application: a few hot
+ * accounts, many clients, and small balances so that insufficient-funds rejections race with
+ * successful transfers on the same accounts. Money must be conserved.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"logging.level.root=WARN", "transfer.journal.sync=false"})
+class TransferContentionLoadTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+
+    @DynamicPropertySource
+    static void dataDirectories(DynamicPropertyRegistry registry) {
+        Path data;
+        try {
+            data = Files.createTempDirectory("transfer-contention-test");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        registry.add("transfer.journal.dir", () -> data.resolve("journal").toString());
+        registry.add("transfer.snapshot.dir", () -> data.resolve("snapshots").toString());
+        registry.add("archive.base-dir", () -> data.resolve("exports").toString());
+    }
+
+    @Test
+    void transfer_shouldConserveMoneyUnderContentionOnHotAccounts() throws InterruptedException {
+        Settings settings = new Settings(50, 1.2, Money.parse("100.00"), Money.parse("60.00"), 16,
+                Duration.ZERO, Duration.ofSeconds(2), 7);
+
+        Report report = TransferContentionBenchmark.run(bankAccountRepository, URI.create("http://localhost:" + port), settings);
+
+        assertEquals(0, report.errors(), report::toString);
+        assertTrue(report.transfers() > 0, report::toString);
+        assertTrue(report.rejected() > 0, report::toString);
+        assertEquals(report.expectedTotal(), report.actualTotal(), report::toString);
+        assertEquals(0, report.negativeBalances(), report::toString);
+    }
+}
@@ -0,0 +1,131 @@
+package com.eviden.app.journal;
+
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.service.TransferEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BalanceSnapshotsTest {
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, Long> database = new LinkedHashMap<>();
+    private TransferJournal journal;
+    private BalanceSnapshots snapshots;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journal = new TransferJournal(dir.resolve("journal").toString(), DataSize.ofKilobytes(4), 2, false);
+        BankAccountRepository repository = mock(BankAccountRepository.class);
+        when(repository.streamBalances()).thenAnswer(inv -> database.entrySet().stream()
+                .map(entry -> new Object[]{entry.getKey(), entry.getValue()}));
+        TransferEngine engine = new TransferEngine(repository, TransactionOperations.withoutTransaction(), 8);
+        snapshots = new BalanceSnapshots(journal, engine, repository, mock(PlatformTransactionManager.class),
+                dir.resolve("snapshots").toString(), Duration.ZERO, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        snapshots.close();
+        journal.close();
+    }
+
+    @Test
+    void latest_plusLaterRecords_shouldGiveTheSameBalancesAsAFullReplay() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            database.put(String.format("%012d", i), 10_000L);
+        }
+        for (int i = 0; i < 300; i++) {
+            transfer(i % 100, (i * 7 + 3) % 100, 5 + i % 13);
+        }
+        BalanceSnapshot written = snapshots.write();
+        for (int i = 0; i < 300; i++) {
+            transfer((i * 3) % 100, (i * 11 + 1) % 100, 1 + i % 17);
+        }
+
+        BalanceSnapshot snapshot = snapshots.latest();
+
+        assertEquals(written.path(), snapshot.path());
+        assertEquals(300, snapshot.journalSequence());
+        assertEquals(100, snapshot.accounts());
+        Map<String, Long> restored = new HashMap<>();
+        snapshot.forEach(restored::put);
+        journal.replay(snapshot.journalSequence(), record -> {
+            restored.put(record.senderAccount(), record.senderBalance());
+            if (record.type() == JournalRecord.TRANSFER) {
+                restored.put(record.receiverAccount(), record.receiverBalance());
+            }
+        });
+        assertEquals(database, restored);
+    }
+
+    @Test
+    void latest_shouldSkipCorruptSnapshotsAndKeepOnlyTheRetainedOnes() throws IOException {
+        database.put("000000000001", 500L);
+        BalanceSnapshot first = snapshots.write();
+        transfer(1, 2, 0);
+        BalanceSnapshot second = snapshots.write();
+        transfer(1, 2, 0);
+        BalanceSnapshot third = snapshots.write();
+
+        assertEquals(false, Files.exists(first.path()));
+        try (FileChannel channel = FileChannel.open(third.path(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), BalanceSnapshot.HEADER + 9);
+        }
+
+        assertEquals(second.path(), snapshots.latest().path());
+        assertThrows(IOException.class, () -> BalanceSnapshot.open(third.path()));
+        Files.delete(second.path());
+        Files.delete(third.path());
+        assertNull(snapshots.latest());
+    }
+
+    @Test
+    void write_shouldHandleAnEmptyDatabase() throws IOException {
+        BalanceSnapshot snapshot = snapshots.write();
+
+        assertEquals(0, snapshot.accounts());
+        assertEquals(0, snapshot.journalSequence());
+        assertEquals(BalanceSnapshot.HEADER + BalanceSnapshot.TRAILER, Files.size(snapshot.path()));
+        try (Stream<Path> files = Files.list(dir.resolve("snapshots"))) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    /**
+     * Moves money like the transfer engine does: journal first, then commit to the database.
+     */
+    private void transfer(int from, int to, long amount) {
+        String sender = String.format("%012d", from);
+        String receiver = String.format("%012d", to);
+        long senderBalance = database.getOrDefault(sender, 0L) - amount;
+        long receiverBalance = database.getOrDefault(receiver, 0L) + amount;
+        journal.append(sender, receiver, amount, senderBalance, receiverBalance);
+        database.put(sender, senderBalance);
+        database.put(receiver, receiverBalance);
+    }
+}
@@ -0,0 +1,227 @@
+package com.eviden.app.journal;
+
+import com.eviden.app.entity.Transfer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class TransferJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private TransferJournal open(int segmentKb, int retained) throws IOException {
+        return new TransferJournal(dir.toString(), DataSize.ofKilobytes(segmentKb), retained, true);
+    }
+
+    private static Map<String, Long> balances(TransferJournal journal) throws IOException {
+        Map<String, Long> balances = new HashMap<>();
+        journal.replay(record -> {
+            balances.put(record.senderAccount(), record.senderBalance());
+            if (record.type() == JournalRecord.TRANSFER) {
+                balances.put(record.receiverAccount(), record.receiverBalance());
+            }
+        });
+        return balances;
+    }
+
+    @Test
+    void replay_shouldReturnRecordsInOrder() throws IOException {
+        try (TransferJournal journal = open(64, 4)) {
+            assertEquals(1, journal.append("10001", "10002", 10L, 990L, 510L));
+            assertEquals(2, journal.append("10002", "10001", 5L, 505L, 995L));
+
+            List<JournalRecord> records = new ArrayList<>();
+            journal.replay(records::add);
+
+            assertEquals(2, records.size());
+            assertEquals("10002", records.get(1).senderAccount());
+            assertEquals(995L, records.get(1).receiverBalance());
+            assertEquals(Map.of("10001", 995L, "10002", 505L), balances(journal));
+        }
+    }
+
+    @Test
+    void appendAll_shouldWriteEveryTransferOfTheBatchInOrder() throws IOException {
+        try (TransferJournal journal = open(64, 4)) {
+            journal.append("10001", "10002", 10L, 990L, 510L);
+
+            long last = journal.appendAll(List.of(new Transfer("10001", "10002", 10L), new Transfer("10002", "10003", 5L)),
+                    new long[]{980L, 515L}, new long[]{520L, 5L});
+
+            assertEquals(3, last);
+            assertEquals(-1, journal.appendAll(List.of(), new long[0], new long[0]));
+            assertEquals(Map.of("10001", 980L, "10002", 515L, "10003", 5L), balances(journal));
+        }
+    }
+
+    @Test
+    void reopen_shouldContinueAfterLastRecord() throws IOException {
+        try (TransferJournal journal = open(64, 4)) {
+            journal.append("10001", "10002", 10L, 990L, 510L);
+        }
+        try (TransferJournal journal = open(64, 4)) {
+            assertEquals(1, journal.lastSequence());
+            assertEquals(2, journal.append("10001", "10002", 10L, 980L, 520L));
+            assertEquals(Map.of("10001", 980L, "10002", 520L), balances(journal));
+        }
+    }
+
+    @Test
+    void onRollback_shouldReplayBalancesBeforeTheTransfer() throws IOException {
+        try (TransferJournal journal = open(64, 4)) {
+            journal.append("10001", "10002", 10L, 990L, 510L);
+            journal.onTransfer("10001", "10002", 40L, 950L, 550L);
+            journal.onRollback("10001", "10002", 40L, 990L, 510L);
+
+            List<JournalRecord> records = new ArrayList<>();
+            journal.replay(records::add);
+
+            assertEquals(4, records.size());
+            assertEquals(JournalRecord.BALANCE, records.get(3).type());
+            assertEquals(Map.of("10001", 990L, "10002", 510L), balances(journal));
+        }
+    }
+
+    @Test
+    void onRollback_shouldRefuseTrafficWhenItCannotBeJournaled() throws IOException {
+        ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+        TransferJournal journal = open(64, 4);
+        journal.setApplicationEventPublisher(publisher);
+        journal.append("10001", "10002", 10L, 990L, 510L);
+        journal.close();
+
+        assertThrows(IllegalStateException.class, () -> journal.onRollback("10001", "10002", 10L, 1000L, 500L));
+
+        assertTrue(journal.isDiverged());
+        ArgumentCaptor<AvailabilityChangeEvent<?>> event = ArgumentCaptor.captor();
+        verify(publisher).publishEvent(event.capture());
+        assertEquals(ReadinessState.REFUSING_TRAFFIC, event.getValue().getState());
+    }
+
+    @Test
+    void replay_shouldStopAtCorruptRecord() throws IOException {
+        try (TransferJournal journal = open(64, 4)) {
+            journal.append("10001", "10002", 10L, 990L, 510L);
+            journal.append("10001", "10002", 10L, 980L, 520L);
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            // flip a byte inside the second record's body
+            int secondRecord = TransferJournal.SEGMENT_HEADER + TransferJournal.RECORD_HEADER + 55;
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), secondRecord + TransferJournal.RECORD_HEADER + 20);
+        }
+        try (TransferJournal journal = open(64, 4)) {
+            assertEquals(Map.of("10001", 990L, "10002", 510L), balances(journal));
+            assertEquals(2, journal.append("10003", "10001", 1L, 0L, 991L));
+        }
+    }
+
+    @Test
+    void roll_shouldCompactOldSegmentsIntoLatestBalances() throws Exception {
+        Map<String, Long> expected = new HashMap<>();
+        try (TransferJournal journal = open(4, 2)) {
+            for (int i = 0; i < 500; i++) {
+                String sender = "1000" + (i % 7);
+                String receiver = "2000" + (i % 5);
+                journal.append(sender, receiver, 1L, 1000L - i, 2000L + i);
+                expected.put(sender, 1000L - i);
+                expected.put(receiver, 2000L + i);
+            }
+        }
+        try (TransferJournal journal = open(4, 2)) {
+            assertTrue(journal.segmentCount() <= 3, "segments: " + journal.segmentCount());
+            assertEquals(expected, balances(journal));
+            assertEquals(500, journal.lastSequence());
+        }
+    }
+
+    @Test
+    void replay_shouldOnlyHandOverRecordsAfterSequence() throws Exception {
+        Map<String, Long> lastSequence = new HashMap<>();
+        Map<String, Long> latest = new HashMap<>();
+        try (TransferJournal journal = open(4, 2)) {
+            for (int i = 0; i < 500; i++) {
+                String sender = "1000" + (i % 7);
+                String receiver = "2000" + (i % 11);
+                long sequence = journal.append(sender, receiver, 1L, 1000L - i, 2000L + i);
+                lastSequence.put(sender, sequence);
+                lastSequence.put(receiver, sequence);
+                latest.put(sender, 1000L - i);
+                latest.put(receiver, 2000L + i);
+            }
+        }
+        try (TransferJournal journal = open(4, 2)) {
+            for (long after : new long[]{0, 250, 495, 500}) {
+                Map<String, Long> expected = new HashMap<>();
+                lastSequence.forEach((account, sequence) -> {
+                    if (sequence > after) {
+                        expected.put(account, latest.get(account));
+                    }
+                });
+                Map<String, Long> replayed = new HashMap<>();
+                journal.replay(after, record -> {
+                    assertTrue(record.sequence() > after);
+                    replayed.put(record.senderAccount(), record.senderBalance());
+                    if (record.type() == JournalRecord.TRANSFER) {
+                        replayed.put(record.receiverAccount(), record.receiverBalance());
+                    }
+                });
+                assertEquals(expected, replayed, "after " + after);
+            }
+        }
+    }
+
+    @Test
+    void append_shouldGroupConcurrentWriters() throws Exception {
+        int threads = 8;
+        int perThread = 200;
+        try (TransferJournal journal = open(1024, 4)) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++) {
+                String account = "3000" + t;
+                pool.execute(() -> {
+                    for (int i = 1; i <= perThread; i++) {
+                        journal.append(account, "40000", 1L, -i, i);
+                    }
+                });
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+            assertEquals(threads * perThread, journal.lastSequence());
+            Map<String, Long> balances = balances(journal);
+            for (int t = 0; t < threads; t++) {
+                assertEquals(-perThread, balances.get("3000" + t));
+            }
+        }
+    }
+}
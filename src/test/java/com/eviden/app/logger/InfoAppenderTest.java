@@ -0,0 +1,244 @@
+package com.eviden.app.logger;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InfoAppenderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LoggerContext context = new LoggerContext();
+    private final BlockingQueue<String> bodies = new LinkedBlockingQueue<>();
+    private final List<String> paths = new ArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch received = new CountDownLatch(1);
+    private volatile boolean holdRequests;
+    private HttpServer server;
+    private InfoAppender appender;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            received.countDown();
+            if (holdRequests) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int status = failuresLeft.getAndDecrement() > 0 ? 503 : 200;
+            if (status == 200) {
+                synchronized (paths) {
+                    paths.add(exchange.getRequestURI().getPath());
+                }
+                bodies.add(body);
+            }
+            byte[] response = "{\"took\":1,\"errors\":false,\"items\":[]}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        if (appender != null) {
+            appender.stop();
+        }
+        server.stop(0);
+    }
+
+    private InfoAppender appender(int queueSize, int batchSize, long flushIntervalMillis, OverflowPolicy policy) {
+        InfoAppender created = new InfoAppender();
+        created.setContext(context);
+        created.setName("test");
+        created.setPrefix("test");
+        created.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        created.setIndex("delivery-logs");
+        created.setQueueSize(queueSize);
+        created.setBatchSize(batchSize);
+        created.setFlushIntervalMillis(flushIntervalMillis);
+        created.setOverflowPolicy(policy);
+        created.setRetryBackoffMillis(10);
+        created.start();
+        return created;
+    }
+
+    private LoggingEvent event(Level level, String message) {
+        return new LoggingEvent(InfoAppenderTest.class.getName(), context.getLogger("com.eviden.app.Test"), level, message, null, null);
+    }
+
+    private List<JsonNode> documents(String body) throws IOException {
+        List<JsonNode> documents = new ArrayList<>();
+        String[] lines = body.split("\n");
+        for (int i = 0; i < lines.length; i += 2) {
+            assertEquals("{\"index\":{}}", lines[i]);
+            documents.add(objectMapper.readTree(lines[i + 1]));
+        }
+        return documents;
+    }
+
+    @Test
+    void append_shouldShipFullBatchesToBulkEndpoint() throws Exception {
+        appender = appender(100, 3, 60_000, OverflowPolicy.DROP);
+
+        for (int i = 0; i < 6; i++) {
+            appender.doAppend(event(Level.INFO, "message " + i));
+        }
+
+        List<JsonNode> first = documents(bodies.poll(5, TimeUnit.SECONDS));
+        List<JsonNode> second = documents(bodies.poll(5, TimeUnit.SECONDS));
+        assertEquals(3, first.size());
+        assertEquals(3, second.size());
+        assertEquals("message 0", first.get(0).get("message").asText());
+        assertEquals("INFO", first.get(0).get("level").asText());
+        assertEquals("com.eviden.app.Test", first.get(0).get("logger").asText());
+        assertNotNull(first.get(0).get("@timestamp"));
+        assertEquals("message 5", second.get(2).get("message").asText());
+        assertEquals(List.of("/delivery-logs/_bulk", "/delivery-logs/_bulk"), paths);
+    }
+
+    @Test
+    void append_shouldShipPartialBatchAfterFlushInterval() throws Exception {
+        appender = appender(100, 500, 50, OverflowPolicy.DROP);
+
+        appender.doAppend(event(Level.WARN, "lonely"));
+
+        String body = bodies.poll(5, TimeUnit.SECONDS);
+        assertNotNull(body);
+        assertEquals("lonely", documents(body).get(0).get("message").asText());
+    }
+
+    @Test
+    void encoder_shouldEscapeMessagesIntoValidJson() throws Exception {
+        appender = appender(100, 1, 60_000, OverflowPolicy.DROP);
+        String message = "quote \" backslash \\ newline \n tab \t bell \u0007 unicode é中";
+
+        appender.doAppend(event(Level.ERROR, message));
+
+        assertEquals(message, documents(bodies.poll(5, TimeUnit.SECONDS)).get(0).get("message").asText());
+    }
+
+    @Test
+    void append_shouldDropWhenQueueIsFullWithoutBlocking() throws Exception {
+        holdRequests = true;
+        appender = appender(2, 1, 60_000, OverflowPolicy.DROP);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            appender.doAppend(event(Level.INFO, "message " + i));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 1_000, "append blocked for " + elapsedMillis + " ms");
+        // one event is in flight and at most two are queued, the rest must have been dropped
+        assertTrue(appender.getDroppedCount() >= 47, "dropped " + appender.getDroppedCount());
+    }
+
+    @Test
+    void append_shouldSampleInfoButKeepWarningsWhenQueueIsNearlyFull() throws Exception {
+        holdRequests = true;
+        appender = appender(16, 1, 60_000, OverflowPolicy.SAMPLE);
+        appender.setSampleRate(1_000_000);
+        appender.doAppend(event(Level.INFO, "in flight"));
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 12; i++) {
+            appender.doAppend(event(Level.INFO, "fill " + i));
+        }
+        appender.doAppend(event(Level.INFO, "first sampled"));
+        appender.doAppend(event(Level.INFO, "dropped 1"));
+        appender.doAppend(event(Level.INFO, "dropped 2"));
+        appender.doAppend(event(Level.WARN, "kept"));
+
+        assertEquals(2, appender.getSampledOutCount());
+        assertEquals(0, appender.getDroppedCount());
+        release.countDown();
+        List<String> messages = new ArrayList<>();
+        while (messages.size() < 15) {
+            String body = bodies.poll(5, TimeUnit.SECONDS);
+            assertNotNull(body, "received " + messages);
+            for (JsonNode document : documents(body)) {
+                messages.add(document.get("message").asText());
+            }
+        }
+        assertTrue(messages.contains("first sampled"), messages.toString());
+        assertTrue(messages.contains("kept"), messages.toString());
+    }
+
+    @Test
+    void send_shouldRetryServerErrors() throws Exception {
+        failuresLeft.set(2);
+        appender = appender(100, 1, 60_000, OverflowPolicy.BLOCK);
+
+        appender.doAppend(event(Level.INFO, "retried"));
+
+        assertEquals("retried", documents(bodies.poll(5, TimeUnit.SECONDS)).get(0).get("message").asText());
+        assertEquals(0, appender.getFailedCount());
+    }
+
+    @Test
+    void metrics_shouldPublishQueueAndCountersOfAttachedAppenders() throws Exception {
+        holdRequests = true;
+        appender = appender(100, 1, 60_000, OverflowPolicy.DROP);
+        context.getLogger("com.eviden.app").addAppender(appender);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new InfoAppenderMetrics(context).bindTo(registry);
+
+        appender.doAppend(event(Level.INFO, "in flight"));
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        appender.doAppend(event(Level.INFO, "queued"));
+
+        assertEquals(1.0, registry.get("log.shipping.queue.depth").tag("appender", "test").gauge().value());
+        assertEquals(100.0, registry.get("log.shipping.queue.capacity").tag("appender", "test").gauge().value());
+        assertEquals(0.0, registry.get("log.shipping.events").tag("result", "dropped").functionCounter().count());
+        release.countDown();
+    }
+
+    @Test
+    void stop_shouldFlushQueuedEvents() throws Exception {
+        appender = appender(100, 500, 60_000, OverflowPolicy.DROP);
+        for (int i = 0; i < 10; i++) {
+            appender.doAppend(event(Level.INFO, "message " + i));
+        }
+
+        appender.stop();
+
+        assertEquals(10, documents(bodies.poll(1, TimeUnit.SECONDS)).size());
+        assertNull(bodies.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(10, appender.getShippedCount());
+    }
+}
@@ -0,0 +1,100 @@
+package com.eviden.app.logger;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MapHolderTest {
+
+    private final LoggerContext context = new LoggerContext();
+
+    private LoggingEvent event(String logger, Level level, String message) {
+        return new LoggingEvent(MapHolderTest.class.getName(), context.getLogger(logger), level, message, null, null);
+    }
+
+    private static List<String> messages(List<RecentLogEvent> events) {
+        return events.stream().map(RecentLogEvent::message).toList();
+    }
+
+    @Test
+    void recent_shouldKeepOnlyTheNewestEventsNewestFirst() {
+        MapHolder holder = new MapHolder();
+        holder.configure(4, Map.of());
+
+        for (int i = 0; i < 10; i++) {
+            holder.add(event("a", Level.INFO, "m" + i));
+        }
+
+        assertEquals(List.of("m9", "m8", "m7", "m6"), messages(holder.recent(100, null, null)));
+        assertEquals(List.of("m9", "m8"), messages(holder.recent(2, null, null)));
+    }
+
+    @Test
+    void recent_shouldKeepLevelsWithOwnRingWhileSharedRingChurns() {
+        MapHolder holder = new MapHolder();
+        holder.configure(4, Map.of(Level.ERROR, 2));
+
+        holder.add(event("a", Level.ERROR, "e1"));
+        holder.add(event("a", Level.ERROR, "e2"));
+        for (int i = 0; i < 10; i++) {
+            holder.add(event("a", Level.DEBUG, "d" + i));
+        }
+        holder.add(event("a", Level.WARN, "w1"));
+
+        assertEquals(List.of("e2", "e1"), messages(holder.recent(10, Level.ERROR, null)));
+        assertEquals(List.of("w1"), messages(holder.recent(10, Level.WARN, null)));
+        assertEquals(List.of("w1", "d9", "d8", "d7", "e2", "e1"), messages(holder.recent(10, null, null)));
+        assertEquals(List.of("w1", "d9", "d8"), messages(holder.recent(3, null, null)));
+    }
+
+    @Test
+    void recent_shouldFilterByLoggerPrefix() {
+        MapHolder holder = new MapHolder();
+        holder.add(event("com.eviden.app.service.TransferEngine", Level.INFO, "engine"));
+        holder.add(event("org.hibernate.SQL", Level.INFO, "sql"));
+        holder.add(event("com.eviden.app.controller.BankAccountController", Level.INFO, "controller"));
+
+        assertEquals(List.of("controller", "engine"), messages(holder.recent(10, null, "com.eviden.app")));
+        assertEquals(List.of("sql"), messages(holder.recent(10, Level.INFO, "org.")));
+    }
+
+    @Test
+    void add_shouldStayBoundedUnderConcurrentWriters() throws Exception {
+        MapHolder holder = new MapHolder();
+        holder.configure(64, Map.of());
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int id = t;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    holder.add(event("w" + id, Level.INFO, id + ":" + i));
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        List<RecentLogEvent> recent = holder.recent(1_000, null, null);
+        assertEquals(64, recent.size());
+        for (int i = 1; i < recent.size(); i++) {
+            assertTrue(recent.get(i - 1).sequence() > recent.get(i).sequence());
+        }
+    }
+
+    @Test
+    void getInstance_shouldAlwaysReturnTheSameHolder() {
+        assertSame(MapHolder.getInstance(), MapHolder.getInstance());
+    }
+}
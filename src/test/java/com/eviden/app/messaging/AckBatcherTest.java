@@ -0,0 +1,62 @@
+package com.eviden.app.messaging;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class AckBatcherTest {
+
+    private final Channel channel = mock(Channel.class);
+
+    @Test
+    void ack_shouldOnlyCoverContiguousFinishedPrefix() throws Exception {
+        AckBatcher acks = new AckBatcher(channel, 2);
+        AckBatcher.Delivery first = acks.received(1);
+        AckBatcher.Delivery second = acks.received(2);
+        AckBatcher.Delivery third = acks.received(3);
+
+        acks.ack(third);
+        acks.ack(second);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+
+        acks.ack(first);
+        verify(channel).basicAck(3, true);
+        assertEquals(1, acks.getAckCalls());
+        assertEquals(0, acks.getOutstanding());
+    }
+
+    @Test
+    void reject_shouldNackAloneAndNeverBeNamedByMultipleAck() throws Exception {
+        AckBatcher acks = new AckBatcher(channel, 10);
+        AckBatcher.Delivery first = acks.received(1);
+        AckBatcher.Delivery second = acks.received(2);
+
+        acks.ack(first);
+        acks.reject(second, false);
+        acks.flush();
+
+        InOrder order = inOrder(channel);
+        order.verify(channel).basicNack(2, false, false);
+        order.verify(channel).basicAck(1, true);
+        verify(channel, never()).basicAck(eq(2L), anyBoolean());
+    }
+
+    @Test
+    void flush_shouldDoNothingWhenNothingFinished() throws Exception {
+        AckBatcher acks = new AckBatcher(channel, 10);
+        acks.received(1);
+
+        acks.flush();
+
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+}
@@ -0,0 +1,111 @@
+package com.eviden.app.messaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MicroBatcherTest {
+
+    @Test
+    void submit_shouldCloseBatchWhenFull() throws Exception {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test", 5, Duration.ofSeconds(30), 1,
+                items -> {
+                    batches.add(items);
+                    return items.stream().map(i -> i * 10).toList();
+                })) {
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(batcher.submit(i));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i * 10, results.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(2, batches.size());
+            assertEquals(List.of(0, 1, 2, 3, 4), batches.get(0));
+            assertEquals(10, batcher.getItemCount());
+        }
+    }
+
+    @Test
+    void submit_shouldCloseBatchAfterMaxWait() throws Exception {
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test", 100, Duration.ofMillis(50), 1,
+                items -> items)) {
+            long start = System.nanoTime();
+            CompletableFuture<Integer> first = batcher.submit(1);
+            CompletableFuture<Integer> second = batcher.submit(2);
+
+            assertEquals(1, first.get(5, TimeUnit.SECONDS));
+            assertEquals(2, second.get(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+            assertEquals(1, batcher.getBatchCount());
+        }
+    }
+
+    @Test
+    void submit_shouldGrowBatchesWhileProcessorIsBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> sizes = new CopyOnWriteArrayList<>();
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test", 100, Duration.ZERO, 1, items -> {
+            sizes.add(items.size());
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return items;
+        })) {
+            CompletableFuture<Integer> first = batcher.submit(0);
+            while (sizes.isEmpty()) {
+                Thread.onSpinWait();
+            }
+            List<CompletableFuture<Integer>> rest = new ArrayList<>();
+            for (int i = 1; i <= 20; i++) {
+                rest.add(batcher.submit(i));
+            }
+            release.countDown();
+
+            first.get(5, TimeUnit.SECONDS);
+            for (CompletableFuture<Integer> result : rest) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(List.of(1, 20), sizes);
+        }
+    }
+
+    @Test
+    void submit_shouldFailWholeBatchWhenProcessorThrows() {
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test", 2, Duration.ofSeconds(30), 1,
+                items -> {
+                    throw new IllegalStateException("database down");
+                })) {
+            CompletableFuture<Integer> first = batcher.submit(1);
+            CompletableFuture<Integer> second = batcher.submit(2);
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, failure.getCause());
+            assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void close_shouldFailItemsSubmittedAfterwards() {
+        MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test", 2, Duration.ofSeconds(30), 1, items -> items);
+        batcher.close();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> batcher.submit(1).get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+    }
+}
@@ -0,0 +1,182 @@
+package com.eviden.app.messaging;
+
+import com.eviden.app.dto.BatchTransferResultDTO;
+import com.eviden.app.dto.TransferCommandReplyDTO;
+import com.eviden.app.dto.TransferItemResultDTO;
+import com.eviden.app.entity.Transfer;
+import com.eviden.app.service.BatchFailureMode;
+import com.eviden.app.service.ConsumerService;
+import com.eviden.app.service.TransferServiceImpl;
+import com.eviden.app.service.TransferStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransferCommandConsumerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConsumerService consumerService = mock(ConsumerService.class);
+    private final TransferServiceImpl transferService = mock(TransferServiceImpl.class);
+    private final Channel channel = mock(Channel.class);
+    private final List<List<Transfer>> batches = new CopyOnWriteArrayList<>();
+    private final Set<String> applied = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger appliedCount = new AtomicInteger();
+    private TransferCommandConsumer consumer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(consumerService.withChannel(any())).thenAnswer(inv ->
+                inv.getArgument(0, ChannelPool.ChannelCallback.class).doInChannel(channel));
+        when(transferService.transferBatch(anyList(), eq(BatchFailureMode.BEST_EFFORT), anyList())).thenAnswer(inv -> {
+            List<Transfer> transfers = inv.getArgument(0);
+            List<String> commandIds = inv.getArgument(2);
+            batches.add(List.copyOf(transfers));
+            List<TransferItemResultDTO> results = new ArrayList<>();
+            for (int i = 0; i < transfers.size(); i++) {
+                Transfer transfer = transfers.get(i);
+                String commandId = commandIds.get(i);
+                if (commandId == null || applied.add(commandId)) {
+                    appliedCount.incrementAndGet();
+                }
+                TransferStatus status = transfer.getAmount() > 1_000 ? TransferStatus.INSUFFICIENT_FUNDS : TransferStatus.SUCCESS;
+                results.add(new TransferItemResultDTO(i, transfer.getSenderAccount(), transfer.getReceiverAccount(), status));
+            }
+            return new BatchTransferResultDTO(BatchFailureMode.BEST_EFFORT, true, 0, 0, results);
+        });
+        consumer = new TransferCommandConsumer(consumerService, transferService, objectMapper, "transfer.commands",
+                "transfer.replies", 50, Duration.ofMillis(100), 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumer.close();
+    }
+
+    @Test
+    void register_shouldRegisterForCommandQueue() {
+        verify(consumerService, never()).register(anyString(), any());
+
+        consumer.register();
+
+        verify(consumerService).register("transfer.commands", consumer);
+    }
+
+    @Test
+    void handle_shouldApplyConcurrentCommandsInBatchesAndReplyToEach() throws Exception {
+        ExecutorService senders = Executors.newFixedThreadPool(20);
+        List<Future<?>> sent = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            sent.add(senders.submit(() -> {
+                AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                        .correlationId("cmd-" + n).replyTo("client-" + (n % 2)).build();
+                String body = "{\"senderAccount\":\"000000000001\",\"receiverAccount\":\"000000000002\",\"amount\":"
+                        + (n == 7 ? "5000.00" : "1.50") + "}";
+                consumer.handle("transfer.commands", properties, body.getBytes(StandardCharsets.UTF_8));
+                return null;
+            }));
+        }
+        for (Future<?> future : sent) {
+            future.get();
+        }
+        senders.shutdown();
+
+        int applied = batches.stream().mapToInt(List::size).sum();
+        assertEquals(100, applied);
+        assertTrue(batches.size() < 100, "expected commands to share batches, got " + batches.size());
+        assertEquals(150L, batches.get(0).get(0).getAmount());
+
+        ArgumentCaptor<AMQP.BasicProperties> properties = ArgumentCaptor.forClass(AMQP.BasicProperties.class);
+        ArgumentCaptor<byte[]> bodies = ArgumentCaptor.forClass(byte[].class);
+        verify(channel, times(100)).basicPublish(eq(""), anyString(), properties.capture(), bodies.capture());
+        int insufficient = 0;
+        for (int i = 0; i < 100; i++) {
+            TransferCommandReplyDTO reply = objectMapper.readValue(bodies.getAllValues().get(i), TransferCommandReplyDTO.class);
+            assertEquals(reply.getCorrelationId(), properties.getAllValues().get(i).getCorrelationId());
+            if (reply.getStatus() == TransferStatus.INSUFFICIENT_FUNDS) {
+                assertEquals("cmd-7", reply.getCorrelationId());
+                insufficient++;
+            }
+        }
+        assertEquals(1, insufficient);
+        verify(channel, times(50)).basicPublish(eq(""), eq("client-0"), any(), any());
+    }
+
+    @Test
+    void handle_shouldReplyInvalidToUnreadableCommand() throws Exception {
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().correlationId("bad").build();
+
+        consumer.handle("transfer.commands", properties, "not json".getBytes(StandardCharsets.UTF_8));
+
+        ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+        verify(channel).basicPublish(eq(""), eq("transfer.replies"), any(), body.capture());
+        TransferCommandReplyDTO reply = objectMapper.readValue(body.getValue(), TransferCommandReplyDTO.class);
+        assertEquals("bad", reply.getCorrelationId());
+        assertEquals(TransferStatus.INVALID, reply.getStatus());
+        assertNull(reply.getSenderAccount());
+        verify(transferService, never()).transferBatch(anyList(), any(), anyList());
+    }
+
+    @Test
+    void handle_shouldReplyRolledBackWhenBatchDoesNotCommit() throws Exception {
+        when(transferService.transferBatch(anyList(), any(), anyList())).thenThrow(new IllegalStateException("database down"));
+        String body = "{\"senderAccount\":\"000000000001\",\"receiverAccount\":\"000000000002\",\"amount\":1}";
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().correlationId("c-1").build();
+
+        consumer.handle("transfer.commands", properties, body.getBytes(StandardCharsets.UTF_8));
+
+        ArgumentCaptor<byte[]> reply = ArgumentCaptor.forClass(byte[].class);
+        verify(channel).basicPublish(eq(""), eq("transfer.replies"), any(), reply.capture());
+        TransferCommandReplyDTO dto = objectMapper.readValue(reply.getValue(), TransferCommandReplyDTO.class);
+        assertEquals("c-1", dto.getCorrelationId());
+        assertEquals(TransferStatus.ROLLED_BACK, dto.getStatus());
+    }
+
+    @Test
+    void handle_shouldKeyRedeliveredCommandsByMessageId() throws Exception {
+        String body = "{\"senderAccount\":\"000000000001\",\"receiverAccount\":\"000000000002\",\"amount\":1}";
+        AMQP.BasicProperties byMessageId = new AMQP.BasicProperties.Builder()
+                .messageId("msg-1").correlationId("first").build();
+        AMQP.BasicProperties redelivery = new AMQP.BasicProperties.Builder()
+                .messageId("msg-1").correlationId("second").build();
+        AMQP.BasicProperties byCorrelationId = new AMQP.BasicProperties.Builder().correlationId("cmd-9").build();
+
+        consumer.handle("transfer.commands", byMessageId, body.getBytes(StandardCharsets.UTF_8));
+        consumer.handle("transfer.commands", redelivery, body.getBytes(StandardCharsets.UTF_8));
+        consumer.handle("transfer.commands", byCorrelationId, body.getBytes(StandardCharsets.UTF_8));
+        consumer.handle("transfer.commands", byCorrelationId, body.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, appliedCount.get());
+        assertEquals(Set.of("msg-1", "cmd-9"), applied);
+        verify(channel, times(4)).basicPublish(eq(""), eq("transfer.replies"), any(), any());
+    }
+}
@@ -0,0 +1,143 @@
+package com.eviden.app.service;
+
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AccountCacheTest {
+
+    private BankAccountRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(BankAccountRepository.class);
+        when(repository.findByAccountNumber(anyString())).thenAnswer(inv -> {
+            String number = inv.getArgument(0);
+            return number.startsWith("9") ? null : new BankAccount(number, "Owner " + number, 100L, "Savings");
+        });
+    }
+
+    @Test
+    void get_shouldLoadOnceAndServeHitsFromMemory() {
+        AccountCache cache = new AccountCache(repository, 10, Duration.ofMinutes(1));
+
+        BankAccount first = cache.get("10001");
+        BankAccount second = cache.get("10001");
+
+        assertSame(first, second);
+        verify(repository, times(1)).findByAccountNumber("10001");
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void get_shouldNotCacheUnknownAccounts() {
+        AccountCache cache = new AccountCache(repository, 10, Duration.ofMinutes(1));
+
+        assertNull(cache.get("99999"));
+        assertNull(cache.get("99999"));
+
+        verify(repository, times(2)).findByAccountNumber("99999");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void get_shouldReloadExpiredEntries() {
+        AccountCache cache = new AccountCache(repository, 10, Duration.ZERO);
+
+        cache.get("10001");
+        sleepBriefly();
+        cache.get("10001");
+
+        verify(repository, times(2)).findByAccountNumber("10001");
+        assertEquals(1, cache.expirations());
+    }
+
+    @Test
+    void get_shouldEvictOldestEntriesOverCapacity() {
+        AccountCache cache = new AccountCache(repository, 2, Duration.ofMinutes(1));
+
+        cache.get("10001");
+        cache.get("10002");
+        cache.get("10003");
+        cache.get("10002");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        cache.get("10001");
+        verify(repository, times(2)).findByAccountNumber("10001");
+        verify(repository, times(1)).findByAccountNumber("10002");
+    }
+
+    @Test
+    void onTransfer_shouldReplaceCachedBalances() {
+        AccountCache cache = new AccountCache(repository, 10, Duration.ofMinutes(1));
+        BankAccount before = cache.get("10001");
+
+        cache.onTransfer("10001", "10002", 40L, 60L, 140L);
+
+        BankAccount after = cache.get("10001");
+        assertEquals(60L, after.getBalance());
+        assertEquals(100L, before.getBalance());
+        assertEquals(1, cache.updates());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void get_shouldNotStoreLoadThatOverlapsTransfer() {
+        AccountCache cache = new AccountCache(repository, 10, Duration.ofMinutes(1));
+        when(repository.findByAccountNumber("10001")).thenAnswer(inv -> {
+            BankAccount stale = new BankAccount("10001", "Owner", 100L, "Savings");
+            cache.onTransfer("10001", "10002", 40L, 60L, 140L);
+            return stale;
+        });
+
+        assertEquals(100L, cache.get("10001").getBalance());
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidate_shouldForceReload() {
+        AccountCache cache = new AccountCache(repository, 10, Duration.ofMinutes(1));
+        cache.get("10001");
+
+        cache.invalidate("10001");
+        cache.get("10001");
+
+        verify(repository, times(2)).findByAccountNumber("10001");
+    }
+
+    @Test
+    void getIfPresent_shouldNeverLoad() {
+        AccountCache cache = new AccountCache(repository, 10, Duration.ofMinutes(1));
+
+        assertNull(cache.getIfPresent("10001"));
+        BankAccount loaded = cache.get("10001");
+
+        assertSame(loaded, cache.getIfPresent("10001"));
+        verify(repository, times(1)).findByAccountNumber("10001");
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    private static void sleepBriefly() {
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
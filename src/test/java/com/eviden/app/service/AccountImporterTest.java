@@ -0,0 +1,133 @@
+package com.eviden.app.service;
+
+import com.eviden.app.dto.AccountImportResultDTO;
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.utils.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountImporterTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BankAccountRepository repository;
+
+    private AccountImporter importer;
+
+    @BeforeEach
+    void setUp() {
+        importer = new AccountImporter(entityManager, new ObjectMapper(), transactionManager, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAllInBatch();
+    }
+
+    @Test
+    void importCsv_shouldCommitInChunksWithBatchedInserts() throws IOException {
+        StringBuilder csv = new StringBuilder("account_number,account_name,balance,type\n");
+        for (int i = 1; i <= 1000; i++) {
+            csv.append(String.format("%012d", i)).append(i == 7 ? ",\"Doe, \"\"JD\"\" John\"" : ",Owner " + i)
+                    .append(',').append(i).append(".50,Savings\n");
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        AccountImportResultDTO result = importer.importAccounts(stream(csv.toString()), AccountImporter.Format.CSV);
+
+        assertEquals(1000, result.getRows());
+        assertEquals(10, result.getChunks());
+        assertEquals(1000, repository.count());
+        assertEquals(1000, statistics.getEntityInsertCount());
+        // one statement per JDBC batch and per 50 sequence values, not one per row
+        assertTrue(statistics.getPrepareStatementCount() < 100, () -> "statements: " + statistics.getPrepareStatementCount());
+        BankAccount quoted = repository.findByAccountNumber("000000000007");
+        assertEquals("Doe, \"JD\" John", quoted.getAccountName());
+        assertEquals(Money.parse("7.50"), quoted.getBalance());
+    }
+
+    @Test
+    void importNdjson_shouldIgnoreIdsAndReadDecimalBalances() throws IOException {
+        String ndjson = """
+                {"id":999,"accountNumber":"000000000001","accountName":"A","balance":10.25,"type":"Savings"}
+
+                {"accountNumber":"000000000002","accountName":"B","balance":0.00,"type":"Checking"}
+                """;
+
+        AccountImportResultDTO result = importer.importAccounts(stream(ndjson), AccountImporter.Format.NDJSON);
+
+        assertEquals(2, result.getRows());
+        BankAccount first = repository.findByAccountNumber("000000000001");
+        assertTrue(first.getId() != 999L);
+        assertEquals(1025L, first.getBalance());
+        assertEquals("Checking", repository.findByAccountNumber("000000000002").getType());
+    }
+
+    @Test
+    void importAccounts_shouldKeepEarlierChunksWhenARowOrChunkFails() {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 1; i <= 250; i++) {
+            csv.append(String.format("%012d", i)).append(",Owner,1.00,Savings\n");
+        }
+        csv.append("12AB,Owner,1.00,Savings\n");
+
+        AccountImportException malformed = assertThrows(AccountImportException.class,
+                () -> importer.importAccounts(stream(csv.toString()), AccountImporter.Format.CSV));
+
+        assertEquals(200, malformed.getCommittedRows());
+        assertTrue(malformed.getMessage().startsWith("Line 251:"), malformed.getMessage());
+        assertEquals(200, repository.count());
+
+        AccountImportException duplicate = assertThrows(AccountImportException.class,
+                () -> importer.importAccounts(stream("999999999999,New,1.00,Savings\n000000000001,Again,1.00,Savings\n"),
+                        AccountImporter.Format.CSV));
+
+        assertEquals(0, duplicate.getCommittedRows());
+        assertEquals(200, repository.count());
+        assertThrows(AccountImportException.class,
+                () -> importer.importAccounts(stream("{\"accountNumber\":"), AccountImporter.Format.NDJSON));
+    }
+
+    @Test
+    void format_shouldFollowTheFileExtension() {
+        assertEquals(AccountImporter.Format.NDJSON, AccountImporter.Format.of("accounts.NDJSON"));
+        assertEquals(AccountImporter.Format.NDJSON, AccountImporter.Format.of("accounts.jsonl"));
+        assertEquals(AccountImporter.Format.CSV, AccountImporter.Format.of("accounts.csv"));
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
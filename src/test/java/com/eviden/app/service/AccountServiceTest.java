@@ -0,0 +1,106 @@
+package com.eviden.app.service;
+
+import com.eviden.app.dto.TransferHistoryItemDTO;
+import com.eviden.app.dto.TransferHistoryPageDTO;
+import com.eviden.app.entity.Transfer;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.repository.TransferRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+class AccountServiceTest {
+
+    private static final String OWN = "000000000001";
+    private static final String OTHER = "000000000002";
+    private static final String THIRD = "000000000003";
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    private AccountService accountService;
+
+    @BeforeEach
+    void setUp() {
+        accountService = new AccountService(bankAccountRepository, transferRepository, entityManager,
+                new ObjectMapper(), transactionManager);
+    }
+
+    @Test
+    void history_shouldPageSentAndReceivedTransfersNewestFirst() {
+        // two transfers per millisecond, alternating direction, plus some that do not involve OWN
+        for (int i = 0; i < 25; i++) {
+            transferRepository.save(new Transfer(OWN, OTHER, 100 + i, 1_000 + i / 2));
+            transferRepository.save(new Transfer(OTHER, THIRD, 1, 1_000 + i / 2));
+        }
+        for (int i = 0; i < 25; i++) {
+            transferRepository.save(new Transfer(THIRD, OWN, 200 + i, 1_000 + i / 2));
+        }
+
+        List<TransferHistoryItemDTO> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TransferHistoryPageDTO page = accountService.history(OWN, cursor, 20);
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(50, all.size());
+        assertEquals(50, all.stream().map(TransferHistoryItemDTO::getId).distinct().count());
+        for (int i = 1; i < all.size(); i++) {
+            TransferHistoryItemDTO before = all.get(i - 1);
+            TransferHistoryItemDTO item = all.get(i);
+            boolean ordered = before.getTimestamp() > item.getTimestamp()
+                    || (before.getTimestamp() == item.getTimestamp() && before.getId() > item.getId());
+            assertEquals(true, ordered, () -> before.getId() + " before " + item.getId());
+        }
+        TransferHistoryItemDTO newest = all.get(0);
+        assertEquals(1_012, newest.getTimestamp());
+        assertEquals(THIRD, newest.getSenderAccount());
+        assertEquals(OWN, newest.getReceiverAccount());
+        assertEquals(224, newest.getAmount());
+    }
+
+    @Test
+    void history_shouldEndWithoutCursorOnAnExactlyFullPage() {
+        transferRepository.save(new Transfer(OWN, OTHER, 1, 10));
+        transferRepository.save(new Transfer(OTHER, OWN, 2, 20));
+
+        TransferHistoryPageDTO page = accountService.history(OWN, null, 2);
+
+        assertEquals(2, page.getItems().size());
+        assertNull(page.getNextCursor());
+        assertEquals(0, accountService.history(THIRD, null, 10).getItems().size());
+    }
+
+    @Test
+    void history_shouldRejectCursorsItDidNotIssue() {
+        assertThrows(IllegalArgumentException.class, () -> accountService.history(OWN, "abc", 10));
+        assertThrows(IllegalArgumentException.class, () -> accountService.history(OWN, "12", 10));
+        assertThrows(IllegalArgumentException.class, () -> accountService.history(OWN, "-12", 10));
+    }
+}
@@ -1,77 +1,198 @@
 package com.eviden.app.service;
 
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Spy;
-import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-@ExtendWith(MockitoExtension.class)
 class ConsumerServiceTest {
 
-    @Spy
+    private Connection connection;
+    private final List<Channel> channels = new CopyOnWriteArrayList<>();
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
     private ConsumerService consumerService;
 
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = connection();
+        consumerService = service(2, 4);
+    }
+
+    private Connection connection() throws IOException {
+        Connection created = mock(Connection.class);
+        when(created.isOpen()).thenReturn(true);
+        when(created.createChannel()).thenAnswer(inv -> {
+            Channel channel = mock(Channel.class);
+            when(channel.isOpen()).thenReturn(true);
+            when(channel.basicConsume(anyString(), anyBoolean(), any(Consumer.class))).thenAnswer(consume -> {
+                consumers.add(consume.getArgument(2));
+                return "ctag-" + consumers.size();
+            });
+            channels.add(channel);
+            return channel;
+        });
+        return created;
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumerService.stop();
+    }
+
+    private ConsumerService service(int channelsPerQueue, int ackBatchSize) throws Exception {
+        ConsumerService service = spy(new ConsumerService("localhost", 5672, channelsPerQueue, 100, ackBatchSize,
+                Duration.ofMillis(50), Duration.ofSeconds(5), Duration.ofMillis(50), false, "", false, new String[0]));
+        doReturn(connection).when(service).getConnection();
+        return service;
+    }
+
     @Test
-    void connect_shouldDeclareQueueAndCreateConsumer() throws Exception {
-        Connection mockConnection = mock(Connection.class);
-        Channel mockChannel = mock(Channel.class);
-        when(mockConnection.createChannel()).thenReturn(mockChannel);
+    void connect_shouldDeclareQueueOnceAndConsumeOnEveryChannelWithPrefetch() throws Exception {
+        consumerService.connect("test_queue");
 
-        doReturn(mockConnection).when(consumerService).getConnection();
+        assertEquals(2, channels.size());
+        verify(channels.get(0)).queueDeclare("test_queue", false, false, false, null);
+        verify(channels.get(1), never()).queueDeclare(anyString(), anyBoolean(), anyBoolean(), anyBoolean(), any());
+        for (Channel channel : channels) {
+            verify(channel).basicQos(100);
+            verify(channel).basicConsume(eq("test_queue"), eq(false), any(Consumer.class));
+        }
+        assertTrue(consumerService.isRunning());
+    }
+
+    @Test
+    void connect_shouldDeclareDeadLetterQueueWhenSuffixIsSet() throws Exception {
+        consumerService = spy(new ConsumerService("localhost", 5672, 1, 100, 10, Duration.ofMillis(50),
+                Duration.ofSeconds(5), Duration.ofMillis(50), false, ".dead", false, new String[0]));
+        doReturn(connection).when(consumerService).getConnection();
 
         consumerService.connect("test_queue");
 
-        verify(mockConnection).createChannel();
-        verify(mockChannel).queueDeclare("test_queue", false, false, false, null);
+        verify(channels.get(0)).queueDeclare("test_queue.dead", false, false, false, null);
+        verify(channels.get(0)).queueDeclare("test_queue", false, false, false,
+                Map.of("x-dead-letter-exchange", "", "x-dead-letter-routing-key", "test_queue.dead"));
     }
 
     @Test
-    void connect_shouldCloseChannelAndConnection() throws Exception {
-        Connection mockConnection = mock(Connection.class);
-        Channel mockChannel = mock(Channel.class);
-        when(mockConnection.createChannel()).thenReturn(mockChannel);
+    void connect_shouldShareOneConnectionAndIgnoreRepeatedQueues() throws Exception {
+        consumerService.connect("test_queue");
+        consumerService.connect("test_queue");
+        consumerService.connect("another_queue");
 
-        doReturn(mockConnection).when(consumerService).getConnection();
+        verify(consumerService, times(1)).getConnection();
+        assertEquals(4, channels.size());
+        verify(channels.get(2)).queueDeclare("another_queue", false, false, false, null);
+    }
 
+    @Test
+    void delivery_shouldRunHandlerAndAckInBatches() throws Exception {
+        consumerService = service(1, 4);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        consumerService.register("test_queue", (queue, properties, body) ->
+                handled.add(new String(body, StandardCharsets.UTF_8)));
         consumerService.connect("test_queue");
 
-        verify(mockChannel).close();
-        verify(mockConnection).close();
+        deliver(consumers.get(0), 1, 8);
+
+        Channel channel = channels.get(0);
+        verify(channel, timeout(2000)).basicAck(8, true);
+        verify(channel, never()).basicAck(any(Long.class), eq(false));
+        assertEquals(8, handled.size());
+        assertEquals(8, consumerService.getProcessedCount());
     }
 
     @Test
-    void connect_shouldThrowExceptionWhenConnectionFails() throws Exception {
-        doThrow(new IOException("Connection refused")).when(consumerService).getConnection();
+    void delivery_shouldRejectFailedMessageWithoutRequeue() throws Exception {
+        consumerService = service(1, 2);
+        consumerService.register("test_queue", (queue, properties, body) -> {
+            if (new String(body, StandardCharsets.UTF_8).equals("message-2")) {
+                throw new IllegalStateException("poison");
+            }
+        });
+        consumerService.connect("test_queue");
 
-        assertThrows(IOException.class, () -> consumerService.connect("test_queue"));
+        deliver(consumers.get(0), 1, 4);
+
+        Channel channel = channels.get(0);
+        verify(channel, timeout(2000)).basicNack(2, false, false);
+        verify(channel, timeout(2000)).basicAck(4, true);
+        verify(channel, never()).basicAck(eq(2L), anyBoolean());
+        assertEquals(1, consumerService.getFailedCount());
     }
 
     @Test
-    void connect_shouldThrowExceptionWhenChannelCreationFails() throws Exception {
-        Connection mockConnection = mock(Connection.class);
-        when(mockConnection.createChannel()).thenThrow(new IOException("Channel creation failed"));
+    void stop_shouldCancelConsumersFlushAcksAndClose() throws Exception {
+        consumerService = service(1, 50);
+        consumerService.connect("test_queue");
+        deliver(consumers.get(0), 1, 3);
 
-        doReturn(mockConnection).when(consumerService).getConnection();
+        consumerService.stop();
 
-        assertThrows(IOException.class, () -> consumerService.connect("test_queue"));
+        Channel channel = channels.get(0);
+        verify(channel).basicCancel("ctag-1");
+        verify(channel).basicAck(3, true);
+        verify(channel).close();
+        verify(connection).close();
+        assertFalse(consumerService.isRunning());
+    }
+
+    @Test
+    void withChannel_shouldReusePooledChannel() throws Exception {
+        consumerService.withChannel(channel -> {
+            channel.basicPublish("", "replies", null, new byte[0]);
+            return null;
+        });
+        consumerService.withChannel(channel -> {
+            channel.basicPublish("", "replies", null, new byte[0]);
+            return null;
+        });
+
+        assertEquals(1, channels.size());
+        verify(channels.get(0), times(2)).basicPublish("", "replies", null, new byte[0]);
+    }
+
+    @Test
+    void connect_shouldThrowExceptionWhenConnectionFails() throws Exception {
+        doThrow(new IOException("Connection refused")).when(consumerService).getConnection();
 
-        verify(mockConnection).close();
+        assertThrows(IOException.class, () -> consumerService.connect("test_queue"));
+        assertFalse(consumerService.isRunning());
     }
 
     @Test
@@ -82,34 +203,80 @@ class ConsumerServiceTest {
     }
 
     @Test
-    void connect_shouldHandleQueueDeclareFailing() throws Exception {
-        Connection mockConnection = mock(Connection.class);
-        Channel mockChannel = mock(Channel.class);
-        when(mockConnection.createChannel()).thenReturn(mockChannel);
-        when(mockChannel.queueDeclare(anyString(), anyBoolean(), anyBoolean(), anyBoolean(), isNull()))
-                .thenThrow(new IOException("Queue declare failed"));
-
-        doReturn(mockConnection).when(consumerService).getConnection();
+    void connect_shouldCloseChannelsWhenQueueDeclareFails() throws Exception {
+        doAnswer(inv -> {
+            Channel channel = mock(Channel.class);
+            when(channel.isOpen()).thenReturn(true);
+            when(channel.queueDeclare(anyString(), anyBoolean(), anyBoolean(), anyBoolean(), isNull()))
+                    .thenThrow(new IOException("Queue declare failed"));
+            channels.add(channel);
+            return channel;
+        }).when(connection).createChannel();
 
         assertThrows(IOException.class, () -> consumerService.connect("test_queue"));
+
+        verify(channels.get(0)).close();
+        assertFalse(consumerService.isRunning());
     }
 
     @Test
-    void connect_shouldWorkWithDifferentQueueNames() throws Exception {
-        Connection mockConnection = mock(Connection.class);
-        Channel mockChannel = mock(Channel.class);
-        when(mockConnection.createChannel()).thenReturn(mockChannel);
+    void start_shouldNotFailContextWhenBrokerIsDown() throws Exception {
+        ConsumerService service = spy(new ConsumerService("localhost", 5672, 1, 100, 10, Duration.ofMillis(50),
+                Duration.ofSeconds(1), Duration.ofMillis(50), false, "", true, new String[]{"my_queue"}));
+        doThrow(new IOException("Connection refused")).when(service).getConnection();
 
-        doReturn(mockConnection).when(consumerService).getConnection();
+        service.start();
 
-        consumerService.connect("another_queue");
+        assertTrue(service.isAutoStartup());
+        assertFalse(service.isRunning());
+    }
 
-        verify(mockChannel).queueDeclare("another_queue", false, false, false, null);
+    @Test
+    void connectionLoss_shouldReconnectAndResumeConsuming() throws Exception {
+        consumerService = service(1, 1);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        consumerService.register("test_queue", (queue, properties, body) ->
+                handled.add(new String(body, StandardCharsets.UTF_8)));
+        AtomicReference<ShutdownListener> listener = new AtomicReference<>();
+        doAnswer(inv -> {
+            listener.set(inv.getArgument(0));
+            return null;
+        }).when(connection).addShutdownListener(any());
+        consumerService.connect("test_queue");
+        consumerService.withChannel(channel -> null);
+        Channel pooled = channels.get(1);
+
+        Connection replacement = connection();
+        doReturn(replacement).when(consumerService).getConnection();
+        when(connection.isOpen()).thenReturn(false);
+        listener.get().shutdownCompleted(new ShutdownSignalException(true, false, null, connection));
+
+        verify(replacement, timeout(2000)).createChannel();
+        // the mock records createChannel before its answer hands the channel to the test
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (consumers.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        verify(pooled).close();
+        Channel resumed = channels.get(2);
+        verify(resumed, timeout(2000)).basicConsume(eq("test_queue"), eq(false), any(Consumer.class));
+        deliver(consumers.get(1), 1, 1);
+        verify(resumed, timeout(2000)).basicAck(1, true);
+        assertEquals(List.of("message-1"), handled);
+        assertTrue(consumerService.isRunning());
     }
 
     @Test
-    void consumerService_shouldBeInstantiable() {
-        ConsumerService service = new ConsumerService();
-        assertNotNull(service);
+    void withChannel_shouldMarkServiceRunningSoStopReleasesConnection() throws Exception {
+        consumerService.withChannel(channel -> null);
+
+        assertTrue(consumerService.isRunning());
+    }
+
+    private static void deliver(Consumer consumer, int first, int last) throws IOException {
+        for (int tag = first; tag <= last; tag++) {
+            consumer.handleDelivery("ctag", new Envelope(tag, false, "", "test_queue"),
+                    new AMQP.BasicProperties(), ("message-" + tag).getBytes(StandardCharsets.UTF_8));
+        }
     }
 }
@@ -0,0 +1,71 @@
+package com.eviden.app.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileServiceTest {
+
+    @TempDir
+    Path temp;
+
+    private Path baseDir;
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        baseDir = Files.createDirectories(temp.resolve("exports"));
+        fileService = new FileService(baseDir.toString(), 2, DataSize.ofKilobytes(64), 6,
+                DataSize.ofKilobytes(64), new String[]{"pdf"});
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileService.close();
+    }
+
+    @Test
+    void resolveArchivePath_shouldStayInsideBaseDir() throws IOException {
+        assertEquals(baseDir.resolve("statements/2024").toFile(), fileService.resolveArchivePath("statements/2024"));
+        assertThrows(IllegalArgumentException.class, () -> fileService.resolveArchivePath("../secrets"));
+        assertThrows(IllegalArgumentException.class, () -> fileService.resolveArchivePath(temp.toString()));
+        assertThrows(IllegalArgumentException.class, () -> fileService.resolveArchivePath(" "));
+
+        Files.createDirectories(temp.resolve("secrets"));
+        Files.createSymbolicLink(baseDir.resolve("escape"), temp);
+        assertThrows(IllegalArgumentException.class, () -> fileService.resolveArchivePath("escape/secrets"));
+        assertThrows(IllegalArgumentException.class, () -> fileService.resolveArchivePath("escape/secrets/new.zip"));
+    }
+
+    @Test
+    void streamZip_shouldWriteArchiveToStream() throws IOException {
+        Path statements = Files.createDirectories(baseDir.resolve("statements"));
+        Files.writeString(statements.resolve("january.csv"), "000000000001;000000000002;10.00\n");
+        File directory = fileService.resolveArchivePath("statements");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        fileService.streamZip(directory, out);
+
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry = in.getNextEntry();
+            assertEquals("statements/", entry.getName());
+            entry = in.getNextEntry();
+            assertEquals("statements/january.csv", entry.getName());
+            assertEquals("000000000001;000000000002;10.00\n", new String(in.readAllBytes()));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.eviden.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyCacheTest {
+
+    @Test
+    void execute_shouldRunOnceAndReplayResult() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, Duration.ofMinutes(1), value -> true);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("done-1", cache.execute("k", "f", () -> "done-" + calls.incrementAndGet()));
+        assertEquals("done-1", cache.execute("k", "f", () -> "done-" + calls.incrementAndGet()));
+
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.replays());
+    }
+
+    @Test
+    void execute_shouldCoalesceConcurrentDuplicatesOntoInFlightExecution() throws Exception {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>(10, Duration.ofMinutes(1), value -> true);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        Future<Integer> first = pool.submit(() -> cache.execute("k", "f", () -> {
+            running.countDown();
+            await(release);
+            return calls.incrementAndGet();
+        }));
+        running.await();
+        List<Future<Integer>> duplicates = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            duplicates.add(pool.submit(() -> cache.execute("k", "f", calls::incrementAndGet)));
+        }
+        release.countDown();
+
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        for (Future<Integer> duplicate : duplicates) {
+            assertEquals(1, duplicate.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        pool.shutdown();
+    }
+
+    @Test
+    void execute_shouldRejectDifferentFingerprint() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, Duration.ofMinutes(1), value -> true);
+        cache.execute("k", "a", () -> "first");
+
+        assertThrows(IdempotencyConflictException.class, () -> cache.execute("k", "b", () -> "second"));
+    }
+
+    @Test
+    void execute_shouldNotKeepFailuresOrRejectedResults() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, Duration.ofMinutes(1), value -> !value.startsWith("retry"));
+
+        assertThrows(IllegalStateException.class, () -> cache.execute("k", "f", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals("retry later", cache.execute("k", "f", () -> "retry later"));
+        assertEquals("ok", cache.execute("k", "f", () -> "ok"));
+        assertEquals("ok", cache.execute("k", "f", () -> "again"));
+    }
+
+    @Test
+    void execute_shouldExpireEntriesAfterTtl() throws InterruptedException {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, Duration.ofMillis(20), value -> true);
+        cache.execute("k", "f", () -> "first");
+        Thread.sleep(50);
+
+        assertEquals("second", cache.execute("k", "f", () -> "second"));
+    }
+
+    @Test
+    void execute_shouldStayWithinCapacity() {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>(100, Duration.ofMinutes(1), value -> true);
+        for (int i = 0; i < 1_000; i++) {
+            int value = i;
+            cache.execute("key-" + i, "f", () -> value);
+        }
+
+        assertEquals(100, cache.size());
+        assertEquals(999, cache.execute("key-999", "f", () -> -1));
+        assertEquals(-1, cache.execute("key-0", "f", () -> -1));
+    }
+
+    @Test
+    void execute_shouldReleaseDuplicatesWhenActionThrowsError() throws Exception {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, Duration.ofMinutes(1), value -> true);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        Future<String> first = pool.submit(() -> cache.execute("k", "f", () -> {
+            running.countDown();
+            await(release);
+            throw new StackOverflowError();
+        }));
+        running.await();
+        Future<String> duplicate = pool.submit(() -> cache.execute("k", "f", () -> "unused"));
+        while (cache.replays() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, failed.getCause());
+        ExecutionException duplicateFailed = assertThrows(ExecutionException.class,
+                () -> duplicate.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, duplicateFailed.getCause());
+        assertEquals("again", cache.execute("k", "f", () -> "again"));
+        pool.shutdown();
+    }
+
+    @Test
+    void execute_shouldEvictPastAnEntryThatIsStillRunning() throws Exception {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>(10, Duration.ofMinutes(1), value -> true);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Integer> slow = pool.submit(() -> cache.execute("slow", "f", () -> {
+            running.countDown();
+            await(release);
+            return -1;
+        }));
+        running.await();
+
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            cache.execute("key-" + i, "f", () -> value);
+        }
+
+        assertEquals(10, cache.size());
+        release.countDown();
+        assertEquals(-1, slow.get(5, TimeUnit.SECONDS));
+        assertEquals(-1, cache.execute("slow", "f", () -> 0));
+        pool.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.eviden.app.service;
+
+import com.eviden.app.repository.ProcessedCommandRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProcessedCommandPurgerTest {
+
+    @Test
+    void purge_shouldDeleteCommandsOlderThanTheRetention() {
+        ProcessedCommandRepository repository = mock(ProcessedCommandRepository.class);
+        when(repository.deleteProcessedBefore(anyLong())).thenReturn(3);
+        ProcessedCommandPurger purger = new ProcessedCommandPurger(repository, TransactionOperations.withoutTransaction(),
+                Duration.ofDays(7), Duration.ofHours(1));
+
+        long before = System.currentTimeMillis();
+        assertEquals(3, purger.purge());
+        long after = System.currentTimeMillis();
+
+        long retention = Duration.ofDays(7).toMillis();
+        verify(repository).deleteProcessedBefore(longThat(cutoff -> cutoff >= before - retention && cutoff <= after - retention));
+        purger.close();
+    }
+}
@@ -0,0 +1,113 @@
+package com.eviden.app.service;
+
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.data.domain.Limit;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReactiveAccountServiceTest {
+
+    private final List<BankAccount> accounts = new ArrayList<>();
+    private BankAccountRepository repository;
+    private AccountCache cache;
+    private ReactiveAccountService service;
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= 5; id++) {
+            BankAccount account = new BankAccount(String.format("%012d", id), "Owner " + id, 100L, "Savings");
+            account.setId(id);
+            accounts.add(account);
+        }
+        repository = mock(BankAccountRepository.class);
+        when(repository.findByAccountNumber(anyString())).thenAnswer(inv -> accounts.stream()
+                .filter(account -> account.getAccountNumber().equals(inv.getArgument(0)))
+                .findFirst().orElse(null));
+        when(repository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class))).thenAnswer(inv -> {
+            long after = inv.getArgument(0);
+            int max = inv.getArgument(1, Limit.class).max();
+            return accounts.stream().filter(account -> account.getId() > after).limit(max).toList();
+        });
+        cache = new AccountCache(repository, 100, Duration.ofMinutes(1));
+        service = new ReactiveAccountService(repository, mock(AccountService.class), cache, 2, 100, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void findByAccountNumber_shouldServeCachedAccountsOnTheCallingThread() {
+        BankAccount loaded = service.findByAccountNumber("000000000003").block(Duration.ofSeconds(5));
+        Thread caller = Thread.currentThread();
+        List<Thread> emittedOn = new ArrayList<>();
+
+        BankAccount cached = service.findByAccountNumber("000000000003")
+                .doOnNext(account -> emittedOn.add(Thread.currentThread()))
+                .block(Duration.ofSeconds(5));
+
+        assertSame(loaded, cached);
+        assertEquals(List.of(caller), emittedOn);
+        verify(repository, times(1)).findByAccountNumber("000000000003");
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void findByAccountNumber_shouldBeEmptyForUnknownAccounts() {
+        assertNull(service.findByAccountNumber("000000000042").block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void findAll_shouldEmitEveryAccountInIdOrder() {
+        List<BankAccount> all = service.findAll().collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(accounts, all);
+        verify(repository, times(3)).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
+    }
+
+    @Test
+    void findAll_shouldOnlyQueryPagesThatWereRequested() throws InterruptedException {
+        CountDownLatch received = new CountDownLatch(3);
+        BaseSubscriber<BankAccount> subscriber = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(3);
+            }
+
+            @Override
+            protected void hookOnNext(BankAccount value) {
+                received.countDown();
+            }
+        };
+
+        service.findAll().subscribe(subscriber);
+
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        TimeUnit.MILLISECONDS.sleep(100);
+        verify(repository, times(2)).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
+        subscriber.dispose();
+    }
+}
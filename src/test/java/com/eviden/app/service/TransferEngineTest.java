@@ -0,0 +1,358 @@
+package com.eviden.app.service;
+
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.utils.AccountNumber;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class TransferEngineTest {
+
+    private final Map<String, BankAccount> store = new ConcurrentHashMap<>();
+    private BankAccountRepository repository;
+    private TransferEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(BankAccountRepository.class, withSettings().stubOnly());
+        when(repository.findByAccountNumber(anyString())).thenAnswer(inv -> store.get(inv.getArgument(0, String.class)));
+        engine = new TransferEngine(repository, TransactionOperations.withoutTransaction(), 8);
+        account(1L, "10001", 1000L);
+        account(2L, "10002", 500L);
+    }
+
+    private void account(Long id, String number, long balance) {
+        BankAccount account = new BankAccount(number, "John Doe", balance, "Savings");
+        account.setId(id);
+        store.put(number, account);
+    }
+
+    @Test
+    void transfer_shouldMoveMoneyAndWriteThrough() {
+        BankAccountRepository recording = mock(BankAccountRepository.class);
+        when(recording.findByAccountNumber(anyString())).thenAnswer(inv -> store.get(inv.getArgument(0, String.class)));
+        TransferEngine recordingEngine = new TransferEngine(recording, TransactionOperations.withoutTransaction(), 8);
+
+        assertEquals(TransferStatus.SUCCESS, recordingEngine.transfer("10001", "10002", 250L).status());
+
+        assertEquals(750L, recordingEngine.account("10001").getBalance());
+        assertEquals(750L, recordingEngine.account("10002").getBalance());
+        verify(recording).updateBalance(1L, 750L);
+        verify(recording).updateBalance(2L, 750L);
+    }
+
+    @Test
+    void transfer_shouldOnlyLoadAccountsOnce() {
+        BankAccountRepository recording = mock(BankAccountRepository.class);
+        when(recording.findByAccountNumber(anyString())).thenAnswer(inv -> store.get(inv.getArgument(0, String.class)));
+        TransferEngine recordingEngine = new TransferEngine(recording, TransactionOperations.withoutTransaction(), 8);
+
+        recordingEngine.transfer("10001", "10002", 10L);
+        recordingEngine.transfer("10002", "10001", 10L);
+
+        verify(recording, times(1)).findByAccountNumber("10001");
+        verify(recording, times(1)).findByAccountNumber("10002");
+    }
+
+    @Test
+    void transfer_shouldRejectInsufficientFunds() {
+        assertEquals(TransferStatus.INSUFFICIENT_FUNDS, engine.transfer("10002", "10001", 500L).status());
+        assertEquals(500L, engine.account("10002").getBalance());
+    }
+
+    @Test
+    void transfer_shouldRejectUnknownAccount() {
+        assertEquals(TransferStatus.UNKNOWN_ACCOUNT, engine.transfer("10001", "99999", 10L).status());
+        assertNull(engine.account("99999"));
+    }
+
+    @Test
+    void transfer_shouldRejectInvalidRequests() {
+        assertEquals(TransferStatus.INVALID, engine.transfer("10001", "10001", 10L).status());
+        assertEquals(TransferStatus.INVALID, engine.transfer("10001", "10002", -5L).status());
+        assertEquals(TransferStatus.INVALID, engine.transfer("10001", "10002", 0L).status());
+        assertEquals(TransferStatus.INVALID, engine.transfer(null, "10002", 10L).status());
+    }
+
+    @Test
+    void transfer_shouldRecordStagesAndOutcomes() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TransferEngine measured = new TransferEngine(repository, TransactionOperations.withoutTransaction(), 8,
+                List.of(), new BankMetrics(registry));
+
+        measured.transfer("10001", "10002", 100L);
+        measured.transfer("10001", "10002", 5000L);
+        measured.transfer("10001", "99999", 100L);
+
+        assertEquals(1.0, registry.get("bank.transfer.outcome").tag("status", "SUCCESS").counter().count());
+        assertEquals(1.0, registry.get("bank.transfer.outcome").tag("status", "INSUFFICIENT_FUNDS").counter().count());
+        assertEquals(1.0, registry.get("bank.transfer.outcome").tag("status", "UNKNOWN_ACCOUNT").counter().count());
+        assertEquals(3, registry.get("bank.transfer.stage").tag("stage", "lock-wait").timer().count());
+        assertEquals(1, registry.get("bank.transfer.stage").tag("stage", "write-through").timer().count());
+    }
+
+    @Test
+    void transfer_shouldRestoreBalancesWhenWriteThroughFails() {
+        BankAccountRepository failing = mock(BankAccountRepository.class);
+        when(failing.findByAccountNumber(anyString())).thenAnswer(inv -> store.get(inv.getArgument(0, String.class)));
+        when(failing.updateBalance(eq(2L), anyLong())).thenThrow(new IllegalStateException("db down"));
+        TransferEngine failingEngine = new TransferEngine(failing, TransactionOperations.withoutTransaction(), 8);
+
+        assertThrows(IllegalStateException.class, () -> failingEngine.transfer("10001", "10002", 100L));
+
+        assertEquals(1000L, failingEngine.account("10001").getBalance());
+        assertEquals(500L, failingEngine.account("10002").getBalance());
+    }
+
+    @Test
+    void transfer_shouldRollBackWhenRequiredListenerFails() {
+        BankAccountRepository recording = mock(BankAccountRepository.class);
+        when(recording.findByAccountNumber(anyString())).thenAnswer(inv -> store.get(inv.getArgument(0, String.class)));
+        RecordingListener journal = new RecordingListener(true);
+        journal.failure = new IllegalStateException("journal full");
+        RecordingListener audit = new RecordingListener(false);
+        TransferEngine journaled = new TransferEngine(recording, TransactionOperations.withoutTransaction(), 8,
+                List.of(journal, audit));
+
+        assertThrows(IllegalStateException.class, () -> journaled.transfer("10001", "10002", 100L));
+
+        assertEquals(1000L, journaled.account("10001").getBalance());
+        assertEquals(500L, journaled.account("10002").getBalance());
+        assertTrue(audit.transfers.isEmpty());
+        assertTrue(journal.rollbacks.isEmpty());
+    }
+
+    @Test
+    void transfer_shouldTakeBackJournaledTransferWhenCommitFails() {
+        TransactionOperations failingCommit = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                action.doInTransaction(new SimpleTransactionStatus());
+                throw new IllegalStateException("commit failed");
+            }
+        };
+        RecordingListener journal = new RecordingListener(true);
+        RecordingListener audit = new RecordingListener(false);
+        TransferEngine journaled = new TransferEngine(repository, failingCommit, 8, List.of(journal, audit));
+
+        assertThrows(IllegalStateException.class, () -> journaled.transfer("10001", "10002", 100L));
+
+        assertEquals(List.of("10001>10002:900/600"), journal.transfers);
+        assertEquals(List.of("10001>10002:1000/500"), journal.rollbacks);
+        assertTrue(audit.transfers.isEmpty());
+        assertEquals(1000L, journaled.account("10001").getBalance());
+    }
+
+    @Test
+    void transfer_shouldCallRequiredListenersBeforeCommitAndOthersAfter() {
+        List<String> order = new ArrayList<>();
+        TransactionOperations tracking = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                T result = action.doInTransaction(new SimpleTransactionStatus());
+                order.add("commit");
+                return result;
+            }
+        };
+        TransferListener journal = new TransferListener() {
+            @Override
+            public void onTransfer(String s, String r, long amount, long sb, long rb) {
+                order.add("journal");
+            }
+
+            @Override
+            public boolean isRequired() {
+                return true;
+            }
+        };
+        TransferListener audit = (s, r, amount, sb, rb) -> order.add("audit");
+        TransferEngine journaled = new TransferEngine(repository, tracking, 8, List.of(audit, journal));
+
+        journaled.transfer("10001", "10002", 100L);
+
+        assertEquals(List.of("journal", "commit", "audit"), order);
+    }
+
+    @Test
+    void transfer_shouldConserveMoneyUnderOpposingConcurrentTransfers() throws Exception {
+        int threads = 8;
+        int perThread = 2_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            boolean forward = t % 2 == 0;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    if (forward) {
+                        engine.transfer("10001", "10002", 1L);
+                    } else {
+                        engine.transfer("10002", "10001", 1L);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        long total = engine.account("10001").getBalance() + engine.account("10002").getBalance();
+        assertEquals(1500L, total);
+        assertTrue(engine.account("10001").getBalance() > 0);
+    }
+
+    @Test
+    void load_shouldKeepHotAccountsWithinBound() {
+        for (int i = 0; i < 200; i++) {
+            account(100L + i, String.valueOf(20000 + i), 100L);
+        }
+        TransferEngine bounded = new TransferEngine(repository, TransactionOperations.withoutTransaction(), 4,
+                List.of(), BankMetrics.noop(), null, 16);
+
+        for (int i = 0; i < 200; i += 2) {
+            assertEquals(TransferStatus.SUCCESS,
+                    bounded.transfer(String.valueOf(20000 + i), String.valueOf(20001 + i), 10L).status());
+        }
+
+        assertTrue(bounded.hotAccounts() <= 16, "hot accounts: " + bounded.hotAccounts());
+        assertEquals(TransferStatus.SUCCESS, bounded.transfer("20000", "20001", 10L).status());
+        assertEquals(80L, bounded.account("20000").getBalance());
+    }
+
+    @Test
+    void evict_shouldReloadFromRepository() {
+        engine.transfer("10001", "10002", 100L);
+        account(1L, "10001", 42L);
+
+        engine.evict("10001");
+
+        assertEquals(TransferStatus.SUCCESS, engine.transfer("10001", "10002", 2L).status());
+        assertEquals(40L, engine.account("10001").getBalance());
+    }
+
+    @Test
+    void transfer_shouldReturnAccountsAsOfTheTransfer() {
+        TransferResult result = engine.transfer("10001", "10002", 250L);
+        engine.evict("10001");
+        engine.evict("10002");
+
+        assertEquals(TransferStatus.SUCCESS, result.status());
+        assertEquals("10001", result.senderAccount().getAccountNumber());
+        assertEquals(750L, result.senderAccount().getBalance());
+        assertEquals(750L, result.receiverAccount().getBalance());
+        assertNull(engine.transfer("10001", "99999", 10L).senderAccount());
+    }
+
+    @Test
+    void load_shouldNotDropTheOtherPartyOfTheTransfer() {
+        TransferEngine bounded = new TransferEngine(repository, TransactionOperations.withoutTransaction(), 2,
+                List.of(), BankMetrics.noop(), null, 4);
+        List<String> numbers = sameStripe(bounded, 3);
+
+        assertEquals(TransferStatus.SUCCESS, bounded.transfer(numbers.get(0), numbers.get(1), 10L).status());
+        // the stripe is full and the sender is its least recently used account
+        bounded.evict(numbers.get(1));
+        account(302L, numbers.get(1), 100L);
+        TransferResult result = bounded.transfer(numbers.get(2), numbers.get(0), 10L);
+
+        assertEquals(TransferStatus.SUCCESS, result.status());
+        assertEquals(100L, result.receiverAccount().getBalance());
+        assertEquals(100L, bounded.account(numbers.get(0)).getBalance());
+        assertEquals(90L, bounded.account(numbers.get(2)).getBalance());
+    }
+
+    @Test
+    void load_shouldDropTheLeastRecentlyUsedAccount() {
+        TransferEngine bounded = new TransferEngine(repository, TransactionOperations.withoutTransaction(), 2,
+                List.of(), BankMetrics.noop(), null, 6);
+        List<String> numbers = sameStripe(bounded, 5);
+
+        bounded.transfer(numbers.get(0), numbers.get(1), 10L);
+        bounded.transfer(numbers.get(2), numbers.get(0), 10L);
+        bounded.transfer(numbers.get(3), numbers.get(4), 10L);
+
+        // loaded first but used last, so it outlives the accounts loaded after it
+        assertTrue(bounded.account(numbers.get(0)) != null);
+        assertNull(bounded.account(numbers.get(1)));
+        assertNull(bounded.account(numbers.get(2)));
+    }
+
+    /**
+     * Creates {@code count} accounts with a balance of 100 that share one stripe of {@code engine}.
+     */
+    private List<String> sameStripe(TransferEngine engine, int count) {
+        int stripe = engine.stripeOf(AccountNumber.pack("30000"));
+        List<String> numbers = new ArrayList<>();
+        for (int n = 30000; numbers.size() < count; n++) {
+            String number = String.valueOf(n);
+            if (engine.stripeOf(AccountNumber.pack(number)) == stripe) {
+                account(300L + numbers.size(), number, 100L);
+                numbers.add(number);
+            }
+        }
+        return numbers;
+    }
+
+    private static final class RecordingListener implements TransferListener {
+
+        private final boolean required;
+        private final List<String> transfers = new ArrayList<>();
+        private final List<String> rollbacks = new ArrayList<>();
+        private RuntimeException failure;
+
+        RecordingListener(boolean required) {
+            this.required = required;
+        }
+
+        @Override
+        public void onTransfer(String senderAccount, String receiverAccount, long amount,
+                               long senderBalance, long receiverBalance) {
+            if (failure != null) {
+                throw failure;
+            }
+            transfers.add(senderAccount + ">" + receiverAccount + ":" + senderBalance + "/" + receiverBalance);
+        }
+
+        @Override
+        public boolean isRequired() {
+            return required;
+        }
+
+        @Override
+        public void onRollback(String senderAccount, String receiverAccount, long amount,
+                               long senderBalance, long receiverBalance) {
+            rollbacks.add(senderAccount + ">" + receiverAccount + ":" + senderBalance + "/" + receiverBalance);
+        }
+    }
+}
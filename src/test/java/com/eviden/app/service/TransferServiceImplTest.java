@@ -0,0 +1,257 @@
+package com.eviden.app.service;
+
+import com.eviden.app.dto.BatchTransferResultDTO;
+import com.eviden.app.entity.BankAccount;
+import com.eviden.app.entity.ProcessedCommand;
+import com.eviden.app.entity.Transfer;
+import com.eviden.app.repository.BankAccountRepository;
+import com.eviden.app.repository.ProcessedCommandRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransferServiceImplTest {
+
+    private final Map<String, Long> stored = new HashMap<>();
+    private BankAccountRepository repository;
+    private TransferEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        stored.put("10001", 1000L);
+        stored.put("10002", 500L);
+        stored.put("10003", 1L);
+        repository = mock(BankAccountRepository.class);
+        when(repository.findByAccountNumber(anyString())).thenAnswer(inv -> load(inv.getArgument(0)));
+        when(repository.findByAccountNumberIn(anyCollection())).thenAnswer(inv -> {
+            Collection<String> numbers = inv.getArgument(0);
+            return numbers.stream().map(this::load).filter(a -> a != null).toList();
+        });
+        when(repository.updateBalance(anyLong(), anyLong())).thenAnswer(inv -> {
+            stored.put(String.valueOf(inv.getArgument(0, Long.class)), inv.getArgument(1, Long.class));
+            return 1;
+        });
+        engine = new TransferEngine(repository, TransactionOperations.withoutTransaction(), 8);
+    }
+
+    private BankAccount load(String number) {
+        Long balance = stored.get(number);
+        if (balance == null) {
+            return null;
+        }
+        BankAccount account = new BankAccount(number, "John Doe", balance, "Savings");
+        account.setId(Long.valueOf(number));
+        return account;
+    }
+
+    private TransferServiceImpl service(int chunkSize, BatchFailureMode mode) {
+        return new TransferServiceImpl(repository, engine, TransactionOperations.withoutTransaction(), chunkSize, mode);
+    }
+
+    @Test
+    void transfer_shouldReportBalancesEvenIfTheAccountsAreEvictedRightAfter() throws Exception {
+        engine = new TransferEngine(repository, TransactionOperations.withoutTransaction(), 8,
+                List.of((sender, receiver, amount, senderBalance, receiverBalance) -> {
+                    engine.evict(sender);
+                    engine.evict(receiver);
+                }));
+
+        Map<String, Optional<BankAccount>> accounts = service(10, BatchFailureMode.ALL_OR_NOTHING)
+                .transfer(new Transfer("10001", "10002", 100L));
+
+        assertEquals(900L, accounts.get("senderAccount").orElseThrow().getBalance());
+        assertEquals(600L, accounts.get("receiverAccount").orElseThrow().getBalance());
+    }
+
+    @Test
+    void transferBatch_shouldLoadAllAccountsInOneQueryAndFlushPerChunk() {
+        List<Transfer> transfers = Arrays.asList(
+                new Transfer("10001", "10002", 10L),
+                new Transfer("10002", "10001", 5L),
+                new Transfer("10001", "10002", 1L));
+
+        BatchTransferResultDTO result = service(2, BatchFailureMode.ALL_OR_NOTHING).transferBatch(transfers, null);
+
+        assertTrue(result.isCommitted());
+        assertEquals(3, result.getSucceeded());
+        verify(repository, times(1)).findByAccountNumberIn(anyCollection());
+        verify(repository, times(1)).flush();
+    }
+
+    @Test
+    void transferBatch_shouldLoadAccountsInChunks() {
+        List<Transfer> transfers = Arrays.asList(
+                new Transfer("10001", "10002", 10L),
+                new Transfer("10002", "10003", 1L));
+
+        BatchTransferResultDTO result = service(2, BatchFailureMode.ALL_OR_NOTHING).transferBatch(transfers, null);
+
+        assertTrue(result.isCommitted());
+        verify(repository, times(2)).findByAccountNumberIn(anyCollection());
+        verify(repository, never()).findByAccountNumberIn(argThat(numbers -> numbers.size() > 2));
+    }
+
+    @Test
+    void transferBatch_shouldRejectBatchAboveLimit() {
+        TransferServiceImpl service = new TransferServiceImpl(repository, engine,
+                TransactionOperations.withoutTransaction(), 100, 2, BatchFailureMode.BEST_EFFORT, null, null);
+        List<Transfer> transfers = Arrays.asList(
+                new Transfer("10001", "10002", 1L), new Transfer("10001", "10002", 1L),
+                new Transfer("10001", "10002", 1L));
+
+        assertThrows(IllegalArgumentException.class, () -> service.transferBatch(transfers, null));
+        verify(repository, never()).findByAccountNumberIn(anyCollection());
+    }
+
+    @Test
+    void transferBatch_allOrNothingShouldReportRolledBackItems() {
+        engine.transfer("10001", "10002", 1L);
+        List<Transfer> transfers = Arrays.asList(
+                new Transfer("10001", "10002", 10L),
+                new Transfer("10003", "10001", 5L));
+
+        BatchTransferResultDTO result = service(100, BatchFailureMode.ALL_OR_NOTHING).transferBatch(transfers, null);
+
+        assertFalse(result.isCommitted());
+        assertEquals(TransferStatus.ROLLED_BACK, result.getResults().get(0).getStatus());
+        assertEquals(TransferStatus.INSUFFICIENT_FUNDS, result.getResults().get(1).getStatus());
+        assertEquals(999L, engine.account("10001").getBalance());
+    }
+
+    @Test
+    void transferBatch_bestEffortShouldCommitAndRefreshHotAccounts() {
+        engine.transfer("10001", "10002", 1L);
+        List<Transfer> transfers = Arrays.asList(
+                new Transfer("10001", "10002", 10L),
+                new Transfer("10002", "99999", 5L),
+                new Transfer("10001", "10001", 5L));
+
+        BatchTransferResultDTO result = service(100, BatchFailureMode.ALL_OR_NOTHING)
+                .transferBatch(transfers, BatchFailureMode.BEST_EFFORT);
+
+        assertTrue(result.isCommitted());
+        assertEquals(1, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals(TransferStatus.UNKNOWN_ACCOUNT, result.getResults().get(1).getStatus());
+        assertEquals(TransferStatus.INVALID, result.getResults().get(2).getStatus());
+        assertEquals(989L, engine.account("10001").getBalance());
+        assertEquals(511L, engine.account("10002").getBalance());
+    }
+
+    @Test
+    void transferBatch_bestEffortShouldReportOverflowingItemAsInvalid() {
+        stored.put("10004", Long.MAX_VALUE - 5L);
+        engine.transfer("10001", "10002", 1L);
+        List<Transfer> transfers = Arrays.asList(
+                new Transfer("10001", "10002", 10L),
+                new Transfer("10001", "10004", 10L),
+                new Transfer("10002", "10001", 20L));
+
+        BatchTransferResultDTO result = service(100, BatchFailureMode.BEST_EFFORT)
+                .transferBatch(transfers, BatchFailureMode.BEST_EFFORT);
+
+        assertTrue(result.isCommitted());
+        assertEquals(2, result.getSucceeded());
+        assertEquals(TransferStatus.INVALID, result.getResults().get(1).getStatus());
+        assertEquals(1009L, engine.account("10001").getBalance());
+        assertEquals(491L, engine.account("10002").getBalance());
+    }
+
+    @Test
+    void transferBatch_shouldHandAppliedTransfersToRequiredListenersInOneCall() {
+        List<String> calls = new ArrayList<>();
+        TransferListener journal = new TransferListener() {
+            @Override
+            public void onTransfer(String senderAccount, String receiverAccount, long amount,
+                                   long senderBalance, long receiverBalance) {
+                calls.add("single");
+            }
+
+            @Override
+            public void onTransfers(List<Transfer> transfers, long[] senderBalances, long[] receiverBalances) {
+                calls.add(transfers.size() + ":" + senderBalances[1] + "/" + receiverBalances[1]);
+            }
+
+            @Override
+            public boolean isRequired() {
+                return true;
+            }
+        };
+        engine = new TransferEngine(repository, TransactionOperations.withoutTransaction(), 8, List.of(journal));
+        List<Transfer> transfers = Arrays.asList(
+                new Transfer("10001", "10002", 10L),
+                new Transfer("10001", "99999", 10L),
+                new Transfer("10002", "10001", 20L));
+
+        service(100, BatchFailureMode.BEST_EFFORT).transferBatch(transfers, BatchFailureMode.BEST_EFFORT);
+
+        assertEquals(List.of("2:490/1010"), calls);
+    }
+
+    @Test
+    void transferBatch_shouldApplyARedeliveredCommandOnlyOnce() {
+        Map<String, ProcessedCommand> processed = new HashMap<>();
+        ProcessedCommandRepository commands = mock(ProcessedCommandRepository.class);
+        when(commands.findAllById(anyIterable())).thenAnswer(inv -> {
+            Iterable<String> ids = inv.getArgument(0);
+            List<ProcessedCommand> found = new ArrayList<>();
+            ids.forEach(id -> {
+                if (processed.containsKey(id)) {
+                    found.add(processed.get(id));
+                }
+            });
+            return found;
+        });
+        when(commands.saveAll(anyIterable())).thenAnswer(inv -> {
+            Iterable<ProcessedCommand> saved = inv.getArgument(0);
+            saved.forEach(command -> processed.put(command.getCommandId(), command));
+            return saved;
+        });
+        TransferServiceImpl service = new TransferServiceImpl(repository, engine,
+                TransactionOperations.withoutTransaction(), 100, BatchFailureMode.BEST_EFFORT, null, commands);
+        engine.transfer("10001", "10002", 1L);
+
+        BatchTransferResultDTO first = service.transferBatch(
+                Arrays.asList(new Transfer("10001", "10002", 10L), new Transfer("10001", "10002", 10L),
+                        new Transfer("10003", "10002", 10L)),
+                null, Arrays.asList("cmd-1", "cmd-1", "cmd-2"));
+        // the duplicate inside the batch is not applied either
+        assertEquals(989L, engine.account("10001").getBalance());
+        BatchTransferResultDTO redelivered = service.transferBatch(
+                Arrays.asList(new Transfer("10001", "10002", 10L), new Transfer("10003", "10002", 10L),
+                        new Transfer("10001", "10002", 10L)),
+                null, Arrays.asList("cmd-1", "cmd-2", null));
+
+        assertEquals(TransferStatus.SUCCESS, first.getResults().get(1).getStatus());
+        assertEquals(TransferStatus.INSUFFICIENT_FUNDS, first.getResults().get(2).getStatus());
+        assertEquals(TransferStatus.SUCCESS, redelivered.getResults().get(0).getStatus());
+        assertEquals(TransferStatus.INSUFFICIENT_FUNDS, redelivered.getResults().get(1).getStatus());
+        assertEquals(TransferStatus.SUCCESS, redelivered.getResults().get(2).getStatus());
+        // the mocked repository loads 999 again, only the command without an id is applied
+        assertEquals(989L, engine.account("10001").getBalance());
+        assertEquals(2, processed.size());
+    }
+}
@@ -0,0 +1,39 @@
+package com.eviden.app.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountNumberTest {
+
+    @Test
+    void pack_shouldRoundTripAndKeepLeadingZeros() {
+        for (String number : new String[]{"0", "7", "10001", "008596512563", "00000000000000000", "99999999999999999"}) {
+            assertEquals(number, AccountNumber.unpack(AccountNumber.pack(number)));
+        }
+        assertNotEquals(AccountNumber.pack("0123"), AccountNumber.pack("123"));
+        assertNotEquals(0L, AccountNumber.pack("0"));
+    }
+
+    @Test
+    void isValid_shouldAcceptOnlyOneToSeventeenDigits() {
+        assertTrue(AccountNumber.isValid("008596512563"));
+        assertFalse(AccountNumber.isValid(null));
+        assertFalse(AccountNumber.isValid(""));
+        assertFalse(AccountNumber.isValid("12a45"));
+        assertFalse(AccountNumber.isValid("-12345"));
+        assertFalse(AccountNumber.isValid("123456789012345678"));
+        assertThrows(IllegalArgumentException.class, () -> AccountNumber.pack("12a45"));
+    }
+
+    @Test
+    void unpack_shouldRejectValuesThatWereNotPacked() {
+        assertThrows(IllegalArgumentException.class, () -> AccountNumber.unpack(0L));
+        assertThrows(IllegalArgumentException.class, () -> AccountNumber.unpack(-1L));
+        assertThrows(IllegalArgumentException.class, () -> AccountNumber.unpack((1L << 57) | 10));
+    }
+}
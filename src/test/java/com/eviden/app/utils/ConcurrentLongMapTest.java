@@ -0,0 +1,69 @@
+package com.eviden.app.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ConcurrentLongMapTest {
+
+    @Test
+    void putGetRemove_shouldBehaveLikeHashMap() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // small key range so that inserts, replacements and removals collide constantly
+            long key = random.nextInt(5_000) * 31L - 70_000;
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(reference.put(key, (long) i), map.put(key, (long) i));
+                case 1 -> assertEquals(reference.remove(key), map.remove(key));
+                default -> assertEquals(reference.get(key), map.get(key));
+            }
+        }
+        assertEquals(reference.size(), map.size());
+        for (Map.Entry<Long, Long> entry : reference.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    void get_shouldSeeStableKeysWhileOtherKeysChurn() throws Exception {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        for (long key = 0; key < 1_000; key++) {
+            map.put(key, "stable-" + key);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<?> writer = pool.submit(() -> {
+            for (int round = 0; round < 50; round++) {
+                for (long key = 1_000; key < 5_000; key++) {
+                    map.put(key, "churn");
+                }
+                for (long key = 1_000; key < 5_000; key++) {
+                    map.remove(key);
+                }
+            }
+        });
+        Future<?> reader = pool.submit(() -> {
+            while (!writer.isDone()) {
+                for (long key = 0; key < 1_000; key++) {
+                    assertEquals("stable-" + key, map.get(key));
+                }
+            }
+        });
+        writer.get(30, TimeUnit.SECONDS);
+        reader.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(1_000, map.size());
+        assertNull(map.get(1_000));
+    }
+}
@@ -0,0 +1,72 @@
+package com.eviden.app.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    static class Amount {
+        @JsonSerialize(using = Money.Serializer.class)
+        @JsonDeserialize(using = Money.Deserializer.class)
+        public long value;
+    }
+
+    @Test
+    void parse_shouldConvertExactlyToMinorUnits() {
+        assertEquals(5_200_000L, Money.parse("52000"));
+        assertEquals(1234L, Money.parse("12.34"));
+        assertEquals(10L, Money.parse("0.1"));
+        assertEquals(-5L, Money.parse("-0.05"));
+        assertEquals("52000.00", Money.format(5_200_000L));
+        assertEquals(new BigDecimal("0.07"), Money.toBigDecimal(7L));
+    }
+
+    @Test
+    void parse_shouldRejectRoundingAndOverflow() {
+        assertThrows(ArithmeticException.class, () -> Money.parse("0.001"));
+        assertThrows(ArithmeticException.class, () -> Money.parse("92233720368547758.08"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("ten"));
+    }
+
+    @Test
+    void of_shouldRejectExtremeExponentsWithoutRescaling() {
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+            assertThrows(ArithmeticException.class, () -> Money.parse("1e999999999"));
+            assertThrows(ArithmeticException.class, () -> Money.parse("1e-999999999"));
+            assertThrows(InvalidFormatException.class,
+                    () -> objectMapper.readValue("{\"value\":1e999999999}", Amount.class));
+        });
+        assertEquals(0L, Money.parse("0e999999999"));
+        assertEquals(150L, Money.parse("1.50000"));
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07"));
+    }
+
+    @Test
+    void json_shouldRoundTripAsDecimalNumber() throws Exception {
+        Amount amount = objectMapper.readValue("{\"value\":0.1}", Amount.class);
+        assertEquals(10L, amount.value);
+        assertEquals(1050L, objectMapper.readValue("{\"value\":\"10.50\"}", Amount.class).value);
+        assertEquals(0L, objectMapper.readValue("{\"value\":null}", Amount.class).value);
+
+        amount.value = 5_200_000L;
+        assertEquals("{\"value\":52000.00}", objectMapper.writeValueAsString(amount));
+    }
+
+    @Test
+    void json_shouldRejectMoreThanTwoDecimals() {
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{\"value\":1.005}", Amount.class));
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{\"value\":\"abc\"}", Amount.class));
+    }
+}
@@ -0,0 +1,108 @@
+package com.eviden.app.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.SplittableRandom;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TimestampCodecTest {
+
+    private static final DateTimeFormatter LOCAL = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter LOCAL_MILLIS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final String[] ZONES = {"UTC", "Europe/Paris", "Asia/Kolkata", "America/St_Johns", "Australia/Lord_Howe"};
+
+    @Test
+    void format_shouldMatchSimpleDateFormatAcrossZonesAndTransitions() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (String id : ZONES) {
+            ZoneId zone = ZoneId.of(id);
+            SimpleDateFormat seconds = simpleDateFormat("yyyy-MM-dd HH:mm:ss", zone);
+            SimpleDateFormat millis = simpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", zone);
+            TimestampCodec secondsCodec = TimestampCodec.seconds(zone);
+            TimestampCodec millisCodec = TimestampCodec.millis(zone);
+            long[] epochMillis = new long[20_000];
+            long now = random.nextLong(-1_000_000_000_000L, 4_000_000_000_000L);
+            for (int i = 0; i < epochMillis.length; i++) {
+                // mostly small steps, so the remembered minute is both hit and missed
+                now += random.nextInt(10) == 0 ? random.nextLong(10_000_000_000L) : random.nextLong(5_000);
+                epochMillis[i] = now;
+            }
+            String[] bulk = millisCodec.format(epochMillis);
+            long[] parsed = millisCodec.parse(bulk);
+            for (int i = 0; i < epochMillis.length; i++) {
+                Date date = new Date(epochMillis[i]);
+                assertEquals(seconds.format(date), secondsCodec.format(epochMillis[i]), id);
+                assertEquals(millis.format(date), bulk[i], id);
+                // local time is ambiguous in an overlap, where java.time picks the earlier offset
+                assertEquals(LocalDateTime.parse(bulk[i], LOCAL_MILLIS).atZone(zone).toInstant().toEpochMilli(), parsed[i], bulk[i]);
+            }
+        }
+    }
+
+    @Test
+    void format_shouldHandleEveryMinuteAroundDaylightSavingChanges() {
+        ZoneId paris = ZoneId.of("Europe/Paris");
+        TimestampCodec codec = TimestampCodec.seconds(paris);
+        SimpleDateFormat expected = simpleDateFormat("yyyy-MM-dd HH:mm:ss", paris);
+        for (LocalDateTime change : new LocalDateTime[]{LocalDateTime.of(2024, 3, 31, 1, 0), LocalDateTime.of(2024, 10, 27, 0, 0)}) {
+            long from = change.toEpochSecond(ZoneOffset.UTC) * 1000 - 7_200_000;
+            for (long epochMilli = from; epochMilli < from + 4 * 3_600_000; epochMilli += 7_919) {
+                String text = codec.format(epochMilli);
+                assertEquals(expected.format(new Date(epochMilli)), text);
+                long local = LocalDateTime.parse(text, LOCAL).atZone(paris).toInstant().toEpochMilli();
+                assertEquals(local, codec.parse(text), text);
+            }
+        }
+    }
+
+    @Test
+    void parse_shouldReadSecondsAndMillisAndNegativeEpochs() {
+        TimestampCodec codec = TimestampCodec.seconds(ZoneOffset.UTC);
+
+        assertEquals(0L, codec.parse("1970-01-01 00:00:00"));
+        assertEquals(1_704_067_199_999L, codec.parse("2023-12-31 23:59:59.999"));
+        assertEquals(-1_000L, codec.parse("1969-12-31 23:59:59"));
+        assertEquals("1969-12-31 23:59:59", codec.format(-1L));
+        assertArrayEquals(new long[]{1_000L, 2_000L, 61_000L}, codec.parse(new String[]{
+                "1970-01-01 00:00:01", "1970-01-01 00:00:02", "1970-01-01 00:01:01"}));
+    }
+
+    @Test
+    void parse_shouldRejectMalformedAndImpossibleTimestamps() {
+        TimestampCodec codec = TimestampCodec.seconds(ZoneOffset.UTC);
+        codec.parse("2024-02-29 10:00:00");
+
+        assertThrows(DateTimeParseException.class, () -> codec.parse("2024-02-30 10:00:00"));
+        assertThrows(DateTimeParseException.class, () -> codec.parse("2024-02-29 10:00:60"));
+        assertThrows(DateTimeParseException.class, () -> codec.parse("2024-02-29 10:00:0x"));
+        assertThrows(DateTimeParseException.class, () -> codec.parse("2024-02-29T10:00:00"));
+        assertThrows(DateTimeParseException.class, () -> codec.parse("2024-02-29 10:00"));
+        assertThrows(DateTimeParseException.class, () -> codec.parse(new String[]{"2024-02-29 10:00:01", "not a date"}));
+    }
+
+    @Test
+    void utility_shouldRoundTripThroughTheDefaultZone() {
+        long epochMilli = 1_718_000_123_000L;
+
+        assertEquals(epochMilli, Utility.dateToEpoc(Utility.epocToDate(epochMilli)));
+        assertEquals(simpleDateFormat("yyyy-MM-dd HH:mm:ss", ZoneId.systemDefault()).format(new Date(epochMilli)),
+                Utility.epocToDate(epochMilli));
+    }
+
+    private static SimpleDateFormat simpleDateFormat(String pattern, ZoneId zone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setTimeZone(TimeZone.getTimeZone(zone));
+        return format;
+    }
+}
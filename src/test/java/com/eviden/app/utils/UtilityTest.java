@@ -0,0 +1,101 @@
+package com.eviden.app.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilityTest {
+
+    record Row(String accountNumber, long packed, int position) {
+    }
+
+    @Test
+    void findDuplicates_shouldReturnFirstElementOfEachRepeatedKeyInListOrder() {
+        List<Row> rows = rows("b", "a", "c", "a", "b", "b", "d");
+
+        List<Row> duplicates = Utility.findDuplicates(rows, Row::accountNumber);
+
+        assertEquals(List.of(rows.get(0), rows.get(1)), duplicates);
+    }
+
+    @Test
+    void findDuplicates_shouldTreatNullKeysAsEmptyAndApplyTheKeyOnce() {
+        List<Row> rows = rows(null, "x", "", null);
+        AtomicInteger calls = new AtomicInteger();
+
+        List<Row> duplicates = Utility.findDuplicates(rows, row -> {
+            calls.incrementAndGet();
+            return row.accountNumber();
+        });
+
+        assertEquals(List.of(rows.get(0)), duplicates);
+        assertEquals(4, calls.get());
+        assertNull(Utility.findDuplicates(null, Row::accountNumber));
+        assertTrue(Utility.findDuplicates(List.<Row>of(), Row::accountNumber).isEmpty());
+    }
+
+    @Test
+    void findDuplicates_shouldMatchGroupingAcrossAllVariants() {
+        SplittableRandom random = new SplittableRandom(3);
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(150_000);
+            rows.add(new Row(String.format("%012d", key), key, i));
+        }
+        Map<String, List<Row>> groups = rows.stream().collect(Collectors.groupingBy(Row::accountNumber));
+        List<Row> expected = groups.values().stream()
+                .filter(group -> group.size() > 1)
+                .map(group -> group.get(0))
+                .sorted((a, b) -> Integer.compare(a.position(), b.position()))
+                .toList();
+
+        assertEquals(expected, Utility.findDuplicates(rows, Row::accountNumber));
+        assertEquals(expected, Utility.findDuplicates(new LinkedList<>(rows), Row::accountNumber));
+        assertEquals(expected, Utility.findDuplicatesParallel(rows, Row::accountNumber));
+        assertEquals(expected, Duplicates.firstOfRepeatedParallel(rows, Row::accountNumber, 3));
+        assertEquals(expected, Utility.findDuplicatesByLong(rows, Row::packed));
+        assertEquals(expected, Utility.findDuplicatesByInt(rows, row -> (int) row.packed()));
+    }
+
+    @Test
+    void findDuplicatesByLong_shouldHandleZeroAndNegativeKeys() {
+        List<Long> keys = Arrays.asList(0L, -1L, Long.MIN_VALUE, 0L, Long.MIN_VALUE, 7L);
+
+        assertEquals(List.of(0L, Long.MIN_VALUE), Utility.findDuplicatesByLong(keys, Long::longValue));
+    }
+
+    @Test
+    void removeDuplicate_shouldKeepFirstOccurrencesInOrder() {
+        List<String> values = Arrays.asList("b", null, "a", "b", null, "", "a");
+        List<Integer> many = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(5);
+        for (int i = 0; i < 50_000; i++) {
+            many.add(random.nextInt(20_000));
+        }
+
+        assertEquals(Arrays.asList("b", null, "a", ""), Utility.removeDuplicate(values));
+        assertEquals(new ArrayList<>(new LinkedHashSet<>(many)), Utility.removeDuplicate(many));
+        assertEquals(Collections.emptyList(), Utility.removeDuplicate(List.of()));
+    }
+
+    private static List<Row> rows(String... accountNumbers) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < accountNumbers.length; i++) {
+            rows.add(new Row(accountNumbers[i], i, i));
+        }
+        return rows;
+    }
+}